@@ -1,19 +1,36 @@
 package engine.api;
 
-import engine.compiler.utils.Token;
+import engine.compiler.jvm.ProcedureCompiler;
 import engine.compiler.lexer.CrudeLexer;
 import engine.compiler.lexer.Lexer;
+import engine.compiler.lexer.TokenReader;
+import engine.compiler.optimizer.Optimizer;
 import engine.compiler.parser.CrudeParser;
+import engine.compiler.parser.IncrementalParser;
 import engine.compiler.parser.Parser;
 import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.snapshot.CommandJournal;
+import engine.compiler.snapshot.JournalEntry;
+import engine.compiler.snapshot.WorkspaceSnapshot;
+import engine.compiler.storage.ExpressionCache;
+import engine.compiler.storage.FunctionMemo;
+import engine.compiler.storage.ProcedureLibrary;
 import engine.compiler.storage.StateMachine;
-import engine.compiler.storage.StateMachineV2;
+import engine.compiler.storage.StateMachineV3;
 import engine.errors.CommandSyntaxException;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 import model.TurtleManager;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * This Engine API implementation uses the AST lexer, parser, interpreter model to execute String input.
@@ -21,30 +38,379 @@ import java.util.List;
  * @author Haotian Wang
  */
 public class ASTEngineAPI implements EngineAPI {
+    private static final int STREAM_CAPACITY = 64;
+    private static final String STREAM_THREAD = "SLogo script parser";
+    private static final String DEFAULT_LANGUAGE = "English";
+
     private Lexer lexer;
     private Parser parser;
     private StateMachine stateMachine;
     private TurtleManager manager;
+    private ExpressionCache cache;
+    private IncrementalParser incrementalParser;
+    private Optimizer optimizer;
+    private String language;
+    private CommandJournal journal;
 
     public ASTEngineAPI(TurtleManager turtleManager) {
         lexer = new CrudeLexer();
         parser = new CrudeParser();
+        cache = new ExpressionCache();
+        incrementalParser = new IncrementalParser(lexer, parser);
+        optimizer = new Optimizer();
+        language = DEFAULT_LANGUAGE;
         manager = turtleManager;
-        stateMachine = new StateMachineV2();
+        stateMachine = new StateMachineV3();
         manager.equipMemory(stateMachine);
     }
 
+    /**
+     * This method runs a command. A command that was parsed before in the same language is taken from the ExpressionCache instead of going through the Lexer and the Parser again. Any other command is parsed by the IncrementalParser, which only parses again the statements that differ from the last command it parsed, and optimized by the Optimizer before it is cached.
+     *
+     * If the session records into a CommandJournal, the command is recorded with its return value and how long it ran, whether or not it fails. The command is recorded after it has run, so that an error of the journal never replaces the return value or the exception of the command. Such an error is added to the exception of the command as a suppressed exception. Before a command runs, the journal is checked, and if it was closed or failed to be written, its error is thrown instead of running the command, and the session no longer records into the journal.
+     *
+     * @param str: The command.
+     * @return The return value of the command.
+     */
     @Override
     public double processString(String str) throws UndefinedKeywordException, CommandSyntaxException, InterpretationException {
-        lexer.readString(str);
-        List<Token> listOfTokens = lexer.getTokens();
-        parser.readTokens(listOfTokens);
-        Expression command = parser.returnAST();
+        if (journal == null) {
+            return parseAndRun(str);
+        }
+        try {
+            journal.checkWritable();
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+        long time = System.currentTimeMillis();
+        long start = System.nanoTime();
+        double ret;
+        try {
+            ret = parseAndRun(str);
+        } catch (UndefinedKeywordException | CommandSyntaxException | InterpretationException | RuntimeException | Error e) {
+            RuntimeException failure = record(str, time, start, false, Double.NaN);
+            if (failure != null) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        record(str, time, start, true, ret);
+        return ret;
+    }
+
+    /**
+     * This method records a command into the journal and saves a snapshot into it if one is due. An error of the journal that is not returned here is thrown by the check before the next command.
+     *
+     * @return The error of the journal, or null if the command is recorded.
+     */
+    private RuntimeException record(String str, long time, long start, boolean successful, double ret) {
+        try {
+            journal.append(str, language, time, System.nanoTime() - start, successful, ret);
+            if (journal.isCheckpointDue()) {
+                journal.checkpoint(manager);
+            }
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * This method runs a command without recording it, taking its AST from the ExpressionCache if it is there.
+     */
+    private double parseAndRun(String str) throws UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Expression command = cache.get(str, language);
+        if (command == null) {
+            command = optimizer.optimize(incrementalParser.parse(str));
+            cache.put(str, language, command);
+        }
+        return run(command);
+    }
+
+    /**
+     * This method runs a script in two overlapped stages. A parsing thread reads, lexes and parses the script one top level statement at a time and hands the ASTs over through a bounded queue, while the calling thread interprets them in order, so the turtles are moved on the same thread as with processString. At most STREAM_CAPACITY parsed statements wait in the queue, and the parsing thread is stopped as soon as the interpretation fails. The parsing thread lexes with a Lexer of its own in the language of the session, and this method only returns after it has stopped, so it never uses the Reader or the state of the session afterwards.
+     *
+     * Unlike processString, the statements before a syntax error in the script are run before the error is reported.
+     *
+     * @param reader: The Reader of the script.
+     * @return The return value of the last statement in the script.
+     */
+    @Override
+    public double processStream(Reader reader) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Parser streamParser = new CrudeParser();
+        streamParser.readStream(new TokenReader(reader, new CrudeLexer(language)));
+        BlockingQueue<ParsedStatement> queue = new ArrayBlockingQueue<>(STREAM_CAPACITY);
+        Thread producer = new Thread(() -> produceStatements(streamParser, queue), STREAM_THREAD);
+        producer.setDaemon(true);
+        producer.start();
+        double ret = 0;
+        try {
+            while (true) {
+                ParsedStatement statement;
+                try {
+                    statement = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterpretationException("The script was interrupted before it finished running.", e);
+                }
+                if (statement.myError != null) {
+                    throwStreamError(statement.myError);
+                }
+                if (statement.myExpression == null) {
+                    return ret;
+                }
+                ret = run(optimizer.optimize(statement.myExpression));
+            }
+        } finally {
+            stopProducer(producer, queue);
+            if (journal != null) {
+                journal.checkpoint(manager);
+            }
+        }
+    }
+
+    /**
+     * This method runs a parsed command. If it fails inside user-defined functions, the parameters of the calls that did not return keep the values they had at the failure, and the StateMachine forgets the values it saved for them. Either way, the observers of the StateMachine are then told once about the variables the command changed.
+     */
+    private double run(Expression command) throws InterpretationException, UndefinedKeywordException {
+        try {
+            return execute(command);
+        } finally {
+            stateMachine.unwindParameters();
+            stateMachine.pushAlarm();
+        }
+    }
+
+    /**
+     * This method runs a parsed command on the turtles. The AST is interpreted directly, and subclasses may run it in other ways with the same effects.
+     *
+     * @param command: The AST of the command.
+     * @return The return value of the command.
+     */
+    protected double execute(Expression command) throws InterpretationException, UndefinedKeywordException {
         return command.interpret(manager);
     }
 
+    private void produceStatements(Parser streamParser, BlockingQueue<ParsedStatement> queue) {
+        try {
+            try {
+                Expression statement;
+                while ((statement = streamParser.nextStatement()) != null) {
+                    queue.put(new ParsedStatement(statement, null));
+                }
+                queue.put(new ParsedStatement(null, null));
+            } catch (CommandSyntaxException | UndefinedKeywordException | IOException | RuntimeException | Error e) {
+                queue.put(new ParsedStatement(null, e));
+            }
+        } catch (InterruptedException e) {
+            // The interpretation has stopped, so nobody is waiting for more statements.
+        }
+    }
+
+    /**
+     * This method stops the parsing thread of processStream and waits until it has ended. The thread is interrupted if it waits to hand over a statement, and otherwise stops at the next one it parses.
+     */
+    private void stopProducer(Thread producer, BlockingQueue<ParsedStatement> queue) {
+        producer.interrupt();
+        boolean interrupted = false;
+        while (producer.isAlive()) {
+            queue.clear();
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throwStreamError(Throwable e) throws IOException, UndefinedKeywordException, CommandSyntaxException {
+        if (e instanceof CommandSyntaxException) {
+            throw (CommandSyntaxException) e;
+        }
+        if (e instanceof UndefinedKeywordException) {
+            throw (UndefinedKeywordException) e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    /**
+     * A parsed top level statement, or the error that stopped the parsing. Both are null at the end of the script.
+     */
+    private static class ParsedStatement {
+        private final Expression myExpression;
+        private final Throwable myError;
+
+        private ParsedStatement(Expression expression, Throwable error) {
+            myExpression = expression;
+            myError = error;
+        }
+    }
+
+    /**
+     * Set the language of the commands. The parsed commands in the ExpressionCache are dropped when the language changes.
+     *
+     * @param language: A language such as "English".
+     */
     @Override
-    public void setLanguage(String language) { lexer.setLanguage(language); }
+    public void setLanguage(String language) {
+        lexer.setLanguage(language);
+        if (!language.equals(this.language)) {
+            this.language = language;
+            cache.clear();
+            incrementalParser.reset();
+        }
+    }
+
+    /**
+     * This method turns a pass of the Optimizer on or off. The parsed commands in the ExpressionCache are dropped, so that the commands run afterwards are optimized again.
+     *
+     * @param pass: The name of the pass, such as "ConstantFolding".
+     * @param enabled: Whether the pass runs.
+     */
+    public void setOptimization(String pass, boolean enabled) {
+        optimizer.setEnabled(pass, enabled);
+        cache.clear();
+    }
+
+    /**
+     * This method turns the memoization of pure user-defined functions on or off for this session. Turning it off drops the stored results.
+     *
+     * @param enabled: Whether the results of pure functions are reused.
+     */
+    public void setMemoization(boolean enabled) {
+        stateMachine.functionMemo().setEnabled(enabled);
+    }
+
+    /**
+     * @return The cache of the results of pure user-defined functions, with its hit, miss and eviction counters.
+     */
+    public FunctionMemo functionMemo() { return stateMachine.functionMemo(); }
+
+    /**
+     * This method turns the compilation of hot user-defined functions to JVM bytecode on or off for this session. In a BytecodeEngineAPI it only applies to the calls made by the nodes that the VirtualMachine interprets as they are.
+     *
+     * @param enabled: Whether the bodies of hot functions are compiled and run compiled.
+     */
+    public void setCompilation(boolean enabled) {
+        stateMachine.procedureCompiler().setEnabled(enabled);
+    }
+
+    /**
+     * @return The compiler of the hot user-defined functions, with its threshold, its differential mode and its counters. A BytecodeEngineAPI runs its own bytecode for most calls instead, which this compiler does not see.
+     */
+    public ProcedureCompiler procedureCompiler() { return stateMachine.procedureCompiler(); }
+
+    /**
+     * This method shares a ProcedureLibrary with this session. Its functions are called as if they were defined here, unless this session defines its own functions or variables of the same names.
+     *
+     * @param library: The library, which other sessions may share on other threads, or null to stop sharing one.
+     */
+    public void shareProcedures(ProcedureLibrary library) {
+        stateMachine.shareProcedures(library);
+    }
+
+    /**
+     * This method parses a script of definitions of functions once, in the language of this session, and defines them in a ProcedureLibrary for every session sharing it. Nothing is defined if the script does not parse or has any other statement than a definition.
+     *
+     * @param library: The library the functions are defined in.
+     * @param reader: The Reader of the script.
+     * @return The number of functions defined.
+     */
+    public int loadLibrary(ProcedureLibrary library, Reader reader) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Parser libraryParser = new CrudeParser();
+        libraryParser.readStream(new TokenReader(reader, new CrudeLexer(language)));
+        List<MakeUserInstruction> functions = new ArrayList<>();
+        Expression statement;
+        while ((statement = libraryParser.nextStatement()) != null) {
+            Expression optimized = optimizer.optimize(statement);
+            if (!(optimized instanceof MakeUserInstruction) || ((MakeUserInstruction) optimized).getOpcode() != Opcode.MAKE_USER_INSTRUCTION) {
+                throw new InterpretationException(String.format("A library can only define functions, but it runs %s", statement));
+            }
+            functions.add((MakeUserInstruction) optimized);
+        }
+        functions.forEach(library::define);
+        return functions.size();
+    }
+
+    /**
+     * This method saves the variables, the functions and the turtles of this session into a binary snapshot, which loadWorkspace reads back without parsing the functions again.
+     *
+     * @param path: The file of the snapshot, which is replaced atomically.
+     */
+    public void saveWorkspace(Path path) throws IOException {
+        WorkspaceSnapshot.save(path, manager);
+    }
+
+    /**
+     * This method replaces the variables, the functions and the turtles of this session with those of a snapshot written by saveWorkspace. The session is left as it was if the snapshot cannot be read.
+     *
+     * @param path: The file of the snapshot.
+     */
+    public void loadWorkspace(Path path) throws IOException {
+        try {
+            WorkspaceSnapshot.load(path, manager);
+        } finally {
+            stateMachine.pushAlarm();
+        }
+        if (journal != null) {
+            journal.checkpoint(manager);
+        }
+    }
+
+    /**
+     * This method brings a fresh session back to where the session recorded in a CommandJournal was, by loading its last snapshot and running again the commands recorded after it, each in its language. The commands that failed are run again too, since they may have changed the session before failing, and a command that fails again, with any exception or a StackOverflowError, does not stop the others from running, as it did not stop the session that recorded it. The session then records every command of processString into the journal, and saves a snapshot into it every checkpointInterval commands and after every script of processStream, whose statements are not recorded one by one.
+     *
+     * @param journal: The journal, which no other session may use.
+     * @return The number of commands run again.
+     * @throws IOException if the snapshot cannot be read, in which case the session still records into the journal afterwards.
+     */
+    public int recover(CommandJournal journal) throws IOException {
+        this.journal = null;
+        String current = language;
+        List<JournalEntry> entries = journal.getRecoveredEntries();
+        try {
+            if (journal.getSnapshot() != null) {
+                loadWorkspace(journal.getSnapshot());
+            }
+            for (JournalEntry entry : entries) {
+                setLanguage(entry.getLanguage());
+                try {
+                    parseAndRun(entry.getCommand());
+                } catch (UndefinedKeywordException | CommandSyntaxException | InterpretationException | RuntimeException | StackOverflowError e) {
+                    // The command is run again for what it did before it failed.
+                }
+            }
+        } finally {
+            setLanguage(current);
+            this.journal = journal;
+        }
+        return entries.size();
+    }
+
+    /**
+     * @return The Optimizer of the parsed commands, with the report of what it changed in the last one.
+     */
+    public Optimizer optimizer() { return optimizer; }
+
+    /**
+     * @return The cache of parsed commands, with its hit, miss and eviction counters.
+     */
+    public ExpressionCache expressionCache() { return cache; }
+
+    /**
+     * @return The parser that reuses the statements of the last command, with the number of statements it reused and parsed.
+     */
+    public IncrementalParser incrementalParser() { return incrementalParser; }
 
     @Override
     public StateMachine stateMachine() { return stateMachine; }
@@ -0,0 +1,39 @@
+package engine.api;
+
+import engine.compiler.bytecode.VirtualMachine;
+import engine.compiler.slogoast.Expression;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+
+/**
+ * This Engine API implementation parses commands in the same way as ASTEngineAPI, but compiles each AST to bytecode and runs it on a VirtualMachine instead of interpreting the AST node by node. The two give the same results, so either can be used, or both can be benchmarked on the same programs.
+ * <p>
+ * The VirtualMachine runs the bodies of user-defined functions as bytecode of their own, on frames of its own, and never calls the ProcedureCompiler for them. The ProcedureCompiler returned by procedureCompiler() only sees the calls made by the nodes that the VirtualMachine interprets as they are, which are the ask and tell commands and SetPalette. So setCompilation and the counters of the ProcedureCompiler have no effect on any other call in this engine.
+ *
+ * @author Haotian Wang
+ */
+public class BytecodeEngineAPI extends ASTEngineAPI {
+    private VirtualMachine machine;
+
+    public BytecodeEngineAPI(TurtleManager turtleManager) {
+        super(turtleManager);
+        machine = new VirtualMachine(turtleManager);
+    }
+
+    /**
+     * This method compiles the AST of a command to bytecode, unless it was compiled before, and runs the bytecode.
+     *
+     * @param command: The AST of the command.
+     * @return The return value of the command.
+     */
+    @Override
+    protected double execute(Expression command) throws InterpretationException, UndefinedKeywordException {
+        return machine.execute(command);
+    }
+
+    /**
+     * @return The VirtualMachine that runs the commands.
+     */
+    public VirtualMachine virtualMachine() { return machine; }
+}
@@ -5,8 +5,34 @@ import engine.errors.CommandSyntaxException;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public interface EngineAPI {
     double processString(String str) throws ClassNotFoundException, UndefinedKeywordException, CommandSyntaxException, InterpretationException;
+
+    /**
+     * This method runs a script read from a Reader. Each top level statement is run as soon as it is parsed, while the rest of the script is still being read, so the whole script is never held in memory.
+     *
+     * @param reader: The Reader of the script.
+     * @return The return value of the last statement in the script.
+     */
+    double processStream(Reader reader) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException;
+
+    /**
+     * This method runs a script file in the same way as processStream.
+     *
+     * @param path: The path of the script file.
+     * @return The return value of the last statement in the script.
+     */
+    default double processFile(Path path) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            return processStream(reader);
+        }
+    }
+
     void setLanguage(String language);
     StateMachine stateMachine();
 }
@@ -0,0 +1,170 @@
+package engine.compiler.bytecode;
+
+/**
+ * This class includes the instructions of the SLogo virtual machine. A Chunk of bytecode is a flat int array, where each instruction is followed by its operands, all of them ints. The instructions work on a stack of double values.
+ * <p>
+ * The operands are indices: K is an index in the constant pool, N an index in the pool of variable names, D an index in the double locals, O an index in the Object locals, T the index of the target instruction of a jump, and P an Opcode, VariableType or parameter index.
+ *
+ * @author Haotian Wang
+ */
+final class Bytecode {
+    /** K: push a constant. */
+    static final int CONSTANT = 0;
+    /** Drop the top of the stack. */
+    static final int POP = 1;
+    /** Push the top of the stack again. */
+    static final int DUP = 2;
+    /** N: push the value of a variable, running it if it names a user-defined function without parameters. */
+    static final int LOAD = 3;
+    /** N: assign the top of the stack to a variable, and leave it on the stack. */
+    static final int STORE = 4;
+    /** D: push a double local. */
+    static final int LOAD_LOCAL = 5;
+    /** D: pop into a double local. */
+    static final int STORE_LOCAL = 6;
+
+    static final int NEGATE = 7;
+    static final int ADD = 8;
+    static final int SUBTRACT = 9;
+    static final int MULTIPLY = 10;
+    static final int DIVIDE = 11;
+    static final int REMAINDER = 12;
+    static final int POWER = 13;
+    static final int LESS = 14;
+    static final int GREATER = 15;
+    static final int EQUAL = 16;
+    static final int NOT_EQUAL = 17;
+    static final int NOT = 18;
+    /** Replace the top of the stack by 1 if it is not zero. */
+    static final int TRUTH = 19;
+    static final int SINE = 20;
+    static final int COSINE = 21;
+    static final int TANGENT = 22;
+    static final int ARC_TANGENT = 23;
+    static final int LOG = 24;
+
+    /** T: jump. */
+    static final int JUMP = 25;
+    /** T: pop, and jump if the value is zero. */
+    static final int JUMP_IF_ZERO = 26;
+    /** T: pop, and jump if the value is not zero. */
+    static final int JUMP_IF_NOT_ZERO = 27;
+    /** T: pop two values, and jump unless the first is less than the second. */
+    static final int JUMP_IF_NOT_LESS = 28;
+
+    static final int FORWARD = 29;
+    static final int LEFT = 30;
+    static final int SET_HEADING = 31;
+    /** P: pop the argument of a turtle command with one parameter and push its result. */
+    static final int TURTLE_UNARY = 32;
+    /** P: push the result of a turtle command without parameters. */
+    static final int TURTLE_DIRECT = 33;
+    /** Pop the x and y coordinates of the target, and the coordinates of the turtle below them. */
+    static final int SET_TOWARDS = 34;
+    /** Pop the x and y coordinates of the new position. */
+    static final int SET_POSITION = 35;
+
+    /** D T: pop the number of iterations, truncated to an int. If it is less than one, push 0 and jump. Otherwise set the counter in D to 1 and the limit in D + 1. */
+    static final int COUNT_ENTER = 36;
+    /** D T: increment the counter in D, and jump while it is not above the limit in D + 1. */
+    static final int COUNT_NEXT = 37;
+    /** N D: assign the counter in D to a variable as an int. */
+    static final int SET_INTEGER = 38;
+    /** N D: assign the double local in D to a variable as a double. */
+    static final int SET_DOUBLE = 39;
+    /** D: pop and add to a double local. */
+    static final int ADD_LOCAL = 40;
+    /** N O: save the int value of a variable, if it is defined, in an Object local. */
+    static final int SAVE_INTEGER = 41;
+    /** N O: save the double value of a variable, if it is defined, in an Object local. */
+    static final int SAVE_DOUBLE = 42;
+    /** N O P: put back the value saved in an Object local with the given VariableType, or remove the variable if it was not defined. */
+    static final int RESTORE = 43;
+
+    /** N P: look up a user-defined function and check that it takes P parameters. */
+    static final int CALL_BEGIN = 44;
+    /** P: save the value of parameter P of the function being called. */
+    static final int BIND_SAVE = 45;
+    /** P: pop the value of parameter P of the function being called. */
+    static final int BIND = 46;
+    /** Run the function being called in a new frame. Its result is pushed and its parameters are put back when it returns. */
+    static final int CALL_END = 47;
+    /** K: interpret an AST node from the pool of nodes the instructions do not cover. */
+    static final int AST = 48;
+    /** D T: pop the step and the bound of a For, add the step to the double local D, and jump if it is less than the bound. */
+    static final int FOR_NEXT = 49;
+    /** N D P: from now on the variable is kept in the double local D, with the given VariableType. If the bytecode fails, the value is written to the StateMachine. */
+    static final int BIND_SLOT = 50;
+    /** End the last BIND_SLOT. */
+    static final int UNBIND_SLOT = 51;
+    /** N O P: put back the value saved in an Object local with the given VariableType, if the variable was defined. */
+    static final int RESTORE_SLOT = 52;
+    /** Return the top of the stack to the caller. Every Chunk ends with it. */
+    static final int RETURN = 53;
+    /** A CALL_END in tail position, whose result the caller returns without running anything else. The frame of the caller is reused for the function. */
+    static final int TAIL_CALL = 54;
+    /** N: a LOAD in tail position. The frame of the caller is reused if the variable names a function. */
+    static final int TAIL_LOAD = 55;
+    /** K: move the turtles along the path of a ConstantPath from the pool of nodes, without touching :repcount, which a loop around it keeps in a slot. */
+    static final int PATH = 56;
+    /** N K T: fall through into the inlined body of the user-defined function K from the pool of nodes if the variable still names it and another call would not be too deep. Otherwise jump to the call that was not inlined. */
+    static final int INLINE = 57;
+
+    private static final String[] NAMES = {
+            "CONSTANT", "POP", "DUP", "LOAD", "STORE", "LOAD_LOCAL", "STORE_LOCAL",
+            "NEGATE", "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "REMAINDER", "POWER", "LESS", "GREATER", "EQUAL", "NOT_EQUAL", "NOT", "TRUTH",
+            "SINE", "COSINE", "TANGENT", "ARC_TANGENT", "LOG",
+            "JUMP", "JUMP_IF_ZERO", "JUMP_IF_NOT_ZERO", "JUMP_IF_NOT_LESS",
+            "FORWARD", "LEFT", "SET_HEADING", "TURTLE_UNARY", "TURTLE_DIRECT", "SET_TOWARDS", "SET_POSITION",
+            "COUNT_ENTER", "COUNT_NEXT", "SET_INTEGER", "SET_DOUBLE", "ADD_LOCAL", "SAVE_INTEGER", "SAVE_DOUBLE", "RESTORE",
+            "CALL_BEGIN", "BIND_SAVE", "BIND", "CALL_END", "AST",
+            "FOR_NEXT", "BIND_SLOT", "UNBIND_SLOT", "RESTORE_SLOT", "RETURN", "TAIL_CALL", "TAIL_LOAD",
+            "PATH", "INLINE"
+    };
+    private static final int[] OPERANDS = {
+            1, 0, 0, 1, 1, 1, 1,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0,
+            1, 1, 1, 1,
+            0, 0, 0, 1, 1, 0, 0,
+            2, 2, 2, 2, 1, 2, 2, 3,
+            2, 1, 1, 0, 1,
+            2, 3, 0, 3, 0, 0, 1,
+            1, 3
+    };
+    private static final int[] STACK_EFFECT = {
+            1, -1, 1, 1, 0, 1, -1,
+            0, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, 0,
+            0, 0, 0, 0, 0,
+            0, -1, -1, -2,
+            0, 0, 0, 0, 1, -3, -1,
+            -1, 0, 0, 0, -1, 0, 0, 0,
+            0, 0, -1, 1, 1,
+            -2, 0, 0, 0, -1, 1, 1,
+            1, 0
+    };
+
+    private Bytecode() {
+    }
+
+    /**
+     * @return The name of the instruction, for printing a Chunk.
+     */
+    static String name(int instruction) {
+        return NAMES[instruction];
+    }
+
+    /**
+     * @return The number of operands that follow the instruction.
+     */
+    static int operands(int instruction) {
+        return OPERANDS[instruction];
+    }
+
+    /**
+     * @return The change in the height of the stack when the instruction falls through to the next one.
+     */
+    static int stackEffect(int instruction) {
+        return STACK_EFFECT[instruction];
+    }
+}
@@ -0,0 +1,766 @@
+package engine.compiler.bytecode;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableType;
+import engine.errors.UndefinedKeywordException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class lowers an AST to a Chunk of bytecode for the VirtualMachine. The bytecode does exactly what interpreting the AST does, in the same order: the same turtle commands, the same reads and writes of the StateMachine and the same errors. Loops keep their counters in double locals instead of in Java variables. A loop that the SlotResolver resolves also keeps its variable in the double local of its counter, so that the variable is read from there and is not written to the StateMachine in every iteration. The ask and tell commands, SetPalette and the definitions of user functions are left as AST nodes that the VirtualMachine interprets.
+ * <p>
+ * A call to a small user-defined function whose body is closed is inlined when the function is known at compile time, either defined in the StateMachine or by the AST itself. The parameters are kept in slots for the inlined body, as the variables of resolved loops are. The inlined code is guarded by an INLINE instruction that checks the function has not been redefined since, and runs the call as it is otherwise.
+ *
+ * @author Haotian Wang
+ */
+public class BytecodeCompiler implements ExpressionVisitor<Void> {
+    private static final String LOOP_COUNT = ":repcount";
+    private static final int INITIAL_CODE_SIZE = 64;
+    private static final int MAX_INLINED_CODE = 64;
+
+    private int[] myCode;
+    private int myLength;
+    private List<Double> myConstants;
+    private Map<Double, Integer> myConstantIndices;
+    private List<String> myNames;
+    private Map<String, Integer> myNameIndices;
+    private List<Expression> myNodes;
+    private int myDepth;
+    private int myMaxDepth;
+    private int myDoubleLocals;
+    private int myMaxDoubleLocals;
+    private int myObjectLocals;
+    private int myMaxObjectLocals;
+    private Set<Expression> myResolved;
+    private Map<String, Integer> myBindings;
+    private Map<String, MakeUserInstruction> myDefinitions;
+    private StateMachine myMemory;
+
+    /**
+     * @param program: The AST of a command or of the body of a user-defined function.
+     * @return The bytecode that leaves the value of the AST on the stack, with no call inlined.
+     */
+    public Chunk compile(Expression program) {
+        return compile(program, null);
+    }
+
+    /**
+     * @param program: The AST of a command or of the body of a user-defined function.
+     * @param memory: The StateMachine whose user-defined functions may be inlined, or null.
+     * @return The bytecode that leaves the value of the AST on the stack.
+     */
+    public Chunk compile(Expression program, StateMachine memory) {
+        myCode = new int[INITIAL_CODE_SIZE];
+        myLength = 0;
+        myConstants = new ArrayList<>();
+        myConstantIndices = new HashMap<>();
+        myNames = new ArrayList<>();
+        myNameIndices = new HashMap<>();
+        myNodes = new ArrayList<>();
+        myDepth = 0;
+        myMaxDepth = 0;
+        myDoubleLocals = 0;
+        myMaxDoubleLocals = 0;
+        myObjectLocals = 0;
+        myMaxObjectLocals = 0;
+        SlotResolver resolver = new SlotResolver();
+        myResolved = resolver.resolve(program);
+        myDefinitions = resolver.definitions();
+        myMemory = memory;
+        myBindings = new HashMap<>();
+        program.accept(this);
+        emit(Bytecode.RETURN);
+        markTailCalls();
+        double[] constants = new double[myConstants.size()];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = myConstants.get(i);
+        }
+        return new Chunk(Arrays.copyOf(myCode, myLength), constants, myNames.toArray(new String[0]),
+                myNodes.toArray(new Expression[0]), myMaxDepth, myMaxDoubleLocals, myMaxObjectLocals);
+    }
+
+    @Override
+    public Void visitUnary(Unary node) {
+        node.getExpression().accept(this);
+        switch (node.getOpcode()) {
+            case FORWARD:
+                emit(Bytecode.FORWARD);
+                break;
+            case BACKWARD:
+                emit(Bytecode.NEGATE);
+                emit(Bytecode.FORWARD);
+                break;
+            case LEFT:
+                emit(Bytecode.LEFT);
+                break;
+            case RIGHT:
+                emit(Bytecode.NEGATE);
+                emit(Bytecode.LEFT);
+                break;
+            case SET_HEADING:
+                emit(Bytecode.SET_HEADING);
+                break;
+            case MINUS:
+                emit(Bytecode.NEGATE);
+                break;
+            case SINE:
+                emit(Bytecode.SINE);
+                break;
+            case COSINE:
+                emit(Bytecode.COSINE);
+                break;
+            case TANGENT:
+                emit(Bytecode.TANGENT);
+                break;
+            case ARC_TANGENT:
+                emit(Bytecode.ARC_TANGENT);
+                break;
+            case NATURAL_LOG:
+                emit(Bytecode.LOG);
+                break;
+            case NOT:
+                emit(Bytecode.NOT);
+                break;
+            case SET_BACKGROUND:
+            case SET_PEN_COLOR:
+            case SET_PEN_SIZE:
+            case SET_SHAPE:
+                emit(Bytecode.TURTLE_UNARY, node.getOpcode().ordinal());
+                break;
+            default:
+                emit(Bytecode.POP);
+                emitConstant(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Binary node) {
+        Expression first = node.getFirstExpression();
+        Expression second = node.getSecondExpression();
+        switch (node.getOpcode()) {
+            case SUM:
+                emitOperation(first, second, Bytecode.ADD);
+                break;
+            case DIFFERENCE:
+                emitOperation(first, second, Bytecode.SUBTRACT);
+                break;
+            case QUOTIENT:
+                emitOperation(first, second, Bytecode.DIVIDE);
+                break;
+            case PRODUCT:
+                emitOperation(first, second, Bytecode.MULTIPLY);
+                break;
+            case REMAINDER:
+                emitOperation(first, second, Bytecode.REMAINDER);
+                break;
+            case POWER:
+                emitOperation(first, second, Bytecode.POWER);
+                break;
+            case LESS_THAN:
+                emitOperation(first, second, Bytecode.LESS);
+                break;
+            case GREATER_THAN:
+                emitOperation(first, second, Bytecode.GREATER);
+                break;
+            case EQUAL:
+                emitOperation(first, second, Bytecode.EQUAL);
+                break;
+            case NOT_EQUAL:
+                emitOperation(first, second, Bytecode.NOT_EQUAL);
+                break;
+            case AND:
+                emitShortCircuit(first, second, Bytecode.JUMP_IF_ZERO);
+                break;
+            case OR:
+                emitShortCircuit(first, second, Bytecode.JUMP_IF_NOT_ZERO);
+                break;
+            case SET_TOWARDS:
+                emit(Bytecode.TURTLE_DIRECT, Opcode.X_COORDINATE.ordinal());
+                emit(Bytecode.TURTLE_DIRECT, Opcode.Y_COORDINATE.ordinal());
+                second.accept(this);
+                first.accept(this);
+                emit(Bytecode.SET_TOWARDS);
+                break;
+            case SET_POSITION:
+                emitOperation(first, second, Bytecode.SET_POSITION);
+                break;
+            default:
+                emitConstant(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitDirect(Direct node) {
+        switch (node.getOpcode()) {
+            case CONSTANT:
+                emitConstant(node.getConstant());
+                break;
+            case PI:
+                emitConstant(Math.PI);
+                break;
+            case PEN_UP:
+            case PEN_DOWN:
+            case SHOW_TURTLE:
+            case HIDE_TURTLE:
+            case HOME:
+            case CLEAR_SCREEN:
+            case X_COORDINATE:
+            case Y_COORDINATE:
+            case HEADING:
+            case IS_PEN_DOWN:
+            case IS_SHOWING:
+            case ID:
+            case TURTLES:
+            case STAMP:
+            case CLEAR_STAMPS:
+                emit(Bytecode.TURTLE_DIRECT, node.getOpcode().ordinal());
+                break;
+            default:
+                emitConstant(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Variable node) {
+        Integer slot = myBindings.get(node.getVariableName());
+        if (slot != null) {
+            emit(Bytecode.LOAD_LOCAL, slot);
+            return null;
+        }
+        int jumpToEnd = emitInlined(node.getVariableName(), List.of());
+        emit(Bytecode.LOAD, name(node.getVariableName()));
+        if (jumpToEnd >= 0) {
+            patch(jumpToEnd);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroup(Group node) {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionList(ExpressionList node) {
+        List<Expression> expressions = node.getListOfExpressions();
+        if (expressions.isEmpty()) {
+            emitConstant(0);
+            return null;
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                emit(Bytecode.POP);
+            }
+            expressions.get(i).accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableList(VariableList node) {
+        List<Variable> variables = node.getListOfVariables();
+        if (variables.isEmpty()) {
+            emitConstant(0);
+            return null;
+        }
+        for (int i = 0; i < variables.size(); i++) {
+            if (i > 0) {
+                emit(Bytecode.POP);
+            }
+            variables.get(i).accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMakeVariable(MakeVariable node) {
+        if (node.getOpcode() != Opcode.MAKE_VARIABLE) {
+            emitConstant(0);
+            return null;
+        }
+        node.getExpression().accept(this);
+        emit(Bytecode.STORE, name(node.getVariable().getVariableName()));
+        return null;
+    }
+
+    @Override
+    public Void visitCondition(Condition node) {
+        if (node.getOpcode() == Opcode.IF) {
+            node.getExpression().accept(this);
+            int jumpToElse = emit(Bytecode.JUMP_IF_ZERO, 0);
+            node.getExpressionList().accept(this);
+            int jumpToEnd = emit(Bytecode.JUMP, 0);
+            myDepth--;
+            patch(jumpToElse);
+            emitConstant(0);
+            patch(jumpToEnd);
+        } else if (node.getOpcode() == Opcode.REPEAT && myResolved.contains(node)) {
+            emitResolvedCountedLoop(node.getExpression(), LOOP_COUNT, node.getExpressionList(), VariableType.INTEGER);
+        } else if (node.getOpcode() == Opcode.REPEAT) {
+            emitCountedLoop(node.getExpression(), LOOP_COUNT, node.getExpressionList(), VariableType.INTEGER);
+        } else {
+            emitConstant(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitDoTimes(DoTimes node) {
+        if (node.getOpcode() != Opcode.DO_TIMES) {
+            emitConstant(0);
+            return null;
+        }
+        if (myResolved.contains(node)) {
+            emitResolvedCountedLoop(node.getLimit(), node.getVariable().getVariableName(), node.getExpressionList(), VariableType.DOUBLE);
+        } else {
+            emitCountedLoop(node.getLimit(), node.getVariable().getVariableName(), node.getExpressionList(), VariableType.DOUBLE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFor(For node) {
+        if (node.getOpcode() != Opcode.FOR) {
+            emitConstant(0);
+            return null;
+        }
+        if (myResolved.contains(node)) {
+            emitResolvedFor(node);
+            return null;
+        }
+        int variable = name(node.getVariable().getVariableName());
+        int locals = node.hasInvariantBounds() ? 2 : 1;
+        int counter = allocateDoubleLocals(locals);
+        int saved = allocateObjectLocal();
+        emit(Bytecode.SAVE_DOUBLE, variable, saved);
+        node.getStart().accept(this);
+        emit(Bytecode.STORE_LOCAL, counter);
+        if (node.hasInvariantBounds()) {
+            node.getEnd().accept(this);
+            emit(Bytecode.STORE_LOCAL, counter + 1);
+        }
+        emitConstant(0);
+        int test = myLength;
+        emit(Bytecode.LOAD_LOCAL, counter);
+        emitBound(node, counter + 1);
+        int jumpToExit = emit(Bytecode.JUMP_IF_NOT_LESS, 0);
+        emit(Bytecode.SET_DOUBLE, variable, counter);
+        emit(Bytecode.POP);
+        node.getExpressionList().accept(this);
+        node.getIncrement().accept(this);
+        emit(Bytecode.ADD_LOCAL, counter);
+        emit(Bytecode.JUMP, test);
+        patch(jumpToExit);
+        emit(Bytecode.RESTORE, variable, saved, VariableType.DOUBLE.ordinal());
+        myDoubleLocals -= locals;
+        myObjectLocals -= 1;
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElse node) {
+        if (node.getOpcode() != Opcode.IF_ELSE) {
+            emitConstant(0);
+            return null;
+        }
+        node.getExpression().accept(this);
+        int jumpToElse = emit(Bytecode.JUMP_IF_ZERO, 0);
+        node.getTrueList().accept(this);
+        int jumpToEnd = emit(Bytecode.JUMP, 0);
+        myDepth--;
+        patch(jumpToElse);
+        node.getFalseList().accept(this);
+        patch(jumpToEnd);
+        return null;
+    }
+
+    @Override
+    public Void visitMakeUserInstruction(MakeUserInstruction node) {
+        emitNode(node);
+        return null;
+    }
+
+    @Override
+    public Void visitUserFunction(UserFunction node) {
+        List<Expression> arguments = node.getArguments().getListOfExpressions();
+        int jumpToEnd = emitInlined(node.getVariable().getVariableName(), arguments);
+        emit(Bytecode.CALL_BEGIN, name(node.getVariable().getVariableName()), arguments.size());
+        for (int i = 0; i < arguments.size(); i++) {
+            emit(Bytecode.BIND_SAVE, i);
+            arguments.get(i).accept(this);
+            emit(Bytecode.BIND, i);
+        }
+        emit(Bytecode.CALL_END);
+        if (jumpToEnd >= 0) {
+            patch(jumpToEnd);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTell(Tell node) {
+        emitNode(node);
+        return null;
+    }
+
+    @Override
+    public Void visitTwoList(TwoList node) {
+        emitNode(node);
+        return null;
+    }
+
+    @Override
+    public Void visitQuaternary(Quaternary node) {
+        emitNode(node);
+        return null;
+    }
+
+    /**
+     * Inside a loop that keeps :repcount in a slot, the Repeat of a ConstantPath would keep its own :repcount in a slot as well, so only the path is followed. Anywhere else, the node puts :repcount back in the StateMachine as it is interpreted.
+     */
+    @Override
+    public Void visitConstantPath(ConstantPath node) {
+        if (myBindings.containsKey(LOOP_COUNT)) {
+            myNodes.add(node);
+            emit(Bytecode.PATH, myNodes.size() - 1);
+        } else {
+            emitNode(node);
+        }
+        return null;
+    }
+
+    /**
+     * This method emits the guarded inlined body of a call to a user-defined function, if it can be inlined. The parameters are bound to slots one by one as the arguments are evaluated, as the call binds them in the StateMachine, so that an argument sees the parameters before it and a failure leaves the parameters bound so far. The arguments and the body must therefore be closed, and must neither assign nor loop over the parameters. The call as it is must be emitted right after.
+     *
+     * @param functionName: The name of the function.
+     * @param arguments: The Expressions passed to it.
+     * @return The index of the jump from the end of the inlined body over the call, or -1 if nothing was emitted.
+     */
+    private int emitInlined(String functionName, List<Expression> arguments) {
+        MakeUserInstruction function = inlinedFunction(functionName, arguments.size());
+        if (function == null || !myBindings.isEmpty()) {
+            return -1;
+        }
+        List<String> parameters = new ArrayList<>();
+        for (Variable parameter : function.getParameters().getListOfVariables()) {
+            parameters.add(parameter.getVariableName());
+        }
+        Set<Expression> resolved = new SlotResolver().resolveWith(function.getExpressionList(), parameters);
+        if (resolved == null || new HashSet<>(parameters).size() != parameters.size()) {
+            return -1;
+        }
+        for (Expression argument : arguments) {
+            if (new SlotResolver().resolveWith(argument, parameters) == null) {
+                return -1;
+            }
+        }
+        int start = myLength;
+        int depth = myDepth;
+        myNodes.add(function);
+        int guard = emit(Bytecode.INLINE, name(functionName), myNodes.size() - 1, 0);
+        int slots = allocateDoubleLocals(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            arguments.get(i).accept(this);
+            emit(Bytecode.STORE_LOCAL, slots + i);
+            emit(Bytecode.BIND_SLOT, name(parameters.get(i)), slots + i, VariableType.DOUBLE.ordinal());
+            myBindings.put(parameters.get(i), slots + i);
+        }
+        myResolved.addAll(resolved);
+        function.getExpressionList().accept(this);
+        for (String parameter : parameters) {
+            emit(Bytecode.UNBIND_SLOT);
+            myBindings.remove(parameter);
+        }
+        myDoubleLocals -= parameters.size();
+        int jumpToEnd = emit(Bytecode.JUMP, 0);
+        myDepth = depth;
+        if (myLength - start > MAX_INLINED_CODE) {
+            myLength = start;
+            return -1;
+        }
+        myCode[guard + 3] = myLength;
+        return jumpToEnd;
+    }
+
+    /**
+     * The function is the last one defined with the name by the AST being compiled, since it is the one in the StateMachine once the definition has run, or else the one in the StateMachine now.
+     *
+     * @return The user-defined function that a call is expected to run, or null if none is known or it takes another number of parameters.
+     */
+    private MakeUserInstruction inlinedFunction(String functionName, int arguments) {
+        MakeUserInstruction function = myDefinitions.get(functionName);
+        if (function == null && myMemory != null && myMemory.containsVariable(functionName)) {
+            try {
+                if (myMemory.getVariableType(functionName) == VariableType.EXPRESSION) {
+                    function = (MakeUserInstruction) myMemory.getValueInGeneralForm(functionName);
+                }
+            } catch (UndefinedKeywordException e) {
+                return null;
+            }
+        }
+        if (function == null || function.getParameters().getListOfVariables().size() != arguments) {
+            return null;
+        }
+        return function;
+    }
+
+    /**
+     * This method emits Repeat and DoTimes, which count from 1 up to the truncated value of the limit. The value of the variable before the loop is put back afterwards with the given type, or the variable is removed if it was not defined.
+     */
+    private void emitCountedLoop(Expression limit, String variableName, ExpressionList body, VariableType restoredType) {
+        int variable = name(variableName);
+        int counter = allocateDoubleLocals(2);
+        int saved = allocateObjectLocal();
+        limit.accept(this);
+        int enter = emit(Bytecode.COUNT_ENTER, counter, 0);
+        emit(Bytecode.SAVE_INTEGER, variable, saved);
+        emitConstant(0);
+        int top = myLength;
+        emit(Bytecode.SET_INTEGER, variable, counter);
+        emit(Bytecode.POP);
+        body.accept(this);
+        emit(Bytecode.COUNT_NEXT, counter, top);
+        emit(Bytecode.RESTORE, variable, saved, restoredType.ordinal());
+        myCode[enter + 2] = myLength;
+        myDoubleLocals -= 2;
+        myObjectLocals -= 1;
+    }
+
+    /**
+     * This method emits a Repeat or a DoTimes whose variable is kept in the double local of its counter. The variable is saved and put back only if no enclosing loop keeps it in a slot already, since the nested loop then ends with the value that the enclosing loop has in its slot. If the variable was not defined, there is nothing to remove, as it was never written to the StateMachine.
+     */
+    private void emitResolvedCountedLoop(Expression limit, String variableName, ExpressionList body, VariableType restoredType) {
+        int variable = name(variableName);
+        int counter = allocateDoubleLocals(2);
+        int saved = allocateObjectLocal();
+        boolean shadowing = myBindings.containsKey(variableName);
+        limit.accept(this);
+        int enter = emit(Bytecode.COUNT_ENTER, counter, 0);
+        if (!shadowing) {
+            emit(Bytecode.SAVE_INTEGER, variable, saved);
+        }
+        emit(Bytecode.BIND_SLOT, variable, counter, VariableType.INTEGER.ordinal());
+        emitConstant(0);
+        int top = myLength;
+        emit(Bytecode.POP);
+        Integer enclosing = myBindings.put(variableName, counter);
+        body.accept(this);
+        unbind(variableName, enclosing);
+        emit(Bytecode.COUNT_NEXT, counter, top);
+        emit(Bytecode.UNBIND_SLOT);
+        if (!shadowing) {
+            emit(Bytecode.RESTORE_SLOT, variable, saved, restoredType.ordinal());
+        }
+        myCode[enter + 2] = myLength;
+        myDoubleLocals -= 2;
+        myObjectLocals -= 1;
+    }
+
+    /**
+     * This method emits a For whose variable is kept in the double local of its counter. The test is repeated at the end of the body, so that an iteration runs one instruction for the step and the bound together. When the loop runs no iteration, the variable is put back as the AST does, which removes it if it was not defined.
+     */
+    private void emitResolvedFor(For node) {
+        String variableName = node.getVariable().getVariableName();
+        int variable = name(variableName);
+        int locals = node.hasInvariantBounds() ? 2 : 1;
+        int counter = allocateDoubleLocals(locals);
+        int saved = allocateObjectLocal();
+        boolean shadowing = myBindings.containsKey(variableName);
+        if (!shadowing) {
+            emit(Bytecode.SAVE_DOUBLE, variable, saved);
+        }
+        node.getStart().accept(this);
+        emit(Bytecode.STORE_LOCAL, counter);
+        emitConstant(0);
+        emit(Bytecode.LOAD_LOCAL, counter);
+        node.getEnd().accept(this);
+        if (node.hasInvariantBounds()) {
+            emit(Bytecode.DUP);
+            emit(Bytecode.STORE_LOCAL, counter + 1);
+        }
+        int jumpToEmpty = emit(Bytecode.JUMP_IF_NOT_LESS, 0);
+        emit(Bytecode.BIND_SLOT, variable, counter, VariableType.DOUBLE.ordinal());
+        int top = myLength;
+        emit(Bytecode.POP);
+        Integer enclosing = myBindings.put(variableName, counter);
+        node.getExpressionList().accept(this);
+        node.getIncrement().accept(this);
+        unbind(variableName, enclosing);
+        emitBound(node, counter + 1);
+        emit(Bytecode.FOR_NEXT, counter, top);
+        emit(Bytecode.UNBIND_SLOT);
+        if (shadowing) {
+            patch(jumpToEmpty);
+        } else {
+            emit(Bytecode.RESTORE_SLOT, variable, saved, VariableType.DOUBLE.ordinal());
+            int jumpToEnd = emit(Bytecode.JUMP, 0);
+            patch(jumpToEmpty);
+            emit(Bytecode.RESTORE, variable, saved, VariableType.DOUBLE.ordinal());
+            patch(jumpToEnd);
+        }
+        myDoubleLocals -= locals;
+        myObjectLocals -= 1;
+    }
+
+    /**
+     * The bound of a For whose bounds are invariant is evaluated once into the double local after the counter, and read from it afterwards.
+     */
+    private void emitBound(For node, int bound) {
+        if (node.hasInvariantBounds()) {
+            emit(Bytecode.LOAD_LOCAL, bound);
+        } else {
+            node.getEnd().accept(this);
+        }
+    }
+
+    private void unbind(String variableName, Integer enclosing) {
+        if (enclosing == null) {
+            myBindings.remove(variableName);
+        } else {
+            myBindings.put(variableName, enclosing);
+        }
+    }
+
+    private void emitOperation(Expression first, Expression second, int instruction) {
+        first.accept(this);
+        second.accept(this);
+        emit(instruction);
+    }
+
+    /**
+     * And and Or leave the truth value of the first operand on the stack and skip the second operand when the first one decides the result.
+     */
+    private void emitShortCircuit(Expression first, Expression second, int skip) {
+        first.accept(this);
+        emit(Bytecode.TRUTH);
+        emit(Bytecode.DUP);
+        int jumpToEnd = emit(skip, 0);
+        emit(Bytecode.POP);
+        second.accept(this);
+        emit(Bytecode.TRUTH);
+        patch(jumpToEnd);
+    }
+
+    private void emitConstant(double value) {
+        Integer index = myConstantIndices.get(value);
+        if (index == null) {
+            index = myConstants.size();
+            myConstants.add(value);
+            myConstantIndices.put(value, index);
+        }
+        emit(Bytecode.CONSTANT, index);
+    }
+
+    private void emitNode(Expression node) {
+        myNodes.add(node);
+        emit(Bytecode.AST, myNodes.size() - 1);
+    }
+
+    private int name(String name) {
+        Integer index = myNameIndices.get(name);
+        if (index == null) {
+            index = myNames.size();
+            myNames.add(name);
+            myNameIndices.put(name, index);
+        }
+        return index;
+    }
+
+    private int allocateDoubleLocals(int count) {
+        int first = myDoubleLocals;
+        myDoubleLocals += count;
+        myMaxDoubleLocals = Math.max(myMaxDoubleLocals, myDoubleLocals);
+        return first;
+    }
+
+    private int allocateObjectLocal() {
+        int local = myObjectLocals++;
+        myMaxObjectLocals = Math.max(myMaxObjectLocals, myObjectLocals);
+        return local;
+    }
+
+    /**
+     * This method appends an instruction with its operands and keeps track of the height of the stack.
+     *
+     * @return The index of the instruction, for patching the target of a jump.
+     */
+    private int emit(int instruction, int... operands) {
+        ensureCapacity(1 + operands.length);
+        int at = myLength;
+        myCode[myLength++] = instruction;
+        for (int operand : operands) {
+            myCode[myLength++] = operand;
+        }
+        myDepth += Bytecode.stackEffect(instruction);
+        myMaxDepth = Math.max(myMaxDepth, myDepth);
+        return at;
+    }
+
+    /**
+     * This method turns the calls whose result is returned right away, possibly through jumps, into tail calls, so that the VirtualMachine runs the function in the frame of the caller.
+     */
+    private void markTailCalls() {
+        int pc = 0;
+        while (pc < myLength) {
+            int instruction = myCode[pc];
+            int next = pc + 1 + Bytecode.operands(instruction);
+            if (instruction == Bytecode.CALL_END && returns(next)) {
+                myCode[pc] = Bytecode.TAIL_CALL;
+            } else if (instruction == Bytecode.LOAD && returns(next)) {
+                myCode[pc] = Bytecode.TAIL_LOAD;
+            }
+            pc = next;
+        }
+    }
+
+    private boolean returns(int pc) {
+        while (myCode[pc] == Bytecode.JUMP) {
+            pc = myCode[pc + 1];
+        }
+        return myCode[pc] == Bytecode.RETURN;
+    }
+
+    /**
+     * This method makes the jump at the given index go to the next instruction emitted.
+     */
+    private void patch(int jump) {
+        myCode[jump + 1] = myLength;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (myLength + extra > myCode.length) {
+            myCode = Arrays.copyOf(myCode, Math.max(myCode.length * 2, myLength + extra));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package engine.compiler.bytecode;
+
+import engine.compiler.slogoast.CallSiteCache;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
+
+/**
+ * This class holds the bytecode compiled from one AST: the instructions in a flat int array, the pool of double constants, the pool of variable names and the pool of AST nodes that are interpreted as they are. It also records how many stack entries and local slots a run of the bytecode needs, so that the VirtualMachine allocates them once per run, and keeps a CallSiteCache for each instruction that calls a user-defined function, with the definition it last called and the Chunk of its body.
+ *
+ * @author Haotian Wang
+ */
+public final class Chunk {
+    final int[] code;
+    final double[] constants;
+    final String[] names;
+    final Expression[] nodes;
+    final int maxStack;
+    final int doubleLocals;
+    final int objectLocals;
+    final CallSiteCache[] sites;
+    final MakeUserInstruction[] callees;
+    final Chunk[] bodies;
+
+    Chunk(int[] code, double[] constants, String[] names, Expression[] nodes, int maxStack, int doubleLocals, int objectLocals) {
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.nodes = nodes;
+        this.maxStack = maxStack;
+        this.doubleLocals = doubleLocals;
+        this.objectLocals = objectLocals;
+        this.sites = new CallSiteCache[code.length];
+        this.callees = new MakeUserInstruction[code.length];
+        this.bodies = new Chunk[code.length];
+    }
+
+    /**
+     * @param pc: The index of a CALL_BEGIN, LOAD, TAIL_LOAD or INLINE instruction.
+     * @return The CallSiteCache of the instruction, created the first time it is needed.
+     */
+    CallSiteCache site(int pc) {
+        if (sites[pc] == null) {
+            sites[pc] = new CallSiteCache();
+        }
+        return sites[pc];
+    }
+
+    /**
+     * @return The number of ints in the bytecode.
+     */
+    public int length() {
+        return code.length;
+    }
+
+    /**
+     * This method lists the instructions one per line, with the constants and the names that their operands refer to.
+     *
+     * @return A String representation of the bytecode.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int instruction = code[pc];
+            builder.append(String.format("%4d %s", pc, Bytecode.name(instruction)));
+            for (int i = 1; i <= Bytecode.operands(instruction); i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            if (instruction == Bytecode.CONSTANT) {
+                builder.append(" (").append(constants[code[pc + 1]]).append(')');
+            } else if (instruction == Bytecode.LOAD || instruction == Bytecode.TAIL_LOAD || instruction == Bytecode.STORE || instruction == Bytecode.CALL_BEGIN
+                    || instruction == Bytecode.SET_INTEGER || instruction == Bytecode.SET_DOUBLE || instruction == Bytecode.SAVE_INTEGER
+                    || instruction == Bytecode.SAVE_DOUBLE || instruction == Bytecode.RESTORE || instruction == Bytecode.BIND_SLOT
+                    || instruction == Bytecode.RESTORE_SLOT || instruction == Bytecode.INLINE) {
+                builder.append(" (").append(names[code[pc + 1]]).append(')');
+            } else if (instruction == Bytecode.AST || instruction == Bytecode.PATH) {
+                builder.append(" (").append(nodes[code[pc + 1]]).append(')');
+            }
+            builder.append('\n');
+            pc += 1 + Bytecode.operands(instruction);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,300 @@
+package engine.compiler.bytecode;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class decides which Repeat, DoTimes and For loops of an AST can keep their loop variable in a numbered slot of the frame of the VirtualMachine instead of in the StateMachine.
+ * <p>
+ * SLogo variables are dynamically scoped, so a loop variable may be read by name by any user-defined function called while the loop runs. A loop is resolved to a slot only when nothing it runs can look the variable up by name: its body, and the bound and step of a For, call no user-defined function, name nothing that could be a function without parameters, contain no AST node that the VirtualMachine interprets as it is, and never assign the loop variable. The bound of a For must not read the variable either, since it is first evaluated before the variable is set, and its start must not assign it, since it runs after the value of the variable is saved. A loop nested in it over the same variable must be resolved as well, and must store the variable with the same type, so that putting the value back after the nested loop does not change it. Under these conditions, the StateMachine after the loop is the same as if the variable had been written to it in every iteration.
+ *
+ * @author Haotian Wang
+ */
+class SlotResolver implements ExpressionVisitor<SlotResolver.Summary> {
+    private static final String LOOP_COUNT = ":repcount";
+    private static final String VARIABLE_PREFIX = ":";
+
+    private Set<Expression> myResolved;
+    private Map<String, MakeUserInstruction> myDefinitions = new HashMap<>();
+
+    /**
+     * @param program: The AST of a command or of the body of a user-defined function.
+     * @return The loops of the AST whose loop variable can be kept in a slot.
+     */
+    Set<Expression> resolve(Expression program) {
+        myResolved = Collections.newSetFromMap(new IdentityHashMap<>());
+        program.accept(this);
+        return myResolved;
+    }
+
+    /**
+     * This method decides whether an AST can run while the given names are kept in slots, as the parameters of an inlined user-defined function are. The AST must be closed, must not assign the names, and must not loop over them.
+     *
+     * @param program: The body of a user-defined function, or an argument passed to it.
+     * @param names: The names kept in slots.
+     * @return The loops of the AST whose loop variable can be kept in a slot, or null if the AST cannot run with the names in slots.
+     */
+    Set<Expression> resolveWith(Expression program, Collection<String> names) {
+        myResolved = Collections.newSetFromMap(new IdentityHashMap<>());
+        Summary summary = program.accept(this);
+        if (!summary.myClosed) {
+            return null;
+        }
+        for (String name : names) {
+            if (summary.myWrites.contains(name)) {
+                return null;
+            }
+        }
+        for (Loop loop : summary.myLoops) {
+            if (names.contains(loop.myName)) {
+                return null;
+            }
+        }
+        return myResolved;
+    }
+
+    /**
+     * @return The user-defined functions defined by the AST last resolved, by name, keeping the last definition of each name.
+     */
+    Map<String, MakeUserInstruction> definitions() {
+        return myDefinitions;
+    }
+
+    @Override
+    public Summary visitUnary(Unary node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Summary visitBinary(Binary node) {
+        return merge(node.getFirstExpression().accept(this), node.getSecondExpression().accept(this));
+    }
+
+    @Override
+    public Summary visitDirect(Direct node) {
+        return new Summary();
+    }
+
+    @Override
+    public Summary visitVariable(Variable node) {
+        Summary summary = new Summary();
+        summary.myReads.add(node.getVariableName());
+        summary.myClosed = node.getVariableName().startsWith(VARIABLE_PREFIX);
+        return summary;
+    }
+
+    @Override
+    public Summary visitGroup(Group node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Summary visitExpressionList(ExpressionList node) {
+        Summary summary = new Summary();
+        for (Expression expression : node.getListOfExpressions()) {
+            summary = merge(summary, expression.accept(this));
+        }
+        return summary;
+    }
+
+    @Override
+    public Summary visitVariableList(VariableList node) {
+        Summary summary = new Summary();
+        for (Variable variable : node.getListOfVariables()) {
+            summary = merge(summary, variable.accept(this));
+        }
+        return summary;
+    }
+
+    @Override
+    public Summary visitMakeVariable(MakeVariable node) {
+        Summary summary = node.getExpression().accept(this);
+        summary.myWrites.add(node.getVariable().getVariableName());
+        return summary;
+    }
+
+    @Override
+    public Summary visitCondition(Condition node) {
+        Summary limit = node.getExpression().accept(this);
+        Summary body = node.getExpressionList().accept(this);
+        if (node.getOpcode() != Opcode.REPEAT) {
+            return merge(limit, body);
+        }
+        Loop loop = new Loop(node, LOOP_COUNT, Opcode.REPEAT);
+        if (resolvable(loop, body)) {
+            myResolved.add(node);
+        }
+        Summary summary = merge(limit, body);
+        summary.myLoops.add(loop);
+        return summary;
+    }
+
+    @Override
+    public Summary visitDoTimes(DoTimes node) {
+        Summary limit = node.getLimit().accept(this);
+        Summary body = node.getExpressionList().accept(this);
+        Loop loop = new Loop(node, node.getVariable().getVariableName(), Opcode.DO_TIMES);
+        if (resolvable(loop, body)) {
+            myResolved.add(node);
+        }
+        Summary summary = merge(limit, body);
+        summary.myLoops.add(loop);
+        return summary;
+    }
+
+    @Override
+    public Summary visitFor(For node) {
+        String name = node.getVariable().getVariableName();
+        Summary start = node.getStart().accept(this);
+        Summary end = node.getEnd().accept(this);
+        Summary increment = node.getIncrement().accept(this);
+        Summary body = node.getExpressionList().accept(this);
+        Loop loop = new Loop(node, name, Opcode.FOR);
+        boolean ordered = !end.myReads.contains(name) && !start.myWrites.contains(name);
+        Summary inside = merge(merge(merge(new Summary(), end), increment), body);
+        if (ordered && resolvable(loop, inside)) {
+            myResolved.add(node);
+        }
+        Summary summary = merge(start, inside);
+        summary.myLoops.add(loop);
+        return summary;
+    }
+
+    @Override
+    public Summary visitIfElse(IfElse node) {
+        return merge(merge(node.getExpression().accept(this), node.getTrueList().accept(this)), node.getFalseList().accept(this));
+    }
+
+    @Override
+    public Summary visitMakeUserInstruction(MakeUserInstruction node) {
+        if (node.getOpcode() == Opcode.MAKE_USER_INSTRUCTION) {
+            myDefinitions.put(node.getVariable().getVariableName(), node);
+        }
+        return open();
+    }
+
+    @Override
+    public Summary visitUserFunction(UserFunction node) {
+        Summary summary = node.getArguments().accept(this);
+        summary.myClosed = false;
+        return summary;
+    }
+
+    @Override
+    public Summary visitTell(Tell node) {
+        return open();
+    }
+
+    @Override
+    public Summary visitTwoList(TwoList node) {
+        return open();
+    }
+
+    @Override
+    public Summary visitQuaternary(Quaternary node) {
+        return open();
+    }
+
+    /**
+     * A ConstantPath is a Repeat that reads no variable and calls nothing, so it is always resolved.
+     */
+    @Override
+    public Summary visitConstantPath(ConstantPath node) {
+        myResolved.add(node);
+        Summary summary = new Summary();
+        summary.myLoops.add(new Loop(node, LOOP_COUNT, Opcode.REPEAT));
+        return summary;
+    }
+
+    /**
+     * @param loop: A loop.
+     * @param inside: What the loop runs while its variable is set.
+     * @return Whether the variable of the loop can be kept in a slot.
+     */
+    private boolean resolvable(Loop loop, Summary inside) {
+        if (!inside.myClosed || inside.myWrites.contains(loop.myName)) {
+            return false;
+        }
+        for (Loop nested : inside.myLoops) {
+            if (nested.myName.equals(loop.myName) && !(myResolved.contains(nested.myNode) && sameType(loop.myKind, nested.myKind))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A Repeat puts back an int, which is what a Repeat or a DoTimes stores, and a For puts back a double, which is what a For stores. A DoTimes puts back an int as a double, which no loop stores.
+     */
+    private boolean sameType(Opcode outer, Opcode nested) {
+        if (nested == Opcode.REPEAT) {
+            return outer == Opcode.REPEAT || outer == Opcode.DO_TIMES;
+        }
+        return nested == Opcode.FOR && outer == Opcode.FOR;
+    }
+
+    private Summary open() {
+        Summary summary = new Summary();
+        summary.myClosed = false;
+        return summary;
+    }
+
+    private Summary merge(Summary first, Summary second) {
+        first.myClosed &= second.myClosed;
+        first.myReads.addAll(second.myReads);
+        first.myWrites.addAll(second.myWrites);
+        first.myLoops.addAll(second.myLoops);
+        return first;
+    }
+
+    /**
+     * What a part of the AST does with variables: the names it reads and assigns, the loops in it, and whether it is closed, that is whether everything it runs is visible in the AST.
+     */
+    static class Summary {
+        private boolean myClosed = true;
+        private Set<String> myReads = new HashSet<>();
+        private Set<String> myWrites = new HashSet<>();
+        private List<Loop> myLoops = new ArrayList<>();
+    }
+
+    private static class Loop {
+        private final Expression myNode;
+        private final String myName;
+        private final Opcode myKind;
+
+        private Loop(Expression node, String name, Opcode kind) {
+            myNode = node;
+            myName = name;
+            myKind = kind;
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package engine.compiler.bytecode;
+
+import engine.compiler.slogoast.CallSiteCache;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.storage.FunctionMemo;
+import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableType;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class runs SLogo programs by compiling their ASTs to bytecode and running the bytecode in one loop over a flat int array, with the values on a double stack. The bodies of user-defined functions are compiled the first time they are called. Compiled Chunks are kept for the most recently run ASTs, so that a command run again from the ExpressionCache is not compiled again.
+ * <p>
+ * Calls to user-defined functions do not recurse in Java. Each call gets a Frame on a stack kept on the heap, with its own value stack and locals, and the loop switches to the Frame of the callee and back to the Frame of the caller when it returns. A call in tail position reuses the Frame of the caller. The number of nested calls, counting tail calls, is limited by a maximum depth that can be set, instead of by the size of the Java stack.
+ * <p>
+ * A call of a pure function takes its result from the FunctionMemo of the StateMachine when it was computed before for the same arguments, and otherwise stores it there when its Frame returns.
+ * <p>
+ * The inlined calls that the BytecodeCompiler guards with an INLINE instruction run their body in the Frame of the caller, while the function they inlined is still the one their variable names.
+ * <p>
+ * The variables of resolved loops live in the double locals of the bytecode while the loops run. They are recorded as bindings, so that if the bytecode fails, their values are written to the StateMachine, which is then the same as after a failed interpretation of the AST.
+ *
+ * @author Haotian Wang
+ */
+public class VirtualMachine {
+    public static final int CHUNK_CACHE_CAPACITY = 256;
+    public static final int DEFAULT_MAX_DEPTH = 1 << 18;
+
+    private static final Opcode[] OPCODES = Opcode.values();
+    private static final VariableType[] VARIABLE_TYPES = VariableType.values();
+    private static final Object UNDEFINED = new Object();
+    private static final int INITIAL_BINDINGS = 8;
+    private static final int INITIAL_FRAMES = 16;
+
+    private TurtleManager myManager;
+    private BytecodeCompiler myCompiler;
+    private Map<Expression, Chunk> myChunks;
+    private List<MakeUserInstruction> myCalls;
+    private MakeUserInstruction myLoadedFunction;
+    private Frame[] myFrames;
+    private int myFrameCount;
+    private int myDepth;
+    private int myMaxDepth;
+    private String[] myBoundNames;
+    private double[][] myBoundLocals;
+    private int[] myBoundSlots;
+    private VariableType[] myBoundTypes;
+    private int myBindingCount;
+
+    /**
+     * @param turtleManager: The TurtleManager that the programs act on.
+     */
+    public VirtualMachine(TurtleManager turtleManager) {
+        myManager = turtleManager;
+        myCompiler = new BytecodeCompiler();
+        myChunks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Expression, Chunk> eldest) {
+                return size() > CHUNK_CACHE_CAPACITY;
+            }
+        };
+        myCalls = new ArrayList<>();
+        myFrames = new Frame[INITIAL_FRAMES];
+        myMaxDepth = DEFAULT_MAX_DEPTH;
+        myBoundNames = new String[INITIAL_BINDINGS];
+        myBoundLocals = new double[INITIAL_BINDINGS][];
+        myBoundSlots = new int[INITIAL_BINDINGS];
+        myBoundTypes = new VariableType[INITIAL_BINDINGS];
+    }
+
+    /**
+     * This method runs a program with the same effects and the same result as interpreting its AST.
+     *
+     * @param program: The AST of the program.
+     * @return The return value of the program.
+     */
+    public double execute(Expression program) throws InterpretationException, UndefinedKeywordException {
+        myCalls.clear();
+        myLoadedFunction = null;
+        myFrameCount = 0;
+        myDepth = 0;
+        myBindingCount = 0;
+        return run(chunk(program));
+    }
+
+    /**
+     * @param maxDepth: The maximum number of nested calls to user-defined functions, beyond which a program fails.
+     */
+    public void setMaxDepth(int maxDepth) {
+        myMaxDepth = maxDepth;
+    }
+
+    /**
+     * @return The maximum number of nested calls to user-defined functions.
+     */
+    public int maxDepth() {
+        return myMaxDepth;
+    }
+
+    /**
+     * @param program: An AST.
+     * @return The bytecode compiled from the AST, compiling it if it is not in the cache.
+     */
+    public Chunk chunk(Expression program) {
+        Chunk chunk = myChunks.get(program);
+        if (chunk == null) {
+            chunk = myCompiler.compile(program, myManager.memory());
+            myChunks.put(program, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * This method runs a Chunk and, if it fails, writes the variables that it kept in slots to the StateMachine.
+     */
+    private double run(Chunk chunk) throws InterpretationException, UndefinedKeywordException {
+        int base = myBindingCount;
+        try {
+            return loop(chunk);
+        } catch (Throwable e) {
+            spill(base);
+            throw e;
+        }
+    }
+
+    /**
+     * This method runs the Chunk of a command in the bottom Frame. The registers of the loop are loaded from the current Frame again whenever a call or a return switches Frames.
+     */
+    private double loop(Chunk program) throws InterpretationException, UndefinedKeywordException {
+        final TurtleManager manager = myManager;
+        final int base = myFrameCount;
+        Frame frame = pushFrame(program, 0);
+        frames:
+        while (true) {
+            final Chunk chunk = frame.myChunk;
+            final int[] code = chunk.code;
+            final double[] constants = chunk.constants;
+            final String[] names = chunk.names;
+            final double[] stack = frame.myStack;
+            final double[] locals = frame.myLocals;
+            final Object[] saved = frame.mySaved;
+            int sp = frame.mySp;
+            int pc = frame.myPc;
+            while (true) {
+                switch (code[pc]) {
+                    case Bytecode.CONSTANT:
+                        stack[sp++] = constants[code[pc + 1]];
+                        pc += 2;
+                        break;
+                    case Bytecode.POP:
+                        sp--;
+                        pc++;
+                        break;
+                    case Bytecode.DUP:
+                        stack[sp] = stack[sp - 1];
+                        sp++;
+                        pc++;
+                        break;
+                    case Bytecode.LOAD:
+                    case Bytecode.TAIL_LOAD: {
+                        double value = load(chunk, pc);
+                        MakeUserInstruction function = myLoadedFunction;
+                        if (function == null) {
+                            stack[sp++] = value;
+                            pc += 2;
+                            break;
+                        }
+                        myLoadedFunction = null;
+                        frame = call(frame, body(chunk, pc, function), 0, code[pc] == Bytecode.TAIL_LOAD, pc + 2, sp);
+                        continue frames;
+                    }
+                    case Bytecode.STORE:
+                        manager.memory().setDouble(names[code[pc + 1]], stack[sp - 1]);
+                        pc += 2;
+                        break;
+                    case Bytecode.LOAD_LOCAL:
+                        stack[sp++] = locals[code[pc + 1]];
+                        pc += 2;
+                        break;
+                    case Bytecode.STORE_LOCAL:
+                        locals[code[pc + 1]] = stack[--sp];
+                        pc += 2;
+                        break;
+                    case Bytecode.NEGATE:
+                        stack[sp - 1] = -1 * stack[sp - 1];
+                        pc++;
+                        break;
+                    case Bytecode.ADD:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] + stack[sp];
+                        pc++;
+                        break;
+                    case Bytecode.SUBTRACT:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] - stack[sp];
+                        pc++;
+                        break;
+                    case Bytecode.MULTIPLY:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] * stack[sp];
+                        pc++;
+                        break;
+                    case Bytecode.DIVIDE:
+                        sp--;
+                        stack[sp - 1] = Opcode.quotient(stack[sp - 1], stack[sp]);
+                        pc++;
+                        break;
+                    case Bytecode.REMAINDER:
+                        sp--;
+                        stack[sp - 1] = Opcode.remainder(stack[sp - 1], stack[sp]);
+                        pc++;
+                        break;
+                    case Bytecode.POWER:
+                        sp--;
+                        stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                        pc++;
+                        break;
+                    case Bytecode.LESS:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.GREATER:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.EQUAL:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.NOT_EQUAL:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.NOT:
+                        stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.TRUTH:
+                        stack[sp - 1] = stack[sp - 1] != 0 ? 1 : 0;
+                        pc++;
+                        break;
+                    case Bytecode.SINE:
+                        stack[sp - 1] = Opcode.sine(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.COSINE:
+                        stack[sp - 1] = Opcode.cosine(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.TANGENT:
+                        stack[sp - 1] = Opcode.tangent(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.ARC_TANGENT:
+                        stack[sp - 1] = Opcode.arcTangent(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.LOG:
+                        stack[sp - 1] = Math.log(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.JUMP:
+                        pc = code[pc + 1];
+                        break;
+                    case Bytecode.JUMP_IF_ZERO:
+                        pc = stack[--sp] == 0 ? code[pc + 1] : pc + 2;
+                        break;
+                    case Bytecode.JUMP_IF_NOT_ZERO:
+                        pc = stack[--sp] != 0 ? code[pc + 1] : pc + 2;
+                        break;
+                    case Bytecode.JUMP_IF_NOT_LESS:
+                        sp -= 2;
+                        pc = stack[sp] < stack[sp + 1] ? pc + 2 : code[pc + 1];
+                        break;
+                    case Bytecode.FORWARD:
+                        stack[sp - 1] = manager.forward(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.LEFT:
+                        stack[sp - 1] = manager.leftBy(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.SET_HEADING:
+                        stack[sp - 1] = manager.setAngle(stack[sp - 1]);
+                        pc++;
+                        break;
+                    case Bytecode.TURTLE_UNARY:
+                        stack[sp - 1] = OPCODES[code[pc + 1]].unary(manager, stack[sp - 1]);
+                        pc += 2;
+                        break;
+                    case Bytecode.TURTLE_DIRECT:
+                        stack[sp++] = OPCODES[code[pc + 1]].direct(manager);
+                        pc += 2;
+                        break;
+                    case Bytecode.SET_TOWARDS: {
+                        sp -= 3;
+                        stack[sp - 1] = Opcode.towards(manager, stack[sp - 1], stack[sp], stack[sp + 2], stack[sp + 1]);
+                        pc++;
+                        break;
+                    }
+                    case Bytecode.SET_POSITION:
+                        sp--;
+                        stack[sp - 1] = manager.moveTo(stack[sp - 1], stack[sp], false);
+                        pc++;
+                        break;
+                    case Bytecode.COUNT_ENTER: {
+                        int limit = (int) stack[--sp];
+                        if (limit < 1) {
+                            stack[sp++] = 0;
+                            pc = code[pc + 2];
+                        } else {
+                            locals[code[pc + 1]] = 1;
+                            locals[code[pc + 1] + 1] = limit;
+                            pc += 3;
+                        }
+                        break;
+                    }
+                    case Bytecode.COUNT_NEXT: {
+                        int counter = code[pc + 1];
+                        pc = ++locals[counter] <= locals[counter + 1] ? code[pc + 2] : pc + 3;
+                        break;
+                    }
+                    case Bytecode.SET_INTEGER:
+                        manager.memory().setInteger(names[code[pc + 1]], (int) locals[code[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case Bytecode.SET_DOUBLE:
+                        manager.memory().setDouble(names[code[pc + 1]], locals[code[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case Bytecode.ADD_LOCAL:
+                        locals[code[pc + 1]] += stack[--sp];
+                        pc += 2;
+                        break;
+                    case Bytecode.SAVE_INTEGER: {
+                        StateMachine memory = manager.memory();
+                        String name = names[code[pc + 1]];
+                        saved[code[pc + 2]] = memory.containsVariable(name) ? (Object) (int) memory.getValueInGeneralForm(name) : UNDEFINED;
+                        pc += 3;
+                        break;
+                    }
+                    case Bytecode.SAVE_DOUBLE: {
+                        StateMachine memory = manager.memory();
+                        String name = names[code[pc + 1]];
+                        saved[code[pc + 2]] = memory.containsVariable(name) ? (Object) (double) memory.getValueInGeneralForm(name) : UNDEFINED;
+                        pc += 3;
+                        break;
+                    }
+                    case Bytecode.RESTORE: {
+                        String name = names[code[pc + 1]];
+                        Object old = saved[code[pc + 2]];
+                        if (old == UNDEFINED) {
+                            manager.memory().removeVariable(name);
+                        } else {
+                            manager.memory().setVariable(name, old, VARIABLE_TYPES[code[pc + 3]]);
+                        }
+                        saved[code[pc + 2]] = null;
+                        pc += 4;
+                        break;
+                    }
+                    case Bytecode.CALL_BEGIN:
+                        myCalls.add(function(chunk, pc));
+                        pc += 3;
+                        break;
+                    case Bytecode.BIND_SAVE:
+                        manager.memory().saveParameter(parameter(myCalls.get(myCalls.size() - 1), code[pc + 1]));
+                        pc += 2;
+                        break;
+                    case Bytecode.BIND:
+                        manager.memory().bindParameter(parameter(myCalls.get(myCalls.size() - 1), code[pc + 1]), stack[--sp]);
+                        pc += 2;
+                        break;
+                    case Bytecode.CALL_END:
+                    case Bytecode.TAIL_CALL: {
+                        MakeUserInstruction function = myCalls.remove(myCalls.size() - 1);
+                        int parameters = function.getParameters().getListOfVariables().size();
+                        boolean tail = code[pc] == Bytecode.TAIL_CALL;
+                        FunctionMemo memo = manager.memory().functionMemo();
+                        if (!memo.memoizes(function)) {
+                            frame = call(frame, body(chunk, pc, function), parameters, tail, pc + 1, sp);
+                            continue frames;
+                        }
+                        double[] arguments = arguments(function);
+                        Double cached = memo.get(function, arguments);
+                        if (cached != null) {
+                            manager.memory().restoreParameters(parameters);
+                            stack[sp++] = cached;
+                            pc++;
+                            break;
+                        }
+                        frame = call(frame, body(chunk, pc, function), parameters, tail, pc + 1, sp);
+                        if (!tail) {
+                            frame.myMemoized = function;
+                            frame.myArguments = arguments;
+                        }
+                        continue frames;
+                    }
+                    case Bytecode.RETURN: {
+                        double ret = stack[0];
+                        manager.memory().restoreParameters(frame.myParameters);
+                        if (frame.myMemoized != null) {
+                            manager.memory().functionMemo().put(frame.myMemoized, frame.myArguments, ret);
+                            frame.myMemoized = null;
+                            frame.myArguments = null;
+                        }
+                        myDepth -= frame.myCalls;
+                        myFrameCount--;
+                        if (myFrameCount == base) {
+                            return ret;
+                        }
+                        frame = myFrames[myFrameCount - 1];
+                        frame.myStack[frame.mySp++] = ret;
+                        continue frames;
+                    }
+                    case Bytecode.AST:
+                        stack[sp++] = chunk.nodes[code[pc + 1]].interpret(manager);
+                        pc += 2;
+                        break;
+                    case Bytecode.PATH:
+                        stack[sp++] = ((ConstantPath) chunk.nodes[code[pc + 1]]).follow(manager);
+                        pc += 2;
+                        break;
+                    case Bytecode.INLINE:
+                        pc = inlined(chunk, pc) ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.FOR_NEXT: {
+                        sp -= 2;
+                        int counter = code[pc + 1];
+                        locals[counter] += stack[sp];
+                        pc = locals[counter] < stack[sp + 1] ? code[pc + 2] : pc + 3;
+                        break;
+                    }
+                    case Bytecode.BIND_SLOT:
+                        bind(names[code[pc + 1]], locals, code[pc + 2], VARIABLE_TYPES[code[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case Bytecode.UNBIND_SLOT:
+                        myBindingCount--;
+                        pc++;
+                        break;
+                    case Bytecode.RESTORE_SLOT: {
+                        Object old = saved[code[pc + 2]];
+                        if (old != UNDEFINED) {
+                            manager.memory().setVariable(names[code[pc + 1]], old, VARIABLE_TYPES[code[pc + 3]]);
+                        }
+                        saved[code[pc + 2]] = null;
+                        pc += 4;
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Unknown instruction " + code[pc] + " at " + pc);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method reads the variable of a LOAD or TAIL_LOAD instruction in the same way as interpreting a Variable node. A number is read from the StateMachine by its type, without boxing it. If the variable names a user-defined function, the function is left in myLoadedFunction for the loop to call, and kept in the CallSiteCache of the instruction.
+     */
+    private double load(Chunk chunk, int pc) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = myManager.memory();
+        CallSiteCache site = chunk.sites[pc];
+        if (site != null) {
+            MakeUserInstruction cached = site.get(memory);
+            if (cached != null) {
+                myLoadedFunction = cached;
+                return 0;
+            }
+        }
+        String variableName = chunk.names[chunk.code[pc + 1]];
+        VariableType type = memory.typeOf(variableName);
+        if (type == VariableType.DOUBLE) {
+            return memory.getDouble(variableName);
+        } else if (type == VariableType.INTEGER) {
+            return memory.getInteger(variableName);
+        }
+        return loadGeneric(chunk, pc, variableName);
+    }
+
+    /**
+     * This method reads a variable that is not a number, with the same errors as interpreting a Variable node.
+     */
+    private double loadGeneric(Chunk chunk, int pc, String variableName) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = myManager.memory();
+        int version = memory.procedureVersion();
+        if (!memory.containsVariable(variableName)) {
+            if (variableName.startsWith(":")) {
+                throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined yet", variableName));
+            } else {
+                throw new UndefinedKeywordException(String.format("The user function \"%s\" is not defined yet", variableName));
+            }
+        }
+        Object value = memory.getValueInGeneralForm(variableName);
+        VariableType type = memory.getVariableType(variableName);
+        if (type == VariableType.STRING) {
+            throw new InterpretationException(String.format("The variable \"%s\" defined as a String", variableName));
+        } else if (type == VariableType.EXPRESSION) {
+            MakeUserInstruction statement = (MakeUserInstruction) value;
+            if (!statement.getParameters().getListOfVariables().isEmpty()) {
+                throw new InterpretationException(String.format("The user-defined function \"%s\" takes %d parameters, please give a list of the required number of parameters", variableName, statement.getParameters().getListOfVariables().size()));
+            }
+            chunk.site(pc).put(memory, version, statement);
+            myLoadedFunction = statement;
+        }
+        return 0;
+    }
+
+    /**
+     * This method looks up the user-defined function called by a CALL_BEGIN instruction and checks the number of arguments, with the same errors as interpreting a UserFunction node. The function is kept in the CallSiteCache of the instruction, and taken from it without any check until the user-defined functions change.
+     */
+    private MakeUserInstruction function(Chunk chunk, int pc) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = myManager.memory();
+        CallSiteCache site = chunk.site(pc);
+        MakeUserInstruction function = site.get(memory);
+        if (function != null) {
+            return function;
+        }
+        int version = memory.procedureVersion();
+        function = (MakeUserInstruction) memory.getValueInGeneralForm(chunk.names[chunk.code[pc + 1]]);
+        int parameters = function.getParameters().getListOfVariables().size();
+        int arguments = chunk.code[pc + 2];
+        if (parameters != arguments) {
+            throw new InterpretationException(String.format("The number of expressions passed in, %d, does not match the number of desired parameters defined earlier, %d", arguments, parameters));
+        }
+        site.put(memory, version, function);
+        return function;
+    }
+
+    /**
+     * This method checks the guard of an inlined call. The variable of the INLINE instruction must name the function that was inlined, as it did when it was last checked unless the user-defined functions have changed, and calling it must not exceed the maximum depth, or else the call is run as it is, with the same errors.
+     *
+     * @return Whether the inlined body can run.
+     */
+    private boolean inlined(Chunk chunk, int pc) throws UndefinedKeywordException {
+        if (myDepth >= myMaxDepth) {
+            return false;
+        }
+        StateMachine memory = myManager.memory();
+        CallSiteCache site = chunk.site(pc);
+        Expression function = chunk.nodes[chunk.code[pc + 2]];
+        if (site.get(memory) == function) {
+            return true;
+        }
+        int version = memory.procedureVersion();
+        String name = chunk.names[chunk.code[pc + 1]];
+        if (!memory.containsVariable(name) || memory.getValueInGeneralForm(name) != function) {
+            return false;
+        }
+        site.put(memory, version, (MakeUserInstruction) function);
+        return true;
+    }
+
+    /**
+     * This method returns the bytecode of the body of a function called by an instruction. The body is kept in the Chunk of the caller for as long as the instruction calls the same definition, so that a call does not look it up in the cache of Chunks.
+     */
+    private Chunk body(Chunk chunk, int pc, MakeUserInstruction function) {
+        if (chunk.callees[pc] != function) {
+            chunk.bodies[pc] = chunk(function.getExpressionList());
+            chunk.callees[pc] = function;
+        }
+        return chunk.bodies[pc];
+    }
+
+    /**
+     * This method enters the body of a user-defined function whose arguments have been bound, in a new Frame, or in the Frame of the caller for a call in tail position. A call in tail position adds the parameters it saved to those of the caller, which are all put back when the Frame returns, except for the parameters that the caller saved already.
+     *
+     * @param pc: The index of the instruction after the call, where the caller continues.
+     * @param sp: The height of the stack of the caller.
+     * @return The Frame that runs the function.
+     */
+    private Frame call(Frame caller, Chunk body, int parameters, boolean tail, int pc, int sp) throws InterpretationException {
+        if (myDepth >= myMaxDepth) {
+            throw new InterpretationException(String.format("The user-defined functions are nested deeper than the maximum of %d calls", myMaxDepth));
+        }
+        myDepth++;
+        if (tail) {
+            caller.myParameters = myManager.memory().foldParameters(caller.myParameters, parameters);
+            caller.myCalls++;
+            caller.enter(body);
+            return caller;
+        }
+        caller.myPc = pc;
+        caller.mySp = sp;
+        Frame frame = pushFrame(body, parameters);
+        frame.myCalls = 1;
+        return frame;
+    }
+
+    private Frame pushFrame(Chunk chunk, int parameters) {
+        if (myFrameCount == myFrames.length) {
+            myFrames = Arrays.copyOf(myFrames, myFrameCount * 2);
+        }
+        Frame frame = myFrames[myFrameCount];
+        if (frame == null) {
+            frame = new Frame();
+            myFrames[myFrameCount] = frame;
+        }
+        myFrameCount++;
+        frame.enter(chunk);
+        frame.myParameters = parameters;
+        frame.myCalls = 0;
+        frame.myMemoized = null;
+        frame.myArguments = null;
+        return frame;
+    }
+
+    /**
+     * @return The values that the parameters of a function being called are bound to in the StateMachine.
+     */
+    private double[] arguments(MakeUserInstruction function) throws UndefinedKeywordException {
+        StateMachine memory = myManager.memory();
+        double[] arguments = new double[function.getParameters().getListOfVariables().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = memory.getDouble(parameter(function, i));
+        }
+        return arguments;
+    }
+
+    private String parameter(MakeUserInstruction function, int index) {
+        return function.getParameters().getListOfVariables().get(index).getVariableName();
+    }
+
+    private void bind(String name, double[] locals, int slot, VariableType type) {
+        if (myBindingCount == myBoundNames.length) {
+            int capacity = myBindingCount * 2;
+            myBoundNames = Arrays.copyOf(myBoundNames, capacity);
+            myBoundLocals = Arrays.copyOf(myBoundLocals, capacity);
+            myBoundSlots = Arrays.copyOf(myBoundSlots, capacity);
+            myBoundTypes = Arrays.copyOf(myBoundTypes, capacity);
+        }
+        myBoundNames[myBindingCount] = name;
+        myBoundLocals[myBindingCount] = locals;
+        myBoundSlots[myBindingCount] = slot;
+        myBoundTypes[myBindingCount] = type;
+        myBindingCount++;
+    }
+
+    /**
+     * This method writes the variables bound since the given number of bindings to the StateMachine, outermost first, so that a variable bound by nested loops ends with the value of the innermost one.
+     */
+    private void spill(int base) {
+        StateMachine memory = myManager.memory();
+        for (int i = base; i < myBindingCount; i++) {
+            double value = myBoundLocals[i][myBoundSlots[i]];
+            if (myBoundTypes[i] == VariableType.INTEGER) {
+                memory.setInteger(myBoundNames[i], (int) value);
+            } else {
+                memory.setDouble(myBoundNames[i], value);
+            }
+            myBoundLocals[i] = null;
+        }
+        myBindingCount = base;
+    }
+
+    /**
+     * The state of a running Chunk: its stack and locals, where it stopped while it calls a function, how many parameters it put back when it returns, how many nested calls it stands for, and the pure function and arguments whose result it stores in the FunctionMemo when it returns. Frames are kept after they return and reused by later calls, and keep their arrays if they are large enough.
+     */
+    private static class Frame {
+        private Chunk myChunk;
+        private double[] myStack = new double[0];
+        private double[] myLocals = new double[0];
+        private Object[] mySaved = new Object[0];
+        private int myPc;
+        private int mySp;
+        private int myParameters;
+        private int myCalls;
+        private MakeUserInstruction myMemoized;
+        private double[] myArguments;
+
+        private void enter(Chunk chunk) {
+            myChunk = chunk;
+            if (myStack.length < chunk.maxStack) {
+                myStack = new double[chunk.maxStack];
+            }
+            if (myLocals.length < chunk.doubleLocals) {
+                myLocals = new double[chunk.doubleLocals];
+            }
+            if (mySaved.length < chunk.objectLocals) {
+                mySaved = new Object[chunk.objectLocals];
+            }
+            myPc = 0;
+            mySp = 0;
+        }
+    }
+}
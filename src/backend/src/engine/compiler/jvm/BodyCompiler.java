@@ -0,0 +1,600 @@
+package engine.compiler.jvm;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class compiles the body of a user-defined function to a JVM method, and loads it as a hidden class implementing CompiledProcedure, which the JVM compiles further like any Java code once it is hot.
+ * <p>
+ * Math, comparisons, If, IfElse, Repeat, DoTimes, For and MakeVariable are compiled to instructions that do what interpreting them does, in the same order, and call the Operations for the turtles and the StateMachine. Any other node, such as a call of another function or a Tell, is kept in an array of the hidden class and interpreted from the compiled code, so every body can be compiled. When the body is closed, that is when nothing it runs is interpreted and it never assigns a parameter, nothing can change the parameters while it runs, so they are read from the arguments instead of the StateMachine.
+ * <p>
+ * The hidden classes are not kept alive by their loader, so the compiled body of a function that was redefined is unloaded with its MakeUserInstruction.
+ *
+ * @author Haotian Wang
+ */
+final class BodyCompiler implements ExpressionVisitor<Void> {
+    private static final String CLASS_NAME = "engine/compiler/jvm/CompiledBody";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String PROCEDURE = "engine/compiler/jvm/CompiledProcedure";
+    private static final String EXPRESSION = "engine/compiler/slogoast/Expression";
+    private static final String NODES = "nodes";
+    private static final String NODES_TYPE = "[L" + EXPRESSION + ";";
+    private static final String TURTLE_MANAGER = "Lmodel/TurtleManager;";
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String INTERPRET = "(" + TURTLE_MANAGER + ")D";
+    private static final String RUN = "(" + TURTLE_MANAGER + "[D)D";
+    private static final String TURTLE_QUERY = "(" + TURTLE_MANAGER + ")D";
+    private static final String TURTLE_COMMAND = "(" + TURTLE_MANAGER + "D)D";
+    private static final String MATH = "(D)D";
+    private static final String COMPARISON = "(DD)D";
+    private static final int THIS = 0;
+    private static final int TURTLES = 1;
+    private static final int ARGUMENTS = 2;
+    private static final String VARIABLE_PREFIX = ":";
+    private static final String LOOP_COUNT = ":repcount";
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Map<Opcode, String> TURTLE_COMMANDS = new EnumMap<>(Opcode.class);
+    private static final Map<Opcode, String> MATH_FUNCTIONS = new EnumMap<>(Opcode.class);
+    private static final Map<Opcode, String> DIRECT_OPERATIONS = new EnumMap<>(Opcode.class);
+    private static final Map<Opcode, String> BINARY_OPERATIONS = new EnumMap<>(Opcode.class);
+    private static final Set<Opcode> DIRECT_COMMANDS = EnumSet.of(Opcode.PEN_UP, Opcode.PEN_DOWN, Opcode.SHOW_TURTLE, Opcode.HIDE_TURTLE, Opcode.HOME, Opcode.CLEAR_SCREEN, Opcode.STAMP, Opcode.CLEAR_STAMPS);
+
+    static {
+        TURTLE_COMMANDS.put(Opcode.FORWARD, "forward");
+        TURTLE_COMMANDS.put(Opcode.BACKWARD, "backward");
+        TURTLE_COMMANDS.put(Opcode.RIGHT, "right");
+        TURTLE_COMMANDS.put(Opcode.LEFT, "left");
+        TURTLE_COMMANDS.put(Opcode.SET_HEADING, "setHeading");
+        TURTLE_COMMANDS.put(Opcode.SET_BACKGROUND, "setBackground");
+        TURTLE_COMMANDS.put(Opcode.SET_PEN_COLOR, "setPenColor");
+        TURTLE_COMMANDS.put(Opcode.SET_PEN_SIZE, "setPenSize");
+        TURTLE_COMMANDS.put(Opcode.SET_SHAPE, "setShape");
+        MATH_FUNCTIONS.put(Opcode.SINE, "sine");
+        MATH_FUNCTIONS.put(Opcode.COSINE, "cosine");
+        MATH_FUNCTIONS.put(Opcode.TANGENT, "tangent");
+        MATH_FUNCTIONS.put(Opcode.ARC_TANGENT, "arcTangent");
+        MATH_FUNCTIONS.put(Opcode.NATURAL_LOG, "naturalLog");
+        MATH_FUNCTIONS.put(Opcode.NOT, "not");
+        DIRECT_OPERATIONS.put(Opcode.PEN_UP, "penUp");
+        DIRECT_OPERATIONS.put(Opcode.PEN_DOWN, "penDown");
+        DIRECT_OPERATIONS.put(Opcode.SHOW_TURTLE, "showTurtle");
+        DIRECT_OPERATIONS.put(Opcode.HIDE_TURTLE, "hideTurtle");
+        DIRECT_OPERATIONS.put(Opcode.HOME, "home");
+        DIRECT_OPERATIONS.put(Opcode.CLEAR_SCREEN, "clearScreen");
+        DIRECT_OPERATIONS.put(Opcode.X_COORDINATE, "xCoordinate");
+        DIRECT_OPERATIONS.put(Opcode.Y_COORDINATE, "yCoordinate");
+        DIRECT_OPERATIONS.put(Opcode.HEADING, "heading");
+        DIRECT_OPERATIONS.put(Opcode.IS_PEN_DOWN, "isPenDown");
+        DIRECT_OPERATIONS.put(Opcode.IS_SHOWING, "isShowing");
+        DIRECT_OPERATIONS.put(Opcode.ID, "id");
+        DIRECT_OPERATIONS.put(Opcode.TURTLES, "turtles");
+        DIRECT_OPERATIONS.put(Opcode.STAMP, "stamp");
+        DIRECT_OPERATIONS.put(Opcode.CLEAR_STAMPS, "clearStamps");
+        BINARY_OPERATIONS.put(Opcode.QUOTIENT, "quotient");
+        BINARY_OPERATIONS.put(Opcode.REMAINDER, "remainder");
+        BINARY_OPERATIONS.put(Opcode.LESS_THAN, "lessThan");
+        BINARY_OPERATIONS.put(Opcode.GREATER_THAN, "greaterThan");
+        BINARY_OPERATIONS.put(Opcode.EQUAL, "equal");
+        BINARY_OPERATIONS.put(Opcode.NOT_EQUAL, "notEqual");
+    }
+
+    private final MakeUserInstruction myFunction;
+    private final Map<String, Integer> myParameters;
+    private ClassFile myClass;
+    private MethodCode myCode;
+    private List<Expression> myNodes;
+    private boolean myParametersInArguments;
+    private boolean myArgumentsRead;
+    private boolean myClosed;
+    private boolean myEffectFree;
+
+    /**
+     * @param function: The definition of the function to compile.
+     */
+    BodyCompiler(MakeUserInstruction function) {
+        myFunction = function;
+        myParameters = new HashMap<>();
+        List<Variable> parameters = function.getParameters().getListOfVariables();
+        for (int i = 0; i < parameters.size(); i++) {
+            myParameters.put(parameters.get(i).getVariableName(), i);
+        }
+    }
+
+    /**
+     * This method compiles the body, first reading the parameters from the arguments, and again reading them from the StateMachine if the body turns out not to be closed.
+     *
+     * @return An instance of the hidden class.
+     * @throws ReflectiveOperationException if the hidden class cannot be defined or instantiated.
+     * @throws IllegalStateException if the body is too large for a JVM method.
+     */
+    CompiledProcedure compile() throws ReflectiveOperationException {
+        generate(true);
+        if (myArgumentsRead && !myClosed) {
+            generate(false);
+        }
+        MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(myClass.toBytes(), true);
+        return (CompiledProcedure) hidden.lookupClass().getConstructor(Expression[].class).newInstance((Object) myNodes.toArray(new Expression[0]));
+    }
+
+    /**
+     * @return Whether the body compiled last has no effect but its result, neither on the turtles nor on the StateMachine, so that it can be run twice.
+     */
+    boolean isEffectFree() {
+        return myEffectFree;
+    }
+
+    private void generate(boolean parametersInArguments) {
+        myParametersInArguments = parametersInArguments;
+        myArgumentsRead = false;
+        myClosed = true;
+        myEffectFree = true;
+        myNodes = new ArrayList<>();
+        myClass = new ClassFile(CLASS_NAME, OBJECT, PROCEDURE);
+        myClass.field(ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL, NODES, NODES_TYPE);
+        MethodCode constructor = new MethodCode(myClass, 2);
+        constructor.loadObject(THIS);
+        constructor.invokeSpecial(OBJECT, "<init>", "()V");
+        constructor.loadObject(THIS);
+        constructor.loadObject(1);
+        constructor.putField(CLASS_NAME, NODES, NODES_TYPE);
+        constructor.op(MethodCode.RETURN, 0);
+        myClass.method(ClassFile.ACC_PUBLIC, "<init>", "(" + NODES_TYPE + ")V", constructor);
+        myCode = new MethodCode(myClass, 3);
+        myFunction.getExpressionList().accept(this);
+        myCode.op(MethodCode.DRETURN, -2);
+        myClass.method(ClassFile.ACC_PUBLIC, "run", RUN, myCode);
+    }
+
+    @Override
+    public Void visitUnary(Unary node) {
+        Opcode opcode = node.getOpcode();
+        if (TURTLE_COMMANDS.containsKey(opcode)) {
+            myEffectFree = false;
+            myCode.loadObject(TURTLES);
+            node.getExpression().accept(this);
+            myCode.invokeStatic(Operations.NAME, TURTLE_COMMANDS.get(opcode), TURTLE_COMMAND);
+        } else if (opcode == Opcode.MINUS) {
+            myCode.pushDouble(-1);
+            node.getExpression().accept(this);
+            myCode.op(MethodCode.DMUL, -2);
+        } else if (MATH_FUNCTIONS.containsKey(opcode)) {
+            node.getExpression().accept(this);
+            myCode.invokeStatic(Operations.NAME, MATH_FUNCTIONS.get(opcode), MATH);
+        } else {
+            node.getExpression().accept(this);
+            myCode.op(MethodCode.POP2, -2);
+            myCode.pushDouble(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Binary node) {
+        Opcode opcode = node.getOpcode();
+        switch (opcode) {
+            case SUM:
+                operands(node);
+                myCode.op(MethodCode.DADD, -2);
+                break;
+            case DIFFERENCE:
+                operands(node);
+                myCode.op(MethodCode.DSUB, -2);
+                break;
+            case PRODUCT:
+                operands(node);
+                myCode.op(MethodCode.DMUL, -2);
+                break;
+            case POWER:
+                operands(node);
+                myCode.invokeStatic("java/lang/Math", "pow", COMPARISON);
+                break;
+            case AND:
+            case OR:
+                logic(node, opcode == Opcode.AND);
+                break;
+            case SET_TOWARDS:
+                myEffectFree = false;
+                myCode.loadObject(TURTLES);
+                myCode.loadObject(TURTLES);
+                myCode.invokeStatic(Operations.NAME, "xCoordinate", TURTLE_QUERY);
+                myCode.loadObject(TURTLES);
+                myCode.invokeStatic(Operations.NAME, "yCoordinate", TURTLE_QUERY);
+                node.getSecondExpression().accept(this);
+                node.getFirstExpression().accept(this);
+                myCode.invokeStatic(Operations.NAME, "setTowards", "(" + TURTLE_MANAGER + "DDDD)D");
+                break;
+            case SET_POSITION:
+                myEffectFree = false;
+                myCode.loadObject(TURTLES);
+                operands(node);
+                myCode.invokeStatic(Operations.NAME, "setPosition", "(" + TURTLE_MANAGER + "DD)D");
+                break;
+            default:
+                if (BINARY_OPERATIONS.containsKey(opcode)) {
+                    operands(node);
+                    myCode.invokeStatic(Operations.NAME, BINARY_OPERATIONS.get(opcode), COMPARISON);
+                } else {
+                    myCode.pushDouble(0);
+                }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitDirect(Direct node) {
+        Opcode opcode = node.getOpcode();
+        if (opcode == Opcode.CONSTANT) {
+            myCode.pushDouble(node.getConstant());
+        } else if (opcode == Opcode.PI) {
+            myCode.pushDouble(Math.PI);
+        } else if (DIRECT_OPERATIONS.containsKey(opcode)) {
+            myEffectFree &= !DIRECT_COMMANDS.contains(opcode);
+            myCode.loadObject(TURTLES);
+            myCode.invokeStatic(Operations.NAME, DIRECT_OPERATIONS.get(opcode), TURTLE_QUERY);
+        } else {
+            myCode.pushDouble(0);
+        }
+        return null;
+    }
+
+    /**
+     * A parameter of a closed body is read from the arguments. Any other variable is interpreted, and a name without ":" calls a function without parameters, which makes the body not closed.
+     */
+    @Override
+    public Void visitVariable(Variable node) {
+        String name = node.getVariableName();
+        if (myParametersInArguments && myParameters.containsKey(name)) {
+            myArgumentsRead = true;
+            myCode.loadObject(ARGUMENTS);
+            myCode.pushInt(myParameters.get(name));
+            myCode.op(MethodCode.DALOAD, 0);
+        } else if (name.startsWith(VARIABLE_PREFIX)) {
+            interpret(node);
+        } else {
+            open(node);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroup(Group node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Void visitExpressionList(ExpressionList node) {
+        List<Expression> expressions = node.getListOfExpressions();
+        if (expressions.isEmpty()) {
+            myCode.pushDouble(0);
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                myCode.op(MethodCode.POP2, -2);
+            }
+            expressions.get(i).accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableList(VariableList node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitMakeVariable(MakeVariable node) {
+        if (node.getOpcode() != Opcode.MAKE_VARIABLE) {
+            myCode.pushDouble(0);
+            return null;
+        }
+        String name = node.getVariable().getVariableName();
+        assign(name);
+        myCode.loadObject(TURTLES);
+        node.getExpression().accept(this);
+        myCode.pushString(name);
+        myCode.invokeStatic(Operations.NAME, "makeVariable", "(" + TURTLE_MANAGER + "D" + STRING + ")D");
+        return null;
+    }
+
+    @Override
+    public Void visitCondition(Condition node) {
+        if (node.getOpcode() == Opcode.IF) {
+            MethodCode.Label otherwise = new MethodCode.Label();
+            MethodCode.Label end = new MethodCode.Label();
+            test(node.getExpression(), otherwise);
+            node.getExpressionList().accept(this);
+            myCode.jump(MethodCode.GOTO, end);
+            myCode.mark(otherwise);
+            myCode.pushDouble(0);
+            myCode.mark(end);
+        } else if (node.getOpcode() == Opcode.REPEAT) {
+            count(node.getExpression(), LOOP_COUNT, node.getExpressionList(), true);
+        } else {
+            myCode.pushDouble(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitDoTimes(DoTimes node) {
+        if (node.getOpcode() == Opcode.DO_TIMES) {
+            count(node.getLimit(), node.getVariable().getVariableName(), node.getExpressionList(), false);
+        } else {
+            myCode.pushDouble(0);
+        }
+        return null;
+    }
+
+    /**
+     * A For saves its variable before it evaluates its start. Its bound and step are evaluated in every iteration, unless the Optimizer found them invariant, in which case the bound is evaluated once before the first iteration and the step once after it.
+     */
+    @Override
+    public Void visitFor(For node) {
+        if (node.getOpcode() != Opcode.FOR) {
+            myCode.pushDouble(0);
+            return null;
+        }
+        String name = node.getVariable().getVariableName();
+        assign(name);
+        int saved = save(name, "saveDouble");
+        int ret = myCode.newLocal(2);
+        int counter = myCode.newLocal(2);
+        myCode.pushDouble(0);
+        myCode.storeDouble(ret);
+        node.getStart().accept(this);
+        myCode.storeDouble(counter);
+        MethodCode.Label test = new MethodCode.Label();
+        MethodCode.Label exit = new MethodCode.Label();
+        if (node.hasInvariantBounds()) {
+            int bound = myCode.newLocal(2);
+            int increment = myCode.newLocal(2);
+            node.getEnd().accept(this);
+            myCode.storeDouble(bound);
+            lessThan(counter, () -> myCode.loadDouble(bound), exit);
+            iteration(name, counter, node.getExpressionList(), ret);
+            node.getIncrement().accept(this);
+            myCode.storeDouble(increment);
+            advance(counter, () -> myCode.loadDouble(increment));
+            myCode.mark(test);
+            lessThan(counter, () -> myCode.loadDouble(bound), exit);
+            iteration(name, counter, node.getExpressionList(), ret);
+            advance(counter, () -> myCode.loadDouble(increment));
+        } else {
+            myCode.mark(test);
+            lessThan(counter, () -> node.getEnd().accept(this), exit);
+            iteration(name, counter, node.getExpressionList(), ret);
+            advance(counter, () -> node.getIncrement().accept(this));
+        }
+        myCode.jump(MethodCode.GOTO, test);
+        myCode.mark(exit);
+        restore(name, saved, false);
+        myCode.loadDouble(ret);
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElse node) {
+        if (node.getOpcode() != Opcode.IF_ELSE) {
+            myCode.pushDouble(0);
+            return null;
+        }
+        MethodCode.Label otherwise = new MethodCode.Label();
+        MethodCode.Label end = new MethodCode.Label();
+        test(node.getExpression(), otherwise);
+        node.getTrueList().accept(this);
+        myCode.jump(MethodCode.GOTO, end);
+        myCode.mark(otherwise);
+        node.getFalseList().accept(this);
+        myCode.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visitMakeUserInstruction(MakeUserInstruction node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitUserFunction(UserFunction node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitTell(Tell node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitTwoList(TwoList node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitQuaternary(Quaternary node) {
+        return open(node);
+    }
+
+    @Override
+    public Void visitConstantPath(ConstantPath node) {
+        return open(node);
+    }
+
+    private void operands(Binary node) {
+        node.getFirstExpression().accept(this);
+        node.getSecondExpression().accept(this);
+    }
+
+    /**
+     * And and Or only evaluate their second operand if the first does not decide the result, which is 1 or 0.
+     */
+    private void logic(Binary node, boolean and) {
+        MethodCode.Label decided = new MethodCode.Label();
+        MethodCode.Label end = new MethodCode.Label();
+        int jump = and ? MethodCode.IFEQ : MethodCode.IFNE;
+        nonZero(node.getFirstExpression());
+        myCode.jump(jump, decided);
+        nonZero(node.getSecondExpression());
+        myCode.jump(jump, decided);
+        myCode.pushDouble(and ? 1 : 0);
+        myCode.jump(MethodCode.GOTO, end);
+        myCode.mark(decided);
+        myCode.pushDouble(and ? 0 : 1);
+        myCode.mark(end);
+    }
+
+    /**
+     * This method evaluates a condition and jumps if it is zero. NaN is not zero, as when it is compared with != in the interpreter.
+     */
+    private void test(Expression condition, MethodCode.Label otherwise) {
+        nonZero(condition);
+        myCode.jump(MethodCode.IFEQ, otherwise);
+    }
+
+    /**
+     * This method evaluates an Expression and leaves an int on the stack that is zero if and only if its value is zero.
+     */
+    private void nonZero(Expression expression) {
+        expression.accept(this);
+        myCode.pushDouble(0);
+        myCode.op(MethodCode.DCMPL, -3);
+    }
+
+    /**
+     * This method compiles a Repeat or a DoTimes, which truncates its limit to an int before it saves its variable, and runs nothing if the limit is less than one.
+     *
+     * @param asInteger: Whether the saved value is put back as an int, as a Repeat does, or as a double, as a DoTimes does.
+     */
+    private void count(Expression limit, String name, ExpressionList body, boolean asInteger) {
+        assign(name);
+        int times = myCode.newLocal(1);
+        MethodCode.Label loop = new MethodCode.Label();
+        MethodCode.Label start = new MethodCode.Label();
+        MethodCode.Label end = new MethodCode.Label();
+        limit.accept(this);
+        myCode.op(MethodCode.D2I, -1);
+        myCode.storeInt(times);
+        myCode.loadInt(times);
+        myCode.jump(MethodCode.IFGT, start);
+        myCode.pushDouble(0);
+        myCode.jump(MethodCode.GOTO, end);
+        myCode.mark(start);
+        int saved = save(name, "saveInteger");
+        int ret = myCode.newLocal(2);
+        int counter = myCode.newLocal(1);
+        myCode.pushInt(1);
+        myCode.storeInt(counter);
+        myCode.mark(loop);
+        myCode.loadObject(TURTLES);
+        myCode.pushString(name);
+        myCode.loadInt(counter);
+        myCode.invokeStatic(Operations.NAME, "setInteger", "(" + TURTLE_MANAGER + STRING + "I)V");
+        body.accept(this);
+        myCode.storeDouble(ret);
+        myCode.increment(counter);
+        myCode.loadInt(counter);
+        myCode.loadInt(times);
+        myCode.jump(MethodCode.IF_ICMPLE, loop);
+        restore(name, saved, asInteger);
+        myCode.loadDouble(ret);
+        myCode.mark(end);
+    }
+
+    private void lessThan(int counter, Runnable bound, MethodCode.Label exit) {
+        myCode.loadDouble(counter);
+        bound.run();
+        myCode.op(MethodCode.DCMPG, -3);
+        myCode.jump(MethodCode.IFGE, exit);
+    }
+
+    private void iteration(String name, int counter, ExpressionList body, int ret) {
+        myCode.loadObject(TURTLES);
+        myCode.pushString(name);
+        myCode.loadDouble(counter);
+        myCode.invokeStatic(Operations.NAME, "setDouble", "(" + TURTLE_MANAGER + STRING + "D)V");
+        body.accept(this);
+        myCode.storeDouble(ret);
+    }
+
+    private void advance(int counter, Runnable increment) {
+        myCode.loadDouble(counter);
+        increment.run();
+        myCode.op(MethodCode.DADD, -2);
+        myCode.storeDouble(counter);
+    }
+
+    private int save(String name, String operation) {
+        int saved = myCode.newLocal(1);
+        myCode.loadObject(TURTLES);
+        myCode.pushString(name);
+        myCode.invokeStatic(Operations.NAME, operation, "(" + TURTLE_MANAGER + STRING + ")Ljava/lang/Object;");
+        myCode.storeObject(saved);
+        return saved;
+    }
+
+    private void restore(String name, int saved, boolean asInteger) {
+        myCode.loadObject(TURTLES);
+        myCode.pushString(name);
+        myCode.loadObject(saved);
+        myCode.pushInt(asInteger ? 1 : 0);
+        myCode.invokeStatic(Operations.NAME, "restore", "(" + TURTLE_MANAGER + STRING + "Ljava/lang/Object;Z)V");
+    }
+
+    private void assign(String name) {
+        myEffectFree = false;
+        if (myParameters.containsKey(name)) {
+            myClosed = false;
+        }
+    }
+
+    /**
+     * This method interprets a node that may run anything, so the body is neither closed nor free of effects.
+     */
+    private Void open(Expression node) {
+        myClosed = false;
+        myEffectFree = false;
+        interpret(node);
+        return null;
+    }
+
+    /**
+     * This method keeps a node in the array of the hidden class and calls its interpret method from the compiled code.
+     */
+    private void interpret(Expression node) {
+        myCode.loadObject(THIS);
+        myCode.getField(CLASS_NAME, NODES, NODES_TYPE);
+        myCode.pushInt(myNodes.size());
+        myCode.op(MethodCode.AALOAD, -1);
+        myCode.loadObject(TURTLES);
+        myCode.invokeInterface(EXPRESSION, "interpret", INTERPRET);
+        myNodes.add(node);
+    }
+}
@@ -0,0 +1,256 @@
+package engine.compiler.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class writes a JVM class file with a constant pool, fields and methods, and nothing else. The version is 49, whose methods are checked by the verifier that infers the types itself, so that no stack map frames have to be written for the jumps.
+ *
+ * @author Haotian Wang
+ */
+final class ClassFile {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+    private static final int MAX_POOL_SIZE = 0xFFFF;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD = 9;
+    private static final int METHOD = 10;
+    private static final int INTERFACE_METHOD = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final Buffer myPool = new Buffer();
+    private final Map<String, Integer> myEntries = new HashMap<>();
+    private final List<Buffer> myFields = new ArrayList<>();
+    private final List<Buffer> myMethods = new ArrayList<>();
+    private final int myThis;
+    private final int mySuper;
+    private final int[] myInterfaces;
+    private int myPoolSize = 1;
+
+    /**
+     * @param name: The internal name of the class, such as "engine/compiler/jvm/CompiledBody".
+     * @param superName: The internal name of its superclass.
+     * @param interfaces: The internal names of the interfaces it implements.
+     */
+    ClassFile(String name, String superName, String... interfaces) {
+        myThis = classRef(name);
+        mySuper = classRef(superName);
+        myInterfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            myInterfaces[i] = classRef(interfaces[i]);
+        }
+    }
+
+    int utf8(String value) {
+        Integer index = myEntries.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        myPool.u1(UTF8);
+        myPool.utf(value);
+        return add("U" + value, 1);
+    }
+
+    int classRef(String name) {
+        return reference(CLASS, "C" + name, utf8(name));
+    }
+
+    int string(String value) {
+        return reference(STRING, "S" + value, utf8(value));
+    }
+
+    int integer(int value) {
+        Integer index = myEntries.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        myPool.u1(INTEGER);
+        myPool.u4(value);
+        return add("I" + value, 1);
+    }
+
+    /**
+     * A double takes two entries of the pool, and is keyed by its bits, so that 0.0 and -0.0 are different constants.
+     */
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        Integer index = myEntries.get("D" + bits);
+        if (index != null) {
+            return index;
+        }
+        myPool.u1(DOUBLE);
+        myPool.u4((int) (bits >>> 32));
+        myPool.u4((int) bits);
+        return add("D" + bits, 2);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return member(FIELD, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return member(METHOD, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return member(INTERFACE_METHOD, owner, name, descriptor);
+    }
+
+    void field(int access, String name, String descriptor) {
+        Buffer field = new Buffer();
+        field.u2(access);
+        field.u2(utf8(name));
+        field.u2(utf8(descriptor));
+        field.u2(0);
+        myFields.add(field);
+    }
+
+    /**
+     * This method adds a method with the code written by a MethodCode, which must be complete.
+     */
+    void method(int access, String name, String descriptor, MethodCode code) {
+        byte[] instructions = code.toBytes();
+        Buffer method = new Buffer();
+        method.u2(access);
+        method.u2(utf8(name));
+        method.u2(utf8(descriptor));
+        method.u2(1);
+        method.u2(utf8("Code"));
+        method.u4(12 + instructions.length);
+        method.u2(code.maxStack());
+        method.u2(code.maxLocals());
+        method.u4(instructions.length);
+        method.write(instructions, 0, instructions.length);
+        method.u2(0);
+        method.u2(0);
+        myMethods.add(method);
+    }
+
+    byte[] toBytes() {
+        Buffer out = new Buffer();
+        out.u4(MAGIC);
+        out.u2(0);
+        out.u2(MAJOR_VERSION);
+        out.u2(myPoolSize);
+        myPool.writeTo(out);
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(myThis);
+        out.u2(mySuper);
+        out.u2(myInterfaces.length);
+        for (int index : myInterfaces) {
+            out.u2(index);
+        }
+        out.u2(myFields.size());
+        myFields.forEach(field -> field.writeTo(out));
+        out.u2(myMethods.size());
+        myMethods.forEach(method -> method.writeTo(out));
+        out.u2(0);
+        return out.toByteArray();
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = myEntries.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        myPool.u1(tag);
+        myPool.u2(ownerIndex);
+        myPool.u2(nameAndType);
+        return add(key, 1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + " " + descriptor;
+        Integer index = myEntries.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        myPool.u1(NAME_AND_TYPE);
+        myPool.u2(nameIndex);
+        myPool.u2(descriptorIndex);
+        return add(key, 1);
+    }
+
+    private int reference(int tag, String key, int utf8) {
+        Integer index = myEntries.get(key);
+        if (index != null) {
+            return index;
+        }
+        myPool.u1(tag);
+        myPool.u2(utf8);
+        return add(key, 1);
+    }
+
+    private int add(String key, int slots) {
+        int index = myPoolSize;
+        myPoolSize += slots;
+        if (myPoolSize > MAX_POOL_SIZE) {
+            throw new IllegalStateException("The constant pool of the class is full");
+        }
+        myEntries.put(key, index);
+        return index;
+    }
+
+    /**
+     * A ByteArrayOutputStream that writes the big-endian numbers and the modified UTF-8 strings of class files.
+     */
+    static class Buffer extends ByteArrayOutputStream {
+        void u1(int value) {
+            write(value);
+        }
+
+        void u2(int value) {
+            write(value >>> 8);
+            write(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void utf(String value) {
+            Buffer bytes = new Buffer();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c != 0 && c < 0x80) {
+                    bytes.u1(c);
+                } else if (c < 0x800) {
+                    bytes.u1(0xC0 | c >> 6);
+                    bytes.u1(0x80 | c & 0x3F);
+                } else {
+                    bytes.u1(0xE0 | c >> 12);
+                    bytes.u1(0x80 | c >> 6 & 0x3F);
+                    bytes.u1(0x80 | c & 0x3F);
+                }
+            }
+            if (bytes.size() > 0xFFFF) {
+                throw new IllegalStateException("A string of the class is too long");
+            }
+            u2(bytes.size());
+            bytes.writeTo(this);
+        }
+
+        void writeTo(Buffer out) {
+            out.write(buf, 0, count);
+        }
+    }
+}
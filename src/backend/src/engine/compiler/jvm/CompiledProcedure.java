@@ -0,0 +1,21 @@
+package engine.compiler.jvm;
+
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+
+/**
+ * This interface is implemented by the hidden classes that BodyCompiler defines for the bodies of user-defined functions.
+ *
+ * @author Haotian Wang
+ */
+interface CompiledProcedure {
+    /**
+     * This method runs the body of the function, with its parameters already bound in the StateMachine.
+     *
+     * @param turtleManager: The TurtleManager that is affected by the body.
+     * @param arguments: The values bound to the parameters, in order.
+     * @return What interpreting the body would return.
+     */
+    double run(TurtleManager turtleManager, double[] arguments) throws InterpretationException, UndefinedKeywordException;
+}
@@ -0,0 +1,306 @@
+package engine.compiler.jvm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes the instructions of one method of a ClassFile. It keeps track of the height of the operand stack and of the locals used, in slots, so that the maximums of the Code attribute are known, and patches the offsets of the jumps once their Labels are placed.
+ *
+ * @author Haotian Wang
+ */
+final class MethodCode {
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int AALOAD = 0x32;
+    static final int DALOAD = 0x31;
+    static final int POP2 = 0x58;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int D2I = 0x8e;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int DRETURN = 0xaf;
+    static final int RETURN = 0xb1;
+
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ISTORE = 0x36;
+    private static final int DSTORE = 0x39;
+    private static final int ASTORE = 0x3a;
+    private static final int IINC = 0x84;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int WIDE = 0xc4;
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private final ClassFile myClass;
+    private final ClassFile.Buffer myCode = new ClassFile.Buffer();
+    private final List<Label> myLabels = new ArrayList<>();
+    private int myStack;
+    private int myMaxStack;
+    private int myLocals;
+    private boolean myReachable = true;
+
+    /**
+     * @param owner: The ClassFile whose constant pool the instructions refer to.
+     * @param arguments: The number of slots taken by this and the parameters of the method.
+     */
+    MethodCode(ClassFile owner, int arguments) {
+        myClass = owner;
+        myLocals = arguments;
+    }
+
+    /**
+     * @param slots: 1 for an int or a reference, 2 for a double.
+     * @return The first slot of a new local.
+     */
+    int newLocal(int slots) {
+        int local = myLocals;
+        myLocals += slots;
+        return local;
+    }
+
+    /**
+     * This method writes an instruction without operands.
+     *
+     * @param opcode: The instruction.
+     * @param effect: The change in the height of the stack, in slots.
+     */
+    void op(int opcode, int effect) {
+        myCode.u1(opcode);
+        grow(effect);
+        if (opcode == DRETURN || opcode == RETURN) {
+            myReachable = false;
+        }
+    }
+
+    void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0) {
+            op(DCONST_0, 2);
+        } else if (value == 1) {
+            op(DCONST_1, 2);
+        } else {
+            myCode.u1(LDC2_W);
+            myCode.u2(myClass.doubleConstant(value));
+            grow(2);
+        }
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            myCode.u1(BIPUSH);
+            myCode.u1(value);
+            grow(1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            myCode.u1(SIPUSH);
+            myCode.u2(value);
+            grow(1);
+        } else {
+            myCode.u1(LDC_W);
+            myCode.u2(myClass.integer(value));
+            grow(1);
+        }
+    }
+
+    void pushString(String value) {
+        myCode.u1(LDC_W);
+        myCode.u2(myClass.string(value));
+        grow(1);
+    }
+
+    void loadInt(int local) {
+        local(ILOAD, local, 1);
+    }
+
+    void storeInt(int local) {
+        local(ISTORE, local, -1);
+    }
+
+    void loadDouble(int local) {
+        local(DLOAD, local, 2);
+    }
+
+    void storeDouble(int local) {
+        local(DSTORE, local, -2);
+    }
+
+    void loadObject(int local) {
+        local(ALOAD, local, 1);
+    }
+
+    void storeObject(int local) {
+        local(ASTORE, local, -1);
+    }
+
+    void increment(int local) {
+        if (local > 0xFF) {
+            myCode.u1(WIDE);
+            myCode.u1(IINC);
+            myCode.u2(local);
+            myCode.u2(1);
+        } else {
+            myCode.u1(IINC);
+            myCode.u1(local);
+            myCode.u1(1);
+        }
+    }
+
+    void getField(String owner, String name, String descriptor) {
+        myCode.u1(GETFIELD);
+        myCode.u2(myClass.fieldRef(owner, name, descriptor));
+        grow(slots(descriptor) - 1);
+    }
+
+    void putField(String owner, String name, String descriptor) {
+        myCode.u1(PUTFIELD);
+        myCode.u2(myClass.fieldRef(owner, name, descriptor));
+        grow(-slots(descriptor) - 1);
+    }
+
+    void invokeStatic(String owner, String name, String descriptor) {
+        myCode.u1(INVOKESTATIC);
+        myCode.u2(myClass.methodRef(owner, name, descriptor));
+        grow(returnSlots(descriptor) - argumentSlots(descriptor));
+    }
+
+    void invokeSpecial(String owner, String name, String descriptor) {
+        myCode.u1(INVOKESPECIAL);
+        myCode.u2(myClass.methodRef(owner, name, descriptor));
+        grow(returnSlots(descriptor) - argumentSlots(descriptor) - 1);
+    }
+
+    void invokeInterface(String owner, String name, String descriptor) {
+        int arguments = argumentSlots(descriptor);
+        myCode.u1(INVOKEINTERFACE);
+        myCode.u2(myClass.interfaceMethodRef(owner, name, descriptor));
+        myCode.u1(arguments + 1);
+        myCode.u1(0);
+        grow(returnSlots(descriptor) - arguments - 1);
+    }
+
+    /**
+     * This method writes a jump to a Label, placed or not.
+     *
+     * @param opcode: GOTO, or a conditional jump that pops what it compares.
+     */
+    void jump(int opcode, Label target) {
+        int start = myCode.size();
+        myCode.u1(opcode);
+        myCode.u2(0);
+        grow(opcode == GOTO ? 0 : opcode == IF_ICMPLE ? -2 : -1);
+        target.myJumps.add(start);
+        target.myStack = myStack;
+        if (opcode == GOTO) {
+            myReachable = false;
+        }
+    }
+
+    /**
+     * This method places a Label at the next instruction. After a GOTO, the height of the stack is the one of the jumps to the Label.
+     */
+    void mark(Label label) {
+        label.myPosition = myCode.size();
+        if (!myReachable) {
+            myStack = label.myStack;
+            myReachable = true;
+        }
+        myLabels.add(label);
+    }
+
+    int maxStack() {
+        return myMaxStack;
+    }
+
+    int maxLocals() {
+        return myLocals;
+    }
+
+    /**
+     * @return The instructions, with the offsets of the jumps patched.
+     * @throws IllegalStateException if the method is too long for the class file, or for the offsets of its jumps.
+     */
+    byte[] toBytes() {
+        byte[] code = myCode.toByteArray();
+        if (code.length > MAX_CODE_LENGTH) {
+            throw new IllegalStateException("The compiled method is too long");
+        }
+        for (Label label : myLabels) {
+            for (int jump : label.myJumps) {
+                int offset = label.myPosition - jump;
+                if (offset != (short) offset) {
+                    throw new IllegalStateException("A jump of the compiled method is too long");
+                }
+                code[jump + 1] = (byte) (offset >> 8);
+                code[jump + 2] = (byte) offset;
+            }
+        }
+        return code;
+    }
+
+    private void local(int opcode, int local, int effect) {
+        if (local > 0xFF) {
+            myCode.u1(WIDE);
+            myCode.u1(opcode);
+            myCode.u2(local);
+        } else {
+            myCode.u1(opcode);
+            myCode.u1(local);
+        }
+        grow(effect);
+    }
+
+    private void grow(int effect) {
+        myStack += effect;
+        myMaxStack = Math.max(myMaxStack, myStack);
+    }
+
+    private static int slots(String descriptor) {
+        char type = descriptor.charAt(0);
+        return type == 'V' ? 0 : type == 'D' || type == 'J' ? 2 : 1;
+    }
+
+    private static int returnSlots(String descriptor) {
+        return slots(descriptor.substring(descriptor.indexOf(')') + 1));
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char type = descriptor.charAt(i);
+            slots += type == 'D' || type == 'J' ? 2 : 1;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+        }
+        return slots;
+    }
+
+    /**
+     * A position in the instructions that jumps go to. It remembers the jumps to patch and the height of the stack they leave.
+     */
+    static final class Label {
+        private final List<Integer> myJumps = new ArrayList<>();
+        private int myPosition = -1;
+        private int myStack;
+    }
+}
@@ -0,0 +1,218 @@
+package engine.compiler.jvm;
+
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.storage.VariableType;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+
+/**
+ * This class holds the operations that the compiled bodies of user-defined functions call for what is more than one JVM instruction. Each of them does what its Opcode does when the AST node is interpreted, on the values of the operands already evaluated, so that the compiled code calls back into the TurtleManager and the StateMachine the same way. The operations of the Unary, Binary and Direct nodes are left to the Opcode itself, so there is one definition of each.
+ *
+ * @author Haotian Wang
+ */
+final class Operations {
+    static final String NAME = "engine/compiler/jvm/Operations";
+
+    private Operations() {
+    }
+
+    static double forward(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.FORWARD.unary(turtleManager, value);
+    }
+
+    static double backward(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.BACKWARD.unary(turtleManager, value);
+    }
+
+    static double right(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.RIGHT.unary(turtleManager, value);
+    }
+
+    static double left(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.LEFT.unary(turtleManager, value);
+    }
+
+    static double setHeading(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SET_HEADING.unary(turtleManager, value);
+    }
+
+    static double setBackground(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SET_BACKGROUND.unary(turtleManager, value);
+    }
+
+    static double setPenColor(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SET_PEN_COLOR.unary(turtleManager, value);
+    }
+
+    static double setPenSize(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SET_PEN_SIZE.unary(turtleManager, value);
+    }
+
+    static double setShape(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SET_SHAPE.unary(turtleManager, value);
+    }
+
+    static double sine(double value) {
+        return Opcode.sine(value);
+    }
+
+    static double cosine(double value) {
+        return Opcode.cosine(value);
+    }
+
+    static double tangent(double value) {
+        return Opcode.tangent(value);
+    }
+
+    static double arcTangent(double value) {
+        return Opcode.arcTangent(value);
+    }
+
+    static double naturalLog(double value) {
+        return Opcode.NATURAL_LOG.unary(value);
+    }
+
+    static double not(double value) {
+        return Opcode.NOT.unary(value);
+    }
+
+    static double penUp(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.PEN_UP.direct(turtleManager);
+    }
+
+    static double penDown(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.PEN_DOWN.direct(turtleManager);
+    }
+
+    static double showTurtle(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.SHOW_TURTLE.direct(turtleManager);
+    }
+
+    static double hideTurtle(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.HIDE_TURTLE.direct(turtleManager);
+    }
+
+    static double home(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.HOME.direct(turtleManager);
+    }
+
+    static double clearScreen(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.CLEAR_SCREEN.direct(turtleManager);
+    }
+
+    static double xCoordinate(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.X_COORDINATE.direct(turtleManager);
+    }
+
+    static double yCoordinate(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.Y_COORDINATE.direct(turtleManager);
+    }
+
+    static double heading(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.HEADING.direct(turtleManager);
+    }
+
+    static double isPenDown(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.IS_PEN_DOWN.direct(turtleManager);
+    }
+
+    static double isShowing(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.IS_SHOWING.direct(turtleManager);
+    }
+
+    static double id(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.ID.direct(turtleManager);
+    }
+
+    static double turtles(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.TURTLES.direct(turtleManager);
+    }
+
+    static double stamp(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.STAMP.direct(turtleManager);
+    }
+
+    static double clearStamps(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.CLEAR_STAMPS.direct(turtleManager);
+    }
+
+    static double quotient(double first, double second) throws InterpretationException {
+        return Opcode.quotient(first, second);
+    }
+
+    static double remainder(double first, double second) throws InterpretationException {
+        return Opcode.remainder(first, second);
+    }
+
+    static double lessThan(double first, double second) throws InterpretationException {
+        return Opcode.LESS_THAN.binary(first, second);
+    }
+
+    static double greaterThan(double first, double second) throws InterpretationException {
+        return Opcode.GREATER_THAN.binary(first, second);
+    }
+
+    static double equal(double first, double second) throws InterpretationException {
+        return Opcode.EQUAL.binary(first, second);
+    }
+
+    static double notEqual(double first, double second) throws InterpretationException {
+        return Opcode.NOT_EQUAL.binary(first, second);
+    }
+
+    /**
+     * The coordinates of the turtle are read before the target is evaluated, and the y coordinate of the target is evaluated before the x coordinate.
+     */
+    static double setTowards(TurtleManager turtleManager, double currentX, double currentY, double y, double x) throws InterpretationException, UndefinedKeywordException {
+        return Opcode.towards(turtleManager, currentX, currentY, x, y);
+    }
+
+    static double setPosition(TurtleManager turtleManager, double x, double y) throws InterpretationException, UndefinedKeywordException {
+        return turtleManager.moveTo(x, y, false);
+    }
+
+    static double makeVariable(TurtleManager turtleManager, double value, String name) {
+        turtleManager.memory().setDouble(name, value);
+        return value;
+    }
+
+    static void setInteger(TurtleManager turtleManager, String name, int value) {
+        turtleManager.memory().setInteger(name, value);
+    }
+
+    static void setDouble(TurtleManager turtleManager, String name, double value) {
+        turtleManager.memory().setDouble(name, value);
+    }
+
+    /**
+     * @return The int value of the variable that a Repeat or a DoTimes saves before its loop, or null if it is not defined.
+     */
+    static Object saveInteger(TurtleManager turtleManager, String name) throws UndefinedKeywordException {
+        if (!turtleManager.memory().containsVariable(name)) {
+            return null;
+        }
+        return (Integer) turtleManager.memory().getValueInGeneralForm(name);
+    }
+
+    /**
+     * @return The double value of the variable that a For saves before its loop, or null if it is not defined.
+     */
+    static Object saveDouble(TurtleManager turtleManager, String name) throws UndefinedKeywordException {
+        if (!turtleManager.memory().containsVariable(name)) {
+            return null;
+        }
+        return (Double) turtleManager.memory().getValueInGeneralForm(name);
+    }
+
+    /**
+     * This method puts back the value saved before a loop with the type that the loop puts it back with, or removes the variable if none was saved.
+     */
+    static void restore(TurtleManager turtleManager, String name, Object saved, boolean asInteger) throws UndefinedKeywordException {
+        if (saved != null) {
+            turtleManager.memory().setVariable(name, saved, asInteger ? VariableType.INTEGER : VariableType.DOUBLE);
+        } else {
+            turtleManager.memory().removeVariable(name);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package engine.compiler.jvm;
+
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableType;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class runs the bodies of the user-defined functions called in one StateMachine. A body is interpreted until its definition has been called THRESHOLD times, and is then compiled by a BodyCompiler to a hidden class, which later calls run instead. A body that cannot be compiled is interpreted from then on.
+ * <p>
+ * In the differential mode, a compiled body is run both compiled and interpreted, and an IllegalStateException is thrown if the two do not return the same value or throw the same exception. A body that has no effect but its result is simply run twice. A body with effects is interpreted first, on a TurtleManager that records its calls in a TurtleCallLog. The variables are then put back as they were, and the compiled body runs on a TurtleManager that replays the log, so the turtles only move once. The compiled body must make the same calls to the turtles in the same order and leave the same variables. The calls made while a body is checked are not checked themselves, so that checking a recursive function does not take exponentially longer.
+ *
+ * @author Haotian Wang
+ */
+public class ProcedureCompiler {
+    public static final int DEFAULT_THRESHOLD = 200;
+    private static final double[] NO_ARGUMENTS = new double[0];
+
+    private int myThreshold;
+    private boolean myEnabled;
+    private boolean myDifferential;
+    private long myCompiled;
+    private long myFailures;
+    private long myChecks;
+    private boolean myChecking;
+
+    public ProcedureCompiler() {
+        myThreshold = DEFAULT_THRESHOLD;
+        myEnabled = true;
+    }
+
+    /**
+     * This method runs the body of a function whose parameters are bound in the StateMachine.
+     *
+     * @param function: The definition of the function.
+     * @param turtleManager: The TurtleManager that is affected by the body.
+     * @param arguments: The values bound to the parameters, in order.
+     * @return The return value of the body.
+     */
+    public double call(MakeUserInstruction function, TurtleManager turtleManager, double[] arguments) throws InterpretationException, UndefinedKeywordException {
+        if (!myEnabled) {
+            return function.getExpressionList().interpret(turtleManager);
+        }
+        ProcedureProfile profile = function.getProfile();
+        CompiledProcedure code = profile.myCode;
+        if (code == null) {
+            if (profile.myFailed || ++profile.myCalls < myThreshold || !compile(function, profile)) {
+                return function.getExpressionList().interpret(turtleManager);
+            }
+            code = profile.myCode;
+        }
+        if (myDifferential && !myChecking) {
+            myChecking = true;
+            try {
+                return profile.myEffectFree ? check(function, code, turtleManager, arguments) : checkEffects(function, code, turtleManager, arguments);
+            } finally {
+                myChecking = false;
+            }
+        }
+        return code.run(turtleManager, arguments);
+    }
+
+    /**
+     * This method runs the body of a function without parameters.
+     */
+    public double call(MakeUserInstruction function, TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return call(function, turtleManager, NO_ARGUMENTS);
+    }
+
+    /**
+     * This method turns the compilation of hot functions on or off. The bodies already compiled are kept for when it is turned on again.
+     *
+     * @param enabled: Whether compiled bodies are run.
+     */
+    public void setEnabled(boolean enabled) {
+        myEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return myEnabled;
+    }
+
+    /**
+     * @param threshold: The number of calls of a definition after which its body is compiled. 1 compiles it at its first call.
+     */
+    public void setThreshold(int threshold) {
+        myThreshold = threshold;
+    }
+
+    /**
+     * @param differential: Whether the compiled bodies are checked against the interpreter at every call that is not made while another is checked.
+     */
+    public void setDifferential(boolean differential) {
+        myDifferential = differential;
+    }
+
+    /**
+     * @return The number of bodies this compiler has compiled.
+     */
+    public long compiled() {
+        return myCompiled;
+    }
+
+    /**
+     * @return The number of bodies that could not be compiled and are interpreted.
+     */
+    public long failures() {
+        return myFailures;
+    }
+
+    /**
+     * @return The number of calls that the differential mode has checked.
+     */
+    public long checks() {
+        return myChecks;
+    }
+
+    private boolean compile(MakeUserInstruction function, ProcedureProfile profile) {
+        BodyCompiler compiler = new BodyCompiler(function);
+        try {
+            CompiledProcedure code = compiler.compile();
+            profile.myEffectFree = compiler.isEffectFree();
+            profile.myCode = code;
+            myCompiled++;
+            return true;
+        } catch (ReflectiveOperationException | LinkageError | IllegalStateException e) {
+            profile.myFailed = true;
+            myFailures++;
+            return false;
+        }
+    }
+
+    private double check(MakeUserInstruction function, CompiledProcedure code, TurtleManager turtleManager, double[] arguments) throws InterpretationException, UndefinedKeywordException {
+        double compiled = 0;
+        double interpreted = 0;
+        Exception compiledError = null;
+        Exception interpretedError = null;
+        try {
+            compiled = code.run(turtleManager, arguments);
+        } catch (InterpretationException | UndefinedKeywordException | RuntimeException e) {
+            compiledError = e;
+        }
+        try {
+            interpreted = function.getExpressionList().interpret(turtleManager);
+        } catch (InterpretationException | UndefinedKeywordException | RuntimeException e) {
+            interpretedError = e;
+        }
+        return report(function, compiled, compiledError, interpreted, interpretedError);
+    }
+
+    private double checkEffects(MakeUserInstruction function, CompiledProcedure code, TurtleManager turtleManager, double[] arguments) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = turtleManager.memory();
+        Map<String, Object> before = new HashMap<>(memory.listOfVariables());
+        Map<String, VariableType> beforeTypes = types(memory);
+        TurtleCallLog log = new TurtleCallLog(turtleManager);
+        double interpreted = 0;
+        double compiled = 0;
+        Exception interpretedError = null;
+        Exception compiledError = null;
+        try {
+            interpreted = function.getExpressionList().interpret(log.recorder());
+        } catch (InterpretationException | UndefinedKeywordException | RuntimeException e) {
+            interpretedError = e;
+        }
+        Map<String, Object> after = new HashMap<>(memory.listOfVariables());
+        Map<String, VariableType> afterTypes = types(memory);
+        restore(memory, before, beforeTypes);
+        try {
+            compiled = code.run(log.replayer(), arguments);
+            if (!log.isReplayed()) {
+                compiledError = new IllegalStateException("The compiled body made fewer calls to the turtles than the interpreter");
+            }
+        } catch (InterpretationException | UndefinedKeywordException | RuntimeException e) {
+            compiledError = e;
+        }
+        if (compiledError == null && (!after.equals(memory.listOfVariables()) || !afterTypes.equals(types(memory)))) {
+            compiledError = new IllegalStateException(String.format("The compiled body left the variables %s where the interpreter left %s", memory.listOfVariables(), after));
+        }
+        return report(function, compiled, compiledError, interpreted, interpretedError);
+    }
+
+    /**
+     * This method counts a check, throws an IllegalStateException if the two runs differ, and otherwise ends the call as the interpreter did.
+     */
+    private double report(MakeUserInstruction function, double compiled, Exception compiledError, double interpreted, Exception interpretedError) throws InterpretationException, UndefinedKeywordException {
+        myChecks++;
+        if (!sameOutcome(compiled, compiledError, interpreted, interpretedError)) {
+            throw new IllegalStateException(String.format("The compiled body of %s %s where the interpreter %s", function.getVariable().getVariableName(), outcome(compiled, compiledError), outcome(interpreted, interpretedError)));
+        }
+        if (interpretedError instanceof InterpretationException) {
+            throw (InterpretationException) interpretedError;
+        }
+        if (interpretedError instanceof UndefinedKeywordException) {
+            throw (UndefinedKeywordException) interpretedError;
+        }
+        if (interpretedError != null) {
+            throw (RuntimeException) interpretedError;
+        }
+        return interpreted;
+    }
+
+    private Map<String, VariableType> types(StateMachine memory) {
+        Map<String, VariableType> types = new HashMap<>();
+        for (String name : memory.listOfVariables().keySet()) {
+            types.put(name, memory.typeOf(name));
+        }
+        return types;
+    }
+
+    /**
+     * This method puts back the variables that the interpreted run changed, leaving the others alone so that the functions are not redefined.
+     */
+    private void restore(StateMachine memory, Map<String, Object> values, Map<String, VariableType> types) throws UndefinedKeywordException {
+        for (String name : new HashMap<>(memory.listOfVariables()).keySet()) {
+            if (!values.containsKey(name)) {
+                memory.removeVariable(name);
+            }
+        }
+        for (Map.Entry<String, Object> variable : values.entrySet()) {
+            String name = variable.getKey();
+            if (!memory.containsVariable(name) || !Objects.equals(memory.listOfVariables().get(name), variable.getValue()) || memory.typeOf(name) != types.get(name)) {
+                memory.setVariable(name, variable.getValue(), types.get(name));
+            }
+        }
+    }
+
+    private boolean sameOutcome(double first, Exception firstError, double second, Exception secondError) {
+        if (firstError == null || secondError == null) {
+            return firstError == secondError && Double.doubleToLongBits(first) == Double.doubleToLongBits(second);
+        }
+        return firstError.getClass() == secondError.getClass() && Objects.equals(firstError.getMessage(), secondError.getMessage());
+    }
+
+    private String outcome(double value, Exception error) {
+        return error == null ? "returned " + value : "threw " + error;
+    }
+}
@@ -0,0 +1,22 @@
+package engine.compiler.jvm;
+
+/**
+ * This class is what a ProcedureCompiler knows about one definition of a user-defined function: how many times it was called before it was compiled, and its compiled body. It is kept in the MakeUserInstruction node, so that a call finds it without a lookup, and a redefinition, which is a new node, starts over.
+ * <p>
+ * The definitions of a ProcedureLibrary are called by several sessions, possibly on different threads. The compiled body is published through a volatile field, after what is known about it, so that a session running it sees it whole. The count of calls is not exact then, which only moves the compilation a little.
+ *
+ * @author Haotian Wang
+ */
+public final class ProcedureProfile {
+    int myCalls;
+    volatile CompiledProcedure myCode;
+    boolean myEffectFree;
+    boolean myFailed;
+
+    /**
+     * @return Whether the body has been compiled to a hidden class.
+     */
+    public boolean isCompiled() {
+        return myCode != null;
+    }
+}
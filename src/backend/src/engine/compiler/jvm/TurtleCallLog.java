@@ -0,0 +1,144 @@
+package engine.compiler.jvm;
+
+import model.TurtleManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class records the calls that one run of a body makes to the TurtleManager, and replays them to a second run of the same body, so that the ProcedureCompiler can check a compiled body with effects against the interpreter without moving the turtles twice.
+ * <p>
+ * The recording TurtleManager passes every call on to the real one and remembers its arguments and its result or exception. The replaying TurtleManager passes no call on. It checks that each call is the next one recorded and answers it with what the real TurtleManager answered, and fails as soon as a call differs. Both hand out the real StateMachine, whose changes the ProcedureCompiler checks on its own.
+ *
+ * @author Haotian Wang
+ */
+final class TurtleCallLog {
+    private static final String MEMORY = "memory";
+
+    private final TurtleManager myTarget;
+    private final List<Call> myCalls;
+    private int myReplayed;
+
+    /**
+     * @param target: The real TurtleManager.
+     */
+    TurtleCallLog(TurtleManager target) {
+        myTarget = target;
+        myCalls = new ArrayList<>();
+    }
+
+    /**
+     * @return A TurtleManager that acts on the real one and records the calls.
+     */
+    TurtleManager recorder() {
+        return proxy(this::record);
+    }
+
+    /**
+     * @return A TurtleManager that answers the recorded calls in order, without acting on the real one.
+     */
+    TurtleManager replayer() {
+        return proxy(this::replay);
+    }
+
+    /**
+     * @return Whether every recorded call has been replayed.
+     */
+    boolean isReplayed() {
+        return myReplayed == myCalls.size();
+    }
+
+    private TurtleManager proxy(InvocationHandler calls) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, method, args);
+            }
+            if (method.getName().equals(MEMORY) && method.getParameterCount() == 0) {
+                return myTarget.memory();
+            }
+            return calls.invoke(proxy, method, args);
+        };
+        return (TurtleManager) Proxy.newProxyInstance(TurtleManager.class.getClassLoader(), new Class<?>[]{TurtleManager.class}, handler);
+    }
+
+    private Object record(Object proxy, Method method, Object[] args) throws Throwable {
+        Object[] arguments = copy(args);
+        try {
+            Object result = method.invoke(myTarget, args);
+            myCalls.add(new Call(method, arguments, result, null));
+            return result;
+        } catch (InvocationTargetException e) {
+            myCalls.add(new Call(method, arguments, null, e.getCause()));
+            throw e.getCause();
+        }
+    }
+
+    private Object replay(Object proxy, Method method, Object[] args) throws Throwable {
+        if (myReplayed == myCalls.size()) {
+            throw new IllegalStateException(String.format("The compiled body called %s after the interpreter had made all its %d calls to the turtles", describe(method, args), myCalls.size()));
+        }
+        Call call = myCalls.get(myReplayed);
+        if (!call.myMethod.equals(method) || !Arrays.deepEquals(call.myArguments, copy(args))) {
+            throw new IllegalStateException(String.format("The compiled body called %s where the interpreter called %s", describe(method, args), describe(call.myMethod, call.myArguments)));
+        }
+        myReplayed++;
+        if (call.myError != null) {
+            throw call.myError;
+        }
+        return call.myResult;
+    }
+
+    /**
+     * Lists, such as the IDs given to tell, are copied, since the caller may change them after the call.
+     */
+    private static Object[] copy(Object[] args) {
+        if (args == null) {
+            return new Object[0];
+        }
+        Object[] arguments = args.clone();
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof Collection) {
+                arguments[i] = new ArrayList<>((Collection<?>) arguments[i]);
+            }
+        }
+        return arguments;
+    }
+
+    private static String describe(Method method, Object[] args) {
+        return method.getName() + Arrays.deepToString(args == null ? new Object[0] : args);
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return TurtleCallLog.class.getSimpleName();
+        }
+    }
+
+    /**
+     * A call to the TurtleManager, with what it returned or threw.
+     */
+    private static final class Call {
+        private final Method myMethod;
+        private final Object[] myArguments;
+        private final Object myResult;
+        private final Throwable myError;
+
+        private Call(Method method, Object[] arguments, Object result, Throwable error) {
+            myMethod = method;
+            myArguments = arguments;
+            myResult = result;
+            myError = error;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package engine.compiler.lexer;
 
 import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
 import engine.compiler.translator.LanguageTranslator;
 import engine.compiler.translator.TypeTranslator;
 import engine.errors.UndefinedKeywordException;
@@ -17,15 +18,26 @@ public class CrudeLexer implements Lexer {
     private static final String DEFAULT_LANGUAGE = "English";
     private static final String SYNTAX = "Syntax";
     private static final String SYNTACTICAL_CATEGORIES = "SyntacticCategories";
-    private static final Map<String, String> myGrammerMap;
+    private static final char COMMENT_START = '#';
+    private static final char VARIABLE_START = ':';
+    private static final char NEGATIVE_SIGN = '-';
+    private static final char DECIMAL_POINT = '.';
+    private static final char UNDERSCORE = '_';
+    private static final char QUESTION_MARK = '?';
+    private static final String SINGLE_CHARACTER_TOKENS = "()[]*+,-./%~";
+    private static final Map<String, TokenType> myGrammerMap;
+    private static final Map<String, String> mySymbols;
     static {
-        Map<String, String> grammarMap = new HashMap<>();
+        Map<String, TokenType> grammarMap = new HashMap<>();
+        Map<String, String> symbols = new HashMap<>();
         ResourceBundle categories = ResourceBundle.getBundle(PREFIX + SYNTACTICAL_CATEGORIES);
         for (Enumeration<String> e = categories.getKeys(); e.hasMoreElements(); ) {
             String action = e.nextElement();
-            grammarMap.put(action, categories.getString(action));
+            grammarMap.put(action, TokenType.fromCategory(categories.getString(action).trim()));
+            symbols.put(action, action);
         }
         myGrammerMap = Collections.unmodifiableMap(grammarMap);
+        mySymbols = Collections.unmodifiableMap(symbols);
     }
 
     private TypeTranslator myType;
@@ -90,61 +102,155 @@ public class CrudeLexer implements Lexer {
     }
 
     /**
-     * This processes the user input raw String and tokenizes the input String.
+     * This processes the user input raw String and tokenizes the input String. The input is scanned once from left to right, each Token being the longest run of characters that the Syntax properties file accepts at that position, so the time spent is linear in the length of the input. Keywords share one String instance per command, and every Token remembers its offsets in the input.
      *
      * @param input : A user input raw String.
      */
     @Override
     public void readString(String input) throws UndefinedKeywordException {
+        readString(input, 0);
+    }
+
+    /**
+     * This processes a piece of a longer user input. Since no Token spans a newline, a script read one line at a time gives the same Tokens as the whole script read at once.
+     *
+     * @param input: A piece of the user input raw String.
+     * @param offset: The index in the whole input of the first character of this piece.
+     */
+    @Override
+    public void readString(String input, int offset) throws UndefinedKeywordException {
         myTokens.clear();
         if (input == null || input.isEmpty()) {
             return;
         }
         int start = 0;
-        int end = 0;
-        while (start < input.length() && end < input.length()) {
-            try {
-                myType.getSymbol(input.substring(start, end + 1));
-                while (end < input.length() && myType.containsString(input.substring(start, end + 1))) {
-                    end++;
-                }
-                end--;
-                String chunk = input.substring(start, end + 1);
-                String type = myType.getSymbol(chunk);
-                if (type.equals("Comment") || type.equals("Whitespace") || type.equals("Newline")) {
-                    start = end + 1;
-                    end++;
+        while (start < input.length()) {
+            int end = scanToken(input, start);
+            if (end == start) {
+                throw undefinedChunk(input, start);
+            }
+            char first = input.charAt(start);
+            if (isWhitespace(first) || first == COMMENT_START) {
+                start = end;
+                continue;
+            }
+            String chunk = input.substring(start, end);
+            TokenType type = TokenType.fromCategory(myType.getSymbol(chunk));
+            if (type == TokenType.COMMAND) {
+                String symbol;
+                try {
+                    symbol = myLanguage.getSymbol(chunk);
+                } catch (UndefinedKeywordException e) {
+                    myTokens.add(new Token(chunk, TokenType.VARIABLE, offset + start, offset + end));
+                    start = end;
                     continue;
-                } else if (type.equals("Command")) {
-                    try {
-                        chunk = myLanguage.getSymbol(chunk);
-                    } catch (UndefinedKeywordException e) {
-                        /*if (myTokens.isEmpty() || !myTokens.get(myTokens.size() - 1).getString().equals("MakeUserInstruction")) {
-                            throw e;
-                        }*/
-                        myTokens.add(new Token(chunk, "Variable"));
-                        start = end + 1;
-                        end++;
-                        continue;
-                    }
-                    type = myGrammerMap.get(chunk);
-                    start = end + 1;
-                    end++;
-                } else {
-                    start = end + 1;
-                    end++;
-                }
-                myTokens.add(new Token(chunk, type));
-            } catch (UndefinedKeywordException e) {
-                if (input.charAt(end) == ' ' || input.charAt(end) == '\n') {
-                    throw new UndefinedKeywordException(String.format("The input String \"%s\" is not defined in the properties files", input.substring(start, end)));
                 }
+                chunk = mySymbols.getOrDefault(symbol, symbol);
+                type = myGrammerMap.get(symbol);
+            }
+            myTokens.add(new Token(chunk, type, offset + start, offset + end));
+            start = end;
+        }
+    }
+
+    /**
+     * This method finds where the Token starting at the given index ends. It follows the patterns in Syntax.properties: a run of whitespace, a comment up to the end of the line, a number, a :variable, a word optionally ending with "?", or a single bracket or operator symbol.
+     *
+     * @param input: The user input raw String.
+     * @param start: The index where the Token starts.
+     * @return The index right after the last character of the Token, or start if no pattern accepts the character at start.
+     */
+    private int scanToken(String input, int start) {
+        char first = input.charAt(start);
+        int end = start + 1;
+        if (isWhitespace(first)) {
+            while (end < input.length() && isWhitespace(input.charAt(end))) {
                 end++;
             }
+            return end;
         }
-        if (start != input.length() || end != input.length()) {
-            throw new UndefinedKeywordException("The input String contains tokens that are not properly defined in the properties files.");
+        if (first == COMMENT_START) {
+            while (end < input.length() && !isLineTerminator(input.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+        if (isDigit(first) || (first == NEGATIVE_SIGN && end < input.length() && isDigit(input.charAt(end)))) {
+            end = skipDigits(input, end);
+            if (end < input.length() && input.charAt(end) == DECIMAL_POINT) {
+                end = skipDigits(input, end + 1);
+            }
+            return end;
+        }
+        if (first == VARIABLE_START) {
+            int letters = skipLetters(input, end);
+            return letters == end ? start : letters;
+        }
+        if (isLetter(first) || first == UNDERSCORE) {
+            while (end < input.length() && (isLetter(input.charAt(end)) || input.charAt(end) == UNDERSCORE)) {
+                end++;
+            }
+            if (end < input.length() && input.charAt(end) == QUESTION_MARK) {
+                end++;
+            }
+            return end;
         }
+        if (SINGLE_CHARACTER_TOKENS.indexOf(first) >= 0) {
+            return end;
+        }
+        return start;
+    }
+
+    /**
+     * This method builds the exception thrown when no pattern accepts the input at the given index. The offending chunk runs up to the next space or newline, or the whole remainder of the input when there is none.
+     *
+     * @param input: The user input raw String.
+     * @param start: The index where no Token could be started.
+     * @return An UndefinedKeywordException describing the undefined chunk.
+     */
+    private UndefinedKeywordException undefinedChunk(String input, int start) {
+        for (int end = start; end < input.length(); end++) {
+            if (input.charAt(end) == ' ' || input.charAt(end) == '\n') {
+                return new UndefinedKeywordException(String.format("The input String \"%s\" is not defined in the properties files", input.substring(start, end)));
+            }
+        }
+        return new UndefinedKeywordException("The input String contains tokens that are not properly defined in the properties files.");
+    }
+
+    private int skipDigits(String input, int index) {
+        while (index < input.length() && isDigit(input.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private int skipLetters(String input, int index) {
+        while (index < input.length() && isLetter(input.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * @return Whether the character is matched by \s in the Syntax properties file.
+     */
+    private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return Whether the character ends a comment, which is any character that is not matched by . in the Syntax properties file.
+     */
+    private boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
     /**
@@ -19,6 +19,14 @@ public interface Lexer {
      */
     void readString(String input) throws UndefinedKeywordException;
 
+    /**
+     * This processes a piece of a longer user input, such as one line of a script file. The offsets of the Tokens are counted from the start of the whole input.
+     *
+     * @param input: A piece of the user input raw String.
+     * @param offset: The index in the whole input of the first character of this piece.
+     */
+    void readString(String input, int offset) throws UndefinedKeywordException;
+
     /**
      * Return a list of Token from the input String, after translation by two translators.
      *
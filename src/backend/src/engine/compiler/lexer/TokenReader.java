@@ -0,0 +1,109 @@
+package engine.compiler.lexer;
+
+import engine.compiler.utils.Token;
+import engine.errors.UndefinedKeywordException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class hands out the Tokens of a script one at a time, reading the script from a Reader one line at a time. Only the current line and its Tokens are held in memory, so the size of the script does not matter.
+ *
+ * @author Haotian Wang
+ */
+public class TokenReader {
+    private static final char NEWLINE = '\n';
+    private static final int BUFFER_SIZE = 8192;
+
+    private Reader myReader;
+    private Lexer myLexer;
+    private char[] myBuffer;
+    private int myBufferStart;
+    private int myBufferEnd;
+    private StringBuilder myLine;
+    private int myOffset;
+    private List<Token> myTokens;
+    private int myNext;
+    private boolean myEnded;
+
+    /**
+     * @param reader: The Reader of the script.
+     * @param lexer: The Lexer that tokenizes each line, with the languages the script is written in.
+     */
+    public TokenReader(Reader reader, Lexer lexer) {
+        this(reader, lexer, 0);
+    }
+
+    /**
+     * @param reader: The Reader of the script, positioned at the start of a Token or of a line.
+     * @param lexer: The Lexer that tokenizes each line, with the languages the script is written in.
+     * @param offset: The index in the whole script of the first character that the Reader gives.
+     */
+    public TokenReader(Reader reader, Lexer lexer, int offset) {
+        myReader = reader;
+        myLexer = lexer;
+        myOffset = offset;
+        myBuffer = new char[BUFFER_SIZE];
+        myLine = new StringBuilder();
+        myTokens = Collections.emptyList();
+    }
+
+    /**
+     * @return The next Token of the script, or null if the script has no more Tokens.
+     * @throws UndefinedKeywordException: If the line that is read contains something the Lexer does not recognize.
+     * @throws IOException: If the Reader fails.
+     */
+    public Token next() throws UndefinedKeywordException, IOException {
+        while (myNext >= myTokens.size()) {
+            if (!readLine()) {
+                return null;
+            }
+        }
+        return myTokens.get(myNext++);
+    }
+
+    /**
+     * This method reads the next line of the script, including its newline character, and tokenizes it.
+     *
+     * @return false if the script has ended.
+     */
+    private boolean readLine() throws UndefinedKeywordException, IOException {
+        if (myEnded) {
+            return false;
+        }
+        myLine.setLength(0);
+        while (true) {
+            if (myBufferStart == myBufferEnd) {
+                myBufferEnd = myReader.read(myBuffer);
+                myBufferStart = 0;
+                if (myBufferEnd < 0) {
+                    myBufferEnd = 0;
+                    myEnded = true;
+                    break;
+                }
+            }
+            int end = myBufferStart;
+            while (end < myBufferEnd && myBuffer[end] != NEWLINE) {
+                end++;
+            }
+            if (end < myBufferEnd) {
+                myLine.append(myBuffer, myBufferStart, end + 1 - myBufferStart);
+                myBufferStart = end + 1;
+                break;
+            }
+            myLine.append(myBuffer, myBufferStart, end - myBufferStart);
+            myBufferStart = end;
+        }
+        if (myLine.length() == 0) {
+            return false;
+        }
+        myNext = 0;
+        myTokens = Collections.emptyList();
+        myLexer.readString(myLine.toString(), myOffset);
+        myOffset += myLine.length();
+        myTokens = myLexer.getTokens();
+        return true;
+    }
+}
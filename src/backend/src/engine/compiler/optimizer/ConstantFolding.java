@@ -0,0 +1,79 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Unary;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+
+/**
+ * This pass replaces the math on numbers by its result, such as sum 90 90 by 180 or sin 30 by 0.5, so that it is not computed again every time the command runs. It also replaces pi by its value, drops the parentheses around a number, and replaces an And whose first operand is 0 by 0 and an Or whose first operand is not 0 by 1, since their second operand is never evaluated.
+ * <p>
+ * The operations that only compute a value never touch the turtles, so they are folded by evaluating them without a TurtleManager. An operation that fails, such as a quotient by 0, is left as it is, so that it still fails when the command runs.
+ *
+ * @author Haotian Wang
+ */
+public class ConstantFolding extends ExpressionRewriter {
+    public static final String NAME = "ConstantFolding";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Expression visitUnary(Unary node) {
+        Unary rebuilt = (Unary) super.visitUnary(node);
+        if (ExpressionEffects.isPure(rebuilt.getOpcode()) && isConstant(rebuilt.getExpression())) {
+            return fold(node, rebuilt);
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public Expression visitBinary(Binary node) {
+        Binary rebuilt = (Binary) super.visitBinary(node);
+        if (!ExpressionEffects.isPure(rebuilt.getOpcode()) || !isConstant(rebuilt.getFirstExpression())) {
+            return rebuilt;
+        }
+        if (isConstant(rebuilt.getSecondExpression())) {
+            return fold(node, rebuilt);
+        }
+        double first = ((Direct) rebuilt.getFirstExpression()).getConstant();
+        if (rebuilt.getOpcode() == Opcode.AND && first == 0) {
+            return changed(node, constant(0));
+        }
+        if (rebuilt.getOpcode() == Opcode.OR && first != 0) {
+            return changed(node, constant(1));
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public Expression visitDirect(Direct node) {
+        if (node.getOpcode() == Opcode.PI) {
+            return fold(node, node);
+        }
+        return node;
+    }
+
+    @Override
+    public Expression visitGroup(Group node) {
+        Group rebuilt = (Group) super.visitGroup(node);
+        if (isConstant(rebuilt.getExpression())) {
+            return changed(node, rebuilt.getExpression());
+        }
+        return rebuilt;
+    }
+
+    private Expression fold(Expression original, Expression rebuilt) {
+        try {
+            return changed(original, constant(rebuilt.evaluate(null)));
+        } catch (InterpretationException | UndefinedKeywordException e) {
+            return rebuilt;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Unary;
+import model.TurtlePath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This pass evaluates the Repeat loops that draw a fixed figure, such as repeat 360 [ fd 1 rt 1 ], into a ConstantPath. The count of the Repeat must be a number of at least 1, and its body must only contain Forward, Back, Left and Right by numbers, and Repeat loops of the same kind, which are unrolled into the steps of the body if they have at most MAX_UNROLLED steps.
+ * <p>
+ * It runs after ConstantFolding, so the moves and counts that are computed from numbers are numbers as well, and after DeadBranchElimination, so the bodies of constant If and IfElse commands are plain lists.
+ *
+ * @author Haotian Wang
+ */
+public class ConstantPathEvaluation extends ExpressionRewriter {
+    public static final String NAME = "ConstantPathEvaluation";
+    private static final int MAX_UNROLLED = 4096;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Expression visitCondition(Condition node) {
+        Condition rebuilt = (Condition) super.visitCondition(node);
+        if (rebuilt.getOpcode() != Opcode.REPEAT || !isConstant(rebuilt.getExpression())) {
+            return rebuilt;
+        }
+        int times = (int) ((Direct) rebuilt.getExpression()).getConstant();
+        Steps steps = new Steps();
+        if (times < 1 || !steps.add(rebuilt.getExpressionList()) || steps.myAmounts.isEmpty()) {
+            return rebuilt;
+        }
+        ConstantPath path = new ConstantPath(rebuilt, steps.toPath(times));
+        return changed(node, path, String.format("%d steps repeated %d times", steps.myAmounts.size(), times));
+    }
+
+    /**
+     * The steps of a body, in order. A step of Back or Right is a step of Forward or Left by the negated number, which is what the turtles are given.
+     */
+    private static class Steps {
+        private List<Double> myAmounts = new ArrayList<>();
+        private List<Boolean> myTurns = new ArrayList<>();
+
+        /**
+         * @return Whether the statement only moves and turns by numbers. A list must not be empty, since its value would be 0 instead of the value of a step.
+         */
+        private boolean add(Expression statement) {
+            if (statement instanceof ExpressionList) {
+                List<Expression> statements = ((ExpressionList) statement).getListOfExpressions();
+                for (Expression expression : statements) {
+                    if (!add(expression)) {
+                        return false;
+                    }
+                }
+                return !statements.isEmpty();
+            }
+            if (statement instanceof ConstantPath) {
+                TurtlePath path = ((ConstantPath) statement).getPath();
+                if (path.steps() > MAX_UNROLLED) {
+                    return false;
+                }
+                for (int time = 0; time < path.times(); time++) {
+                    for (int step = 0; step < path.length(); step++) {
+                        myAmounts.add(path.amount(step));
+                        myTurns.add(path.isTurn(step));
+                    }
+                }
+                return true;
+            }
+            if (!(statement instanceof Unary) || !isConstant(((Unary) statement).getExpression())) {
+                return false;
+            }
+            double value = ((Direct) ((Unary) statement).getExpression()).getConstant();
+            switch (((Unary) statement).getOpcode()) {
+                case FORWARD:
+                    return step(value, false);
+                case BACKWARD:
+                    return step(-value, false);
+                case LEFT:
+                    return step(value, true);
+                case RIGHT:
+                    return step(-value, true);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean step(double amount, boolean turn) {
+            myAmounts.add(amount);
+            myTurns.add(turn);
+            return true;
+        }
+
+        private TurtlePath toPath(int times) {
+            double[] amounts = new double[myAmounts.size()];
+            boolean[] turns = new boolean[myTurns.size()];
+            for (int i = 0; i < amounts.length; i++) {
+                amounts[i] = myAmounts.get(i);
+                turns[i] = myTurns.get(i);
+            }
+            return new TurtlePath(amounts, turns, times);
+        }
+    }
+}
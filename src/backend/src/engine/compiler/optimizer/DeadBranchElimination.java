@@ -0,0 +1,82 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.Opcode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This pass drops the code that a number decides never runs. An IfElse or an If whose condition is a number is replaced by the list it runs, or by 0 for an If that runs nothing, and a Repeat or a DoTimes whose count is a number below 1 is replaced by 0. In a list of statements, the numbers before the last statement are dropped, since only the value of the last one is returned.
+ * <p>
+ * It runs after ConstantFolding, so the conditions and counts that are computed from numbers are numbers as well.
+ *
+ * @author Haotian Wang
+ */
+public class DeadBranchElimination extends ExpressionRewriter {
+    public static final String NAME = "DeadBranchElimination";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Expression visitIfElse(IfElse node) {
+        IfElse rebuilt = (IfElse) super.visitIfElse(node);
+        if (rebuilt.getOpcode() == Opcode.IF_ELSE && isConstant(rebuilt.getExpression())) {
+            return changed(node, value(rebuilt.getExpression()) != 0 ? rebuilt.getTrueList() : rebuilt.getFalseList());
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public Expression visitCondition(Condition node) {
+        Condition rebuilt = (Condition) super.visitCondition(node);
+        if (!isConstant(rebuilt.getExpression())) {
+            return rebuilt;
+        }
+        double value = value(rebuilt.getExpression());
+        if (rebuilt.getOpcode() == Opcode.IF) {
+            return changed(node, value != 0 ? rebuilt.getExpressionList() : constant(0));
+        }
+        if (rebuilt.getOpcode() == Opcode.REPEAT && (int) value < 1) {
+            return changed(node, constant(0));
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public Expression visitDoTimes(DoTimes node) {
+        DoTimes rebuilt = (DoTimes) super.visitDoTimes(node);
+        if (rebuilt.getOpcode() == Opcode.DO_TIMES && isConstant(rebuilt.getLimit()) && (int) value(rebuilt.getLimit()) < 1) {
+            return changed(node, constant(0));
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public Expression visitExpressionList(ExpressionList node) {
+        ExpressionList rebuilt = (ExpressionList) super.visitExpressionList(node);
+        List<Expression> expressions = rebuilt.getListOfExpressions();
+        List<Expression> kept = new ArrayList<>(expressions.size());
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i == expressions.size() - 1 || !isConstant(expressions.get(i))) {
+                kept.add(expressions.get(i));
+            }
+        }
+        if (kept.size() == expressions.size()) {
+            return rebuilt;
+        }
+        return changed(node, new ExpressionList(kept));
+    }
+
+    private double value(Expression constant) {
+        return ((Direct) constant).getConstant();
+    }
+}
@@ -0,0 +1,209 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class finds out what a part of an AST does besides computing its value: the variables it reads and assigns, whether it is pure, that is whether it only computes math on numbers and variables, and whether it is closed, that is whether everything it runs is visible in it. A call of a user-defined function, or a name without ":" that may be one, is not closed.
+ *
+ * @author Haotian Wang
+ */
+class ExpressionEffects implements ExpressionVisitor<Void> {
+    private static final String LOOP_COUNT = ":repcount";
+    private static final String VARIABLE_PREFIX = ":";
+
+    private Set<String> myReads = new HashSet<>();
+    private Set<String> myWrites = new HashSet<>();
+    private boolean myPure = true;
+    private boolean myClosed = true;
+
+    /**
+     * @param node: A part of an AST.
+     * @return What it does.
+     */
+    static ExpressionEffects of(Expression node) {
+        ExpressionEffects effects = new ExpressionEffects();
+        node.accept(effects);
+        return effects;
+    }
+
+    /**
+     * @return Whether a Unary, Binary or Direct node with the operation only computes a value from its operands, without touching the turtles or the StateMachine.
+     */
+    static boolean isPure(Opcode opcode) {
+        return opcode.isPure();
+    }
+
+    Set<String> reads() {
+        return myReads;
+    }
+
+    Set<String> writes() {
+        return myWrites;
+    }
+
+    boolean isPure() {
+        return myPure;
+    }
+
+    boolean isClosed() {
+        return myClosed;
+    }
+
+    @Override
+    public Void visitUnary(Unary node) {
+        myPure &= isPure(node.getOpcode());
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Void visitBinary(Binary node) {
+        myPure &= isPure(node.getOpcode());
+        node.getFirstExpression().accept(this);
+        return node.getSecondExpression().accept(this);
+    }
+
+    @Override
+    public Void visitDirect(Direct node) {
+        myPure &= isPure(node.getOpcode());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Variable node) {
+        if (node.getVariableName().startsWith(VARIABLE_PREFIX)) {
+            myReads.add(node.getVariableName());
+        } else {
+            open();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroup(Group node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Void visitExpressionList(ExpressionList node) {
+        for (Expression expression : node.getListOfExpressions()) {
+            expression.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableList(VariableList node) {
+        return null;
+    }
+
+    @Override
+    public Void visitMakeVariable(MakeVariable node) {
+        myPure = false;
+        myWrites.add(node.getVariable().getVariableName());
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Void visitCondition(Condition node) {
+        myPure = false;
+        if (node.getOpcode() == Opcode.REPEAT) {
+            myWrites.add(LOOP_COUNT);
+        }
+        node.getExpression().accept(this);
+        return node.getExpressionList().accept(this);
+    }
+
+    @Override
+    public Void visitDoTimes(DoTimes node) {
+        myPure = false;
+        myWrites.add(node.getVariable().getVariableName());
+        node.getLimit().accept(this);
+        return node.getExpressionList().accept(this);
+    }
+
+    @Override
+    public Void visitFor(For node) {
+        myPure = false;
+        myWrites.add(node.getVariable().getVariableName());
+        node.getStart().accept(this);
+        node.getEnd().accept(this);
+        node.getIncrement().accept(this);
+        return node.getExpressionList().accept(this);
+    }
+
+    @Override
+    public Void visitIfElse(IfElse node) {
+        myPure = false;
+        node.getExpression().accept(this);
+        node.getTrueList().accept(this);
+        return node.getFalseList().accept(this);
+    }
+
+    /**
+     * Defining a function assigns a name without ":", and does not run its body.
+     */
+    @Override
+    public Void visitMakeUserInstruction(MakeUserInstruction node) {
+        myPure = false;
+        return null;
+    }
+
+    @Override
+    public Void visitUserFunction(UserFunction node) {
+        open();
+        return node.getArguments().accept(this);
+    }
+
+    @Override
+    public Void visitTell(Tell node) {
+        open();
+        return null;
+    }
+
+    @Override
+    public Void visitTwoList(TwoList node) {
+        open();
+        return null;
+    }
+
+    @Override
+    public Void visitQuaternary(Quaternary node) {
+        open();
+        return null;
+    }
+
+    @Override
+    public Void visitConstantPath(ConstantPath node) {
+        myPure = false;
+        myWrites.add(LOOP_COUNT);
+        return null;
+    }
+
+    private void open() {
+        myPure = false;
+        myClosed = false;
+    }
+}
@@ -0,0 +1,195 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the base of the passes that rewrite an AST bottom up. Every node is rebuilt from its rewritten children, and is kept as it is when none of them changed, so that a pass that changes nothing returns the same AST. A pass overrides the methods of the nodes it rewrites, and records each rewrite with changed.
+ * <p>
+ * The lists of Tell, Ask, AskWith and SetPalette are not rewritten.
+ *
+ * @author Haotian Wang
+ */
+abstract class ExpressionRewriter implements ExpressionVisitor<Expression>, OptimizationPass {
+    private OptimizationReport myReport;
+
+    @Override
+    public Expression apply(Expression program, OptimizationReport report) {
+        myReport = report;
+        try {
+            return program.accept(this);
+        } finally {
+            myReport = null;
+        }
+    }
+
+    /**
+     * This method records a rewrite in the OptimizationReport.
+     *
+     * @return The node that replaces the rewritten one.
+     */
+    protected Expression changed(Expression before, Expression after) {
+        myReport.record(name(), before, after);
+        return after;
+    }
+
+    /**
+     * This method records a rewrite that does not show in the String of the node.
+     *
+     * @return The node that replaces the rewritten one.
+     */
+    protected Expression changed(Expression before, Expression after, String description) {
+        myReport.record(name(), before, description);
+        return after;
+    }
+
+    /**
+     * @return Whether the node is a number, which is all that is left of a folded Expression.
+     */
+    protected static boolean isConstant(Expression node) {
+        return node instanceof Direct && ((Direct) node).getOpcode() == Opcode.CONSTANT;
+    }
+
+    /**
+     * @return A node of a number.
+     */
+    protected static Direct constant(double value) {
+        return new Direct(new Token(Double.toString(value), TokenType.CONSTANT));
+    }
+
+    /**
+     * The passes never replace a list by anything else than a list.
+     */
+    protected ExpressionList rewriteList(ExpressionList list) {
+        return (ExpressionList) list.accept(this);
+    }
+
+    /**
+     * This method rewrites each Expression of a list on its own. The arguments of a call are rewritten this way, since each of them is a value, while a pass may change a list of statements as a whole.
+     */
+    protected ExpressionList rewriteElements(ExpressionList list) {
+        List<Expression> expressions = list.getListOfExpressions();
+        List<Expression> rewritten = new ArrayList<>(expressions.size());
+        boolean same = true;
+        for (Expression expression : expressions) {
+            Expression result = expression.accept(this);
+            same &= result == expression;
+            rewritten.add(result);
+        }
+        return same ? list : new ExpressionList(rewritten);
+    }
+
+    @Override
+    public Expression visitUnary(Unary node) {
+        return node.withExpression(node.getExpression().accept(this));
+    }
+
+    @Override
+    public Expression visitBinary(Binary node) {
+        return node.withExpressions(node.getFirstExpression().accept(this), node.getSecondExpression().accept(this));
+    }
+
+    @Override
+    public Expression visitDirect(Direct node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitVariable(Variable node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitGroup(Group node) {
+        return node.withExpression(node.getExpression().accept(this));
+    }
+
+    @Override
+    public Expression visitExpressionList(ExpressionList node) {
+        return rewriteElements(node);
+    }
+
+    @Override
+    public Expression visitVariableList(VariableList node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitMakeVariable(MakeVariable node) {
+        return node.withExpression(node.getExpression().accept(this));
+    }
+
+    @Override
+    public Expression visitCondition(Condition node) {
+        return node.withChildren(node.getExpression().accept(this), rewriteList(node.getExpressionList()));
+    }
+
+    @Override
+    public Expression visitDoTimes(DoTimes node) {
+        return node.withChildren(node.getLimit().accept(this), rewriteList(node.getExpressionList()));
+    }
+
+    @Override
+    public Expression visitFor(For node) {
+        return node.withChildren(node.getStart().accept(this), node.getEnd().accept(this), node.getIncrement().accept(this), rewriteList(node.getExpressionList()));
+    }
+
+    @Override
+    public Expression visitIfElse(IfElse node) {
+        return node.withChildren(node.getExpression().accept(this), rewriteList(node.getTrueList()), rewriteList(node.getFalseList()));
+    }
+
+    @Override
+    public Expression visitMakeUserInstruction(MakeUserInstruction node) {
+        return node.withExpressionList(rewriteList(node.getExpressionList()));
+    }
+
+    @Override
+    public Expression visitUserFunction(UserFunction node) {
+        return node.withArguments(rewriteElements(node.getArguments()));
+    }
+
+    @Override
+    public Expression visitTell(Tell node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitTwoList(TwoList node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitQuaternary(Quaternary node) {
+        return node;
+    }
+
+    @Override
+    public Expression visitConstantPath(ConstantPath node) {
+        return node;
+    }
+}
@@ -0,0 +1,45 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Opcode;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This pass marks the For loops whose bound and increment cannot change while the loop runs, so that they are evaluated once instead of in every iteration. The bound and the increment must be pure, must not read the loop Variable, and must not read any variable assigned in the body, and the body must be closed, so that no user-defined function it calls can assign them either.
+ * <p>
+ * The bound is still first evaluated before the first iteration and the increment after it, so a loop that fails in them fails at the same point.
+ *
+ * @author Haotian Wang
+ */
+public class LoopInvariantHoisting extends ExpressionRewriter {
+    public static final String NAME = "LoopInvariantHoisting";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Expression visitFor(For node) {
+        For rebuilt = (For) super.visitFor(node);
+        if (rebuilt.getOpcode() != Opcode.FOR || rebuilt.hasInvariantBounds() || !invariant(rebuilt)) {
+            return rebuilt;
+        }
+        return changed(node, rebuilt.withInvariantBounds(), String.format("%s and %s evaluated once", rebuilt.getEnd().toString(), rebuilt.getIncrement().toString()));
+    }
+
+    private boolean invariant(For loop) {
+        ExpressionEffects end = ExpressionEffects.of(loop.getEnd());
+        ExpressionEffects increment = ExpressionEffects.of(loop.getIncrement());
+        ExpressionEffects body = ExpressionEffects.of(loop.getExpressionList());
+        if (!end.isPure() || !increment.isPure() || !body.isClosed()) {
+            return false;
+        }
+        Set<String> reads = new HashSet<>(end.reads());
+        reads.addAll(increment.reads());
+        return !reads.contains(loop.getVariable().getVariableName()) && reads.stream().noneMatch(body.writes()::contains);
+    }
+}
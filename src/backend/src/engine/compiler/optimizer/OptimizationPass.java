@@ -0,0 +1,24 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Expression;
+
+/**
+ * This interface is a rewrite of a parsed AST into an AST that has the same effects on the turtles and the StateMachine, and throws the same errors, but runs faster. The Optimizer runs its passes in order.
+ *
+ * @author Haotian Wang
+ */
+public interface OptimizationPass {
+    /**
+     * @return The name of the pass, by which it is turned on and off in the Optimizer.
+     */
+    String name();
+
+    /**
+     * This method rewrites an AST. The nodes that do not change are kept, and the given AST is never modified, since it may still be used elsewhere.
+     *
+     * @param program: The AST of a command.
+     * @param report: The OptimizationReport where the pass records every node it rewrites.
+     * @return The rewritten AST, or the same one if nothing changed.
+     */
+    Expression apply(Expression program, OptimizationReport report);
+}
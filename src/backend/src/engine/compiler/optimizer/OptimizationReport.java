@@ -0,0 +1,65 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class records what the passes of an Optimizer changed in an AST: how many nodes each pass rewrote, and each node before and after it was rewritten.
+ *
+ * @author Haotian Wang
+ */
+public class OptimizationReport {
+    private Map<String, Integer> myCounts = new LinkedHashMap<>();
+    private List<String> myChanges = new ArrayList<>();
+
+    /**
+     * @param pass: The name of the OptimizationPass.
+     * @param before: The node that was rewritten.
+     * @param after: The node that replaces it.
+     */
+    public void record(String pass, Expression before, Expression after) {
+        record(pass, before, after.toString());
+    }
+
+    /**
+     * @param pass: The name of the OptimizationPass.
+     * @param before: The node that was rewritten.
+     * @param description: What changed, for a rewrite that does not show in the String of the node.
+     */
+    public void record(String pass, Expression before, String description) {
+        myCounts.merge(pass, 1, Integer::sum);
+        myChanges.add(String.format("%s: %s -> %s", pass, before.toString(), description));
+    }
+
+    /**
+     * @param pass: The name of an OptimizationPass.
+     * @return The number of nodes the pass rewrote.
+     */
+    public int count(String pass) {
+        return myCounts.getOrDefault(pass, 0);
+    }
+
+    /**
+     * @return The number of nodes all the passes rewrote.
+     */
+    public int total() {
+        return myChanges.size();
+    }
+
+    /**
+     * @return A line for each rewritten node, with the name of the pass and the node before and after, in the order they were rewritten.
+     */
+    public List<String> changes() {
+        return Collections.unmodifiableList(myChanges);
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", myChanges);
+    }
+}
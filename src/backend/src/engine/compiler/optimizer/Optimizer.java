@@ -0,0 +1,95 @@
+package engine.compiler.optimizer;
+
+import engine.compiler.slogoast.Expression;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class runs a list of OptimizationPass on the parsed ASTs before they are run. Every pass can be turned off by its name, and the OptimizationReport of the last AST tells what each pass changed.
+ * <p>
+ * By default, constants are folded first, then the branches and loops that a constant condition or count rules out are dropped, then the Repeat loops that draw a fixed figure are evaluated into paths, and last the bounds of the For loops that cannot change while the loop runs are evaluated only once.
+ *
+ * @author Haotian Wang
+ */
+public class Optimizer {
+    private List<OptimizationPass> myPasses;
+    private Set<String> myDisabled;
+    private OptimizationReport myLastReport;
+
+    public Optimizer() {
+        this(List.of(new ConstantFolding(), new DeadBranchElimination(), new ConstantPathEvaluation(), new LoopInvariantHoisting()));
+    }
+
+    /**
+     * @param passes: The passes to run, in order.
+     */
+    public Optimizer(List<OptimizationPass> passes) {
+        myPasses = new ArrayList<>(passes);
+        myDisabled = new HashSet<>();
+        myLastReport = new OptimizationReport();
+    }
+
+    /**
+     * This method runs the enabled passes on an AST, and keeps what they changed as the last OptimizationReport.
+     *
+     * @param program: The AST of a command.
+     * @return The optimized AST, or the same one if no pass changed it.
+     */
+    public Expression optimize(Expression program) {
+        OptimizationReport report = new OptimizationReport();
+        Expression optimized = program;
+        for (OptimizationPass pass : myPasses) {
+            if (!myDisabled.contains(pass.name())) {
+                optimized = pass.apply(optimized, report);
+            }
+        }
+        myLastReport = report;
+        return optimized;
+    }
+
+    /**
+     * This method turns a pass on or off. It applies to the ASTs optimized afterwards.
+     *
+     * @param pass: The name of the pass.
+     * @param enabled: Whether the pass runs.
+     */
+    public void setEnabled(String pass, boolean enabled) {
+        if (!passes().contains(pass)) {
+            throw new IllegalArgumentException(String.format("There is no optimization pass named \"%s\"", pass));
+        }
+        if (enabled) {
+            myDisabled.remove(pass);
+        } else {
+            myDisabled.add(pass);
+        }
+    }
+
+    /**
+     * @param pass: The name of a pass.
+     * @return Whether the pass runs.
+     */
+    public boolean isEnabled(String pass) {
+        return passes().contains(pass) && !myDisabled.contains(pass);
+    }
+
+    /**
+     * @return The names of the passes, in the order they run.
+     */
+    public List<String> passes() {
+        List<String> names = new ArrayList<>();
+        for (OptimizationPass pass : myPasses) {
+            names.add(pass.name());
+        }
+        return names;
+    }
+
+    /**
+     * @return What the passes changed in the last AST they optimized.
+     */
+    public OptimizationReport lastReport() {
+        return myLastReport;
+    }
+}
@@ -1,29 +1,94 @@
 package engine.compiler.parser;
 
+import engine.compiler.lexer.TokenReader;
+import engine.compiler.parser.Production.Slot;
 import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
 import engine.errors.CommandSyntaxException;
 import engine.compiler.slogoast.*;
-import javafx.util.Pair;
+import engine.errors.UndefinedKeywordException;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
  * A version 1 implementation of the Parser interface. It takes a list of Tokens and output ASTs or store variables.
+ * <p>
+ * The parser is predictive. The kind of the Token at the cursor picks the grammar rule from a lookup table, so every Token is looked at once and nothing is parsed twice. The rules that are being parsed are kept on an explicit stack of Frames instead of the Java call stack, so deeply nested lists do not cause a StackOverflowError, and the Frames are reused from one parse to the next.
  *
  * @author Haotian Wang
  */
 public class CrudeParser implements Parser {
-    private static final Token listStart = new Token("[", "ListStart");
-    private static final Token listEnd = new Token("]", "ListEnd");
-    private static final Token groupStart = new Token("(", "GroupStart");
-    private static final Token groupEnd = new Token(")", "GroupEnd");
+    private static final Token listStart = new Token("[", TokenType.LIST_START);
+    private static final Token listEnd = new Token("]", TokenType.LIST_END);
+    private static final Token groupStart = new Token("(", TokenType.GROUP_START);
+    private static final Token groupEnd = new Token(")", TokenType.GROUP_END);
+    private static final String USER_FUNCTION_CONDITION = "If the expression directly after the keyword in an ifelse statement is a user-defined function, it must be bracketed by \"()\"";
+    private static final Map<TokenType, Production> myGrammar = new EnumMap<>(TokenType.class);
+    private static final Production userFunction = new Production((token, children) -> new UserFunction(new Variable(token), (ExpressionList) children[0]),
+            Slot.expressionList(null));
+    static {
+        myGrammar.put(TokenType.GROUP_START, new Production((token, children) -> new Group((Expression) children[0]),
+                Slot.expression("Illegal expression for a Group after the \"(\" symbol"),
+                Slot.token(TokenType.GROUP_END, "Missing \")\" symbol for a Group after a valid expression")));
+        myGrammar.put(TokenType.UNARY, new Production((token, children) -> new Unary(token, (Expression) children[0]),
+                Slot.expression("Illegal format for the expression after a unary operator")));
+        myGrammar.put(TokenType.BINARY, new Production((token, children) -> new Binary(token, (Expression) children[0], (Expression) children[1]),
+                Slot.expression("Illegal format for the the first part of expression in binary grammar"),
+                Slot.expression("Illegal format for the second part of a binary expression")));
+        myGrammar.put(TokenType.MAKE_VARIABLE, new Production((token, children) -> new MakeVariable(token, (Variable) children[0], (Expression) children[1]),
+                Slot.variable("Illegal variable format after \"make\" command in a MakeVariable command"),
+                Slot.expression("Illegal format for an expression that is assigned to the variable in a MakeVariable command")));
+        myGrammar.put(TokenType.CONDITION, new Production((token, children) -> new Condition(token, (Expression) children[0], (ExpressionList) children[1]),
+                Slot.condition("Illegal format for expression value after a keyword in the repeat or if loop", USER_FUNCTION_CONDITION),
+                Slot.expressionList("Illegal format for a list of expressions in a repeat or if loop")));
+        myGrammar.put(TokenType.DO_TIMES, new Production((token, children) -> new DoTimes(token, listStart, (Variable) children[0], (Expression) children[1], listEnd, (ExpressionList) children[2]),
+                Slot.token(TokenType.LIST_START, "Missing \"[\" symbol after dotimes keyword in a dotimes loop"),
+                Slot.variable("Illegal variable format after \"[\" in a dotimes loop"),
+                Slot.expression("Illegal expression for the upper limit value of the variable in a dotimes loop"),
+                Slot.token(TokenType.LIST_END, "Missing \"]\" symbol after the limit value in a dotimes loop"),
+                Slot.expressionList("Illegal format of a list of commands in a dotimes loop")));
+        myGrammar.put(TokenType.FOR, new Production((token, children) -> new For(token, (Variable) children[0], (Expression) children[1], (Expression) children[2], (Expression) children[3], (ExpressionList) children[4]),
+                Slot.token(TokenType.LIST_START, "Missing \"[\" after the \"for\" keyword"),
+                Slot.variable("Illegal variable format after \"[\" in a for loop"),
+                Slot.expression("Illegal expression for the starting value of the variable in a for loop"),
+                Slot.expression("Illegal expression for the ending value of the variable in a for loop"),
+                Slot.expression("Illegal expression for the increment value of the variable in a for loop"),
+                Slot.token(TokenType.LIST_END, "Missing \"]\" after the increment expression in a for loop"),
+                Slot.expressionList("Illegal list of commands in a for loop")));
+        myGrammar.put(TokenType.IF_ELSE, new Production((token, children) -> new IfElse(token, (Expression) children[0], (ExpressionList) children[1], (ExpressionList) children[2]),
+                Slot.condition("Illegal format for an expression after the \"ifelse\" keyword", USER_FUNCTION_CONDITION),
+                Slot.expressionList("Illegal format for a list of expressions that is run when the ifelse expression is evaluated true"),
+                Slot.expressionList("Illegal format for a list of expressions that is run when the ifelse expression is evaluated false")));
+        myGrammar.put(TokenType.MAKE_USER_INSTRUCTION, new Production((token, children) -> new MakeUserInstruction(token, (Variable) children[0], (VariableList) children[1], (ExpressionList) children[2]),
+                Slot.commandName("Missing a valid variable name to store the user-made function after the \"to\" keyword", "The name of a user defined function cannot start with :"),
+                Slot.variableList("Illegal format for defining a list of variables for use with the user-defined function"),
+                Slot.expressionList("Illegal format for defining a list of expressions for use with the user-defined function")));
+        myGrammar.put(TokenType.TWO_LIST, new Production((token, children) -> new TwoList(token, (ExpressionList) children[0], (ExpressionList) children[1]),
+                Slot.expressionList("The first list of expressions after the keyword \"%s\" is illegal"),
+                Slot.expressionList("The second list of expressions after the keyword \"%s\" is illegal")));
+        myGrammar.put(TokenType.TELL, new Production((token, children) -> new Tell(token, (ExpressionList) children[0]),
+                Slot.expressionList("The list of expressions following the keyword \"%s\" is illegal")));
+        myGrammar.put(TokenType.QUATERNARY, new Production((token, children) -> new Quaternary(token, (Expression) children[0], (Expression) children[1], (Expression) children[2], (Expression) children[3]),
+                Slot.expression("Illegal format for the the first part of expression in quaternary grammar"),
+                Slot.expression("Illegal format for the the second part of expression in quaternary grammar"),
+                Slot.expression("Illegal format for the the third part of expression in quaternary grammar"),
+                Slot.expression("Illegal format for the the fourth part of expression in quaternary grammar")));
+    }
 
     private List<Token> myTokens;
     private Expression myAST;
-    private String tokenStream;
+    private TokenReader myStream;
+    private Exception myStreamError;
+    private int myCursor;
+    private int myIndexShift;
+    private List<Frame> myFrames;
+    private int myDepth;
+    private Expression myValue;
 
     public CrudeParser() {
         myTokens = new ArrayList<>();
+        myFrames = new ArrayList<>();
     }
 
     /**
@@ -34,571 +99,396 @@ public class CrudeParser implements Parser {
     @Override
     public void readTokens(List<Token> tokens) throws CommandSyntaxException {
         myTokens = tokens;
-        tokenStream = Arrays.toString(tokens.toArray(new Token[tokens.size()]));
+        myStream = null;
         myAST = parseGoal();
     }
 
     /**
-     * Clear the stored tokens in the internal parser.
-     */
-    @Override
-    public void clearTokens() {
-        myTokens.clear();
-        tokenStream = null;
-    }
-
-    /**
-     * @return An SLogoAST for the interpreter to process.
-     */
-    @Override
-    public Expression returnAST() {
-        return myAST;
-    }
-
-    /**
-     * This method generates a 3-liner error message. The first line is written by the user. The second line is the index of list of Tokens where the error occurred. The third line is a list of Tokens for reference.
+     * Reads the Tokens of a script from a TokenReader, so that the script can be parsed one top level statement at a time by nextStatement.
      *
-     * @param message: The user-defined error message such as "Missing parenthesis".
-     * @param index: The index in the list of Tokens where the error occurred.
-     * @return A CommandSyntaxException.
+     * @param tokens : The TokenReader of the script.
      */
-    private CommandSyntaxException generateSyntaxException(String message, int index) {
-        return new CommandSyntaxException(message + "\nIndex in the list of Tokens: " + index + "\nThe list of Tokens is: " + tokenStream);
+    @Override
+    public void readStream(TokenReader tokens) {
+        myTokens = new ArrayList<>();
+        myStream = tokens;
+        myStreamError = null;
+        myAST = null;
     }
 
     /**
-     * This method returns the complete syntax tree if the input command is grammatically correct.
+     * This method parses the next top level statement of the script given to readStream. Tokens are only read from the TokenReader as far as the parse needs them, and the Tokens of a statement are dropped once it is parsed.
      *
-     * @return A root Expression node passed to the Interpreter.
-     * @throws CommandSyntaxException
+     * @return The AST of the next statement, or null if the script has ended.
      */
-    private Expression parseGoal() throws CommandSyntaxException {
-        Pair<Expression, Integer> resultPair = parseExpression(0);
-        if (resultPair.getKey() == null || resultPair.getValue() != myTokens.size()) {
-            myTokens.add(listEnd);
-            myTokens.add(0, listStart);
-            resultPair = parseExpressionList(0);
-            if (resultPair.getKey() == null || resultPair.getValue() != myTokens.size()) {
-                throw new CommandSyntaxException("The input command cannot be parsed.");
+    @Override
+    public Expression nextStatement() throws CommandSyntaxException, UndefinedKeywordException, IOException {
+        Expression statement;
+        myCursor = 0;
+        myIndexShift = 0;
+        myDepth = 0;
+        try {
+            if (!hasToken(0)) {
+                rethrowStreamError();
+                return null;
             }
-            return resultPair.getKey();
-        } else {
-            return resultPair.getKey();
-        }
-    }
-
-    /**
-     * The following methods are a family of parsing methods using recursive descent.
-     *
-     * @param index: The starting index of this parse query.
-     * @return An Expression AST node, which is used for Expression grammar, and paired with it, an index after the parse.
-     */
-    private Pair<Expression, Integer> parseExpression(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        if (index >= myTokens.size()) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> groupPair = parseGroup(index);
-        if (groupPair.getKey() != null) {
-            return groupPair;
-        }
-        Pair<Expression, Integer> unaryPair = parseUnary(index);
-        if (unaryPair.getKey() != null) {
-            return unaryPair;
-        }
-        Pair<Expression, Integer> binaryPair = parseBinary(index);
-        if (binaryPair.getKey() != null) {
-            return binaryPair;
-        }
-        Pair<Expression, Integer> makeVariablePair = parseMakeVariable(index);
-        if (makeVariablePair.getKey() != null) {
-            return makeVariablePair;
+            statement = parseExpression();
+        } catch (CommandSyntaxException e) {
+            rethrowStreamError();
+            throw e;
         }
-        Pair<Expression, Integer> conditionPair = parseCondition(index);
-        if (conditionPair.getKey() != null) {
-            return conditionPair;
+        rethrowStreamError();
+        if (statement == null) {
+            throw generateSyntaxException("The input command cannot be parsed.", 0);
         }
-        Pair<Expression, Integer> doTimesPair = parseDoTimes(index);
-        if (doTimesPair.getKey() != null) {
-            return doTimesPair;
-        }
-        Pair<Expression, Integer> forPair = parseFor(index);
-        if (forPair.getKey() != null) {
-            return forPair;
-        }
-        Pair<Expression, Integer> ifElsePair = parseIfElse(index);
-        if (ifElsePair.getKey() != null) {
-            return ifElsePair;
-        }
-        Pair<Expression, Integer> makeUserInstructionPair = parseMakeUserInstruction(index);
-        if (makeUserInstructionPair.getKey() != null) {
-            return makeUserInstructionPair;
-        }
-        Pair<Expression, Integer> twoListPair = parseTwoList(index);
-        if (twoListPair.getKey() != null) {
-            return twoListPair;
-        }
-        Pair<Expression, Integer> tellPair = parseTell(index);
-        if (tellPair.getKey() != null) {
-            return tellPair;
-        }
-        Pair<Expression, Integer> ternaryPair = parseQuaternary(index);
-        if (ternaryPair.getKey() != null) {
-            return ternaryPair;
-        }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(index);
-        if (expressionListPair.getKey() != null) {
-            return expressionListPair;
-        }
-        Pair<Expression, Integer> userFunctionPair = parseUserFunction(index);
-        if (userFunctionPair.getKey() != null) {
-            return userFunctionPair;
-        }
-        Pair<Expression, Integer> directPair = parseDirect(index);
-        if (directPair.getKey() != null) {
-            return directPair;
-        }
-        Pair<Expression, Integer> variablePair = parseVariable(index);
-        if (variablePair.getKey() != null) {
-            return variablePair;
-        }
-        return nullPair;
+        myTokens.subList(0, myCursor).clear();
+        myAST = statement;
+        return myAST;
     }
 
     /**
-     * @param index
-     * @param type
-     * @return This method parses single Token and return a pair of Token together with the new index.
+     * @return The Token that the next top level statement of the script given to readStream starts with, or null if the script has ended.
      */
-    private Pair<Token, Integer> parseToken(int index, String type) {
-        if (index >= myTokens.size() || !myTokens.get(index).getType().equals(type)) {
-            return new Pair<>(null, index);
-        } else {
-            return new Pair<>(myTokens.get(index), index + 1);
-        }
+    @Override
+    public Token peekToken() throws UndefinedKeywordException, IOException {
+        boolean present = hasToken(0);
+        rethrowStreamError();
+        return present ? myTokens.get(0) : null;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for Quaternary grammar.
+     * When the script could not be read, the statement being parsed was cut short, so the reading error is reported instead of whatever the Parser made of the statement.
      */
-    private Pair<Expression, Integer> parseQuaternary(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> quaternaryPair = parseToken(index, "Quaternary");
-        if (quaternaryPair.getKey() == null) {
-            return nullPair;
+    private void rethrowStreamError() throws UndefinedKeywordException, IOException {
+        if (myStreamError instanceof UndefinedKeywordException) {
+            throw (UndefinedKeywordException) myStreamError;
         }
-        Pair<Expression, Integer> firstPair = parseExpression(quaternaryPair.getValue());
-        if (firstPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the the first part of expression in quaternary grammar", firstPair.getValue());
+        if (myStreamError instanceof IOException) {
+            throw (IOException) myStreamError;
         }
-        Pair<Expression, Integer> secondPair = parseExpression(firstPair.getValue());
-        if (secondPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the the second part of expression in quaternary grammar", secondPair.getValue());
-        }
-        Pair<Expression, Integer> thirdPair = parseExpression(secondPair.getValue());
-        if (thirdPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the the third part of expression in quaternary grammar", thirdPair.getValue());
-        }
-        Pair<Expression, Integer> fourthPair = parseExpression(thirdPair.getValue());
-        if (fourthPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the the fourth part of expression in quaternary grammar", thirdPair.getValue());
-        }
-        return new Pair<>(new Quaternary(quaternaryPair.getKey(), firstPair.getKey(), secondPair.getKey(), thirdPair.getKey(), fourthPair.getKey()), fourthPair.getValue());
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for Tell grammar.
+     * @param index: An index in the list of Tokens.
+     * @return Whether there is a Token at the index, reading more Tokens from the TokenReader if there is one.
      */
-    private Pair<Expression, Integer> parseTell(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> tellPair = parseToken(index, "Tell");
-        if (tellPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> listPair = parseExpressionList(tellPair.getValue());
-        if (listPair.getKey() == null) {
-            throw generateSyntaxException(String.format("The list of expressions following the keyword \"%s\" is illegal", tellPair.getKey().getString()), listPair.getValue());
+    private boolean hasToken(int index) {
+        while (index >= myTokens.size() && myStream != null && myStreamError == null) {
+            Token token;
+            try {
+                token = myStream.next();
+            } catch (UndefinedKeywordException | IOException e) {
+                myStreamError = e;
+                return false;
+            }
+            if (token == null) {
+                return false;
+            }
+            myTokens.add(token);
         }
-        return new Pair<>(new Tell(tellPair.getKey(), (ExpressionList) listPair.getKey()), listPair.getValue());
+        return index < myTokens.size();
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for TwoList grammar.
+     * @return Whether the Token at the cursor exists and is of the given kind.
      */
-    private Pair<Expression, Integer> parseTwoList(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> twoListPair = parseToken(index, "TwoList");
-        if (twoListPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> listOnePair = parseExpressionList(twoListPair.getValue());
-        if (listOnePair.getKey() == null) {
-            throw generateSyntaxException(String.format("The first list of expressions after the keyword \"%s\" is illegal", twoListPair.getKey().getString()), listOnePair.getValue());
-        }
-        Pair<Expression, Integer> listTwoPair = parseExpressionList(listOnePair.getValue());
-        if (listTwoPair.getKey() == null) {
-            throw generateSyntaxException(String.format("The second list of expressions after the keyword \"%s\" is illegal", twoListPair.getKey().getString()), listTwoPair.getValue());
-        }
-        return new Pair<>(new TwoList(twoListPair.getKey(), (ExpressionList) listOnePair.getKey(), (ExpressionList) listTwoPair.getKey()), listTwoPair.getValue());
+    private boolean atToken(TokenType type) {
+        return hasToken(myCursor) && myTokens.get(myCursor).getType() == type;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for IfElse grammar.
+     * Clear the stored tokens in the internal parser.
      */
-    private Pair<Expression, Integer> parseIfElse(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> ifElsePair = parseToken(index, "IfElse");
-        if (ifElsePair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> expressionPair = parseExpression(ifElsePair.getValue());
-        if (expressionPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for an expression after the \"ifelse\" keyword", expressionPair.getValue());
-        }
-        if (expressionPair.getKey() instanceof UserFunction) {
-            throw generateSyntaxException("If the expression directly after the keyword in an ifelse statement is a user-defined function, it must be bracketed by \"()\"", ifElsePair.getValue());
-        }
-        Pair<Expression, Integer> listAPair = parseExpressionList(expressionPair.getValue());
-        if (listAPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for a list of expressions that is run when the ifelse expression is evaluated true", listAPair.getValue());
-        }
-        Pair<Expression, Integer> listBPair = parseExpressionList(listAPair.getValue());
-        if (listBPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for a list of expressions that is run when the ifelse expression is evaluated false", listBPair.getValue());
-        }
-        return new Pair<>(new IfElse(ifElsePair.getKey(), expressionPair.getKey(), (ExpressionList) listAPair.getKey(), (ExpressionList) listBPair.getKey()), listBPair.getValue());
+    @Override
+    public void clearTokens() {
+        myTokens.clear();
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for MakeUserInstruction grammar.
+     * @return An SLogoAST for the interpreter to process.
      */
-    private Pair<Expression, Integer> parseMakeUserInstruction(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> makeUserInstructionPair = parseToken(index, "MakeUserInstruction");
-        if (makeUserInstructionPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> commandPair = parseVariable(makeUserInstructionPair.getValue());
-        if (commandPair.getKey() == null) {
-            throw generateSyntaxException("Missing a valid variable name to store the user-made function after the \"to\" keyword", commandPair.getValue());
-        }
-        Variable var = (Variable) commandPair.getKey();
-        if (var.getVariableName().startsWith(":")) {
-            throw generateSyntaxException("The name of a user defined function cannot start with :", commandPair.getValue());
-        }
-        Pair<Expression, Integer> variableListPair = parseVariableList(commandPair.getValue());
-        if (variableListPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for defining a list of variables for use with the user-defined function", variableListPair.getValue());
-        }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(variableListPair.getValue());
-        if (expressionListPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for defining a list of expressions for use with the user-defined function", expressionListPair.getValue());
-        }
-        return new Pair<>(new MakeUserInstruction(makeUserInstructionPair.getKey(), (Variable) commandPair.getKey(), (VariableList) variableListPair.getKey(), (ExpressionList) expressionListPair.getKey()), expressionListPair.getValue());
+    @Override
+    public Expression returnAST() {
+        return myAST;
     }
 
     /**
-     * @param index
-     * @return A pair of VariableList and index for the VariableList grammar.
+     * This method generates a 3-liner error message. The first line is written by the user. The second line is the index of list of Tokens where the error occurred. The third line is the Token at that index and where it is in the input String.
+     *
+     * @param message: The user-defined error message such as "Missing parenthesis".
+     * @param index: The index in the list of Tokens where the error occurred.
+     * @return A CommandSyntaxException.
      */
-    private Pair<Expression, Integer> parseVariableList(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> listStartPair = parseToken(index, "ListStart");
-        if (listStartPair.getKey() == null) {
-            return nullPair;
-        }
-        int pointer = listStartPair.getValue();
-        List<Variable> variableList = new ArrayList<>();
-        if (pointer == myTokens.size()) {
-            throw generateSyntaxException("An expression cannot be closed by a \"[\"", pointer);
-        }
-        if (myTokens.get(pointer).getType().equals("ListEnd")) {
-            return new Pair<>(new VariableList(variableList), pointer + 1);
-        }
-        while (true) {
-            Pair<Expression, Integer> listPair = parseVariable(pointer);
-            if (listPair.getKey() == null) {
-                break;
-            }
-            variableList.add((Variable) listPair.getKey());
-            pointer = listPair.getValue();
-        }
-        if (variableList.isEmpty()) {
-            throw generateSyntaxException("Missing a valid variable to constitute a valid list of variables", pointer);
-        }
-        Pair<Token, Integer> listEndPair = parseToken(pointer, "ListEnd");
-        if (listEndPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"]\" symbol to end a list of expressions", listEndPair.getValue());
-        }
-        return new Pair<>(new VariableList(variableList), listEndPair.getValue());
+    private CommandSyntaxException generateSyntaxException(String message, int index) {
+        return new CommandSyntaxException(message + "\nIndex in the list of Tokens: " + (index + myIndexShift) + "\n" + describePosition(index));
     }
 
     /**
-     * @param index
-     * @return A pair of UserFunction and index for the UserFunction grammar.
+     * @param index: The index in the list of Tokens where the error occurred.
+     * @return A line telling the user which Token the error is at and which characters of the input String that Token covers.
      */
-    private Pair<Expression, Integer> parseUserFunction(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Expression, Integer> variablePair = parseVariable(index);
-        if (variablePair.getKey() == null) {
-            return nullPair;
-        }
-        Variable var = (Variable) variablePair.getKey();
-        if (var.getVariableName().startsWith(":")) {
-            return nullPair;
+    private String describePosition(int index) {
+        if (index >= myTokens.size() || myTokens.get(index).getStart() < 0) {
+            return "The error is at the end of the input.";
         }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(variablePair.getValue());
-        if (expressionListPair.getKey() == null) {
-            return nullPair;
+        Token token = myTokens.get(index);
+        if (token.getEnd() - token.getStart() == 1) {
+            return String.format("The error is at the Token \"%s\", character %d of the input.", token, token.getEnd());
         }
-        return new Pair<>(new UserFunction((Variable) variablePair.getKey(), (ExpressionList) expressionListPair.getKey()), expressionListPair.getValue());
+        return String.format("The error is at the Token \"%s\", characters %d to %d of the input.", token, token.getStart() + 1, token.getEnd());
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the For loop grammar.
+     * This method returns the complete syntax tree if the input command is grammatically correct. An input made of a single expression gives that expression, and any other input gives the list of its expressions, as if the input were enclosed by "[" and "]". Errors found after the first expression report their index in the enclosed list of Tokens.
+     *
+     * @return A root Expression node passed to the Interpreter.
+     * @throws CommandSyntaxException
      */
-    private Pair<Expression, Integer> parseFor(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> forPair = parseToken(index, "For");
-        if (forPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Token, Integer> listStartPair = parseToken(forPair.getValue(), "ListStart");
-        if (listStartPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"[\" after the \"for\" keyword", listStartPair.getValue());
-        }
-        Pair<Expression, Integer> variablePair = parseVariable(listStartPair.getValue());
-        if (variablePair.getKey() == null) {
-            throw generateSyntaxException("Illegal variable format after \"[\" in a for loop", variablePair.getValue());
-        }
-        Pair<Expression, Integer> startPair = parseExpression(variablePair.getValue());
-        if (startPair.getKey() == null) {
-            throw generateSyntaxException("Illegal expression for the starting value of the variable in a for loop", startPair.getValue());
-        }
-        Pair<Expression, Integer> endPair = parseExpression(startPair.getValue());
-        if (endPair.getKey() == null) {
-            throw generateSyntaxException("Illegal expression for the ending value of the variable in a for loop", endPair.getValue());
+    private Expression parseGoal() throws CommandSyntaxException {
+        myCursor = 0;
+        myIndexShift = 0;
+        myDepth = 0;
+        Expression first = parseExpression();
+        if (first != null && !hasToken(myCursor)) {
+            return first;
+        }
+        myIndexShift = 1;
+        List<Expression> expressionList = new ArrayList<>();
+        for (Expression expr = first; expr != null; expr = parseExpression()) {
+            expressionList.add(expr);
         }
-        Pair<Expression, Integer> stepPair = parseExpression(endPair.getValue());
-        if (endPair.getKey() == null) {
-            throw generateSyntaxException("Illegal expression for the increment value of the variable in a for loop", stepPair.getValue());
+        if (!hasToken(myCursor)) {
+            return new ExpressionList(expressionList);
         }
-        Pair<Token, Integer> listEndPair = parseToken(stepPair.getValue(), "ListEnd");
-        if (listEndPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"]\" after the increment expression in a for loop", listEndPair.getValue());
+        if (atToken(TokenType.LIST_END)) {
+            throw new CommandSyntaxException("The input command cannot be parsed.");
         }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(listEndPair.getValue());
-        if (expressionListPair.getKey() == null) {
-            throw generateSyntaxException("Illegal list of commands in a for loop", expressionListPair.getValue());
+        if (expressionList.isEmpty()) {
+            throw generateSyntaxException("Missing a valid expression to constitute a valid list of expressions", myCursor);
         }
-        return new Pair<>(new For(forPair.getKey(), (Variable) variablePair.getKey(), startPair.getKey(), endPair.getKey(), stepPair.getKey(), (ExpressionList) expressionListPair.getKey()), expressionListPair.getValue());
+        throw generateSyntaxException("Missing \"]\" symbol to end a list of expressions", myCursor);
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the DoTimes grammar.
+     * This method parses one Expression starting at the cursor and moves the cursor past it. The rule that an Expression needs is only worked on while its Frame is at the top of the stack; when it needs an inner Expression, a new rule is started above it, and when it is complete, its node is handed to the Frame below.
+     *
+     * @return The Expression node, or null if the Token at the cursor cannot start an Expression.
      */
-    private Pair<Expression, Integer> parseDoTimes(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> doTimesPair = parseToken(index, "DoTimes");
-        if (doTimesPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Token, Integer> listStartPair = parseToken(doTimesPair.getValue(), "ListStart");
-        if (listStartPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"[\" symbol after dotimes keyword in a dotimes loop", listStartPair.getValue());
-        }
-        Pair<Expression, Integer> variablePair = parseVariable(listStartPair.getValue());
-        if (variablePair.getKey() == null) {
-            throw generateSyntaxException("Illegal variable format after \"[\" in a dotimes loop", variablePair.getValue());
-        }
-        Pair<Expression, Integer> limitPair = parseExpression(variablePair.getValue());
-        if (limitPair.getKey() == null) {
-            throw generateSyntaxException("Illegal expression for the upper limit value of the variable in a dotimes loop", limitPair.getValue());
-        }
-        Pair<Token, Integer> listEndPair = parseToken(limitPair.getValue(), "ListEnd");
-        if (listEndPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"]\" symbol after the limit value in a dotimes loop", limitPair.getValue());
-        }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(listEndPair.getValue());
-        if (expressionListPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format of a list of commands in a dotimes loop", expressionListPair.getValue());
+    private Expression parseExpression() throws CommandSyntaxException {
+        int base = myDepth;
+        boolean pushed = beginExpression();
+        while (myDepth > base) {
+            Frame frame = myFrames.get(myDepth - 1);
+            if (!pushed) {
+                receive(frame, myValue);
+            }
+            pushed = advance(frame);
         }
-        return new Pair<>(new DoTimes(doTimesPair.getKey(), listStart, (Variable) variablePair.getKey(), limitPair.getKey(), listEnd, (ExpressionList) expressionListPair.getKey()), expressionListPair.getValue());
+        return myValue;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the ExpressionList grammar.
+     * This method looks at the Token at the cursor. A Direct, a Constant or a Variable is parsed at once into myValue, while a keyword, a "(", a "[" or the name of a user-defined function followed by "[" starts a new Frame.
+     *
+     * @return Whether a new Frame was pushed.
      */
-    private Pair<Expression, Integer> parseExpressionList(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> listStartPair = parseToken(index, "ListStart");
-        if (listStartPair.getKey() == null) {
-            return nullPair;
-        }
-        int pointer = listStartPair.getValue();
-        List<Expression> expressionList = new ArrayList<>();
-        if (pointer == myTokens.size()) {
-            throw generateSyntaxException("An expression cannot be closed by a \"[\"", pointer);
-        }
-        if (myTokens.get(pointer).getType().equals("ListEnd")) {
-            return new Pair<>(new ExpressionList(expressionList), pointer + 1);
-        }
-        while (true) {
-            Pair<Expression, Integer> listPair = parseExpression(pointer);
-            if (listPair.getKey() == null) {
-                break;
-            }
-            expressionList.add(listPair.getKey());
-            pointer = listPair.getValue();
-        }
-        if (expressionList.isEmpty()) {
-            throw generateSyntaxException("Missing a valid expression to constitute a valid list of expressions", pointer);
-        }
-        Pair<Token, Integer> listEndPair = parseToken(pointer, "ListEnd");
-        if (listEndPair.getKey() == null) {
-            throw generateSyntaxException("Missing \"]\" symbol to end a list of expressions", listEndPair.getValue());
+    private boolean beginExpression() throws CommandSyntaxException {
+        myValue = null;
+        if (!hasToken(myCursor)) {
+            return false;
+        }
+        Token token = myTokens.get(myCursor);
+        Production production = myGrammar.get(token.getType());
+        if (production != null) {
+            myCursor++;
+            pushFrame(production, token);
+            return true;
+        }
+        switch (token.getType()) {
+            case LIST_START:
+                pushList();
+                return true;
+            case DIRECT:
+            case CONSTANT:
+                myCursor++;
+                myValue = new Direct(token);
+                return false;
+            case VARIABLE:
+                myCursor++;
+                if (!token.getString().startsWith(":") && atToken(TokenType.LIST_START)) {
+                    pushFrame(userFunction, token);
+                    return true;
+                }
+                myValue = new Variable(token);
+                return false;
+            default:
+                return false;
         }
-        return new Pair<>(new ExpressionList(expressionList), listEndPair.getValue());
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the Condition grammar.
+     * This method hands the Expression that the Frame asked for to the Frame.
+     *
+     * @param frame: The Frame at the top of the stack.
+     * @param value: The Expression just parsed, or null if there was none at the cursor.
      */
-    private Pair<Expression, Integer> parseCondition(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> conditionPair = parseToken(index, "Condition");
-        if (conditionPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> expressionPair = parseExpression(conditionPair.getValue());
-        if (expressionPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for expression value after a keyword in the repeat or if loop", expressionPair.getValue());
+    private void receive(Frame frame, Expression value) throws CommandSyntaxException {
+        if (frame.myProduction == null) {
+            if (value != null) {
+                frame.myList.add(value);
+                return;
+            }
+            if (frame.myList.isEmpty()) {
+                throw generateSyntaxException("Missing a valid expression to constitute a valid list of expressions", myCursor);
+            }
+            if (!atToken(TokenType.LIST_END)) {
+                throw generateSyntaxException("Missing \"]\" symbol to end a list of expressions", myCursor);
+            }
+            myCursor++;
+            frame.myClosed = true;
+            return;
         }
-        if (expressionPair.getKey() instanceof UserFunction) {
-            throw generateSyntaxException("If the expression directly after the keyword in an ifelse statement is a user-defined function, it must be bracketed by \"()\"", conditionPair.getValue());
+        Slot slot = frame.myProduction.slots()[frame.mySlot];
+        if (value == null) {
+            throw generateSyntaxException(String.format(slot.message(), frame.myToken.getString()), frame.mySlotStart);
         }
-        Pair<Expression, Integer> expressionListPair = parseExpressionList(expressionPair.getValue());
-        if (expressionListPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for a list of expressions in a repeat or if loop", expressionListPair.getValue());
+        if (slot.checkMessage() != null && value instanceof UserFunction) {
+            throw generateSyntaxException(slot.checkMessage(), frame.mySlotStart);
         }
-        return new Pair<>(new Condition(conditionPair.getKey(), expressionPair.getKey(), (ExpressionList) expressionListPair.getKey()), expressionListPair.getValue());
+        frame.myChildren[frame.myChildCount++] = value;
+        frame.mySlot++;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the MakeVariable grammar.
+     * This method works on the Frame at the top of the stack until it needs another Expression. Single Tokens, Variables and lists of Variables are parsed right here; an Expression or a list of Expressions is asked for and the method returns.
+     *
+     * @param frame: The Frame at the top of the stack.
+     * @return Whether a new Frame for a list of Expressions was pushed. If not, either the Frame asks for an Expression at the cursor, which has been started, or the Frame is complete, has been popped and its node is in myValue.
      */
-    private Pair<Expression, Integer> parseMakeVariable(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> makeVariablePair = parseToken(index, "MakeVariable");
-        if (makeVariablePair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> variablePair = parseVariable(makeVariablePair.getValue());
-        if (variablePair.getKey() == null) {
-            throw generateSyntaxException("Illegal variable format after \"make\" command in a MakeVariable command", variablePair.getValue());
-        }
-        Pair<Expression, Integer> expressionPair = parseExpression(variablePair.getValue());
-        if (expressionPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for an expression that is assigned to the variable in a MakeVariable command", expressionPair.getValue());
+    private boolean advance(Frame frame) throws CommandSyntaxException {
+        if (frame.myProduction == null) {
+            if (frame.myClosed) {
+                myDepth--;
+                myValue = new ExpressionList(frame.myList);
+                return false;
+            }
+            return beginExpression();
+        }
+        Slot[] slots = frame.myProduction.slots();
+        while (frame.mySlot < slots.length) {
+            Slot slot = slots[frame.mySlot];
+            switch (slot.kind()) {
+                case EXPRESSION:
+                    frame.mySlotStart = myCursor;
+                    return beginExpression();
+                case EXPRESSION_LIST:
+                    if (!atToken(TokenType.LIST_START)) {
+                        throw generateSyntaxException(String.format(slot.message(), frame.myToken.getString()), myCursor);
+                    }
+                    frame.mySlotStart = myCursor;
+                    pushList();
+                    return true;
+                case VARIABLE:
+                    if (!atToken(TokenType.VARIABLE)) {
+                        throw generateSyntaxException(slot.message(), myCursor);
+                    }
+                    Variable variable = new Variable(myTokens.get(myCursor++));
+                    if (slot.checkMessage() != null && variable.getVariableName().startsWith(":")) {
+                        throw generateSyntaxException(slot.checkMessage(), myCursor);
+                    }
+                    frame.myChildren[frame.myChildCount++] = variable;
+                    break;
+                case VARIABLE_LIST:
+                    if (!atToken(TokenType.LIST_START)) {
+                        throw generateSyntaxException(slot.message(), myCursor);
+                    }
+                    frame.myChildren[frame.myChildCount++] = parseVariableList();
+                    break;
+                case TOKEN:
+                    if (!atToken(slot.tokenType())) {
+                        throw generateSyntaxException(slot.message(), myCursor);
+                    }
+                    myCursor++;
+                    break;
+            }
+            frame.mySlot++;
         }
-        return new Pair<>(new MakeVariable(makeVariablePair.getKey(), (Variable) variablePair.getKey(), expressionPair.getKey()), expressionPair.getValue());
+        myDepth--;
+        myValue = frame.myProduction.build(frame.myToken, frame.myChildren);
+        Arrays.fill(frame.myChildren, null);
+        return false;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the Binary grammar.
+     * This method parses a list of Variables starting with the "[" at the cursor.
+     *
+     * @return The VariableList node.
      */
-    private Pair<Expression, Integer> parseBinary(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> binaryPair = parseToken(index, "Binary");
-        if (binaryPair.getKey() == null) {
-            return nullPair;
+    private VariableList parseVariableList() throws CommandSyntaxException {
+        myCursor++;
+        List<Variable> variableList = new ArrayList<>();
+        if (!hasToken(myCursor)) {
+            throw generateSyntaxException("An expression cannot be closed by a \"[\"", myCursor);
         }
-        Pair<Expression, Integer> firstPair = parseExpression(binaryPair.getValue());
-        if (firstPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the the first part of expression in binary grammar", firstPair.getValue());
+        if (atToken(TokenType.LIST_END)) {
+            myCursor++;
+            return new VariableList(variableList);
         }
-        Pair<Expression, Integer> secondPair = parseExpression(firstPair.getValue());
-        if (secondPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the second part of a binary expression", secondPair.getValue());
+        while (atToken(TokenType.VARIABLE)) {
+            variableList.add(new Variable(myTokens.get(myCursor++)));
         }
-        return new Pair<>(new Binary(binaryPair.getKey(), firstPair.getKey(), secondPair.getKey()), secondPair.getValue());
-    }
-
-    /**
-     * @param index
-     * @return A pair of Expression and index for the Variable grammar.
-     */
-    private Pair<Expression, Integer> parseVariable(int index) {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> variablePair = parseToken(index, "Variable");
-        if (variablePair.getKey() == null) {
-            return nullPair;
+        if (variableList.isEmpty()) {
+            throw generateSyntaxException("Missing a valid variable to constitute a valid list of variables", myCursor);
+        }
+        if (!atToken(TokenType.LIST_END)) {
+            throw generateSyntaxException("Missing \"]\" symbol to end a list of expressions", myCursor);
         }
-        return new Pair<>(new Variable(variablePair.getKey()), variablePair.getValue());
+        myCursor++;
+        return new VariableList(variableList);
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the Unary grammar.
+     * This method starts a Frame for a list of Expressions at the "[" at the cursor. An empty list is closed at once.
      */
-    private Pair<Expression, Integer> parseUnary(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> unaryPair = parseToken(index, "Unary");
-        if (unaryPair.getKey() == null) {
-            return nullPair;
+    private void pushList() throws CommandSyntaxException {
+        myCursor++;
+        if (!hasToken(myCursor)) {
+            throw generateSyntaxException("An expression cannot be closed by a \"[\"", myCursor);
         }
-        Pair<Expression, Integer> secondPair = parseExpression(unaryPair.getValue());
-        if (secondPair.getKey() == null) {
-            throw generateSyntaxException("Illegal format for the expression after a unary operator", secondPair.getValue());
+        Frame frame = pushFrame(null, null);
+        frame.myList = new ArrayList<>();
+        if (atToken(TokenType.LIST_END)) {
+            myCursor++;
+            frame.myClosed = true;
         }
-        return new Pair<>(new Unary(unaryPair.getKey(), secondPair.getKey()), secondPair.getValue());
     }
 
-    /**
-     * @param index
-     * @return A pair of Expression and index for the Group grammar.
-     */
-    private Pair<Expression, Integer> parseGroup(int index) throws CommandSyntaxException {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> groupStartPair = parseToken(index, "GroupStart");
-        if (groupStartPair.getKey() == null) {
-            return nullPair;
-        }
-        Pair<Expression, Integer> middlePair = parseExpression(groupStartPair.getValue());
-        if (middlePair.getKey() == null) {
-            throw generateSyntaxException("Illegal expression for a Group after the \"(\" symbol", middlePair.getValue());
-        }
-        Pair<Token, Integer> groupEndPair = parseToken(middlePair.getValue(), "GroupEnd");
-        if (groupEndPair.getKey() == null) {
-            throw generateSyntaxException("Missing \")\" symbol for a Group after a valid expression", groupEndPair.getValue());
-        }
-        return new Pair<>(new Group(middlePair.getKey()), groupEndPair.getValue());
+    private Frame pushFrame(Production production, Token token) {
+        if (myDepth == myFrames.size()) {
+            myFrames.add(new Frame());
+        }
+        Frame frame = myFrames.get(myDepth++);
+        frame.myProduction = production;
+        frame.myToken = token;
+        frame.mySlot = 0;
+        frame.mySlotStart = myCursor;
+        frame.myChildCount = 0;
+        frame.myList = null;
+        frame.myClosed = false;
+        return frame;
     }
 
     /**
-     * @param index
-     * @return A pair of Expression and index for the Direct grammar.
+     * A grammar rule that is being parsed, or a list of Expressions when it has no Production.
      */
-    private Pair<Expression, Integer> parseDirect(int index) {
-        Pair<Expression, Integer> nullPair = new Pair<>(null, index);
-        Pair<Token, Integer> directPair = parseToken(index, "Direct");
-        if (directPair.getKey() == null) {
-            directPair = parseToken(index, "Constant");
-            if (directPair.getKey() == null) {
-                return nullPair;
-            }
-        }
-        return new Pair<>(new Direct(directPair.getKey()), directPair.getValue());
+    private static class Frame {
+        private Production myProduction;
+        private Token myToken;
+        private int mySlot;
+        private int mySlotStart;
+        private Object[] myChildren = new Object[Production.MAX_CHILDREN];
+        private int myChildCount;
+        private List<Expression> myList;
+        private boolean myClosed;
     }
 }
@@ -0,0 +1,231 @@
+package engine.compiler.parser;
+
+import engine.compiler.lexer.Lexer;
+import engine.compiler.lexer.TokenReader;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.utils.Token;
+import engine.errors.CommandSyntaxException;
+import engine.errors.UndefinedKeywordException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class parses programs that are submitted again and again with small edits, as in the editor. It keeps the previous program with the position and the AST of each of its top level statements. When a new program comes in, only the statements around the edited characters are lexed and parsed again, and the ASTs of the statements before and after them are reused, so the time spent grows with the size of the edit rather than the size of the program.
+ * <p>
+ * A statement before the edit is reused when the Token that follows it, which the Parser looks at to tell a Variable from a user-defined function, also lies entirely before the edit. After the edit, the Tokens are the same as before from the first newline on, and parsing stops as soon as a new statement starts where an old statement used to start. A program with an error is parsed again as a whole, so that the error is reported exactly as by the Parser.
+ *
+ * @author Haotian Wang
+ */
+public class IncrementalParser {
+    private static final char NEWLINE = '\n';
+
+    private Lexer myLexer;
+    private Parser myParser;
+    private String mySource;
+    private List<Statement> myStatements;
+    private Expression myAST;
+    private int myReused;
+    private int myReparsed;
+
+    /**
+     * @param lexer: The Lexer with the languages the programs are written in.
+     * @param parser: The Parser used to parse the statements.
+     */
+    public IncrementalParser(Lexer lexer, Parser parser) {
+        myLexer = lexer;
+        myParser = parser;
+        myStatements = new ArrayList<>();
+    }
+
+    /**
+     * This method parses a program, reusing what it can from the program parsed before.
+     *
+     * @param source: The program.
+     * @return The same AST that the Parser gives for the whole program.
+     */
+    public Expression parse(String source) throws UndefinedKeywordException, CommandSyntaxException {
+        if (source.equals(mySource)) {
+            myReused = myStatements.size();
+            myReparsed = 0;
+            return myAST;
+        }
+        List<Statement> statements;
+        try {
+            statements = mySource == null ? parseAll(source) : reparse(source);
+        } catch (UndefinedKeywordException | CommandSyntaxException | IOException e) {
+            return parseWhole(source);
+        }
+        List<Expression> expressions = new ArrayList<>(statements.size());
+        for (Statement statement : statements) {
+            expressions.add(statement.myAST);
+        }
+        mySource = source;
+        myStatements = statements;
+        myAST = expressions.size() == 1 ? expressions.get(0) : new ExpressionList(expressions);
+        return myAST;
+    }
+
+    /**
+     * Forget the program parsed before, for example when the language of the Lexer changes.
+     */
+    public void reset() {
+        mySource = null;
+        myStatements = new ArrayList<>();
+        myAST = null;
+    }
+
+    /**
+     * @return The number of statements whose ASTs were reused by the last call to parse.
+     */
+    public int reusedStatements() {
+        return myReused;
+    }
+
+    /**
+     * @return The number of statements that were parsed by the last call to parse.
+     */
+    public int reparsedStatements() {
+        return myReparsed;
+    }
+
+    /**
+     * This method finds the characters that the edit changed and parses the statements around them again.
+     *
+     * @param source: The new program.
+     * @return The statements of the new program.
+     */
+    private List<Statement> reparse(String source) throws UndefinedKeywordException, CommandSyntaxException, IOException {
+        String old = mySource;
+        int limit = Math.min(old.length(), source.length());
+        int prefix = 0;
+        while (prefix < limit && old.charAt(prefix) == source.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix && old.charAt(old.length() - 1 - suffix) == source.charAt(source.length() - 1 - suffix)) {
+            suffix++;
+        }
+        int kept = countKeptStatements(prefix);
+        int restart = kept == 0 ? 0 : myStatements.get(kept).myStart;
+        int newline = old.indexOf(NEWLINE, old.length() - suffix);
+        int firstSynchronized = newline < 0 ? myStatements.size() : firstStatementAfter(newline);
+        int delta = source.length() - old.length();
+        List<Statement> statements = new ArrayList<>(myStatements.subList(0, kept));
+        int reused = parseFrom(source, restart, statements, firstSynchronized, delta);
+        for (Statement statement : myStatements.subList(reused, myStatements.size())) {
+            statements.add(new Statement(statement.myStart + delta, statement.myFirstEnd + delta, statement.myAST));
+        }
+        myReused = kept + myStatements.size() - reused;
+        return statements;
+    }
+
+    /**
+     * This method parses the statements of the new program from the given index until a statement starts where an old statement at or after firstSynchronized used to start, or until the end of the program.
+     *
+     * @param source: The new program.
+     * @param restart: The index in the new program of the first Token to parse.
+     * @param statements: The list the parsed statements are added to.
+     * @param firstSynchronized: The index of the first old statement that may be reused.
+     * @param delta: How many characters longer the new program is than the old one.
+     * @return The index of the first old statement that is reused, or the number of old statements if none is.
+     */
+    private int parseFrom(String source, int restart, List<Statement> statements, int firstSynchronized, int delta) throws UndefinedKeywordException, CommandSyntaxException, IOException {
+        StringReader reader = new StringReader(source);
+        reader.skip(restart);
+        myParser.readStream(new TokenReader(reader, myLexer, restart));
+        int candidate = firstSynchronized;
+        myReparsed = 0;
+        while (true) {
+            Token first = myParser.peekToken();
+            if (first == null) {
+                return myStatements.size();
+            }
+            while (candidate < myStatements.size() && myStatements.get(candidate).myStart + delta < first.getStart()) {
+                candidate++;
+            }
+            if (candidate < myStatements.size() && myStatements.get(candidate).myStart + delta == first.getStart()) {
+                return candidate;
+            }
+            statements.add(new Statement(first.getStart(), first.getEnd(), myParser.nextStatement()));
+            myReparsed++;
+        }
+    }
+
+    /**
+     * @param source: A program with nothing parsed before it.
+     * @return The statements of the program.
+     */
+    private List<Statement> parseAll(String source) throws UndefinedKeywordException, CommandSyntaxException, IOException {
+        List<Statement> statements = new ArrayList<>();
+        parseFrom(source, 0, statements, 0, 0);
+        myReused = 0;
+        return statements;
+    }
+
+    /**
+     * A statement before the edit is kept when the Token after it ends before the first changed character.
+     *
+     * @param prefix: The number of characters at the start that the edit did not change.
+     * @return The number of statements at the start that are kept.
+     */
+    private int countKeptStatements(int prefix) {
+        int low = 1;
+        int high = myStatements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (myStatements.get(middle).myFirstEnd < prefix) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * @param index: An index in the old program.
+     * @return The index of the first old statement that starts after the index.
+     */
+    private int firstStatementAfter(int index) {
+        int low = 0;
+        int high = myStatements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (myStatements.get(middle).myStart <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * This method parses the program as a whole, which reports any error exactly as the Parser does, and forgets the program parsed before.
+     */
+    private Expression parseWhole(String source) throws UndefinedKeywordException, CommandSyntaxException {
+        reset();
+        myLexer.readString(source);
+        myParser.readTokens(myLexer.getTokens());
+        return myParser.returnAST();
+    }
+
+    /**
+     * The position and the AST of a top level statement.
+     */
+    private static class Statement {
+        private final int myStart;
+        private final int myFirstEnd;
+        private final Expression myAST;
+
+        private Statement(int start, int firstEnd, Expression ast) {
+            myStart = start;
+            myFirstEnd = firstEnd;
+            myAST = ast;
+        }
+    }
+}
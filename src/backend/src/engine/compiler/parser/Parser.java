@@ -1,9 +1,12 @@
 package engine.compiler.parser;
 
+import engine.compiler.lexer.TokenReader;
 import engine.compiler.utils.Token;
 import engine.errors.CommandSyntaxException;
 import engine.compiler.slogoast.Expression;
+import engine.errors.UndefinedKeywordException;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -23,6 +26,23 @@ public interface Parser {
      */
     void readTokens(List<Token> tokens) throws CommandSyntaxException;
 
+    /**
+     * Reads the Tokens of a script from a TokenReader, so that the script can be parsed one top level statement at a time.
+     *
+     * @param tokens: The TokenReader of the script.
+     */
+    void readStream(TokenReader tokens);
+
+    /**
+     * @return The AST of the next top level statement of the script given to readStream, or null if the script has ended.
+     */
+    Expression nextStatement() throws CommandSyntaxException, UndefinedKeywordException, IOException;
+
+    /**
+     * @return The Token that the next top level statement of the script given to readStream starts with, or null if the script has ended.
+     */
+    Token peekToken() throws UndefinedKeywordException, IOException;
+
     /**
      * Clear the stored tokens in the internal parser.
      */
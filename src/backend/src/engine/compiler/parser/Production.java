@@ -0,0 +1,115 @@
+package engine.compiler.parser;
+
+import engine.compiler.slogoast.Expression;
+import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
+
+/**
+ * This class describes one grammar rule of SLogo for the predictive CrudeParser. A rule starts with a keyword Token and is followed by a fixed sequence of Slots, each of which is an Expression, a list, a Variable or a single Token. When every Slot is filled, the Builder makes the AST node out of the keyword and the parts that were parsed.
+ *
+ * @author Haotian Wang
+ */
+class Production {
+    static final int MAX_CHILDREN = 5;
+
+    private final Slot[] mySlots;
+    private final Builder myBuilder;
+
+    Production(Builder builder, Slot... slots) {
+        mySlots = slots;
+        myBuilder = builder;
+    }
+
+    Slot[] slots() {
+        return mySlots;
+    }
+
+    Expression build(Token token, Object[] children) {
+        return myBuilder.build(token, children);
+    }
+
+    /**
+     * Builds the AST node of a rule. The children are the parsed Slots in order, leaving out the Slots that are single Tokens.
+     */
+    interface Builder {
+        Expression build(Token token, Object[] children);
+    }
+
+    enum SlotKind {
+        EXPRESSION,
+        EXPRESSION_LIST,
+        VARIABLE,
+        VARIABLE_LIST,
+        TOKEN
+    }
+
+    /**
+     * One part of a grammar rule, together with the error message given when the part is missing. The message may contain one %s, which is replaced by the keyword of the rule.
+     */
+    static class Slot {
+        private final SlotKind myKind;
+        private final TokenType myTokenType;
+        private final String myMessage;
+        private final String myCheckMessage;
+
+        private Slot(SlotKind kind, TokenType tokenType, String message, String checkMessage) {
+            myKind = kind;
+            myTokenType = tokenType;
+            myMessage = message;
+            myCheckMessage = checkMessage;
+        }
+
+        static Slot expression(String message) {
+            return new Slot(SlotKind.EXPRESSION, null, message, null);
+        }
+
+        /**
+         * An Expression that cannot be a user-defined function, as in "if" and "ifelse" where the list that follows would be taken as the arguments of the function.
+         */
+        static Slot condition(String message, String userFunctionMessage) {
+            return new Slot(SlotKind.EXPRESSION, null, message, userFunctionMessage);
+        }
+
+        static Slot expressionList(String message) {
+            return new Slot(SlotKind.EXPRESSION_LIST, null, message, null);
+        }
+
+        static Slot variable(String message) {
+            return new Slot(SlotKind.VARIABLE, null, message, null);
+        }
+
+        /**
+         * A Variable that names a user-defined function, so that it cannot start with ":".
+         */
+        static Slot commandName(String message, String colonMessage) {
+            return new Slot(SlotKind.VARIABLE, null, message, colonMessage);
+        }
+
+        static Slot variableList(String message) {
+            return new Slot(SlotKind.VARIABLE_LIST, null, message, null);
+        }
+
+        static Slot token(TokenType type, String message) {
+            return new Slot(SlotKind.TOKEN, type, message, null);
+        }
+
+        SlotKind kind() {
+            return myKind;
+        }
+
+        TokenType tokenType() {
+            return myTokenType;
+        }
+
+        String message() {
+            return myMessage;
+        }
+
+        /**
+         * @return The message given when the part is there but breaks the extra rule of the Slot, or null if the Slot has no extra rule.
+         */
+        String checkMessage() {
+            return myCheckMessage;
+        }
+    }
+}
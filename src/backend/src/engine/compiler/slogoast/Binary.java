@@ -12,11 +12,13 @@ import model.TurtleManager;
  */
 public class Binary implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Expression myFirstExpr;
     private Expression mySecondExpr;
 
     public Binary(Token token, Expression a, Expression b) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         myFirstExpr = a;
         mySecondExpr = b;
     }
@@ -41,50 +43,71 @@ public class Binary implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        double currentX = turtleManager.getX();
-        double currentY = turtleManager.getY();
-        if (myToken.getString().equals("Sum")) {
-            return myFirstExpr.evaluate(turtleManager) + mySecondExpr.evaluate(turtleManager);
-        } else if (myToken.getString().equals("Difference")) {
-            return myFirstExpr.evaluate(turtleManager) - mySecondExpr.evaluate(turtleManager);
-        } else if (myToken.getString().equals("Quotient")) {
-            if (mySecondExpr.evaluate(turtleManager) == 0) {
-                throw new InterpretationException("The denominator in a Quotient operation cannot be zero");
+        switch (myOpcode) {
+            case AND:
+                return myFirstExpr.evaluate(turtleManager) != 0 && mySecondExpr.evaluate(turtleManager) != 0 ? 1 : 0;
+            case OR:
+                return myFirstExpr.evaluate(turtleManager) != 0 || mySecondExpr.evaluate(turtleManager) != 0 ? 1 : 0;
+            case SET_TOWARDS: {
+                double currentX = turtleManager.getX();
+                double currentY = turtleManager.getY();
+                double y = mySecondExpr.evaluate(turtleManager);
+                return Opcode.towards(turtleManager, currentX, currentY, myFirstExpr.evaluate(turtleManager), y);
             }
-            return myFirstExpr.evaluate(turtleManager) / mySecondExpr.evaluate(turtleManager);
-        } else if (myToken.getString().equals("Product")) {
-            return myFirstExpr.evaluate(turtleManager) * mySecondExpr.evaluate(turtleManager);
-        } else if (myToken.getString().equals("Remainder")) {
-            double first = myFirstExpr.evaluate(turtleManager);
-            double second = mySecondExpr.evaluate(turtleManager);
-            if (second == 0) {
-                throw new InterpretationException("The denominator in a Remainder operation cannot be zero");
+            case SET_POSITION:
+                return turtleManager.moveTo(myFirstExpr.evaluate(turtleManager), mySecondExpr.evaluate(turtleManager), false);
+            default: {
+                double first = myFirstExpr.evaluate(turtleManager);
+                return myOpcode.binary(first, mySecondExpr.evaluate(turtleManager));
             }
-            int firstInt = (int) first;
-            int secondInt = (int) second;
-            if (firstInt != first || secondInt != second) {
-                throw new InterpretationException("The two values used for a Remainder operation must be integers");
-            } return firstInt % secondInt;
-        } else if (myToken.getString().equals("Power")) {
-            return Math.pow(myFirstExpr.evaluate(turtleManager), mySecondExpr.evaluate(turtleManager));
-        } else if (myToken.getString().equals("LessThan")) {
-            return myFirstExpr.evaluate(turtleManager) < mySecondExpr.evaluate(turtleManager) ? 1 : 0;
-        } else if (myToken.getString().equals("GreaterThan")) {
-            return myFirstExpr.evaluate(turtleManager) > mySecondExpr.evaluate(turtleManager) ? 1 : 0;
-        } else if (myToken.getString().equals("Equal")) {
-            return myFirstExpr.evaluate(turtleManager) == mySecondExpr.evaluate(turtleManager) ? 1 : 0;
-        } else if (myToken.getString().equals("NotEqual")) {
-            return mySecondExpr.evaluate(turtleManager) != mySecondExpr.evaluate(turtleManager) ? 1 : 0;
-        } else if (myToken.getString().equals("And")) {
-            return myFirstExpr.evaluate(turtleManager) != 0 && mySecondExpr.evaluate(turtleManager) != 0 ? 1 : 0;
-        } else if (myToken.getString().equals("Or")) {
-            return myFirstExpr.evaluate(turtleManager) != 0 || mySecondExpr.evaluate(turtleManager) != 0 ? 1 : 0;
-        } else if (myToken.getString().equals("SetTowards")) {
-            double newAngle = Math.toDegrees(Math.atan2(mySecondExpr.evaluate(turtleManager) - currentY, myFirstExpr.evaluate(turtleManager) - currentX));
-            return turtleManager.setAngle(newAngle);
-        } else if (myToken.getString().equals("SetPosition")){
-            return turtleManager.moveTo(myFirstExpr.evaluate(turtleManager), mySecondExpr.evaluate(turtleManager), false);
         }
-        return 0;
+    }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitBinary(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The first operand of this node.
+     */
+    public Expression getFirstExpression() {
+        return myFirstExpr;
+    }
+
+    /**
+     * @return The second operand of this node.
+     */
+    public Expression getSecondExpression() {
+        return mySecondExpr;
+    }
+
+    /**
+     * @param first: The new first operand.
+     * @param second: The new second operand.
+     * @return This node if the operands are the same, or a node with the same operation on the new operands.
+     */
+    public Binary withExpressions(Expression first, Expression second) {
+        return first == myFirstExpr && second == mySecondExpr ? this : new Binary(myToken, first, second);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
     }
 }
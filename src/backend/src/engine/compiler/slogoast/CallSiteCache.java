@@ -0,0 +1,49 @@
+package engine.compiler.slogoast;
+
+import engine.compiler.storage.StateMachine;
+
+/**
+ * This class remembers the user-defined function that a call site resolved to, with the StateMachine and the procedure version it was looked up at. While neither changes, the function the name refers to and its number of parameters are the same, so the call can skip the lookup in the StateMachine and the check of the number of arguments.
+ * <p>
+ * The ASTs of a ProcedureLibrary are run by several sessions, possibly on different threads, so the three are kept together in one immutable Resolution, and a call site never sees the function one session resolved with the StateMachine of another.
+ *
+ * @author Haotian Wang
+ */
+public final class CallSiteCache {
+    private Resolution myResolution;
+
+    /**
+     * @param memory: The StateMachine the call runs against.
+     * @return The function remembered for the StateMachine, or null if it was never looked up or may have been redefined since.
+     */
+    public MakeUserInstruction get(StateMachine memory) {
+        Resolution resolution = myResolution;
+        if (resolution != null && memory == resolution.myMemory && memory.procedureVersion() == resolution.myVersion) {
+            return resolution.myFunction;
+        }
+        return null;
+    }
+
+    /**
+     * This method remembers a function that the call site has looked up and checked.
+     *
+     * @param memory: The StateMachine the function was looked up in.
+     * @param version: The procedure version of the StateMachine read before the function was looked up, so that a function of a ProcedureLibrary redefined during the lookup is looked up again.
+     * @param function: The function.
+     */
+    public void put(StateMachine memory, int version, MakeUserInstruction function) {
+        myResolution = new Resolution(memory, version, function);
+    }
+
+    private static final class Resolution {
+        private final StateMachine myMemory;
+        private final int myVersion;
+        private final MakeUserInstruction myFunction;
+
+        private Resolution(StateMachine memory, int version, MakeUserInstruction function) {
+            myMemory = memory;
+            myVersion = version;
+            myFunction = function;
+        }
+    }
+}
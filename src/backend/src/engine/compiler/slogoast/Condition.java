@@ -13,12 +13,14 @@ import model.TurtleManager;
  */
 public class Condition implements Expression {
     private Token condition;
+    private Opcode myOpcode;
     private Expression expr;
     private ExpressionList expressionList;
     private static final String LOOP_COUNT = ":repcount";
 
     public Condition(Token a, Expression val, ExpressionList list) {
         condition = a;
+        myOpcode = Opcode.of(a);
         expr = val;
         expressionList = list;
     }
@@ -43,13 +45,13 @@ public class Condition implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (condition.getString().equals("If")) {
+        if (myOpcode == Opcode.IF) {
             if (expr.evaluate(turtleManager) != 0) {
                 return expressionList.interpret(turtleManager);
             } else {
                 return 0;
             }
-        } else if (condition.getString().equals("Repeat")) {
+        } else if (myOpcode == Opcode.REPEAT) {
             int times = (int) expr.evaluate(turtleManager);
             if (times <= 0) {
                 return 0;
@@ -74,4 +76,52 @@ public class Condition implements Expression {
         }
         return 0;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitCondition(this);
+    }
+
+    /**
+     * @return The operation of this node, either Repeat or If.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The number of repetitions of a Repeat, or the condition of an If.
+     */
+    public Expression getExpression() {
+        return expr;
+    }
+
+    /**
+     * @return The body of the Repeat or the If.
+     */
+    public ExpressionList getExpressionList() {
+        return expressionList;
+    }
+
+    /**
+     * @param value: The new number of repetitions or condition.
+     * @param list: The new body.
+     * @return This node if both are the same, or a node with the same operation on the new ones.
+     */
+    public Condition withChildren(Expression value, ExpressionList list) {
+        return value == expr && list == expressionList ? this : new Condition(condition, value, list);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return condition;
+    }
 }
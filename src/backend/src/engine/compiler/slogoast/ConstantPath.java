@@ -0,0 +1,104 @@
+package engine.compiler.slogoast;
+
+import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableType;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.TurtleManager;
+import model.TurtlePath;
+
+/**
+ * This class is a Repeat whose count is a number and whose body only moves and turns the turtles by numbers, such as repeat 360 [ fd 1 rt 1 ]. Its steps are evaluated once into a TurtlePath, which the turtles follow in one call instead of interpreting the body in every iteration.
+ * <p>
+ * It leaves the StateMachine as the Repeat does. The body never reads :repcount, so it is not set in every iteration, but its value is put back at the end with the same type as the Repeat puts it back.
+ *
+ * @author Haotian Wang
+ */
+public class ConstantPath implements Expression {
+    private static final String LOOP_COUNT = ":repcount";
+
+    private Condition myLoop;
+    private TurtlePath myPath;
+
+    /**
+     * @param loop: The Repeat that the path is evaluated from.
+     * @param path: The steps of the body of the Repeat, repeated as many times as the Repeat runs it.
+     */
+    public ConstantPath(Condition loop, TurtlePath path) {
+        myLoop = loop;
+        myPath = path;
+    }
+
+    /**
+     * This method gives a String representation of the Expression node enclosed by curly braces.
+     *
+     * @return A String representation of the Repeat that the path is evaluated from.
+     */
+    @Override
+    public String toString() {
+        return myLoop.toString();
+    }
+
+    /**
+     * This method lets the AST act on a Turtle model.
+     *
+     * @param turtleManager : The TurtleManager that is affected by applying the abstract syntax tree.
+     * @return The value of the last step, as the Repeat returns the value of the last statement of its body.
+     * @throws InterpretationException
+     */
+    @Override
+    public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = turtleManager.memory();
+        boolean reset = memory.containsVariable(LOOP_COUNT);
+        int oldValue = 0;
+        if (reset) {
+            oldValue = (int) memory.getValueInGeneralForm(LOOP_COUNT);
+        }
+        double ret;
+        try {
+            ret = follow(turtleManager);
+        } catch (InterpretationException e) {
+            memory.setInteger(LOOP_COUNT, 1);
+            throw e;
+        }
+        if (reset) {
+            memory.setVariable(LOOP_COUNT, oldValue, VariableType.INTEGER);
+        }
+        return ret;
+    }
+
+    /**
+     * This method moves the turtles along the path without touching :repcount, for a Repeat nested in a loop that keeps :repcount out of the StateMachine. If no turtle is selected, it fails at the first step, as the Repeat does after setting :repcount to 1.
+     *
+     * @param turtleManager: The TurtleManager of the selected turtles.
+     * @return The value of the last step.
+     */
+    public double follow(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        return turtleManager.follow(myPath);
+    }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitConstantPath(this);
+    }
+
+    /**
+     * @return The Repeat that the path is evaluated from.
+     */
+    public Condition getLoop() {
+        return myLoop;
+    }
+
+    /**
+     * @return The steps of the path.
+     */
+    public TurtlePath getPath() {
+        return myPath;
+    }
+}
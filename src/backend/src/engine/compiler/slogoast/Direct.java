@@ -3,7 +3,6 @@ package engine.compiler.slogoast;
 import engine.compiler.utils.Token;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
-import model.PosAndAngle;
 import model.TurtleManager;
 
 /**
@@ -13,9 +12,15 @@ import model.TurtleManager;
  */
 public class Direct implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
+    private double myConstant;
 
     public Direct(Token token) {
         myToken = token;
+        myOpcode = Opcode.of(token);
+        if (myOpcode == Opcode.CONSTANT) {
+            myConstant = Double.parseDouble(token.getString());
+        }
     }
 
     /**
@@ -38,59 +43,41 @@ public class Direct implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (myToken.getString().equals("PenUp")) {
-            return turtleManager.setPenDown(false);
-        }
-        else if (myToken.getString().equals("PenDown")) {
-            return turtleManager.setPenDown(true);
-        }
-        else if (myToken.getString().equals("ShowTurtle")) {
-            return turtleManager.setVisible(true);
-        }
-        else if (myToken.getString().equals("HideTurtle")) {
-            return turtleManager.setVisible(false);
-        }
-        else if (myToken.getString().equals("Home")) {
-            return turtleManager.moveTo(PosAndAngle.X_BUF,PosAndAngle.Y_BUF,false);
-        }
-        else if (myToken.getString().equals("ClearScreen")) {
-            turtleManager.clear();
-            turtleManager.setAngle(0);
-            return turtleManager.moveTo(PosAndAngle.X_BUF,PosAndAngle.Y_BUF,false);
-        }
-        else if (myToken.getString().equals("XCoordinate")) {
-            return turtleManager.getX();
-        }
-        else if (myToken.getString().equals("YCoordinate")) {
-            return turtleManager.getY();
-        }
-        else if (myToken.getString().equals("Heading")) {
-            return turtleManager.getAngle();
+        if (myOpcode == Opcode.CONSTANT) {
+            return myConstant;
         }
-        else if (myToken.getString().equals("IsPenDown")) {
-            return turtleManager.isPenDown() ? turtleManager.TRUE : turtleManager.FALSE;
-        }
-        else if (myToken.getString().equals("IsShowing")) {
-            return turtleManager.isVisible() ? turtleManager.TRUE : turtleManager.FALSE;
-        }
-        else if (myToken.getString().equals("Pi")){
-            return Math.PI;
-        }
-        else if (myToken.getString().equals("ID")){
-            return turtleManager.selected().get(turtleManager.selected().size() - 1);
-        }
-        else if (myToken.getString().equals("Turtles")){
-            return turtleManager.turtleModels().keySet().size();
-        }
-        else if (myToken.getString().equals("Stamp")) {
-            return turtleManager.stamp();
-        }
-        else if (myToken.getString().equals("ClearStamps")) {
-            return turtleManager.clearStamps();
-        }
-        else if (myToken.getType().equals("Constant")){
-            return Double.parseDouble(myToken.getString());
-        }
-        return 0;
+        return myOpcode.direct(turtleManager);
+    }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitDirect(this);
+    }
+
+    /**
+     * @return The operation of this node, CONSTANT if it is a number.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The value of the number if this node is a Constant.
+     */
+    public double getConstant() {
+        return myConstant;
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
     }
 }
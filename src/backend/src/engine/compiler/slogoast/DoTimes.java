@@ -13,6 +13,7 @@ import model.TurtleManager;
  */
 public class DoTimes implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Token start;
     private Variable var;
     private Expression limit;
@@ -21,6 +22,7 @@ public class DoTimes implements Expression {
 
     public DoTimes(Token token, Token firstStart, Variable variable, Expression varLit, Token firstEnd, ExpressionList list) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         start = firstStart;
         var = variable;
         limit = varLit;
@@ -48,7 +50,7 @@ public class DoTimes implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (myToken.getString().equals("DoTimes")) {
+        if (myOpcode == Opcode.DO_TIMES) {
             int limitInt = (int) limit.evaluate(turtleManager);
             if (limitInt < 1) {
                 return 0;
@@ -77,4 +79,73 @@ public class DoTimes implements Expression {
         }
         return 0;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitDoTimes(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The loop Variable.
+     */
+    public Variable getVariable() {
+        return var;
+    }
+
+    /**
+     * @return The Expression of the last value of the loop Variable.
+     */
+    public Expression getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The body of the loop.
+     */
+    public ExpressionList getExpressionList() {
+        return expressionList;
+    }
+
+    /**
+     * @param newLimit: The new Expression of the last value of the loop Variable.
+     * @param list: The new body.
+     * @return This node if both are the same, or a loop over the same Variable with the new ones.
+     */
+    public DoTimes withChildren(Expression newLimit, ExpressionList list) {
+        return newLimit == limit && list == expressionList ? this : new DoTimes(myToken, start, var, newLimit, end, list);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
+
+    /**
+     * @return The Token of the bracket before the loop Variable.
+     */
+    public Token getStartToken() {
+        return start;
+    }
+
+    /**
+     * @return The Token of the bracket after the limit.
+     */
+    public Token getEndToken() {
+        return end;
+    }
 }
@@ -28,6 +28,14 @@ public interface Expression {
      */
     double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException;
 
+    /**
+     * This method lets an ExpressionVisitor walk the AST, by calling the method of the visitor for the class of this node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    <T> T accept(ExpressionVisitor<T> visitor);
+
     /**
      * This method evaluates the return value of the expression, without applying actual effects on the turtle.
      *
@@ -51,7 +51,18 @@ public class ExpressionList implements Expression {
     /**
      * @return The actual List of Expression associated with this ExpressionList object.
      */
-    List<Expression> getListOfExpressions() {
+    public List<Expression> getListOfExpressions() {
         return expressionList;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitExpressionList(this);
+    }
 }
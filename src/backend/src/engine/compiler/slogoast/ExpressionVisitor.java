@@ -0,0 +1,45 @@
+package engine.compiler.slogoast;
+
+/**
+ * This interface lets other stages of the compiler, such as the bytecode compiler, walk an AST without the AST nodes knowing about them. Each AST node calls the method for its own class in accept.
+ *
+ * @param <T>: The type of the result of visiting a node.
+ * @author Haotian Wang
+ */
+public interface ExpressionVisitor<T> {
+    T visitUnary(Unary node);
+
+    T visitBinary(Binary node);
+
+    T visitDirect(Direct node);
+
+    T visitVariable(Variable node);
+
+    T visitGroup(Group node);
+
+    T visitExpressionList(ExpressionList node);
+
+    T visitVariableList(VariableList node);
+
+    T visitMakeVariable(MakeVariable node);
+
+    T visitCondition(Condition node);
+
+    T visitDoTimes(DoTimes node);
+
+    T visitFor(For node);
+
+    T visitIfElse(IfElse node);
+
+    T visitMakeUserInstruction(MakeUserInstruction node);
+
+    T visitUserFunction(UserFunction node);
+
+    T visitTell(Tell node);
+
+    T visitTwoList(TwoList node);
+
+    T visitQuaternary(Quaternary node);
+
+    T visitConstantPath(ConstantPath node);
+}
@@ -2,7 +2,6 @@ package engine.compiler.slogoast;
 
 import engine.compiler.utils.Token;
 import engine.compiler.storage.StateMachine;
-import engine.compiler.storage.VariableType;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 import model.TurtleManager;
@@ -14,14 +13,17 @@ import model.TurtleManager;
  */
 public class For implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Variable var;
     private Expression min;
     private Expression max;
     private Expression step;
     private ExpressionList expressionList;
+    private boolean invariantBounds;
 
     public For(Token token, Variable variable, Expression lower, Expression higher, Expression increment, ExpressionList list) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         var = variable;
         min = lower;
         max = higher;
@@ -49,7 +51,7 @@ public class For implements Expression {
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
         double ret = 0;
-        if (myToken.getString().equals("For")) {
+        if (myOpcode == Opcode.FOR) {
             String variableName = var.getVariableName();
             boolean reset = turtleManager.memory().containsVariable(variableName);
             double old = 0;
@@ -58,16 +60,135 @@ public class For implements Expression {
             }
 
             StateMachine memory = turtleManager.memory();
-            for (double counter = min.evaluate(turtleManager); counter < max.evaluate(turtleManager);  counter += step.evaluate(turtleManager)){
-                memory.setVariable(var.getVariableName(), counter, VariableType.DOUBLE);
-                ret = expressionList.interpret(turtleManager);
+            if (invariantBounds) {
+                ret = loopWithInvariantBounds(turtleManager);
+            } else {
+                for (double counter = min.evaluate(turtleManager); counter < max.evaluate(turtleManager);  counter += step.evaluate(turtleManager)){
+                    memory.setDouble(var.getVariableName(), counter);
+                    ret = expressionList.interpret(turtleManager);
+                }
             }
             if (reset){
-                turtleManager.memory().setVariable(variableName, old, VariableType.DOUBLE);
+                turtleManager.memory().setDouble(variableName, old);
             } else{
                 turtleManager.memory().removeVariable(variableName);
             }
         }
         return ret;
     }
+
+    /**
+     * This method runs the loop evaluating the bound once, when it is first compared, and the increment once, after the first iteration. The values are the same as if they were evaluated every time, and the errors are thrown at the same points.
+     */
+    private double loopWithInvariantBounds(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        double ret = 0;
+        StateMachine memory = turtleManager.memory();
+        double counter = min.evaluate(turtleManager);
+        double bound = max.evaluate(turtleManager);
+        if (counter < bound) {
+            memory.setDouble(var.getVariableName(), counter);
+            ret = expressionList.interpret(turtleManager);
+            double increment = step.evaluate(turtleManager);
+            for (counter += increment; counter < bound; counter += increment) {
+                memory.setDouble(var.getVariableName(), counter);
+                ret = expressionList.interpret(turtleManager);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitFor(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The loop Variable.
+     */
+    public Variable getVariable() {
+        return var;
+    }
+
+    /**
+     * @return The Expression of the first value of the loop Variable.
+     */
+    public Expression getStart() {
+        return min;
+    }
+
+    /**
+     * @return The Expression that the loop Variable must stay below.
+     */
+    public Expression getEnd() {
+        return max;
+    }
+
+    /**
+     * @return The Expression added to the loop Variable after each iteration.
+     */
+    public Expression getIncrement() {
+        return step;
+    }
+
+    /**
+     * @return The body of the loop.
+     */
+    public ExpressionList getExpressionList() {
+        return expressionList;
+    }
+
+    /**
+     * @return Whether the bound and the increment give the same value every time they are evaluated in the loop, so that they are only evaluated once.
+     */
+    public boolean hasInvariantBounds() {
+        return invariantBounds;
+    }
+
+    /**
+     * @return This node if its bounds are already marked invariant, or the same loop with its bound and increment evaluated once. The caller must make sure that they are invariant.
+     */
+    public For withInvariantBounds() {
+        if (invariantBounds) {
+            return this;
+        }
+        For loop = new For(myToken, var, min, max, step, expressionList);
+        loop.invariantBounds = true;
+        return loop;
+    }
+
+    /**
+     * @param lower: The new Expression of the first value of the loop Variable.
+     * @param higher: The new Expression that the loop Variable must stay below.
+     * @param increment: The new Expression added to the loop Variable after each iteration.
+     * @param list: The new body.
+     * @return This node if all of them are the same, or a loop over the same Variable with the new ones, whose bounds are still marked invariant if they were.
+     */
+    public For withChildren(Expression lower, Expression higher, Expression increment, ExpressionList list) {
+        if (lower == min && higher == max && increment == step && list == expressionList) {
+            return this;
+        }
+        For loop = new For(myToken, var, lower, higher, increment, list);
+        loop.invariantBounds = invariantBounds;
+        return loop;
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
 }
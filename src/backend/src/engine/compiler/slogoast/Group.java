@@ -37,4 +37,30 @@ public class Group implements Expression {
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
         return myExpr.interpret(turtleManager);
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitGroup(this);
+    }
+
+    /**
+     * @return The Expression inside the parentheses.
+     */
+    public Expression getExpression() {
+        return myExpr;
+    }
+
+    /**
+     * @param expression: The new Expression in the parentheses.
+     * @return This node if the Expression is the same, or a node grouping the new Expression.
+     */
+    public Group withExpression(Expression expression) {
+        return expression == myExpr ? this : new Group(expression);
+    }
 }
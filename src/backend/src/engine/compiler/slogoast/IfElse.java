@@ -12,12 +12,14 @@ import model.TurtleManager;
  */
 public class IfElse implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Expression expr;
     private ExpressionList expressionListA;
     private ExpressionList expressionListB;
 
     public IfElse(Token a, Expression val, ExpressionList listA, ExpressionList listB) {
         myToken = a;
+        myOpcode = Opcode.of(a);
         expr = val;
         expressionListA = listA;
         expressionListB = listB;
@@ -43,7 +45,7 @@ public class IfElse implements Expression {
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
         double ret = 0;
-        if (myToken.getString().equals("IfElse")) {
+        if (myOpcode == Opcode.IF_ELSE) {
             if (expr.evaluate(turtleManager) != 0){
                 ret = expressionListA.evaluate(turtleManager);
             } else{
@@ -52,4 +54,60 @@ public class IfElse implements Expression {
         }
         return ret;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitIfElse(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The condition.
+     */
+    public Expression getExpression() {
+        return expr;
+    }
+
+    /**
+     * @return The body run when the condition is not zero.
+     */
+    public ExpressionList getTrueList() {
+        return expressionListA;
+    }
+
+    /**
+     * @return The body run when the condition is zero.
+     */
+    public ExpressionList getFalseList() {
+        return expressionListB;
+    }
+
+    /**
+     * @param value: The new condition.
+     * @param listA: The new body run when the condition is not zero.
+     * @param listB: The new body run when the condition is zero.
+     * @return This node if all of them are the same, or a node with the new ones.
+     */
+    public IfElse withChildren(Expression value, ExpressionList listA, ExpressionList listB) {
+        return value == expr && listA == expressionListA && listB == expressionListB ? this : new IfElse(myToken, value, listA, listB);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
 }
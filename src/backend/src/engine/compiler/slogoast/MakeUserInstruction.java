@@ -1,5 +1,6 @@
 package engine.compiler.slogoast;
 
+import engine.compiler.jvm.ProcedureProfile;
 import engine.compiler.utils.Token;
 import model.TurtleManager;
 
@@ -10,16 +11,20 @@ import model.TurtleManager;
  */
 public class MakeUserInstruction implements Expression {
     private Token action;
+    private Opcode myOpcode;
     private Variable myVar;
     private VariableList variableList;
     private ExpressionList expressionList;
+    private ProcedureProfile myProfile;
 
 
     public MakeUserInstruction(Token a, Variable variable, VariableList varList, ExpressionList exprList) {
         action = a;
+        myOpcode = Opcode.of(a);
         myVar = variable;
         variableList = varList;
         expressionList = exprList;
+        myProfile = new ProcedureProfile();
     }
 
     /**
@@ -40,7 +45,7 @@ public class MakeUserInstruction implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) {
-        if (action.getString().equals("MakeUserInstruction")) {
+        if (myOpcode == Opcode.MAKE_USER_INSTRUCTION) {
             turtleManager.memory().setExpression(myVar.getVariableName(), this);
         }
         return 0;
@@ -51,14 +56,61 @@ public class MakeUserInstruction implements Expression {
      *
      * @return A VariableList object.
      */
-    VariableList getParameters() {
+    public VariableList getParameters() {
         return variableList;
     }
 
     /**
      * @return An ExpressionList object associated with this MakeUserInstruction object.
      */
-    ExpressionList getExpressionList() {
+    public ExpressionList getExpressionList() {
         return expressionList;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitMakeUserInstruction(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The name of the user-defined function.
+     */
+    public Variable getVariable() {
+        return myVar;
+    }
+
+    /**
+     * @return What the ProcedureCompiler knows about this definition.
+     */
+    public ProcedureProfile getProfile() {
+        return myProfile;
+    }
+
+    /**
+     * @param list: The new body of the user-defined function.
+     * @return This node if the body is the same, or a definition of the same function with the same parameters and the new body.
+     */
+    public MakeUserInstruction withExpressionList(ExpressionList list) {
+        return list == expressionList ? this : new MakeUserInstruction(action, myVar, variableList, list);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return action;
+    }
 }
@@ -1,7 +1,6 @@
 package engine.compiler.slogoast;
 
 import engine.compiler.utils.Token;
-import engine.compiler.storage.VariableType;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 import model.TurtleManager;
@@ -13,11 +12,13 @@ import model.TurtleManager;
  */
 public class MakeVariable implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Variable myVar;
     private Expression myExpr;
 
     public MakeVariable(Token token, Variable var, Expression a) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         myVar = var;
         myExpr = a;
     }
@@ -41,10 +42,57 @@ public class MakeVariable implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (myToken.getString().equals("MakeVariable")) {
+        if (myOpcode == Opcode.MAKE_VARIABLE) {
             double ret = myExpr.evaluate(turtleManager);
-            turtleManager.memory().setVariable(myVar.getVariableName(), ret, VariableType.DOUBLE);
+            turtleManager.memory().setDouble(myVar.getVariableName(), ret);
             return ret;
         } return 0;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitMakeVariable(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The Variable that is assigned.
+     */
+    public Variable getVariable() {
+        return myVar;
+    }
+
+    /**
+     * @return The Expression whose value is assigned.
+     */
+    public Expression getExpression() {
+        return myExpr;
+    }
+
+    /**
+     * @param value: The new Expression whose value is assigned.
+     * @return This node if the Expression is the same, or a node assigning the new Expression to the same Variable.
+     */
+    public MakeVariable withExpression(Expression value) {
+        return value == myExpr ? this : new MakeVariable(myToken, myVar, value);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
 }
@@ -0,0 +1,335 @@
+package engine.compiler.slogoast;
+
+import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.PosAndAngle;
+import model.TurtleManager;
+import model.TurtleModel;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This enum class includes the operation that an AST node performs. The operation is looked up once, when the Parser builds the node from its keyword Token, so that interpreting the node is a switch over this enum instead of comparing the String of the Token with every command name.
+ * <p>
+ * The enum also holds what the operations of the Unary, Binary and Direct nodes do with the values of their operands, so that the interpreter, the VirtualMachine and the compiled user-defined functions share one definition of each.
+ *
+ * @author Haotian Wang
+ */
+public enum Opcode {
+    FORWARD("Forward"),
+    BACKWARD("Backward"),
+    LEFT("Left"),
+    RIGHT("Right"),
+    SET_HEADING("SetHeading"),
+    MINUS("Minus"),
+    RANDOM("Random"),
+    SINE("Sine"),
+    COSINE("Cosine"),
+    TANGENT("Tangent"),
+    ARC_TANGENT("ArcTangent"),
+    NATURAL_LOG("NaturalLog"),
+    NOT("Not"),
+    SET_BACKGROUND("SetBackground"),
+    SET_PEN_COLOR("SetPenColor"),
+    SET_PEN_SIZE("SetPenSize"),
+    SET_SHAPE("SetShape"),
+    PEN_UP("PenUp"),
+    PEN_DOWN("PenDown"),
+    SHOW_TURTLE("ShowTurtle"),
+    HIDE_TURTLE("HideTurtle"),
+    HOME("Home"),
+    CLEAR_SCREEN("ClearScreen"),
+    X_COORDINATE("XCoordinate"),
+    Y_COORDINATE("YCoordinate"),
+    HEADING("Heading"),
+    IS_PEN_DOWN("IsPenDown"),
+    IS_SHOWING("IsShowing"),
+    PI("Pi"),
+    GET_PEN_COLOR("GetPenColor"),
+    GET_SHAPE("GetShape"),
+    STAMP("Stamp"),
+    CLEAR_STAMPS("ClearStamps"),
+    ID("ID"),
+    TURTLES("Turtles"),
+    SUM("Sum"),
+    DIFFERENCE("Difference"),
+    QUOTIENT("Quotient"),
+    PRODUCT("Product"),
+    REMAINDER("Remainder"),
+    POWER("Power"),
+    LESS_THAN("LessThan"),
+    GREATER_THAN("GreaterThan"),
+    EQUAL("Equal"),
+    NOT_EQUAL("NotEqual"),
+    AND("And"),
+    OR("Or"),
+    SET_TOWARDS("SetTowards"),
+    SET_POSITION("SetPosition"),
+    MAKE_VARIABLE("MakeVariable"),
+    REPEAT("Repeat"),
+    IF("If"),
+    TELL("Tell"),
+    DO_TIMES("DoTimes"),
+    FOR("For"),
+    IF_ELSE("IfElse"),
+    ASK("Ask"),
+    ASK_WITH("AskWith"),
+    MAKE_USER_INSTRUCTION("MakeUserInstruction"),
+    SET_PALETTE("SetPalette"),
+    CONSTANT(null),
+    UNKNOWN(null);
+
+    private static final Set<Opcode> PURE_OPERATIONS = EnumSet.of(
+            MINUS, SINE, COSINE, TANGENT, ARC_TANGENT, NATURAL_LOG, NOT,
+            SUM, DIFFERENCE, QUOTIENT, PRODUCT, REMAINDER, POWER,
+            LESS_THAN, GREATER_THAN, EQUAL, NOT_EQUAL, AND, OR,
+            CONSTANT, PI);
+    private static final Map<String, Opcode> myCommands = new HashMap<>();
+    static {
+        for (Opcode opcode : values()) {
+            if (opcode.myCommand != null) {
+                myCommands.put(opcode.myCommand, opcode);
+            }
+        }
+    }
+
+    private final String myCommand;
+
+    Opcode(String command) {
+        myCommand = command;
+    }
+
+    /**
+     * @param token: The keyword Token of an AST node, or a Constant Token.
+     * @return The operation named by the Token, CONSTANT for a Constant, or UNKNOWN if the Token names no operation.
+     */
+    public static Opcode of(Token token) {
+        if (token.getType() == TokenType.CONSTANT) {
+            return CONSTANT;
+        }
+        return myCommands.getOrDefault(token.getString(), UNKNOWN);
+    }
+
+    /**
+     * @return Whether a Unary, Binary or Direct node with this operation only computes a value from its operands, without touching the turtles or the StateMachine.
+     */
+    public boolean isPure() {
+        return PURE_OPERATIONS.contains(this);
+    }
+
+    /**
+     * This method performs the operation of a Unary node on the value of its operand.
+     *
+     * @param turtleManager: The TurtleManager the turtle commands act on.
+     * @param value: The value of the operand.
+     * @return The result of the operation, or 0 if this is not the operation of a Unary node.
+     */
+    public double unary(TurtleManager turtleManager, double value) throws InterpretationException, UndefinedKeywordException {
+        switch (this) {
+            case FORWARD:
+                return turtleManager.forward(value);
+            case BACKWARD:
+                return turtleManager.forward(-value);
+            case RIGHT:
+                return turtleManager.leftBy(-value);
+            case LEFT:
+                return turtleManager.leftBy(value);
+            case SET_HEADING:
+                return turtleManager.setAngle(value);
+            case SET_BACKGROUND:
+                return turtleManager.setBackground((int) value);
+            case SET_PEN_COLOR:
+                return turtleManager.setPenColor((int) value);
+            case SET_PEN_SIZE:
+                return turtleManager.setPenSize((int) value);
+            case SET_SHAPE:
+                return turtleManager.setShape((int) value);
+            default:
+                return unary(value);
+        }
+    }
+
+    /**
+     * This method performs the operation of a Unary node that only computes a value from its operand.
+     *
+     * @param value: The value of the operand.
+     * @return The result of the operation, or 0 if this is not such an operation.
+     */
+    public double unary(double value) {
+        switch (this) {
+            case MINUS:
+                return -1*value;
+            case SINE:
+                return sine(value);
+            case COSINE:
+                return cosine(value);
+            case TANGENT:
+                return tangent(value);
+            case ARC_TANGENT:
+                return arcTangent(value);
+            case NATURAL_LOG:
+                return Math.log(value);
+            case NOT:
+                return (value == 0) ? 1:0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * This method performs the operation of a Binary node that only computes a value from its two operands. And and Or are left to the node, since they do not always evaluate their second operand.
+     *
+     * @param first: The value of the first operand.
+     * @param second: The value of the second operand.
+     * @return The result of the operation, or 0 if this is not such an operation.
+     */
+    public double binary(double first, double second) throws InterpretationException {
+        switch (this) {
+            case SUM:
+                return first + second;
+            case DIFFERENCE:
+                return first - second;
+            case QUOTIENT:
+                return quotient(first, second);
+            case PRODUCT:
+                return first * second;
+            case REMAINDER:
+                return remainder(first, second);
+            case POWER:
+                return Math.pow(first, second);
+            case LESS_THAN:
+                return first < second ? 1 : 0;
+            case GREATER_THAN:
+                return first > second ? 1 : 0;
+            case EQUAL:
+                return first == second ? 1 : 0;
+            case NOT_EQUAL:
+                return first != second ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * This method performs the operation of a Direct node other than a Constant.
+     *
+     * @param turtleManager: The TurtleManager the turtle commands act on.
+     * @return The result of the operation, or 0 if this is not the operation of a Direct node.
+     */
+    public double direct(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        switch (this) {
+            case PEN_UP:
+                return turtleManager.setPenDown(false);
+            case PEN_DOWN:
+                return turtleManager.setPenDown(true);
+            case SHOW_TURTLE:
+                return turtleManager.setVisible(true);
+            case HIDE_TURTLE:
+                return turtleManager.setVisible(false);
+            case HOME:
+                return turtleManager.moveTo(PosAndAngle.X_BUF,PosAndAngle.Y_BUF,false);
+            case CLEAR_SCREEN:
+                turtleManager.clear();
+                turtleManager.setAngle(0);
+                return turtleManager.moveTo(PosAndAngle.X_BUF,PosAndAngle.Y_BUF,false);
+            case X_COORDINATE:
+                return turtleManager.getX();
+            case Y_COORDINATE:
+                return turtleManager.getY();
+            case HEADING:
+                return turtleManager.getAngle();
+            case IS_PEN_DOWN:
+                return turtleManager.isPenDown() ? TurtleModel.TRUE : TurtleModel.FALSE;
+            case IS_SHOWING:
+                return turtleManager.isVisible() ? TurtleModel.TRUE : TurtleModel.FALSE;
+            case PI:
+                return Math.PI;
+            case ID:
+                return turtleManager.selected().get(turtleManager.selected().size() - 1);
+            case TURTLES:
+                return turtleManager.turtleModels().keySet().size();
+            case STAMP:
+                return turtleManager.stamp();
+            case CLEAR_STAMPS:
+                return turtleManager.clearStamps();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param degrees: An angle in degrees.
+     * @return The sine of the angle.
+     */
+    public static double sine(double degrees) {
+        return Math.sin(Math.toRadians(degrees));
+    }
+
+    /**
+     * @param degrees: An angle in degrees.
+     * @return The cosine of the angle.
+     */
+    public static double cosine(double degrees) {
+        return Math.cos(Math.toRadians(degrees));
+    }
+
+    /**
+     * @param degrees: An angle in degrees.
+     * @return The tangent of the angle.
+     */
+    public static double tangent(double degrees) {
+        return Math.tan(Math.toRadians(degrees));
+    }
+
+    /**
+     * @param value: The operand of ArcTangent, which is converted from degrees like the operands of the other trigonometric operations.
+     * @return The arc tangent.
+     */
+    public static double arcTangent(double value) {
+        return Math.atan(Math.toRadians(value));
+    }
+
+    /**
+     * @return The quotient of two numbers, which fails if the denominator is zero.
+     */
+    public static double quotient(double first, double second) throws InterpretationException {
+        if (second == 0) {
+            throw new InterpretationException("The denominator in a Quotient operation cannot be zero");
+        }
+        return first / second;
+    }
+
+    /**
+     * @return The remainder of dividing two integers, which fails if the denominator is zero or either number is not an integer.
+     */
+    public static double remainder(double first, double second) throws InterpretationException {
+        if (second == 0) {
+            throw new InterpretationException("The denominator in a Remainder operation cannot be zero");
+        }
+        int firstInt = (int) first;
+        int secondInt = (int) second;
+        if (firstInt != first || secondInt != second) {
+            throw new InterpretationException("The two values used for a Remainder operation must be integers");
+        }
+        return firstInt % secondInt;
+    }
+
+    /**
+     * This method turns the turtles towards a point, from the position they had before the point was evaluated.
+     *
+     * @param currentX: The x coordinate of the turtle before the point was evaluated.
+     * @param currentY: The y coordinate of the turtle before the point was evaluated.
+     * @param x: The x coordinate of the point.
+     * @param y: The y coordinate of the point.
+     * @return The result of turning the turtles.
+     */
+    public static double towards(TurtleManager turtleManager, double currentX, double currentY, double x, double y) throws InterpretationException, UndefinedKeywordException {
+        double newAngle = Math.toDegrees(Math.atan2(y - currentY, x - currentX));
+        return turtleManager.setAngle(newAngle);
+    }
+}
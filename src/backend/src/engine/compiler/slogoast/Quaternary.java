@@ -5,6 +5,8 @@ import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 import model.TurtleManager;
 
+import java.util.List;
+
 /**
  * Implements the Ternary operator in AST node.
  *
@@ -12,6 +14,7 @@ import model.TurtleManager;
  */
 public class Quaternary implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private Expression firstArg;
     private Expression secondArg;
     private Expression thirdArg;
@@ -19,6 +22,7 @@ public class Quaternary implements Expression {
 
     public Quaternary(Token token, Expression expr1, Expression expr2, Expression expr3, Expression expr4) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         firstArg = expr1;
         secondArg = expr2;
         thirdArg = expr3;
@@ -34,7 +38,7 @@ public class Quaternary implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (myToken.getString().equals("SetPalette")) {
+        if (myOpcode == Opcode.SET_PALETTE) {
             double indexNum = firstArg.evaluate(turtleManager);
             String index = "ColorIndex" + (int)indexNum;
             String hex = "#" + decimalToHex(secondArg.evaluate(turtleManager)) +
@@ -62,4 +66,29 @@ public class Quaternary implements Expression {
     public String toString() {
         return String.format("{%s %s %s %s %s}", myToken.getString(), firstArg.toString(), secondArg.toString(), thirdArg.toString(), fourthArg.toString());
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitQuaternary(this);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
+
+    /**
+     * @return The four arguments, in order.
+     */
+    public List<Expression> getArguments() {
+        return List.of(firstArg, secondArg, thirdArg, fourthArg);
+    }
 }
@@ -15,10 +15,12 @@ import java.util.List;
  */
 public class Tell implements Expression {
     private Token myToken;
+    private Opcode myOpcode;
     private ExpressionList turtles;
 
     public Tell(Token token, ExpressionList list) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         turtles = list;
     }
 
@@ -31,7 +33,7 @@ public class Tell implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        if (myToken.getString().equals("Tell")) {
+        if (myOpcode == Opcode.TELL) {
             List<Integer> indices = new ArrayList<>();
             for (Expression index: turtles.getListOfExpressions()){
                 indices.add((int)index.evaluate(turtleManager));
@@ -50,4 +52,29 @@ public class Tell implements Expression {
     public String toString() {
         return String.format("{%s %s}", myToken.getString(), turtles.toString());
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitTell(this);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
+
+    /**
+     * @return The Expressions of the IDs of the turtles told.
+     */
+    public ExpressionList getTurtles() {
+        return turtles;
+    }
 }
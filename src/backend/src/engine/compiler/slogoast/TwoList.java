@@ -15,11 +15,13 @@ import java.util.List;
  */
 public class TwoList implements Expression{
     private Token myToken;
+    private Opcode myOpcode;
     private ExpressionList listA;
     private ExpressionList listB;
 
     public TwoList(Token token, ExpressionList list1, ExpressionList list2) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         listA = list1;
         listB = list2;
     }
@@ -45,7 +47,7 @@ public class TwoList implements Expression{
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
         double ret = 0;
         List<Integer> oldSelected = turtleManager.selected();
-        if (myToken.getString().equals("Ask")) {
+        if (myOpcode == Opcode.ASK) {
 
             List<Integer> indices = new ArrayList<>();
             for (Expression index: listA.getListOfExpressions()){
@@ -58,7 +60,7 @@ public class TwoList implements Expression{
                 ret = op.evaluate(turtleManager);
             }
 
-        } else if (myToken.getString().equals("AskWith")) {
+        } else if (myOpcode == Opcode.ASK_WITH) {
             Expression check = listA.getListOfExpressions().get(0);
 
             List<Integer> indices = new ArrayList<>();
@@ -83,4 +85,36 @@ public class TwoList implements Expression{
         turtleManager.tell(oldSelected);
         return ret;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitTwoList(this);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
+
+    /**
+     * @return The first list, which selects the turtles.
+     */
+    public ExpressionList getFirstList() {
+        return listA;
+    }
+
+    /**
+     * @return The second list, which runs on the turtles selected.
+     */
+    public ExpressionList getSecondList() {
+        return listB;
+    }
 }
@@ -12,10 +12,12 @@ import model.TurtleManager;
  */
 public class Unary implements Expression {
     private final Token myToken;
+    private final Opcode myOpcode;
     private final Expression myExpr;
 
     public Unary(Token token, Expression a) {
         myToken = token;
+        myOpcode = Opcode.of(token);
         myExpr = a;
     }
 
@@ -38,56 +40,47 @@ public class Unary implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        double head = turtleManager.getAngle(); //in radians
         double value = myExpr.evaluate(turtleManager);
-        if (myToken.getString().equals("Forward")){
-            return turtleManager.forward(value);
-        }
-        else if (myToken.getString().equals("Backward")){
-            return turtleManager.forward(-value);
-        }
-        else if (myToken.getString().equals("Right")){
-            return turtleManager.leftBy(-value);
-        }
-        else if (myToken.getString().equals("Left")){
-            return turtleManager.leftBy(value);
-        }
-        else if (myToken.getString().equals("SetHeading")){
-            return turtleManager.setAngle(value);
-        }
-        else if (myToken.getString().equals("Minus")){
-            return -1*value;
-        }
-        else if (myToken.getString().equals("Sin")){
-            return Math.sin(Math.toRadians(value));
-        }
-        else if (myToken.getString().equals("Cos")) {
-            return Math.cos(Math.toRadians(value));
-        }
-        else if (myToken.getString().equals("Tangent")){
-            return Math.tan(Math.toRadians(value));
-        }
-        else if (myToken.getString().equals("ArcTangent")){
-            return Math.atan(Math.toRadians(value));
-        }
-        else if (myToken.getString().equals("NaturalLog")){
-            return Math.log(value);
-        }
-        else if (myToken.getString().equals("Not")){
-            return (value == 0) ? 1:0;
-        }
-        else if (myToken.getString().equals("SetBackground")) {
-            return turtleManager.setBackground((int) value);
-        }
-        else if (myToken.getString().equals("SetPenColor")) {
-            return turtleManager.setPenColor((int) value);
-        }
-        else if (myToken.getString().equals("SetPenSize")) {
-            return turtleManager.setPenSize((int) value);
-        }
-        else if(myToken.getString().equals("SetShape")) {
-            return turtleManager.setShape((int) value);
-        }
-        return 0;
+        return myOpcode.unary(turtleManager, value);
+    }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitUnary(this);
+    }
+
+    /**
+     * @return The operation of this node.
+     */
+    public Opcode getOpcode() {
+        return myOpcode;
+    }
+
+    /**
+     * @return The operand of this node.
+     */
+    public Expression getExpression() {
+        return myExpr;
+    }
+
+    /**
+     * @param operand: The new operand.
+     * @return This node if the operand is the same, or a node with the same operation on the new operand.
+     */
+    public Unary withExpression(Expression operand) {
+        return operand == myExpr ? this : new Unary(myToken, operand);
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
     }
 }
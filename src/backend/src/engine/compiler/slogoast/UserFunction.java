@@ -1,23 +1,33 @@
 package engine.compiler.slogoast;
 
+import engine.compiler.storage.FunctionMemo;
 import engine.compiler.storage.StateMachine;
-import engine.compiler.storage.StateMachineV2;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 import model.TurtleManager;
 
 /**
  * The class handles the UserFunction AST node. For example, :drawSquare [4 5] is such a UserFunction.
+ * <p>
+ * The function is looked up once and kept in a CallSiteCache until the user-defined functions change, so a call run again, such as a recursive one, goes straight to the body.
+ * <p>
+ * When the function is pure, its result is looked up in the FunctionMemo of the StateMachine by the values of the arguments once they are bound, and the body only runs if it is not there.
+ * <p>
+ * Otherwise the body is run by the ProcedureCompiler of the StateMachine, which compiles it to a hidden class once it is hot.
+ * <p>
+ * The parameters are bound by name in the StateMachine, so that the functions called from the body can read them, but the StateMachine saves the values they shadow on its own stack and does not notify its observers, so a call does not allocate a backup StateMachine or refresh the views of the variables.
  *
  * @author Haotian Wang
  */
 public class UserFunction implements Expression {
     private Variable myVariable;
     private ExpressionList parameters;
+    private CallSiteCache myCache;
 
     public UserFunction(Variable var, ExpressionList list) {
         myVariable = var;
         parameters = list;
+        myCache = new CallSiteCache();
     }
 
     /**
@@ -39,33 +49,73 @@ public class UserFunction implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
-        MakeUserInstruction function = (MakeUserInstruction) turtleManager.memory().getValueInGeneralForm(myVariable.getVariableName());
-        VariableList desiredParameters = function.getParameters();
-        ExpressionList desiredExpressions = function.getExpressionList();
-        if (desiredParameters.getListOfVariables().size() != parameters.getListOfExpressions().size()) {
-            throw new InterpretationException(String.format("The number of expressions passed in, %d, does not match the number of desired parameters defined earlier, %d", parameters.getListOfExpressions().size(), desiredParameters.getListOfVariables().size()));
+        StateMachine memory = turtleManager.memory();
+        MakeUserInstruction function = myCache.get(memory);
+        if (function == null) {
+            int version = memory.procedureVersion();
+            function = (MakeUserInstruction) memory.getValueInGeneralForm(myVariable.getVariableName());
+            if (function.getParameters().getListOfVariables().size() != parameters.getListOfExpressions().size()) {
+                throw new InterpretationException(String.format("The number of expressions passed in, %d, does not match the number of desired parameters defined earlier, %d", parameters.getListOfExpressions().size(), function.getParameters().getListOfVariables().size()));
+            }
+            myCache.put(memory, version, function);
         }
+        VariableList desiredParameters = function.getParameters();
         if (parameters.getListOfExpressions().isEmpty()) {
-            return desiredExpressions.interpret(turtleManager);
+            return memory.procedureCompiler().call(function, turtleManager);
         }
 
-        StateMachine oldGlobalMemory = new StateMachineV2();
-
-        for (int i = 0; i < parameters.getListOfExpressions().size(); i++) {
+        double[] arguments = new double[parameters.getListOfExpressions().size()];
+        for (int i = 0; i < arguments.length; i++) {
             var desiredParameter = desiredParameters.getListOfVariables().get(i).getVariableName();
-            if (turtleManager.memory().containsVariable(desiredParameter)){
-                oldGlobalMemory.setDouble(desiredParameter, (double)turtleManager.memory().getValueInGeneralForm(desiredParameter));
-            }
-            turtleManager.memory().setDouble(desiredParameter, parameters.getListOfExpressions().get(i).evaluate(turtleManager));
+            memory.saveParameter(desiredParameter);
+            arguments[i] = parameters.getListOfExpressions().get(i).evaluate(turtleManager);
+            memory.bindParameter(desiredParameter, arguments[i]);
         }
-        double ret = desiredExpressions.interpret(turtleManager);
-        for (int i = 0; i < desiredParameters.getListOfVariables().size(); i++) {
-            var desiredParameter = desiredParameters.getListOfVariables().get(i).getVariableName();
-            turtleManager.memory().removeVariable(desiredParameters.getListOfVariables().get(i).getVariableName());
-            if (oldGlobalMemory.containsVariable(desiredParameter)){
-                turtleManager.memory().setDouble(desiredParameter, (double)oldGlobalMemory.getValueInGeneralForm(desiredParameter));
-            }
+        FunctionMemo memo = memory.functionMemo();
+        if (!memo.memoizes(function)) {
+            double ret = memory.procedureCompiler().call(function, turtleManager, arguments);
+            memory.restoreParameters(arguments.length);
+            return ret;
+        }
+        Double cached = memo.get(function, arguments);
+        double ret = cached != null ? cached : memory.procedureCompiler().call(function, turtleManager, arguments);
+        memory.restoreParameters(arguments.length);
+        if (cached == null) {
+            memo.put(function, arguments, ret);
         }
         return ret;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitUserFunction(this);
+    }
+
+    /**
+     * @return The name of the user-defined function that is called.
+     */
+    public Variable getVariable() {
+        return myVariable;
+    }
+
+    /**
+     * @return The Expressions passed to the function.
+     */
+    public ExpressionList getArguments() {
+        return parameters;
+    }
+
+    /**
+     * @param list: The new arguments.
+     * @return This node if the arguments are the same, or a call of the same function with the new arguments.
+     */
+    public UserFunction withArguments(ExpressionList list) {
+        return list == parameters ? this : new UserFunction(myVariable, list);
+    }
 }
@@ -1,5 +1,6 @@
 package engine.compiler.slogoast;
 
+import engine.compiler.storage.StateMachine;
 import engine.compiler.utils.Token;
 import engine.compiler.storage.VariableType;
 import engine.errors.InterpretationException;
@@ -8,14 +9,24 @@ import model.TurtleManager;
 
 /**
  * This class handles the variable class. It is terminal as well.
+ * <p>
+ * A name that turns out to be a user-defined function without parameters is kept in a CallSiteCache, so that calling it again does not look it up. Its body is run by the ProcedureCompiler of the StateMachine.
+ * <p>
+ * The node specializes itself to the kind of value it reads the first time it runs: an int, such as the counter of a Repeat or a DoTimes, a double, such as the variable of a For or a parameter, or a function. It then reads that kind of value without the checks of the generic path for as long as the StateMachine has it, and becomes generic if it reads another kind.
  *
  * @author Haotian Wang
  */
 public class Variable implements Expression {
     private Token myToken;
+    private String myName;
+    private CallSiteCache myCache;
+    private Specialization mySpecialization;
 
     public Variable(Token token) {
         myToken = token;
+        myName = token.getString();
+        myCache = new CallSiteCache();
+        mySpecialization = Specialization.UNINITIALIZED;
     }
 
     /**
@@ -29,7 +40,7 @@ public class Variable implements Expression {
     }
 
     /**
-     * This method lets the AST act on a Turtle model.
+     * This method lets the AST act on a Turtle model. A specialized node checks with one lookup that the variable still has the type it expects, and reads it without going through the checks of the generic path. Otherwise, or if the check fails, the generic path runs.
      *
      * @param turtleManager : The TurtleManager that is affected by applying the abstract syntax tree.
      * @return A double value returned by evaluating the expression.
@@ -37,7 +48,40 @@ public class Variable implements Expression {
      */
     @Override
     public double interpret(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
+        StateMachine memory = turtleManager.memory();
+        switch (mySpecialization) {
+            case INTEGER:
+                if (memory.typeOf(myName) == VariableType.INTEGER) {
+                    return memory.getInteger(myName);
+                }
+                break;
+            case DOUBLE:
+                if (memory.typeOf(myName) == VariableType.DOUBLE) {
+                    return memory.getDouble(myName);
+                }
+                break;
+            case FUNCTION:
+                MakeUserInstruction function = myCache.get(memory);
+                if (function != null) {
+                    return memory.procedureCompiler().call(function, turtleManager);
+                }
+                break;
+            default:
+                break;
+        }
+        return interpretGeneric(turtleManager);
+    }
+
+    /**
+     * This method reads the variable whatever its type is, and specializes the node to the type it finds.
+     */
+    private double interpretGeneric(TurtleManager turtleManager) throws InterpretationException, UndefinedKeywordException {
         String variableName = myToken.getString();
+        MakeUserInstruction cached = myCache.get(turtleManager.memory());
+        if (cached != null) {
+            return turtleManager.memory().procedureCompiler().call(cached, turtleManager);
+        }
+        int version = turtleManager.memory().procedureVersion();
         if (!turtleManager.memory().containsVariable(variableName)) {
             if (variableName.startsWith(":")) {
                 throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined yet", variableName));
@@ -54,17 +98,32 @@ public class Variable implements Expression {
             if (!statement.getParameters().getListOfVariables().isEmpty()) {
                 throw new InterpretationException(String.format("The user-defined function \"%s\" takes %d parameters, please give a list of the required number of parameters", variableName, statement.getParameters().getListOfVariables().size()));
             }
-            return statement.getExpressionList().interpret(turtleManager);
+            myCache.put(turtleManager.memory(), version, statement);
+            specialize(Specialization.FUNCTION);
+            return turtleManager.memory().procedureCompiler().call(statement, turtleManager);
         } else if (type == VariableType.DOUBLE) {
             Double temp = (Double) value;
+            specialize(Specialization.DOUBLE);
             return temp.doubleValue();
         } else if (type == VariableType.INTEGER) {
             Integer temp = (Integer) value;
+            specialize(Specialization.INTEGER);
             return temp.intValue();
         }
         return 0;
     }
 
+    /**
+     * A node that has not run yet takes the kind of value it reads. A node that reads another kind than the one it was specialized to stays generic from then on.
+     */
+    private void specialize(Specialization observed) {
+        if (mySpecialization == Specialization.UNINITIALIZED) {
+            mySpecialization = observed;
+        } else if (mySpecialization != observed) {
+            mySpecialization = Specialization.GENERIC;
+        }
+    }
+
     /**
      * This method returns the String representation of the variable name.
      *
@@ -73,4 +132,29 @@ public class Variable implements Expression {
     public String getVariableName() {
         return myToken.getString();
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitVariable(this);
+    }
+
+    /**
+     * The kinds of value a Variable node has specialized itself to.
+     */
+    private enum Specialization {
+        UNINITIALIZED, INTEGER, DOUBLE, FUNCTION, GENERIC
+    }
+
+    /**
+     * @return The Token this node was parsed from.
+     */
+    public Token getToken() {
+        return myToken;
+    }
 }
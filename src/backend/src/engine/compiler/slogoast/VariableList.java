@@ -51,7 +51,18 @@ public class VariableList implements Expression {
     /**
      * @return The List of Variable objects contained in this VariableList object.
      */
-    List<Variable> getListOfVariables() {
+    public List<Variable> getListOfVariables() {
         return variableList;
     }
+
+    /**
+     * This method calls the method of the visitor for this class of AST node.
+     *
+     * @param visitor: The ExpressionVisitor walking the AST.
+     * @return The result of visiting this node.
+     */
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        return visitor.visitVariableList(this);
+    }
 }
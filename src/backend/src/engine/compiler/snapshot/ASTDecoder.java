@@ -0,0 +1,121 @@
+package engine.compiler.snapshot;
+
+import engine.compiler.slogoast.*;
+import engine.compiler.utils.Token;
+import engine.compiler.utils.TokenType;
+import model.TurtlePath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class reads back the ASTs written by an ASTEncoder, building every node with the same constructor as the Parser does. The Tokens read back were not read from an input, so they have -1 as both offsets.
+ *
+ * @author Haotian Wang
+ */
+final class ASTDecoder {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final SnapshotReader myInput;
+
+    ASTDecoder(SnapshotReader input) {
+        myInput = input;
+    }
+
+    /**
+     * @return The next AST of the snapshot.
+     * @throws IOException if the snapshot does not hold an AST there.
+     */
+    Expression read() throws IOException {
+        int tag = myInput.getByte();
+        switch (tag) {
+            case ASTEncoder.UNARY:
+                return new Unary(token(), read());
+            case ASTEncoder.BINARY:
+                return new Binary(token(), read(), read());
+            case ASTEncoder.DIRECT:
+                return new Direct(token());
+            case ASTEncoder.VARIABLE:
+                return new Variable(token());
+            case ASTEncoder.GROUP:
+                return new Group(read());
+            case ASTEncoder.EXPRESSION_LIST:
+                return expressionList();
+            case ASTEncoder.VARIABLE_LIST:
+                return variableList();
+            case ASTEncoder.MAKE_VARIABLE:
+                return new MakeVariable(token(), read(Variable.class), read());
+            case ASTEncoder.CONDITION:
+                return new Condition(token(), read(), read(ExpressionList.class));
+            case ASTEncoder.DO_TIMES:
+                return new DoTimes(token(), token(), read(Variable.class), read(), token(), read(ExpressionList.class));
+            case ASTEncoder.FOR:
+                For loop = new For(token(), read(Variable.class), read(), read(), read(), read(ExpressionList.class));
+                return myInput.getBoolean() ? loop.withInvariantBounds() : loop;
+            case ASTEncoder.IF_ELSE:
+                return new IfElse(token(), read(), read(ExpressionList.class), read(ExpressionList.class));
+            case ASTEncoder.MAKE_USER_INSTRUCTION:
+                return new MakeUserInstruction(token(), read(Variable.class), read(VariableList.class), read(ExpressionList.class));
+            case ASTEncoder.USER_FUNCTION:
+                return new UserFunction(read(Variable.class), read(ExpressionList.class));
+            case ASTEncoder.TELL:
+                return new Tell(token(), read(ExpressionList.class));
+            case ASTEncoder.TWO_LIST:
+                return new TwoList(token(), read(ExpressionList.class), read(ExpressionList.class));
+            case ASTEncoder.QUATERNARY:
+                return new Quaternary(token(), read(), read(), read(), read());
+            case ASTEncoder.CONSTANT_PATH:
+                return new ConstantPath(read(Condition.class), path());
+            default:
+                throw new IOException(String.format("The workspace snapshot has an unknown AST node %d", tag));
+        }
+    }
+
+    /**
+     * @param kind: The class of node that the Parser puts there.
+     * @return The next AST of the snapshot.
+     * @throws IOException if it is not of this class.
+     */
+    <T extends Expression> T read(Class<T> kind) throws IOException {
+        Expression expression = read();
+        if (!kind.isInstance(expression)) {
+            throw new IOException(String.format("The workspace snapshot has a %s where a %s is expected", expression.getClass().getSimpleName(), kind.getSimpleName()));
+        }
+        return kind.cast(expression);
+    }
+
+    private ExpressionList expressionList() throws IOException {
+        int size = myInput.getInt();
+        List<Expression> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(read());
+        }
+        return new ExpressionList(list);
+    }
+
+    private VariableList variableList() throws IOException {
+        int size = myInput.getInt();
+        List<Variable> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(read(Variable.class));
+        }
+        return new VariableList(list);
+    }
+
+    private TurtlePath path() {
+        int times = myInput.getInt();
+        double[] amounts = new double[myInput.getInt()];
+        boolean[] turns = new boolean[amounts.length];
+        for (int step = 0; step < amounts.length; step++) {
+            turns[step] = myInput.getBoolean();
+            amounts[step] = myInput.getDouble();
+        }
+        return new TurtlePath(amounts, turns, times);
+    }
+
+    private Token token() {
+        String string = myInput.getString();
+        return new Token(string, TOKEN_TYPES[myInput.getShort()]);
+    }
+}
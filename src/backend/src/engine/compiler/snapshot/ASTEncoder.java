@@ -0,0 +1,210 @@
+package engine.compiler.snapshot;
+
+import engine.compiler.slogoast.*;
+import engine.compiler.utils.Token;
+import model.TurtlePath;
+
+/**
+ * This class writes an AST into a snapshot, so that it is read back by an ASTDecoder without going through the Lexer and the Parser. Every node is written as a tag of its class, followed by its Tokens and its children, in the order of the arguments of its constructor. A Token is written as its String and its kind, without where it was found in the input.
+ *
+ * @author Haotian Wang
+ */
+final class ASTEncoder implements ExpressionVisitor<Void> {
+    static final int UNARY = 1;
+    static final int BINARY = 2;
+    static final int DIRECT = 3;
+    static final int VARIABLE = 4;
+    static final int GROUP = 5;
+    static final int EXPRESSION_LIST = 6;
+    static final int VARIABLE_LIST = 7;
+    static final int MAKE_VARIABLE = 8;
+    static final int CONDITION = 9;
+    static final int DO_TIMES = 10;
+    static final int FOR = 11;
+    static final int IF_ELSE = 12;
+    static final int MAKE_USER_INSTRUCTION = 13;
+    static final int USER_FUNCTION = 14;
+    static final int TELL = 15;
+    static final int TWO_LIST = 16;
+    static final int QUATERNARY = 17;
+    static final int CONSTANT_PATH = 18;
+
+    private final SnapshotWriter myOutput;
+
+    ASTEncoder(SnapshotWriter output) {
+        myOutput = output;
+    }
+
+    void write(Expression expression) {
+        expression.accept(this);
+    }
+
+    @Override
+    public Void visitUnary(Unary node) {
+        myOutput.putByte(UNARY);
+        token(node.getToken());
+        write(node.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Binary node) {
+        myOutput.putByte(BINARY);
+        token(node.getToken());
+        write(node.getFirstExpression());
+        write(node.getSecondExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitDirect(Direct node) {
+        myOutput.putByte(DIRECT);
+        token(node.getToken());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Variable node) {
+        myOutput.putByte(VARIABLE);
+        token(node.getToken());
+        return null;
+    }
+
+    @Override
+    public Void visitGroup(Group node) {
+        myOutput.putByte(GROUP);
+        write(node.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionList(ExpressionList node) {
+        myOutput.putByte(EXPRESSION_LIST);
+        myOutput.putInt(node.getListOfExpressions().size());
+        node.getListOfExpressions().forEach(this::write);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableList(VariableList node) {
+        myOutput.putByte(VARIABLE_LIST);
+        myOutput.putInt(node.getListOfVariables().size());
+        node.getListOfVariables().forEach(this::write);
+        return null;
+    }
+
+    @Override
+    public Void visitMakeVariable(MakeVariable node) {
+        myOutput.putByte(MAKE_VARIABLE);
+        token(node.getToken());
+        write(node.getVariable());
+        write(node.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitCondition(Condition node) {
+        myOutput.putByte(CONDITION);
+        token(node.getToken());
+        write(node.getExpression());
+        write(node.getExpressionList());
+        return null;
+    }
+
+    @Override
+    public Void visitDoTimes(DoTimes node) {
+        myOutput.putByte(DO_TIMES);
+        token(node.getToken());
+        token(node.getStartToken());
+        write(node.getVariable());
+        write(node.getLimit());
+        token(node.getEndToken());
+        write(node.getExpressionList());
+        return null;
+    }
+
+    @Override
+    public Void visitFor(For node) {
+        myOutput.putByte(FOR);
+        token(node.getToken());
+        write(node.getVariable());
+        write(node.getStart());
+        write(node.getEnd());
+        write(node.getIncrement());
+        write(node.getExpressionList());
+        myOutput.putBoolean(node.hasInvariantBounds());
+        return null;
+    }
+
+    @Override
+    public Void visitIfElse(IfElse node) {
+        myOutput.putByte(IF_ELSE);
+        token(node.getToken());
+        write(node.getExpression());
+        write(node.getTrueList());
+        write(node.getFalseList());
+        return null;
+    }
+
+    @Override
+    public Void visitMakeUserInstruction(MakeUserInstruction node) {
+        myOutput.putByte(MAKE_USER_INSTRUCTION);
+        token(node.getToken());
+        write(node.getVariable());
+        write(node.getParameters());
+        write(node.getExpressionList());
+        return null;
+    }
+
+    @Override
+    public Void visitUserFunction(UserFunction node) {
+        myOutput.putByte(USER_FUNCTION);
+        write(node.getVariable());
+        write(node.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visitTell(Tell node) {
+        myOutput.putByte(TELL);
+        token(node.getToken());
+        write(node.getTurtles());
+        return null;
+    }
+
+    @Override
+    public Void visitTwoList(TwoList node) {
+        myOutput.putByte(TWO_LIST);
+        token(node.getToken());
+        write(node.getFirstList());
+        write(node.getSecondList());
+        return null;
+    }
+
+    @Override
+    public Void visitQuaternary(Quaternary node) {
+        myOutput.putByte(QUATERNARY);
+        token(node.getToken());
+        node.getArguments().forEach(this::write);
+        return null;
+    }
+
+    @Override
+    public Void visitConstantPath(ConstantPath node) {
+        myOutput.putByte(CONSTANT_PATH);
+        write(node.getLoop());
+        TurtlePath path = node.getPath();
+        myOutput.putInt(path.times());
+        myOutput.putInt(path.length());
+        for (int step = 0; step < path.length(); step++) {
+            myOutput.putBoolean(path.isTurn(step));
+            myOutput.putDouble(path.amount(step));
+        }
+        return null;
+    }
+
+    private void token(Token token) {
+        myOutput.putString(token.getString());
+        myOutput.putShort(token.getType().ordinal());
+    }
+}
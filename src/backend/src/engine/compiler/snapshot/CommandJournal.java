@@ -0,0 +1,423 @@
+package engine.compiler.snapshot;
+
+import model.TurtleManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * This class records the commands of a session in an append-only journal, so that a session lost in a crash is recovered by loading its last WorkspaceSnapshot and running again the commands recorded after it.
+ * <p>
+ * The journal is a directory of segments and snapshots. A segment is named after the sequence number of its first command, and a snapshot after the sequence number of the last command it includes. Every checkpoint starts a new segment, saves a snapshot and deletes the segments and the snapshots that the new snapshot includes, so that at most checkpointInterval commands are run again at recovery.
+ * <p>
+ * The commands are appended to a queue and written by a writer thread, which writes all the commands waiting in the queue at once and forces them to the disk with one fsync, so that recording a command does not wait for the disk. Every record holds its length and a CRC32 of its content, so a record torn by a crash ends its segment when the journal is read back. An error of the writer thread or of a checkpoint is kept, and thrown by sync and close, and by checkWritable and every append after it, wrapped in an UncheckedIOException, since the commands are no longer written.
+ *
+ * @author Haotian Wang
+ */
+public final class CommandJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".slws";
+    private static final String WRITER_THREAD = "SLogo command journal";
+    private static final int RECORD_HEADER = Integer.BYTES * 2;
+    private static final int INITIAL_BATCH = 1 << 16;
+
+    private final Path myDirectory;
+    private final int myCheckpointInterval;
+    private final List<JournalEntry> myRecovered;
+    private final BlockingQueue<Request> myPending;
+    private final Object myLock;
+    private final Thread myWriter;
+    private long mySnapshot;
+    private long mySegment;
+    private long myAppended;
+    private int mySinceCheckpoint;
+    private long myDurable;
+    private IOException myError;
+    private boolean myClosed;
+
+    /**
+     * This method opens the journal in a directory, reads back the commands recorded after its last snapshot and starts a new segment after them.
+     *
+     * @param directory: The directory of the journal, which is created if it does not exist.
+     * @param checkpointInterval: How many commands are recorded between two snapshots.
+     */
+    public CommandJournal(Path directory, int checkpointInterval) throws IOException {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("The interval between checkpoints must be positive");
+        }
+        myDirectory = Files.createDirectories(directory);
+        myCheckpointInterval = checkpointInterval;
+        myPending = new LinkedBlockingQueue<>();
+        myLock = new Object();
+        TreeMap<Long, Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        mySnapshot = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        myAppended = mySnapshot;
+        List<JournalEntry> recovered = new ArrayList<>();
+        for (Path segment : list(SEGMENT_PREFIX, SEGMENT_SUFFIX).values()) {
+            for (JournalEntry entry : read(segment)) {
+                if (entry.getSequence() > myAppended) {
+                    recovered.add(entry);
+                    myAppended = entry.getSequence();
+                }
+            }
+        }
+        myRecovered = Collections.unmodifiableList(recovered);
+        mySinceCheckpoint = recovered.size();
+        myDurable = myAppended;
+        mySegment = myAppended + 1;
+        FileChannel channel = FileChannel.open(segmentPath(mySegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        myWriter = new Thread(() -> writeBatches(channel), WRITER_THREAD);
+        myWriter.setDaemon(true);
+        myWriter.start();
+    }
+
+    /**
+     * @return The last snapshot of the journal, or null if it has none.
+     */
+    public Path getSnapshot() {
+        return mySnapshot == 0 ? null : snapshotPath(mySnapshot);
+    }
+
+    /**
+     * @return The commands recorded after the last snapshot when the journal was opened, in the order they ran.
+     */
+    public List<JournalEntry> getRecoveredEntries() {
+        return myRecovered;
+    }
+
+    /**
+     * This method records a command. It returns once the command is queued, before it is written.
+     *
+     * @param command: The command as it was submitted.
+     * @param language: The language the command was written in.
+     * @param time: When the command started, in milliseconds since the epoch.
+     * @param duration: How long the command ran, in nanoseconds.
+     * @param successful: Whether the command returned, rather than threw an exception.
+     * @param result: The return value of the command.
+     * @throws IllegalStateException if the journal is closed.
+     * @throws UncheckedIOException if the journal or a checkpoint failed to be written before, in which case the command is not recorded.
+     */
+    public void append(String command, String language, long time, long duration, boolean successful, double result) {
+        checkWritable();
+        myAppended++;
+        mySinceCheckpoint++;
+        myPending.add(new Request(new JournalEntry(myAppended, time, duration, successful, successful ? result : Double.NaN, language, command), null));
+    }
+
+    /**
+     * This method checks that the next command can be recorded.
+     *
+     * @throws IllegalStateException if the journal is closed.
+     * @throws UncheckedIOException if the journal or a checkpoint failed to be written before.
+     */
+    public void checkWritable() {
+        if (myClosed) {
+            throw new IllegalStateException("The command journal is closed");
+        }
+        synchronized (myLock) {
+            if (myError != null) {
+                throw new UncheckedIOException("The command journal failed to be written, so the commands are no longer recorded", myError);
+            }
+        }
+    }
+
+    /**
+     * @return Whether checkpointInterval commands were recorded since the last checkpoint.
+     */
+    public boolean isCheckpointDue() {
+        return mySinceCheckpoint >= myCheckpointInterval;
+    }
+
+    /**
+     * This method saves a snapshot of the session, which includes every command recorded so far, and deletes the segments and the snapshots that it replaces. It must be called on the thread that appends the commands, between two commands. If it fails, the journal is left as it was and the error is thrown by the next checkWritable, append or sync.
+     *
+     * @param manager: The TurtleManager of the session, which holds its StateMachine.
+     */
+    public void checkpoint(TurtleManager manager) {
+        mySinceCheckpoint = 0;
+        long sequence = myAppended;
+        try {
+            if (sequence >= mySegment) {
+                mySegment = sequence + 1;
+                myPending.add(new Request(null, segmentPath(mySegment)));
+            }
+            sync();
+            WorkspaceSnapshot.save(snapshotPath(sequence), manager);
+            mySnapshot = sequence;
+            for (var segment : list(SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(sequence, true).values()) {
+                Files.deleteIfExists(segment);
+            }
+            for (var snapshot : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(sequence, false).values()) {
+                Files.deleteIfExists(snapshot);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * This method waits until every command recorded so far is forced to the disk.
+     *
+     * @throws IOException if the journal or a checkpoint failed to be written.
+     */
+    public void sync() throws IOException {
+        long sequence = myAppended;
+        synchronized (myLock) {
+            while (myDurable < sequence && myError == null) {
+                try {
+                    myLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Waiting for the command journal was interrupted", e);
+                }
+            }
+            if (myError != null) {
+                throw myError;
+            }
+        }
+    }
+
+    /**
+     * This method writes the commands still in the queue, forces them to the disk and stops the writer thread.
+     *
+     * @throws IOException if the journal or a checkpoint failed to be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (myClosed) {
+            return;
+        }
+        myClosed = true;
+        myPending.add(new Request(null, null));
+        try {
+            myWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Closing the command journal was interrupted", e);
+        }
+        synchronized (myLock) {
+            if (myError != null) {
+                throw myError;
+            }
+        }
+    }
+
+    /**
+     * This method runs on the writer thread. It takes every Request waiting in the queue, writes their commands with one write and one fsync, and then wakes the threads waiting in sync. After an error, the commands are taken from the queue but no longer written.
+     */
+    private void writeBatches(FileChannel first) {
+        FileChannel channel = first;
+        ByteBuffer batch = ByteBuffer.allocate(INITIAL_BATCH);
+        List<Request> requests = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                requests.add(myPending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            myPending.drainTo(requests);
+            long durable = myDurable;
+            for (Request request : requests) {
+                if (request.myEntry != null) {
+                    if (channel != null) {
+                        batch = encode(batch, request.myEntry, checksum);
+                    }
+                    durable = request.myEntry.getSequence();
+                    continue;
+                }
+                channel = flush(channel, batch);
+                boolean writing = channel != null;
+                channel = close(channel);
+                if (request.mySegment == null) {
+                    closing = true;
+                } else if (writing) {
+                    channel = open(request.mySegment);
+                }
+            }
+            channel = flush(channel, batch);
+            synchronized (myLock) {
+                myDurable = durable;
+                myLock.notifyAll();
+            }
+            requests.clear();
+        }
+    }
+
+    private FileChannel flush(FileChannel channel, ByteBuffer batch) {
+        if (channel == null || batch.position() == 0) {
+            batch.clear();
+            return channel;
+        }
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            return channel;
+        } catch (IOException e) {
+            fail(e);
+            return close(channel);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private FileChannel close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return null;
+    }
+
+    private FileChannel open(Path segment) {
+        try {
+            return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            fail(e);
+            return null;
+        }
+    }
+
+    private void fail(IOException error) {
+        synchronized (myLock) {
+            if (myError == null) {
+                myError = error;
+            }
+            myLock.notifyAll();
+        }
+    }
+
+    /**
+     * A record is the length and the CRC32 of its content, followed by the sequence number, the time, the duration, whether it succeeded, the result, the language and the command.
+     */
+    private static ByteBuffer encode(ByteBuffer batch, JournalEntry entry, CRC32 checksum) {
+        byte[] language = entry.getLanguage().getBytes(StandardCharsets.UTF_8);
+        byte[] command = entry.getCommand().getBytes(StandardCharsets.UTF_8);
+        int length = Long.BYTES * 3 + Byte.BYTES + Double.BYTES + Integer.BYTES * 2 + language.length + command.length;
+        if (batch.remaining() < RECORD_HEADER + length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + RECORD_HEADER + length));
+            batch.flip();
+            larger.put(batch);
+            batch = larger;
+        }
+        int start = batch.position();
+        batch.putInt(length);
+        batch.putInt(0);
+        batch.putLong(entry.getSequence());
+        batch.putLong(entry.getTime());
+        batch.putLong(entry.getDuration());
+        batch.put((byte) (entry.isSuccessful() ? 1 : 0));
+        batch.putDouble(entry.getResult());
+        batch.putInt(language.length);
+        batch.put(language);
+        batch.putInt(command.length);
+        batch.put(command);
+        checksum.reset();
+        checksum.update(batch.array(), start + RECORD_HEADER, length);
+        batch.putInt(start + Integer.BYTES, (int) checksum.getValue());
+        return batch;
+    }
+
+    /**
+     * This method reads the records of a segment up to its end, or up to the first record that is torn or corrupt.
+     */
+    private static List<JournalEntry> read(Path segment) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32 checksum = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            checksum.reset();
+            checksum.update(record.duplicate());
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+            try {
+                entries.add(new JournalEntry(record.getLong(), record.getLong(), record.getLong(), record.get() != 0, record.getDouble(), string(record), string(record)));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return entries;
+    }
+
+    private static String string(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long first) {
+        return myDirectory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, first, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long last) {
+        return myDirectory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, last, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * @return The files of the directory with this prefix and suffix, by the sequence number between them.
+     */
+    private TreeMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                } catch (NumberFormatException e) {
+                    // Not a file of the journal.
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * This class is what the writer thread takes from the queue: a command to write, or else the segment to write the next commands to, or else null to stop.
+     */
+    private static final class Request {
+        private final JournalEntry myEntry;
+        private final Path mySegment;
+
+        private Request(JournalEntry entry, Path segment) {
+            myEntry = entry;
+            mySegment = segment;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package engine.compiler.snapshot;
+
+/**
+ * This class holds one command recorded in a CommandJournal, with what it returned and how long it ran.
+ *
+ * @author Haotian Wang
+ */
+public final class JournalEntry {
+    private final long mySequence;
+    private final long myTime;
+    private final long myDuration;
+    private final boolean mySuccessful;
+    private final double myResult;
+    private final String myLanguage;
+    private final String myCommand;
+
+    JournalEntry(long sequence, long time, long duration, boolean successful, double result, String language, String command) {
+        mySequence = sequence;
+        myTime = time;
+        myDuration = duration;
+        mySuccessful = successful;
+        myResult = result;
+        myLanguage = language;
+        myCommand = command;
+    }
+
+    /**
+     * @return The number of the command in the journal, starting from 1.
+     */
+    public long getSequence() {
+        return mySequence;
+    }
+
+    /**
+     * @return When the command started, in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return myTime;
+    }
+
+    /**
+     * @return How long the command ran, in nanoseconds.
+     */
+    public long getDuration() {
+        return myDuration;
+    }
+
+    /**
+     * @return Whether the command returned, rather than threw an exception.
+     */
+    public boolean isSuccessful() {
+        return mySuccessful;
+    }
+
+    /**
+     * @return The return value of the command, or NaN if it threw an exception.
+     */
+    public double getResult() {
+        return myResult;
+    }
+
+    /**
+     * @return The language the command was written in.
+     */
+    public String getLanguage() {
+        return myLanguage;
+    }
+
+    /**
+     * @return The command as it was submitted.
+     */
+    public String getCommand() {
+        return myCommand;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s %s", mySequence, mySuccessful ? myResult : "failed", myCommand);
+    }
+}
@@ -0,0 +1,69 @@
+package engine.compiler.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class reads the primitive values of a snapshot written by a SnapshotWriter, from a ByteBuffer that is usually a mapped file. The header is checked and the table of Strings is decoded first, and the values are then read in the order they were written.
+ *
+ * @author Haotian Wang
+ */
+final class SnapshotReader {
+    private final ByteBuffer myBuffer;
+    private final String[] myStrings;
+
+    /**
+     * @param buffer: The whole snapshot.
+     * @param magic: The magic number that the snapshot must start with.
+     * @param version: The version of the format that this reader understands.
+     * @throws IOException if the snapshot is not one, or of another version.
+     */
+    SnapshotReader(ByteBuffer buffer, int magic, int version) throws IOException {
+        myBuffer = buffer;
+        if (buffer.remaining() < SnapshotWriter.HEADER_SIZE || buffer.getInt() != magic) {
+            throw new IOException("The file is not a workspace snapshot");
+        }
+        int found = buffer.getInt();
+        if (found != version) {
+            throw new IOException(String.format("The workspace snapshot is of version %d, but only version %d can be loaded", found, version));
+        }
+        long table = buffer.getLong();
+        if (table < SnapshotWriter.HEADER_SIZE || table > buffer.limit()) {
+            throw new IOException("The workspace snapshot is corrupt");
+        }
+        int body = buffer.position();
+        buffer.position((int) table);
+        myStrings = new String[buffer.getInt()];
+        for (int i = 0; i < myStrings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            myStrings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(body);
+    }
+
+    int getByte() {
+        return myBuffer.get();
+    }
+
+    boolean getBoolean() {
+        return myBuffer.get() != 0;
+    }
+
+    int getShort() {
+        return myBuffer.getShort();
+    }
+
+    int getInt() {
+        return myBuffer.getInt();
+    }
+
+    double getDouble() {
+        return myBuffer.getDouble();
+    }
+
+    String getString() {
+        return myStrings[myBuffer.getInt()];
+    }
+}
@@ -0,0 +1,97 @@
+package engine.compiler.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class writes the primitive values of a snapshot into a ByteBuffer that grows as needed. Every String is written once, in a table at the end of the snapshot, and referred to by its index in the table, so that the names of variables and the Tokens of the ASTs, which repeat a lot, take four bytes each.
+ * <p>
+ * A snapshot starts with a header of the magic number, the version of the format and the position of the table of Strings.
+ *
+ * @author Haotian Wang
+ */
+final class SnapshotWriter {
+    static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private ByteBuffer myBuffer;
+    private final Map<String, Integer> myIndices = new HashMap<>();
+    private final List<String> myStrings = new ArrayList<>();
+
+    /**
+     * @param magic: The magic number that the snapshot starts with.
+     * @param version: The version of the format.
+     */
+    SnapshotWriter(int magic, int version) {
+        myBuffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        myBuffer.putInt(magic);
+        myBuffer.putInt(version);
+        myBuffer.putLong(0);
+    }
+
+    void putByte(int value) {
+        ensure(Byte.BYTES);
+        myBuffer.put((byte) value);
+    }
+
+    void putBoolean(boolean value) {
+        putByte(value ? 1 : 0);
+    }
+
+    void putShort(int value) {
+        ensure(Short.BYTES);
+        myBuffer.putShort((short) value);
+    }
+
+    void putInt(int value) {
+        ensure(Integer.BYTES);
+        myBuffer.putInt(value);
+    }
+
+    void putDouble(double value) {
+        ensure(Double.BYTES);
+        myBuffer.putDouble(value);
+    }
+
+    void putString(String value) {
+        Integer index = myIndices.get(value);
+        if (index == null) {
+            index = myStrings.size();
+            myIndices.put(value, index);
+            myStrings.add(value);
+        }
+        putInt(index);
+    }
+
+    /**
+     * This method writes the table of Strings and its position in the header.
+     *
+     * @return The whole snapshot, ready to be written.
+     */
+    ByteBuffer finish() {
+        long table = myBuffer.position();
+        putInt(myStrings.size());
+        for (String string : myStrings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            myBuffer.put(bytes);
+        }
+        myBuffer.putLong(Integer.BYTES * 2, table);
+        myBuffer.flip();
+        return myBuffer;
+    }
+
+    private void ensure(int bytes) {
+        if (myBuffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(myBuffer.capacity() * 2, myBuffer.position() + bytes));
+            myBuffer.flip();
+            larger.put(myBuffer);
+            myBuffer = larger;
+        }
+    }
+}
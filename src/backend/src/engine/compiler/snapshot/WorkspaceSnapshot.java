@@ -0,0 +1,227 @@
+package engine.compiler.snapshot;
+
+import engine.compiler.slogoast.Expression;
+import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableType;
+import engine.errors.IllegalParameterException;
+import javafx.collections.ObservableMap;
+import model.PosAndAngle;
+import model.TurtleManager;
+import model.TurtleModel;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class saves a whole session, which is the variables and the functions of its StateMachine and the turtles of its TurtleManager, into a binary file, and loads it back. The functions are saved as their ASTs, so loading them does not go through the Lexer and the Parser. A file is loaded by mapping it into memory, and it is decoded entirely before the session is changed, so that a corrupt file leaves the session as it was.
+ * <p>
+ * The pen colors, the pen sizes and the stamps are drawn by the view, so what a snapshot holds of them is what the backend holds: the palettes, which are the ColorIndex and ShapeIndex variables, and whether the pen of every turtle is down.
+ *
+ * @author Haotian Wang
+ */
+public final class WorkspaceSnapshot {
+    public static final int MAGIC = 0x534C5753;
+    public static final int VERSION = 1;
+    private static final int UNTYPED = 0;
+    private static final VariableType[] VARIABLE_TYPES = VariableType.values();
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private WorkspaceSnapshot() {
+    }
+
+    /**
+     * This method writes the session into a file next to the snapshot, forces it to the disk and then renames it over the snapshot, so that a snapshot is never half written.
+     *
+     * @param path: The file of the snapshot.
+     * @param manager: The TurtleManager of the session, which holds its StateMachine.
+     * @throws IOException if the file cannot be written, or a variable holds a value that cannot be saved.
+     */
+    public static void save(Path path, TurtleManager manager) throws IOException {
+        SnapshotWriter output = new SnapshotWriter(MAGIC, VERSION);
+        ASTEncoder encoder = new ASTEncoder(output);
+        StateMachine memory = manager.memory();
+        Map<String, Object> variables = memory.listOfVariables();
+        output.putInt(variables.size());
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            VariableType type = memory.typeOf(variable.getKey());
+            output.putString(variable.getKey());
+            output.putByte(type == null ? UNTYPED : type.ordinal() + 1);
+            writeValue(output, encoder, variable.getKey(), variable.getValue());
+        }
+        ObservableMap<Integer, TurtleModel> turtles = manager.turtleModels();
+        List<Integer> ids = new ArrayList<>(turtles.keySet());
+        ids.sort(null);
+        output.putInt(ids.size());
+        for (int id : ids) {
+            TurtleModel turtle = turtles.get(id);
+            PosAndAngle position = turtle.posAndAngleModel();
+            output.putInt(id);
+            output.putDouble(position.x());
+            output.putDouble(position.y());
+            output.putDouble(position.angle());
+            output.putBoolean(turtle.isPenDownModel().get());
+            output.putBoolean(turtle.isVisibleModel().get());
+        }
+        List<Integer> selected = manager.selected();
+        output.putInt(selected.size());
+        for (int id : selected) {
+            output.putInt(id);
+        }
+        write(path, output.finish());
+    }
+
+    /**
+     * This method replaces the variables, the functions and the turtles of the session with those of a snapshot. Turtles that are not in the snapshot are removed, and the turtles are moved with their pens up, so that loading draws no lines.
+     *
+     * @param path: The file of the snapshot.
+     * @param manager: The TurtleManager of the session, which holds its StateMachine.
+     * @throws IOException if the file cannot be read, or is not a snapshot of this version.
+     */
+    public static void load(Path path, TurtleManager manager) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The workspace snapshot is too large to be loaded");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = new Snapshot(new SnapshotReader(buffer, MAGIC, VERSION));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("The workspace snapshot is corrupt", e);
+        }
+        snapshot.restore(manager);
+    }
+
+    private static void writeValue(SnapshotWriter output, ASTEncoder encoder, String name, Object value) throws IOException {
+        if (value instanceof Double) {
+            output.putByte(VariableType.DOUBLE.ordinal());
+            output.putDouble((Double) value);
+        } else if (value instanceof Integer) {
+            output.putByte(VariableType.INTEGER.ordinal());
+            output.putInt((Integer) value);
+        } else if (value instanceof String) {
+            output.putByte(VariableType.STRING.ordinal());
+            output.putString((String) value);
+        } else if (value instanceof Expression) {
+            output.putByte(VariableType.EXPRESSION.ordinal());
+            encoder.write((Expression) value);
+        } else {
+            throw new IOException(String.format("The variable %s holds %s, which cannot be saved in a workspace snapshot", name, value));
+        }
+    }
+
+    private static void write(Path path, ByteBuffer snapshot) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * This class holds a decoded snapshot until it replaces the session.
+     */
+    private static final class Snapshot {
+        private final String[] myNames;
+        private final Object[] myValues;
+        private final VariableType[] myTypes;
+        private final int[] myTurtles;
+        private final double[] myPositions;
+        private final boolean[] myPens;
+        private final List<Integer> mySelected;
+
+        private Snapshot(SnapshotReader input) throws IOException {
+            ASTDecoder decoder = new ASTDecoder(input);
+            int variables = input.getInt();
+            myNames = new String[variables];
+            myValues = new Object[variables];
+            myTypes = new VariableType[variables];
+            for (int i = 0; i < variables; i++) {
+                myNames[i] = input.getString();
+                int type = input.getByte();
+                myTypes[i] = type == UNTYPED ? null : VARIABLE_TYPES[type - 1];
+                myValues[i] = readValue(input, decoder);
+            }
+            int turtles = input.getInt();
+            myTurtles = new int[turtles];
+            myPositions = new double[turtles * 3];
+            myPens = new boolean[turtles * 2];
+            for (int i = 0; i < turtles; i++) {
+                myTurtles[i] = input.getInt();
+                if (myTurtles[i] <= 0) {
+                    throw new IOException(String.format("The workspace snapshot has a turtle of ID %d", myTurtles[i]));
+                }
+                myPositions[i * 3] = input.getDouble();
+                myPositions[i * 3 + 1] = input.getDouble();
+                myPositions[i * 3 + 2] = input.getDouble();
+                myPens[i * 2] = input.getBoolean();
+                myPens[i * 2 + 1] = input.getBoolean();
+            }
+            int selected = input.getInt();
+            mySelected = new ArrayList<>(selected);
+            for (int i = 0; i < selected; i++) {
+                mySelected.add(input.getInt());
+            }
+        }
+
+        private static Object readValue(SnapshotReader input, ASTDecoder decoder) throws IOException {
+            switch (VARIABLE_TYPES[input.getByte()]) {
+                case DOUBLE:
+                    return input.getDouble();
+                case INTEGER:
+                    return input.getInt();
+                case STRING:
+                    return input.getString();
+                default:
+                    return decoder.read();
+            }
+        }
+
+        private void restore(TurtleManager manager) throws IOException {
+            StateMachine memory = manager.memory();
+            memory.resetState();
+            for (int i = 0; i < myNames.length; i++) {
+                memory.setVariable(myNames[i], myValues[i], myTypes[i]);
+            }
+            ObservableMap<Integer, TurtleModel> turtles = manager.turtleModels();
+            Set<Integer> kept = new HashSet<>(myTurtles.length * 2);
+            for (int id : myTurtles) {
+                kept.add(id);
+            }
+            turtles.keySet().retainAll(kept);
+            for (int i = 0; i < myTurtles.length; i++) {
+                if (!turtles.containsKey(myTurtles[i])) {
+                    try {
+                        manager.addTurtle(myTurtles[i]);
+                    } catch (IllegalParameterException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                }
+                TurtleModel turtle = turtles.get(myTurtles[i]);
+                PosAndAngle position = turtle.posAndAngleModel();
+                turtle.isPenDownModel().set(false);
+                position.setXY(myPositions[i * 3], myPositions[i * 3 + 1]);
+                position.setAngle(myPositions[i * 3 + 2]);
+                turtle.isPenDownModel().set(myPens[i * 2]);
+                turtle.isVisibleModel().set(myPens[i * 2 + 1]);
+            }
+            manager.tell(mySelected);
+        }
+    }
+}
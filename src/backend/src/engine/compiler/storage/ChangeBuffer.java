@@ -0,0 +1,81 @@
+package engine.compiler.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class collects the names of the variables written to a StateMachine between two notifications, and tells the observers about them at once. A variable written many times, such as the counter of a loop, is only reported once. The kind of each change is found when the observers are notified, by comparing the variables defined then with the ones defined at the last notification, so a variable that was added and removed again in between is not reported.
+ * <p>
+ * Nothing is collected while there are no observers.
+ *
+ * @author Haotian Wang
+ */
+class ChangeBuffer {
+    private final List<StateMachineObserver> myObservers = new ArrayList<>();
+    private final Set<String> myChanged = new LinkedHashSet<>();
+    private final Set<String> myPublished = new HashSet<>();
+
+    /**
+     * @param observer: The new observer, which is expected to read the whole StateMachine by itself.
+     * @param values: The variables defined now.
+     */
+    void register(StateMachineObserver observer, Map<String, ?> values) {
+        if (myObservers.isEmpty()) {
+            myPublished.clear();
+            myPublished.addAll(values.keySet());
+        }
+        myObservers.add(observer);
+    }
+
+    void record(String key) {
+        if (!myObservers.isEmpty()) {
+            myChanged.add(key);
+        }
+    }
+
+    void recordAll(Set<String> keys) {
+        if (!myObservers.isEmpty()) {
+            myChanged.addAll(keys);
+        }
+    }
+
+    /**
+     * This method tells each observer about the changes of the variables it observes, if there are any.
+     *
+     * @param values: The variables defined now.
+     */
+    void flush(Map<String, ?> values) {
+        if (myChanged.isEmpty()) {
+            return;
+        }
+        Map<String, VariableChange> changes = new LinkedHashMap<>();
+        for (String key : myChanged) {
+            boolean published = myPublished.contains(key);
+            if (values.containsKey(key)) {
+                changes.put(key, published ? VariableChange.UPDATED : VariableChange.ADDED);
+                myPublished.add(key);
+            } else if (published) {
+                changes.put(key, VariableChange.REMOVED);
+                myPublished.remove(key);
+            }
+        }
+        myChanged.clear();
+        for (StateMachineObserver observer : myObservers) {
+            Map<String, VariableChange> observed = new LinkedHashMap<>();
+            changes.forEach((key, change) -> {
+                if (observer.observes(key)) {
+                    observed.put(key, change);
+                }
+            });
+            if (!observed.isEmpty()) {
+                observer.notifyChanges(Collections.unmodifiableMap(observed));
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package engine.compiler.storage;
 
+import engine.compiler.jvm.ProcedureCompiler;
 import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 
@@ -20,7 +22,13 @@ public class CrudeStateMachine implements StateMachine {
 
     private Map<String, Object> aggregateMap;
 
-    private List<StateMachineObserver> observers;
+    private ChangeBuffer changes;
+    private ParameterStack parameters;
+    private int procedureVersion;
+    private FunctionMemo functionMemo;
+    private ProcedureCompiler procedureCompiler;
+    private ProcedureLibrary library;
+    private int libraryBase;
 
     public CrudeStateMachine() {
         typeMap = new HashMap<>();
@@ -30,10 +38,13 @@ public class CrudeStateMachine implements StateMachine {
         functionMap = new HashMap<>();
         aggregateMap = new HashMap<>();
 
-        observers = new ArrayList<>();
+        changes = new ChangeBuffer();
+        parameters = new ParameterStack();
+        functionMemo = new FunctionMemo(this);
+        procedureCompiler = new ProcedureCompiler();
     }
 
-    public void register(StateMachineObserver observer) { observers.add(observer); }
+    public void register(StateMachineObserver observer) { changes.register(observer, aggregateMap); }
 
     /**
      * Returns true if the variable is already defined in the StateMachine and false otherwise.
@@ -43,10 +54,10 @@ public class CrudeStateMachine implements StateMachine {
      */
     @Override
     public boolean containsVariable(String key) {
-        return aggregateMap.containsKey(key);
+        return aggregateMap.containsKey(key) || shared(key) != null;
     }
 
-    public void pushAlarm() { observers.forEach(StateMachineObserver::notifyListener);}
+    public void pushAlarm() { changes.flush(aggregateMap); }
 
     /**
      * Set a double value for a variable.
@@ -67,8 +78,8 @@ public class CrudeStateMachine implements StateMachine {
         }
         doubleMap.put(key, value);
         aggregateMap.put(key, value);
-        typeMap.put(key, VariableType.DOUBLE);
-        pushAlarm();
+        retype(typeMap.put(key, VariableType.DOUBLE), VariableType.DOUBLE);
+        changes.record(key);
     }
 
     /**
@@ -90,8 +101,8 @@ public class CrudeStateMachine implements StateMachine {
         }
         integerMap.put(key, value);
         aggregateMap.put(key, value);
-        typeMap.put(key, VariableType.INTEGER);
-        pushAlarm();
+        retype(typeMap.put(key, VariableType.INTEGER), VariableType.INTEGER);
+        changes.record(key);
     }
 
     /**
@@ -113,8 +124,8 @@ public class CrudeStateMachine implements StateMachine {
         }
         stringMap.put(key, value);
         aggregateMap.put(key, value);
-        typeMap.put(key, VariableType.INTEGER);
-        pushAlarm();
+        retype(typeMap.put(key, VariableType.INTEGER), VariableType.INTEGER);
+        changes.record(key);
     }
 
     /**
@@ -137,8 +148,8 @@ public class CrudeStateMachine implements StateMachine {
         }
         functionMap.put(key, function);
         aggregateMap.put(key, function);
-        typeMap.put(key, VariableType.EXPRESSION);
-        pushAlarm();
+        retype(typeMap.put(key, VariableType.EXPRESSION), VariableType.EXPRESSION);
+        changes.record(key);
     }
 
     @Override
@@ -162,12 +173,29 @@ public class CrudeStateMachine implements StateMachine {
      */
     @Override
     public VariableType getVariableType(String key) throws UndefinedKeywordException {
+        if (!aggregateMap.containsKey(key) && shared(key) != null) {
+            return VariableType.EXPRESSION;
+        }
         if (!typeMap.containsKey(key)) {
             throw new UndefinedKeywordException(String.format("The variable %s is not defined, therefore its type cannot be determined", key));
         }
         return typeMap.get(key);
     }
 
+    /**
+     * The type map keeps the type of a variable after it is removed, so the aggregate map is checked first.
+     *
+     * @param key : The name of the variable.
+     * @return The type of the variable, or null if it is not defined.
+     */
+    @Override
+    public VariableType typeOf(String key) {
+        if (aggregateMap.containsKey(key)) {
+            return typeMap.get(key);
+        }
+        return shared(key) != null ? VariableType.EXPRESSION : null;
+    }
+
     /**
      * Get the value of the variable as an Object from the aggregate map.
      *
@@ -177,6 +205,10 @@ public class CrudeStateMachine implements StateMachine {
     @Override
     public Object getValueInGeneralForm(String key) throws UndefinedKeywordException {
         if (!aggregateMap.containsKey(key)) {
+            Object function = shared(key);
+            if (function != null) {
+                return function;
+            }
             throw new UndefinedKeywordException(String.format("The variable %s is not defined, therefore its value cannot be returned", key));
         }
         return aggregateMap.get(key);
@@ -198,29 +230,137 @@ public class CrudeStateMachine implements StateMachine {
             integerMap.remove(key);
         } else if (type == VariableType.EXPRESSION) {
             functionMap.remove(key);
+            procedureVersion++;
         } else if (type == VariableType.STRING) {
             stringMap.remove(key);
         }
         aggregateMap.remove(key);
-        pushAlarm();
+        changes.record(key);
     }
 
     /**
      * Clear all state variables in the state machine.
      */
     public void resetState() {
+        changes.recordAll(aggregateMap.keySet());
         typeMap.clear();
+        procedureVersion++;
         integerMap.clear();
         doubleMap.clear();
         functionMap.clear();
         stringMap.clear();
         aggregateMap.clear();
-        pushAlarm();
     }
 
     @Override
     public Map<String, Object> listOfVariables() { return Collections.unmodifiableMap(aggregateMap); }
 
+    /**
+     * Save the value of a parameter of a user-defined function before the argument for it is evaluated.
+     *
+     * @param key : The name of the parameter.
+     */
+    @Override
+    public void saveParameter(String key) {
+        if (aggregateMap.containsKey(key)) {
+            parameters.push(key, aggregateMap.get(key), typeMap.get(key));
+        } else {
+            parameters.push(key, ParameterStack.UNDEFINED, null);
+        }
+    }
+
+    /**
+     * This StateMachine keeps a map for each type of variable, so a parameter is bound like any double variable, and reported to the observers at the next notification.
+     *
+     * @param key   : The name of the parameter.
+     * @param value : The value of the argument.
+     */
+    @Override
+    public void bindParameter(String key, double value) {
+        setDouble(key, value);
+    }
+
+    /**
+     * Put back the values of the last parameters saved, most recent first.
+     *
+     * @param count : The number of parameters of the function.
+     */
+    @Override
+    public void restoreParameters(int count) {
+        for (int i = 0; i < count; i++) {
+            String key = parameters.topKey();
+            Object value = parameters.topValue();
+            if (value == ParameterStack.UNDEFINED) {
+                if (typeMap.containsKey(key)) {
+                    try {
+                        removeVariable(key);
+                    } catch (UndefinedKeywordException e) {
+                        // The variable is in typeMap, so it can be removed.
+                    }
+                }
+            } else {
+                setVariable(key, value, parameters.topType());
+            }
+            parameters.pop();
+        }
+    }
+
+    /**
+     * Forget the values saved for the last parameters that were also saved by the call just below them, when a user-defined function is called in tail position.
+     *
+     * @param outer : The number of parameters saved by the call below.
+     * @param inner : The number of parameters saved by the call in tail position.
+     * @return The number of parameters left saved by both calls.
+     */
+    @Override
+    public int foldParameters(int outer, int inner) {
+        return outer + parameters.fold(outer, inner);
+    }
+
+    /**
+     * Forget the saved parameters after a command failed.
+     */
+    @Override
+    public void unwindParameters() {
+        parameters.clear();
+    }
+
+    /**
+     * @return The version of the user-defined functions, which changes whenever a variable becomes or stops being a function, or the shared library changes.
+     */
+    @Override
+    public int procedureVersion() {
+        return library == null ? procedureVersion : procedureVersion + library.version() - libraryBase;
+    }
+
+    /**
+     * Resolve the names that this StateMachine does not define to the functions of a ProcedureLibrary.
+     *
+     * @param library : The library, or null to stop using one.
+     */
+    @Override
+    public void shareProcedures(ProcedureLibrary library) {
+        procedureVersion = procedureVersion() + 1;
+        this.library = library;
+        libraryBase = library == null ? 0 : library.version();
+    }
+
+    @Override
+    public FunctionMemo functionMemo() { return functionMemo; }
+
+    @Override
+    public ProcedureCompiler procedureCompiler() { return procedureCompiler; }
+
+    private MakeUserInstruction shared(String key) {
+        return library == null ? null : library.get(key);
+    }
+
+    private void retype(VariableType before, VariableType after) {
+        if (before == VariableType.EXPRESSION || after == VariableType.EXPRESSION) {
+            procedureVersion++;
+        }
+    }
+
     /**
      * Present the internal storage of the StateMachine in a list format, separated by newline.
      *
@@ -0,0 +1,165 @@
+package engine.compiler.storage;
+
+import engine.compiler.slogoast.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class is a bounded least-recently-used cache of parsed ASTs, so that a command the user runs again does not go through the Lexer and the Parser again. An AST is looked up by its source String together with the languages it was read in. The source is normalized first: runs of spaces and tabs are collapsed and the ends are trimmed, which never changes the Tokens of the source.
+ *
+ * @author Haotian Wang
+ */
+public class ExpressionCache {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int MAX_SOURCE_LENGTH = 1 << 16;
+
+    private final int myCapacity;
+    private Map<Key, Expression> myEntries;
+    private long myHits;
+    private long myMisses;
+    private long myEvictions;
+
+    /**
+     * @param capacity: The maximum number of ASTs kept in the cache.
+     */
+    public ExpressionCache(int capacity) {
+        myCapacity = capacity;
+        myEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Expression> eldest) {
+                if (size() > myCapacity) {
+                    myEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ExpressionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param source: The source String of a command.
+     * @param languages: The languages the command is read in, such as "English".
+     * @return The AST parsed from the same source in the same languages before, or null if there is none in the cache.
+     */
+    public synchronized Expression get(String source, String languages) {
+        Expression expression = source.length() > MAX_SOURCE_LENGTH ? null : myEntries.get(new Key(normalize(source), languages));
+        if (expression == null) {
+            myMisses++;
+        } else {
+            myHits++;
+        }
+        return expression;
+    }
+
+    /**
+     * This method stores the AST parsed from the source. Sources longer than MAX_SOURCE_LENGTH are not stored, so that whole programs do not fill up the memory.
+     *
+     * @param source: The source String of a command.
+     * @param languages: The languages the command is read in.
+     * @param expression: The AST parsed from the source.
+     */
+    public synchronized void put(String source, String languages, Expression expression) {
+        if (source.length() > MAX_SOURCE_LENGTH) {
+            return;
+        }
+        myEntries.put(new Key(normalize(source), languages), expression);
+    }
+
+    /**
+     * Remove every AST from the cache, for example when the vocabulary of the Lexer changes. The counters are kept.
+     */
+    public synchronized void clear() {
+        myEntries.clear();
+    }
+
+    public synchronized int size() {
+        return myEntries.size();
+    }
+
+    public synchronized long hits() {
+        return myHits;
+    }
+
+    public synchronized long misses() {
+        return myMisses;
+    }
+
+    public synchronized long evictions() {
+        return myEvictions;
+    }
+
+    /**
+     * This method collapses every run of spaces and tabs into one space and trims the spaces and tabs at both ends. Newlines are kept, since they end comments.
+     *
+     * @param source: A source String.
+     * @return The normalized source String.
+     */
+    static String normalize(String source) {
+        StringBuilder normalized = null;
+        int length = source.length();
+        int start = 0;
+        while (start < length && isBlank(source.charAt(start))) {
+            start++;
+        }
+        int end = length;
+        while (end > start && isBlank(source.charAt(end - 1))) {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            boolean collapse = isBlank(c) && (c != ' ' || isBlank(source.charAt(i + 1)));
+            if (collapse && normalized == null) {
+                normalized = new StringBuilder(end - start);
+                normalized.append(source, start, i);
+            }
+            if (normalized != null) {
+                if (isBlank(c)) {
+                    normalized.append(' ');
+                    while (isBlank(source.charAt(i + 1))) {
+                        i++;
+                    }
+                } else {
+                    normalized.append(c);
+                }
+            }
+        }
+        if (normalized != null) {
+            return normalized.toString();
+        }
+        return start == 0 && end == length ? source : source.substring(start, end);
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static class Key {
+        private final String mySource;
+        private final String myLanguages;
+
+        private Key(String source, String languages) {
+            mySource = source;
+            myLanguages = languages;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mySource.equals(other.mySource) && Objects.equals(myLanguages, other.myLanguages);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mySource.hashCode() + Objects.hashCode(myLanguages);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package engine.compiler.storage;
+
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.Variable;
+import engine.errors.UndefinedKeywordException;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a bounded least-recently-used cache of the results of pure user-defined functions, looked up by the function and the values of its arguments, for one StateMachine.
+ * <p>
+ * A function is pure if its body and the bodies of all the functions it may call are pure by themselves, as FunctionPurity checks them. A successful call of a pure function then has no effect but its result, since the parameters it binds are put back when it returns, and its result only depends on its arguments and on the definitions of the functions. The results and what is known about purity are dropped whenever the procedure version of the StateMachine changes, that is whenever a function is defined, redefined or removed. Only the results of successful calls are stored, so that a call that failed fails again.
+ *
+ * @author Haotian Wang
+ */
+public class FunctionMemo {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final int myCapacity;
+    private final StateMachine myMemory;
+    private Map<Key, Double> myEntries;
+    private Map<MakeUserInstruction, Boolean> myPurity;
+    private int myVersion;
+    private boolean myEnabled;
+    private long myHits;
+    private long myMisses;
+    private long myEvictions;
+
+    /**
+     * @param memory: The StateMachine the functions are defined in.
+     * @param capacity: The maximum number of results kept.
+     */
+    public FunctionMemo(StateMachine memory, int capacity) {
+        myMemory = memory;
+        myCapacity = capacity;
+        myEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                if (size() > myCapacity) {
+                    myEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        myPurity = new IdentityHashMap<>();
+        myVersion = memory.procedureVersion();
+        myEnabled = true;
+    }
+
+    public FunctionMemo(StateMachine memory) {
+        this(memory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * This method turns memoization on or off. Turning it off drops the stored results.
+     *
+     * @param enabled: Whether the results of pure functions are stored and reused.
+     */
+    public void setEnabled(boolean enabled) {
+        myEnabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return myEnabled;
+    }
+
+    /**
+     * @param function: A user-defined function that is being called.
+     * @return Whether memoization is on and the results of the function can be stored and reused.
+     */
+    public boolean memoizes(MakeUserInstruction function) {
+        if (!myEnabled || function.getParameters().getListOfVariables().isEmpty()) {
+            return false;
+        }
+        validate();
+        Boolean pure = myPurity.get(function);
+        if (pure == null) {
+            pure = isPure(function);
+            myPurity.put(function, pure);
+        }
+        return pure;
+    }
+
+    /**
+     * @param function: A function for which memoizes is true.
+     * @param arguments: The values bound to its parameters.
+     * @return The result of an earlier call with the same arguments, or null if there is none.
+     */
+    public Double get(MakeUserInstruction function, double[] arguments) {
+        Double result = myEntries.get(new Key(function, arguments));
+        if (result == null) {
+            myMisses++;
+        } else {
+            myHits++;
+        }
+        return result;
+    }
+
+    /**
+     * This method stores the result of a call that returned.
+     *
+     * @param function: A function for which memoizes is true.
+     * @param arguments: The values bound to its parameters.
+     * @param result: What the call returned.
+     */
+    public void put(MakeUserInstruction function, double[] arguments, double result) {
+        if (myVersion == myMemory.procedureVersion()) {
+            myEntries.put(new Key(function, arguments), result);
+        }
+    }
+
+    /**
+     * Remove every stored result. The counters are kept.
+     */
+    public void clear() {
+        myEntries.clear();
+        myPurity.clear();
+    }
+
+    public int size() {
+        return myEntries.size();
+    }
+
+    public long hits() {
+        return myHits;
+    }
+
+    public long misses() {
+        return myMisses;
+    }
+
+    public long evictions() {
+        return myEvictions;
+    }
+
+    /**
+     * @return The fraction of the lookups that found a result, or 0 if there was none.
+     */
+    public double hitRate() {
+        long lookups = myHits + myMisses;
+        return lookups == 0 ? 0 : (double) myHits / lookups;
+    }
+
+    private void validate() {
+        if (myVersion != myMemory.procedureVersion()) {
+            clear();
+            myVersion = myMemory.procedureVersion();
+        }
+    }
+
+    /**
+     * This method checks every function that the function may call, directly or not, with the functions its names refer to now.
+     */
+    private boolean isPure(MakeUserInstruction function) {
+        Set<MakeUserInstruction> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<MakeUserInstruction> pending = new ArrayDeque<>();
+        seen.add(function);
+        pending.push(function);
+        while (!pending.isEmpty()) {
+            MakeUserInstruction current = pending.pop();
+            Set<String> parameters = new HashSet<>();
+            for (Variable parameter : current.getParameters().getListOfVariables()) {
+                parameters.add(parameter.getVariableName());
+            }
+            FunctionPurity purity = new FunctionPurity(parameters);
+            if (!current.getExpressionList().accept(purity)) {
+                return false;
+            }
+            for (Map.Entry<String, Integer> call : purity.calls().entrySet()) {
+                MakeUserInstruction callee = lookup(call.getKey());
+                if (callee == null || callee.getParameters().getListOfVariables().size() != call.getValue()) {
+                    return false;
+                }
+                if (seen.add(callee)) {
+                    pending.push(callee);
+                }
+            }
+        }
+        return true;
+    }
+
+    private MakeUserInstruction lookup(String name) {
+        try {
+            if (myMemory.containsVariable(name) && myMemory.getVariableType(name) == VariableType.EXPRESSION) {
+                Object value = myMemory.getValueInGeneralForm(name);
+                return value instanceof MakeUserInstruction ? (MakeUserInstruction) value : null;
+            }
+        } catch (UndefinedKeywordException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static class Key {
+        private final MakeUserInstruction myFunction;
+        private final double[] myArguments;
+
+        private Key(MakeUserInstruction function, double[] arguments) {
+            myFunction = function;
+            myArguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return myFunction == other.myFunction && Arrays.equals(myArguments, other.myArguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(myFunction) + Arrays.hashCode(myArguments);
+        }
+    }
+}
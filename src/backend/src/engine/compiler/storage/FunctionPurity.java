@@ -0,0 +1,162 @@
+package engine.compiler.storage;
+
+import engine.compiler.slogoast.Binary;
+import engine.compiler.slogoast.Condition;
+import engine.compiler.slogoast.ConstantPath;
+import engine.compiler.slogoast.Direct;
+import engine.compiler.slogoast.DoTimes;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.ExpressionList;
+import engine.compiler.slogoast.ExpressionVisitor;
+import engine.compiler.slogoast.For;
+import engine.compiler.slogoast.Group;
+import engine.compiler.slogoast.IfElse;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.compiler.slogoast.MakeVariable;
+import engine.compiler.slogoast.Opcode;
+import engine.compiler.slogoast.Quaternary;
+import engine.compiler.slogoast.Tell;
+import engine.compiler.slogoast.TwoList;
+import engine.compiler.slogoast.Unary;
+import engine.compiler.slogoast.UserFunction;
+import engine.compiler.slogoast.Variable;
+import engine.compiler.slogoast.VariableList;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class checks whether the body of a user-defined function is pure by itself: it only computes math, chooses with If and IfElse, reads the parameters of the function and calls other functions, and it never moves the turtles, assigns a variable, loops or reads a variable it does not bind. The functions it calls are collected by name with their number of arguments, since which functions the names refer to is only known when it runs. A name without ":" calls a function without parameters.
+ *
+ * @author Haotian Wang
+ */
+class FunctionPurity implements ExpressionVisitor<Boolean> {
+    private static final String VARIABLE_PREFIX = ":";
+
+    private Set<String> myParameters;
+    private Map<String, Integer> myCalls;
+
+    /**
+     * @param parameters: The names of the parameters of the function.
+     */
+    FunctionPurity(Set<String> parameters) {
+        myParameters = parameters;
+        myCalls = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return The names of the functions called by the body, with the number of arguments passed to each. A name called with different numbers of arguments is kept with -1, which no function takes.
+     */
+    Map<String, Integer> calls() {
+        return myCalls;
+    }
+
+    @Override
+    public Boolean visitUnary(Unary node) {
+        return node.getOpcode().isPure() && node.getExpression().accept(this);
+    }
+
+    @Override
+    public Boolean visitBinary(Binary node) {
+        return node.getOpcode().isPure() && node.getFirstExpression().accept(this) && node.getSecondExpression().accept(this);
+    }
+
+    @Override
+    public Boolean visitDirect(Direct node) {
+        return node.getOpcode().isPure();
+    }
+
+    @Override
+    public Boolean visitVariable(Variable node) {
+        String name = node.getVariableName();
+        if (name.startsWith(VARIABLE_PREFIX)) {
+            return myParameters.contains(name);
+        }
+        call(name, 0);
+        return true;
+    }
+
+    @Override
+    public Boolean visitGroup(Group node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Boolean visitExpressionList(ExpressionList node) {
+        for (Expression expression : node.getListOfExpressions()) {
+            if (!expression.accept(this)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitVariableList(VariableList node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitMakeVariable(MakeVariable node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitCondition(Condition node) {
+        return node.getOpcode() == Opcode.IF && node.getExpression().accept(this) && node.getExpressionList().accept(this);
+    }
+
+    @Override
+    public Boolean visitDoTimes(DoTimes node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitFor(For node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitIfElse(IfElse node) {
+        return node.getOpcode() == Opcode.IF_ELSE && node.getExpression().accept(this) && node.getTrueList().accept(this) && node.getFalseList().accept(this);
+    }
+
+    @Override
+    public Boolean visitMakeUserInstruction(MakeUserInstruction node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitUserFunction(UserFunction node) {
+        call(node.getVariable().getVariableName(), node.getArguments().getListOfExpressions().size());
+        return node.getArguments().accept(this);
+    }
+
+    @Override
+    public Boolean visitTell(Tell node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitTwoList(TwoList node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitQuaternary(Quaternary node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitConstantPath(ConstantPath node) {
+        return false;
+    }
+
+    private void call(String name, int arguments) {
+        Integer before = myCalls.putIfAbsent(name, arguments);
+        if (before != null && before != arguments) {
+            myCalls.put(name, -1);
+        }
+    }
+}
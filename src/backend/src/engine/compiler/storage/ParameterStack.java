@@ -0,0 +1,132 @@
+package engine.compiler.storage;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the values that the parameters of the running user-defined functions had before they were bound, in parallel arrays that grow once and are reused by every call, so that a call does not allocate a backup StateMachine.
+ *
+ * @author Haotian Wang
+ */
+class ParameterStack {
+    static final Object UNDEFINED = new Object();
+    static final Object NUMBER = new Object();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] myKeys;
+    private Object[] myValues;
+    private double[] myNumbers;
+    private VariableType[] myTypes;
+    private int mySize;
+
+    ParameterStack() {
+        myKeys = new String[INITIAL_CAPACITY];
+        myValues = new Object[INITIAL_CAPACITY];
+        myNumbers = new double[INITIAL_CAPACITY];
+        myTypes = new VariableType[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param key: The name of the parameter.
+     * @param value: Its value before it is bound, or UNDEFINED if it was not defined.
+     * @param type: Its type before it is bound.
+     */
+    void push(String key, Object value, VariableType type) {
+        if (mySize == myKeys.length) {
+            myKeys = Arrays.copyOf(myKeys, mySize * 2);
+            myValues = Arrays.copyOf(myValues, mySize * 2);
+            myNumbers = Arrays.copyOf(myNumbers, mySize * 2);
+            myTypes = Arrays.copyOf(myTypes, mySize * 2);
+        }
+        myKeys[mySize] = key;
+        myValues[mySize] = value;
+        myTypes[mySize] = type;
+        mySize++;
+    }
+
+    /**
+     * This method saves a number without boxing it. Its value is then NUMBER, and the number is read with topNumber.
+     *
+     * @param key: The name of the parameter.
+     * @param number: Its value before it is bound.
+     * @param type: Its type before it is bound, DOUBLE or INTEGER.
+     */
+    void push(String key, double number, VariableType type) {
+        push(key, NUMBER, type);
+        myNumbers[mySize - 1] = number;
+    }
+
+    String topKey() {
+        return myKeys[mySize - 1];
+    }
+
+    Object topValue() {
+        return myValues[mySize - 1];
+    }
+
+    double topNumber() {
+        return myNumbers[mySize - 1];
+    }
+
+    VariableType topType() {
+        return myTypes[mySize - 1];
+    }
+
+    void pop() {
+        mySize--;
+        myKeys[mySize] = null;
+        myValues[mySize] = null;
+        myTypes[mySize] = null;
+    }
+
+    /**
+     * This method drops the last inner entries whose keys are among the outer entries just below them, keeping the order of the others. When all of them are restored together, the outer entry of a key is restored last, so the dropped entries would be overwritten.
+     *
+     * @return The number of inner entries kept.
+     */
+    int fold(int outer, int inner) {
+        int start = mySize - inner;
+        int kept = start;
+        for (int i = start; i < mySize; i++) {
+            if (!contains(start - outer, start, myKeys[i])) {
+                myKeys[kept] = myKeys[i];
+                myValues[kept] = myValues[i];
+                myNumbers[kept] = myNumbers[i];
+                myTypes[kept] = myTypes[i];
+                kept++;
+            }
+        }
+        int dropped = mySize - kept;
+        while (mySize > kept) {
+            pop();
+        }
+        return inner - dropped;
+    }
+
+    private boolean contains(int from, int to, String key) {
+        for (int i = from; i < to; i++) {
+            if (myKeys[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return mySize;
+    }
+
+    String keyAt(int index) {
+        return myKeys[index];
+    }
+
+    boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    void clear() {
+        Arrays.fill(myKeys, 0, mySize, null);
+        Arrays.fill(myValues, 0, mySize, null);
+        Arrays.fill(myTypes, 0, mySize, null);
+        mySize = 0;
+    }
+}
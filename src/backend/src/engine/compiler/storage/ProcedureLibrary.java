@@ -0,0 +1,73 @@
+package engine.compiler.storage;
+
+import engine.compiler.slogoast.MakeUserInstruction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class holds user-defined functions shared by the StateMachines of several sessions, such as the tabs of the app, which may run on different threads. A library is parsed once and its ASTs are shared, instead of every session parsing and keeping its own copy.
+ * <p>
+ * The functions are kept in an unmodifiable map that is replaced by a modified copy whenever a function is defined or removed, so that a lookup only reads a volatile field and never takes a lock. The version changes after every replacement. It is read by the StateMachines as part of their procedure version, so that the call sites that resolved a function from the library look it up again when it is redefined.
+ *
+ * @author Haotian Wang
+ */
+public final class ProcedureLibrary {
+    private volatile Map<String, MakeUserInstruction> myProcedures;
+    private volatile int myVersion;
+
+    public ProcedureLibrary() {
+        myProcedures = Collections.emptyMap();
+    }
+
+    /**
+     * @param name: The name of the function.
+     * @return The function of this name, or null if the library has none.
+     */
+    public MakeUserInstruction get(String name) {
+        return myProcedures.get(name);
+    }
+
+    /**
+     * This method defines or redefines a function for every session sharing this library. The sessions that define a function of the same name themselves keep using their own.
+     *
+     * @param function: The definition of the function.
+     */
+    public synchronized void define(MakeUserInstruction function) {
+        Map<String, MakeUserInstruction> procedures = new HashMap<>(myProcedures);
+        procedures.put(function.getVariable().getVariableName(), function);
+        myProcedures = Collections.unmodifiableMap(procedures);
+        myVersion++;
+    }
+
+    /**
+     * @param name: The name of the function.
+     * @return Whether the library had a function of this name.
+     */
+    public synchronized boolean remove(String name) {
+        if (!myProcedures.containsKey(name)) {
+            return false;
+        }
+        Map<String, MakeUserInstruction> procedures = new HashMap<>(myProcedures);
+        procedures.remove(name);
+        myProcedures = Collections.unmodifiableMap(procedures);
+        myVersion++;
+        return true;
+    }
+
+    /**
+     * @return The names of the functions in the library when this method is called.
+     */
+    public Set<String> names() {
+        return myProcedures.keySet();
+    }
+
+    /**
+     * @return A number that changes whenever a function of the library is defined, redefined or removed.
+     */
+    public int version() {
+        return myVersion;
+    }
+}
@@ -1,5 +1,6 @@
 package engine.compiler.storage;
 
+import engine.compiler.jvm.ProcedureCompiler;
 import engine.compiler.slogoast.Expression;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
@@ -62,6 +63,14 @@ public interface StateMachine {
      */
     VariableType getVariableType(String key) throws UndefinedKeywordException;
 
+    /**
+     * Get the type of the variable without checking first whether it is defined, so that a node expecting a type can check it with one lookup.
+     *
+     * @param key : The name of the variable.
+     * @return The type of the variable, or null if it is not defined or has no type.
+     */
+    VariableType typeOf(String key);
+
     /**
      * Get the value of the variable as an Object from the aggregate map.
      *
@@ -70,6 +79,28 @@ public interface StateMachine {
      */
     Object getValueInGeneralForm(String key) throws UndefinedKeywordException;
 
+    /**
+     * Get the value of a variable of type DOUBLE, without boxing it if the StateMachine can avoid it.
+     *
+     * @param key : The name of the variable.
+     * @return The double value of the variable.
+     * @throws ClassCastException if the value of the variable is not a Double.
+     */
+    default double getDouble(String key) throws UndefinedKeywordException {
+        return (Double) getValueInGeneralForm(key);
+    }
+
+    /**
+     * Get the value of a variable of type INTEGER, without boxing it if the StateMachine can avoid it.
+     *
+     * @param key : The name of the variable.
+     * @return The int value of the variable.
+     * @throws ClassCastException if the value of the variable is not an Integer.
+     */
+    default int getInteger(String key) throws UndefinedKeywordException {
+        return (Integer) getValueInGeneralForm(key);
+    }
+
     /**
      * Remove the key entry from the map.
      *
@@ -91,7 +122,7 @@ public interface StateMachine {
     Map<String, Object> listOfVariables();
 
     /**
-     *  Allow any observers to register as an observer to this StateMachine.
+     *  Allow any observers to register as an observer to this StateMachine. The observer is told about the changes made after it registers.
      */
     void register(StateMachineObserver observer);
 
@@ -104,10 +135,70 @@ public interface StateMachine {
     boolean containsVariable(String key);
 
     /**
-     * Push notifications to observers whenever there's change within the StateMachine.
+     * Push notifications to observers about the variables that changed since the last notification, if any did. The writes only collect the changes, so that a loop writing a variable many times notifies the observers once. The engine calls this method after every command, and a view may call it more often, such as once per frame, while a long script runs.
      */
     void pushAlarm();
 
+    /**
+     * Save the value of a parameter of a user-defined function before the argument for it is evaluated. The observers are not notified.
+     *
+     * @param key: The name of the parameter.
+     */
+    void saveParameter(String key);
+
+    /**
+     * Bind a parameter of a user-defined function to the value of its argument. The parameter is visible by name like any variable while the function runs, but the observers are not notified.
+     *
+     * @param key: The name of the parameter.
+     * @param value: The value of the argument.
+     */
+    void bindParameter(String key, double value);
+
+    /**
+     * Put back the values of the last parameters saved, most recent first, when a user-defined function returns. A parameter that was not defined before is removed. The observers are not notified.
+     *
+     * @param count: The number of parameters of the function.
+     */
+    void restoreParameters(int count);
+
+    /**
+     * Forget the values saved for the last parameters that were also saved by the call just below them, when a user-defined function is called in tail position and the call below returns its result without running anything else. The values saved by the call below are put back anyway when both return together.
+     *
+     * @param outer: The number of parameters saved by the call below.
+     * @param inner: The number of parameters saved by the call in tail position.
+     * @return The number of parameters left saved by both calls.
+     */
+    int foldParameters(int outer, int inner);
+
+    /**
+     * Forget the saved parameters after a command failed inside a user-defined function, leaving its parameters with the values they had at the failure. If there were any, they are reported to the observers at the next notification.
+     */
+    void unwindParameters();
+
+    /**
+     * Returns a number that increases whenever a user-defined function is defined, redefined or removed, or a variable holding one is given a value of another type, and never goes back to a value it had. A call site that looked a function up can keep using it for as long as the number is the same.
+     *
+     * @return The version of the user-defined functions in the StateMachine.
+     */
+    int procedureVersion();
+
+    /**
+     * @return The cache of the results of the pure user-defined functions defined in this StateMachine.
+     */
+    FunctionMemo functionMemo();
+
+    /**
+     * Resolve the names that this StateMachine does not define to the functions of a ProcedureLibrary shared with other sessions. The functions and variables defined here shadow the ones of the library.
+     *
+     * @param library: The library, or null to stop using one.
+     */
+    void shareProcedures(ProcedureLibrary library);
+
+    /**
+     * @return The ProcedureCompiler that runs the bodies of the user-defined functions called in this StateMachine.
+     */
+    ProcedureCompiler procedureCompiler();
+
     /**
      * Present the internal storage of the StateMachine in a list format, separated by newline.
      *
@@ -1,5 +1,32 @@
 package engine.compiler.storage;
 
+import java.util.Map;
+
+/**
+ * This interface is implemented by what shows the variables of a StateMachine. The StateMachine collects the variables that change while a command runs, and tells its observers about them once, when pushAlarm is called after the command, with the kind of each change.
+ *
+ * @author Haotian Wang
+ */
 public interface StateMachineObserver {
+    /**
+     * This method is called when the observer has to read the whole StateMachine again.
+     */
     void notifyListener();
+
+    /**
+     * This method is called with the variables that changed since the last notification, in the order they first changed. By default the observer reads the whole StateMachine again.
+     *
+     * @param changes: The kind of change of each variable that the observer observes.
+     */
+    default void notifyChanges(Map<String, VariableChange> changes) {
+        notifyListener();
+    }
+
+    /**
+     * @param key: The name of a variable.
+     * @return Whether the observer is told about the changes of the variable. An observer may leave out internal variables such as :repcount, which changes in every iteration of a loop.
+     */
+    default boolean observes(String key) {
+        return true;
+    }
 }
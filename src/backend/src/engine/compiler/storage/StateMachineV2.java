@@ -1,6 +1,8 @@
 package engine.compiler.storage;
 
+import engine.compiler.jvm.ProcedureCompiler;
 import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
 import engine.errors.InterpretationException;
 import engine.errors.UndefinedKeywordException;
 
@@ -8,18 +10,29 @@ import java.util.*;
 
 /**
  * This is the version 2 of the StateMachine implementation. It does not build a different map for a different type of variable. Instead it stores everything in two maps, the global and the local.
+ * <p>
+ * A name this StateMachine does not define is looked up in its ProcedureLibrary, if it shares one, and the procedure version includes the version of the library.
  *
  * @author Haotian Wang
  */
 public class StateMachineV2 implements StateMachine{
     private Map<String, VariableType> typeMap;
     private Map<String, Object> valueMap;
-    private List<StateMachineObserver> observers;
+    private ChangeBuffer changes;
+    private ParameterStack parameters;
+    private int procedureVersion;
+    private FunctionMemo functionMemo;
+    private ProcedureCompiler procedureCompiler;
+    private ProcedureLibrary library;
+    private int libraryBase;
 
     public StateMachineV2() {
         typeMap = new HashMap<>();
         valueMap = new HashMap<>();
-        observers = new ArrayList<>();
+        changes = new ChangeBuffer();
+        parameters = new ParameterStack();
+        functionMemo = new FunctionMemo(this);
+        procedureCompiler = new ProcedureCompiler();
 
         valueMap.put("ColorIndex1", "#FF0000");
         valueMap.put("ColorIndex2", "#00FF00");
@@ -80,8 +93,8 @@ public class StateMachineV2 implements StateMachine{
     @Override
     public void setVariable(String key, Object value, VariableType type) {
         valueMap.put(key, value);
-        typeMap.put(key, type);
-        pushAlarm();
+        retype(typeMap.put(key, type), type);
+        changes.record(key);
     }
 
     /**
@@ -93,11 +106,29 @@ public class StateMachineV2 implements StateMachine{
     @Override
     public VariableType getVariableType(String key) throws UndefinedKeywordException {
         if (!typeMap.containsKey(key)) {
+            if (shared(key) != null) {
+                return VariableType.EXPRESSION;
+            }
             throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore its type cannot be determined", key));
         }
         return typeMap.get(key);
     }
 
+    /**
+     * Every variable in the type map is in the value map, so a type is only returned for a defined variable.
+     *
+     * @param key : The name of the variable.
+     * @return The type of the variable, or null if it is not defined or has no type.
+     */
+    @Override
+    public VariableType typeOf(String key) {
+        VariableType type = typeMap.get(key);
+        if (type == null && !valueMap.containsKey(key) && shared(key) != null) {
+            return VariableType.EXPRESSION;
+        }
+        return type;
+    }
+
     /**
      * Get the value of the variable as an Object from the aggregate map.
      *
@@ -107,6 +138,10 @@ public class StateMachineV2 implements StateMachine{
     @Override
     public Object getValueInGeneralForm(String key) throws UndefinedKeywordException {
         if (!valueMap.containsKey(key)) {
+            Object function = shared(key);
+            if (function != null) {
+                return function;
+            }
             throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore its value cannot be determined", key));
         }
         return valueMap.get(key);
@@ -123,8 +158,8 @@ public class StateMachineV2 implements StateMachine{
             throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore it cannot be removed",key));
         }
         valueMap.remove(key);
-        typeMap.remove(key);
-        pushAlarm();
+        retype(typeMap.remove(key), null);
+        changes.record(key);
     }
 
     /**
@@ -132,9 +167,10 @@ public class StateMachineV2 implements StateMachine{
      */
     @Override
     public void resetState() {
+        changes.recordAll(valueMap.keySet());
         valueMap.clear();
         typeMap.clear();
-        pushAlarm();
+        procedureVersion++;
     }
 
     /**
@@ -155,7 +191,7 @@ public class StateMachineV2 implements StateMachine{
      */
     @Override
     public void register(StateMachineObserver observer) {
-        observers.add(observer);
+        changes.register(observer, valueMap);
     }
 
     /**
@@ -166,15 +202,135 @@ public class StateMachineV2 implements StateMachine{
      */
     @Override
     public boolean containsVariable(String key) {
-        return valueMap.containsKey(key);
+        return valueMap.containsKey(key) || shared(key) != null;
     }
 
     /**
-     * Push notifications to observers whenever there's change within the StateMachine.
+     * Push notifications to observers about the variables written since the last notification.
      */
     @Override
     public void pushAlarm() {
-        observers.forEach(StateMachineObserver::notifyListener);
+        changes.flush(valueMap);
+    }
+
+    /**
+     * Save the value of a parameter of a user-defined function before the argument for it is evaluated. The observers are not notified.
+     *
+     * @param key : The name of the parameter.
+     */
+    @Override
+    public void saveParameter(String key) {
+        if (valueMap.containsKey(key)) {
+            parameters.push(key, valueMap.get(key), typeMap.get(key));
+        } else {
+            parameters.push(key, ParameterStack.UNDEFINED, null);
+        }
+    }
+
+    /**
+     * Bind a parameter of a user-defined function to the value of its argument, without notifying the observers.
+     *
+     * @param key   : The name of the parameter.
+     * @param value : The value of the argument.
+     */
+    @Override
+    public void bindParameter(String key, double value) {
+        valueMap.put(key, value);
+        retype(typeMap.put(key, VariableType.DOUBLE), VariableType.DOUBLE);
+    }
+
+    /**
+     * Put back the values of the last parameters saved, most recent first, without notifying the observers.
+     *
+     * @param count : The number of parameters of the function.
+     */
+    @Override
+    public void restoreParameters(int count) {
+        for (int i = 0; i < count; i++) {
+            String key = parameters.topKey();
+            Object value = parameters.topValue();
+            VariableType type = parameters.topType();
+            if (value == ParameterStack.UNDEFINED) {
+                valueMap.remove(key);
+            } else {
+                valueMap.put(key, value);
+            }
+            if (type == null) {
+                retype(typeMap.remove(key), null);
+            } else {
+                retype(typeMap.put(key, type), type);
+            }
+            parameters.pop();
+        }
+    }
+
+    /**
+     * Forget the values saved for the last parameters that were also saved by the call just below them, when a user-defined function is called in tail position.
+     *
+     * @param outer : The number of parameters saved by the call below.
+     * @param inner : The number of parameters saved by the call in tail position.
+     * @return The number of parameters left saved by both calls.
+     */
+    @Override
+    public int foldParameters(int outer, int inner) {
+        return outer + parameters.fold(outer, inner);
+    }
+
+    /**
+     * Forget the saved parameters after a command failed. The parameters bound at the failure stay defined, so they are reported to the observers at the next notification.
+     */
+    @Override
+    public void unwindParameters() {
+        for (int i = 0; i < parameters.size(); i++) {
+            changes.record(parameters.keyAt(i));
+        }
+        parameters.clear();
+    }
+
+    /**
+     * @return The version of the user-defined functions, which changes whenever a variable becomes or stops being a function, or the shared library changes.
+     */
+    @Override
+    public int procedureVersion() {
+        return library == null ? procedureVersion : procedureVersion + library.version() - libraryBase;
+    }
+
+    /**
+     * Resolve the names that this StateMachine does not define to the functions of a ProcedureLibrary.
+     *
+     * @param library : The library, or null to stop using one.
+     */
+    @Override
+    public void shareProcedures(ProcedureLibrary library) {
+        procedureVersion = procedureVersion() + 1;
+        this.library = library;
+        libraryBase = library == null ? 0 : library.version();
+    }
+
+    /**
+     * @return The cache of the results of the pure user-defined functions.
+     */
+    @Override
+    public FunctionMemo functionMemo() {
+        return functionMemo;
+    }
+
+    /**
+     * @return The compiler of the hot user-defined functions.
+     */
+    @Override
+    public ProcedureCompiler procedureCompiler() {
+        return procedureCompiler;
+    }
+
+    private MakeUserInstruction shared(String key) {
+        return library == null ? null : library.get(key);
+    }
+
+    private void retype(VariableType before, VariableType after) {
+        if (before == VariableType.EXPRESSION || after == VariableType.EXPRESSION) {
+            procedureVersion++;
+        }
     }
 
     /**
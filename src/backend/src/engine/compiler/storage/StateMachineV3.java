@@ -0,0 +1,578 @@
+package engine.compiler.storage;
+
+import engine.compiler.jvm.ProcedureCompiler;
+import engine.compiler.slogoast.Expression;
+import engine.compiler.slogoast.MakeUserInstruction;
+import engine.errors.UndefinedKeywordException;
+
+import java.util.*;
+
+/**
+ * This is the version 3 of the StateMachine implementation. Instead of boxing every number into a map of Objects, it gives every name an entry in parallel columns: a double array for the numbers, a byte array for the types, and an Object array on the side for the strings, the functions and the values that are not numbers of their type. An open-addressing table of ints finds the entry of a name with the hash code that String caches, so that reading or writing a number allocates nothing.
+ * <p>
+ * An entry is never taken out of the table. Removing a variable only marks its entry absent, and the entry is used again when the variable is defined again, as the parameters of a user-defined function are at every call.
+ * <p>
+ * A name this StateMachine does not define is looked up in its ProcedureLibrary, if it shares one, and the procedure version includes the version of the library. The functions of the library are not listed by listOfVariables and cannot be removed from here, since they belong to no session.
+ *
+ * @author Haotian Wang
+ */
+public class StateMachineV3 implements StateMachine {
+    private static final int INITIAL_CAPACITY = 32;
+    private static final VariableType[] TYPES = VariableType.values();
+    private static final byte ABSENT = 0;
+    private static final byte UNTYPED = 1;
+    private static final byte DOUBLE = code(VariableType.DOUBLE);
+    private static final byte INTEGER = code(VariableType.INTEGER);
+    private static final byte EXPRESSION = code(VariableType.EXPRESSION);
+    // Marks a DOUBLE or INTEGER variable whose value is not a Double or an Integer, which is kept as it is in the side table.
+    private static final byte BOXED = 0x10;
+
+    private int[] table;
+    private String[] names;
+    private double[] numbers;
+    private byte[] types;
+    private Object[] objects;
+    private int entries;
+    private int defined;
+    private Map<String, Object> variables;
+    private ChangeBuffer changes;
+    private ParameterStack parameters;
+    private int procedureVersion;
+    private FunctionMemo functionMemo;
+    private ProcedureCompiler procedureCompiler;
+    private ProcedureLibrary library;
+    private int libraryBase;
+
+    public StateMachineV3() {
+        table = new int[INITIAL_CAPACITY * 2];
+        names = new String[INITIAL_CAPACITY];
+        numbers = new double[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        objects = new Object[INITIAL_CAPACITY];
+        variables = new Variables();
+        changes = new ChangeBuffer();
+        parameters = new ParameterStack();
+        functionMemo = new FunctionMemo(this);
+        procedureCompiler = new ProcedureCompiler();
+
+        put(entry("ColorIndex1"), "#FF0000", null);
+        put(entry("ColorIndex2"), "#00FF00", null);
+        put(entry("ColorIndex3"), "#0000FF", null);
+    }
+
+    /**
+     * Set a double value for a variable.
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public void setDouble(String key, double value) {
+        int entry = entry(key);
+        define(entry, DOUBLE);
+        numbers[entry] = value;
+        objects[entry] = null;
+        changes.record(key);
+    }
+
+    /**
+     * Set an int value for a variable.
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public void setInteger(String key, int value) {
+        int entry = entry(key);
+        define(entry, INTEGER);
+        numbers[entry] = value;
+        objects[entry] = null;
+        changes.record(key);
+    }
+
+    /**
+     * Set a String value for a variable.
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public void setString(String key, String value) {
+        setVariable(key, value, VariableType.STRING);
+    }
+
+    /**
+     * Set an Expression value for a variable.
+     *
+     * @param key
+     * @param function
+     */
+    @Override
+    public void setExpression(String key, Expression function) {
+        setVariable(key, function, VariableType.EXPRESSION);
+    }
+
+    /**
+     * Set the value of a variable in the StateMachine by taking in three parameters. A Double of type DOUBLE or an Integer of type INTEGER is unboxed into the column of numbers.
+     *
+     * @param key   : The String name of the variable.
+     * @param value : The value of the variable to be stored in the Object format.
+     * @param type  : The type of the variable to be stored.
+     */
+    @Override
+    public void setVariable(String key, Object value, VariableType type) {
+        put(entry(key), value, type);
+        changes.record(key);
+    }
+
+    /**
+     * Get the type of the variable, either a double, an integer or a function.
+     *
+     * @param key
+     * @return The type of the variable.
+     */
+    @Override
+    public VariableType getVariableType(String key) throws UndefinedKeywordException {
+        VariableType type = typeOf(key);
+        if (type == null) {
+            throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore its type cannot be determined", key));
+        }
+        return type;
+    }
+
+    /**
+     * @param key : The name of the variable.
+     * @return The type of the variable, or null if it is not defined or has no type.
+     */
+    @Override
+    public VariableType typeOf(String key) {
+        int entry = find(key);
+        if (entry >= 0 && types[entry] != ABSENT) {
+            return type(types[entry]);
+        }
+        return shared(key) != null ? VariableType.EXPRESSION : null;
+    }
+
+    /**
+     * Get the value of the variable as an Object. A number is boxed again.
+     *
+     * @param key
+     * @return An Object representation of the value of the variable.
+     */
+    @Override
+    public Object getValueInGeneralForm(String key) throws UndefinedKeywordException {
+        int entry = find(key);
+        if (entry >= 0 && types[entry] != ABSENT) {
+            return value(entry);
+        }
+        Object function = shared(key);
+        if (function == null) {
+            throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore its value cannot be determined", key));
+        }
+        return function;
+    }
+
+    /**
+     * Get the value of a variable of type DOUBLE from the column of numbers.
+     *
+     * @param key : The name of the variable.
+     * @return The double value of the variable.
+     * @throws ClassCastException if the value of the variable is not a Double.
+     */
+    @Override
+    public double getDouble(String key) throws UndefinedKeywordException {
+        int entry = find(key);
+        return entry >= 0 && types[entry] == DOUBLE ? numbers[entry] : (Double) getValueInGeneralForm(key);
+    }
+
+    /**
+     * Get the value of a variable of type INTEGER from the column of numbers.
+     *
+     * @param key : The name of the variable.
+     * @return The int value of the variable.
+     * @throws ClassCastException if the value of the variable is not an Integer.
+     */
+    @Override
+    public int getInteger(String key) throws UndefinedKeywordException {
+        int entry = find(key);
+        return entry >= 0 && types[entry] == INTEGER ? (int) numbers[entry] : (Integer) getValueInGeneralForm(key);
+    }
+
+    /**
+     * Remove the key entry from the map.
+     *
+     * @param key
+     */
+    @Override
+    public void removeVariable(String key) throws UndefinedKeywordException {
+        int entry = find(key);
+        if (entry < 0 || types[entry] == ABSENT) {
+            throw new UndefinedKeywordException(String.format("The variable \"%s\" is not defined in the global scope, therefore it cannot be removed", key));
+        }
+        remove(entry);
+        changes.record(key);
+    }
+
+    /**
+     * Clear all state variables in the state machine.
+     */
+    @Override
+    public void resetState() {
+        changes.recordAll(variables.keySet());
+        Arrays.fill(table, 0);
+        Arrays.fill(names, 0, entries, null);
+        Arrays.fill(types, 0, entries, ABSENT);
+        Arrays.fill(objects, 0, entries, null);
+        entries = 0;
+        defined = 0;
+        procedureVersion++;
+    }
+
+    /**
+     * Present the internal storage of the StateMachine in a map format. The map is an unmodifiable view of the defined variables, in the order their names were first defined.
+     *
+     * @return A Map representation of the StateMachine.
+     */
+    @Override
+    public Map<String, Object> listOfVariables() {
+        return variables;
+    }
+
+    /**
+     * Allow any observers to register as an observer to this StateMachine.
+     *
+     * @param observer
+     */
+    @Override
+    public void register(StateMachineObserver observer) {
+        changes.register(observer, variables);
+    }
+
+    /**
+     * Returns true if the variable is already defined in the StateMachine and false otherwise.
+     *
+     * @param key : The String name of the variable to be queried.
+     * @return A boolean value indicating whether the variable key is defined in the StateMachine.
+     */
+    @Override
+    public boolean containsVariable(String key) {
+        int entry = find(key);
+        return entry >= 0 && types[entry] != ABSENT || shared(key) != null;
+    }
+
+    /**
+     * Push notifications to observers about the variables written since the last notification.
+     */
+    @Override
+    public void pushAlarm() {
+        changes.flush(variables);
+    }
+
+    /**
+     * Save the value of a parameter of a user-defined function before the argument for it is evaluated. A number is saved without boxing it. The observers are not notified.
+     *
+     * @param key : The name of the parameter.
+     */
+    @Override
+    public void saveParameter(String key) {
+        int entry = find(key);
+        if (entry < 0 || types[entry] == ABSENT) {
+            parameters.push(key, ParameterStack.UNDEFINED, null);
+        } else if (types[entry] == DOUBLE || types[entry] == INTEGER) {
+            parameters.push(key, numbers[entry], type(types[entry]));
+        } else {
+            parameters.push(key, objects[entry], type(types[entry]));
+        }
+    }
+
+    /**
+     * Bind a parameter of a user-defined function to the value of its argument, without notifying the observers.
+     *
+     * @param key   : The name of the parameter.
+     * @param value : The value of the argument.
+     */
+    @Override
+    public void bindParameter(String key, double value) {
+        int entry = entry(key);
+        define(entry, DOUBLE);
+        numbers[entry] = value;
+        objects[entry] = null;
+    }
+
+    /**
+     * Put back the values of the last parameters saved, most recent first, without notifying the observers.
+     *
+     * @param count : The number of parameters of the function.
+     */
+    @Override
+    public void restoreParameters(int count) {
+        for (int i = 0; i < count; i++) {
+            int entry = entry(parameters.topKey());
+            Object value = parameters.topValue();
+            if (value == ParameterStack.UNDEFINED) {
+                if (types[entry] != ABSENT) {
+                    remove(entry);
+                }
+            } else if (value == ParameterStack.NUMBER) {
+                define(entry, code(parameters.topType()));
+                numbers[entry] = parameters.topNumber();
+                objects[entry] = null;
+            } else {
+                put(entry, value, parameters.topType());
+            }
+            parameters.pop();
+        }
+    }
+
+    /**
+     * Forget the values saved for the last parameters that were also saved by the call just below them, when a user-defined function is called in tail position.
+     *
+     * @param outer : The number of parameters saved by the call below.
+     * @param inner : The number of parameters saved by the call in tail position.
+     * @return The number of parameters left saved by both calls.
+     */
+    @Override
+    public int foldParameters(int outer, int inner) {
+        return outer + parameters.fold(outer, inner);
+    }
+
+    /**
+     * Forget the saved parameters after a command failed. The parameters bound at the failure stay defined, so they are reported to the observers at the next notification.
+     */
+    @Override
+    public void unwindParameters() {
+        for (int i = 0; i < parameters.size(); i++) {
+            changes.record(parameters.keyAt(i));
+        }
+        parameters.clear();
+    }
+
+    /**
+     * @return The version of the user-defined functions, which changes whenever a variable becomes or stops being a function, or the shared library changes.
+     */
+    @Override
+    public int procedureVersion() {
+        return library == null ? procedureVersion : procedureVersion + library.version() - libraryBase;
+    }
+
+    /**
+     * Resolve the names that this StateMachine does not define to the functions of a ProcedureLibrary.
+     *
+     * @param library : The library, or null to stop using one.
+     */
+    @Override
+    public void shareProcedures(ProcedureLibrary library) {
+        // Keep what the outgoing library added and count from the version of the new one, so that the procedure version only increases.
+        procedureVersion = procedureVersion() + 1;
+        this.library = library;
+        libraryBase = library == null ? 0 : library.version();
+    }
+
+    /**
+     * @return The cache of the results of the pure user-defined functions.
+     */
+    @Override
+    public FunctionMemo functionMemo() {
+        return functionMemo;
+    }
+
+    /**
+     * @return The compiler of the hot user-defined functions.
+     */
+    @Override
+    public ProcedureCompiler procedureCompiler() {
+        return procedureCompiler;
+    }
+
+    /**
+     * Present the internal storage of the StateMachine in a list format, separated by newline.
+     *
+     * @return A String representation of the StateMachine.
+     */
+    @Override
+    public String toString() {
+        StringBuilder ans = new StringBuilder("The variables are\n");
+        variables.forEach((key, value) -> ans.append(key).append(" = ").append(value).append("\n"));
+        return ans.toString();
+    }
+
+    private static byte code(VariableType type) {
+        return type == null ? UNTYPED : (byte) (type.ordinal() + 2);
+    }
+
+    private static VariableType type(byte code) {
+        return code == ABSENT || code == UNTYPED ? null : TYPES[(code & ~BOXED) - 2];
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return The entry of the name, or -1 if it has none.
+     */
+    private int find(String key) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (names[entry].equals(key)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The entry of the name, which is added absent if it has none.
+     */
+    private int entry(String key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        for (; table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (names[entry].equals(key)) {
+                return entry;
+            }
+        }
+        if (entries == names.length) {
+            names = Arrays.copyOf(names, entries * 2);
+            numbers = Arrays.copyOf(numbers, entries * 2);
+            types = Arrays.copyOf(types, entries * 2);
+            objects = Arrays.copyOf(objects, entries * 2);
+        }
+        int entry = entries++;
+        names[entry] = key;
+        table[slot] = entry + 1;
+        if (entries * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return entry;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry = 0; entry < entries; entry++) {
+            int slot = hash(names[entry]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+    }
+
+    private MakeUserInstruction shared(String key) {
+        return library == null ? null : library.get(key);
+    }
+
+    private Object value(int entry) {
+        if (types[entry] == DOUBLE) {
+            return numbers[entry];
+        }
+        if (types[entry] == INTEGER) {
+            return (int) numbers[entry];
+        }
+        return objects[entry];
+    }
+
+    private void put(int entry, Object value, VariableType type) {
+        byte code = code(type);
+        if (code == DOUBLE && value instanceof Double) {
+            define(entry, code);
+            numbers[entry] = (Double) value;
+            objects[entry] = null;
+        } else if (code == INTEGER && value instanceof Integer) {
+            define(entry, code);
+            numbers[entry] = (Integer) value;
+            objects[entry] = null;
+        } else {
+            define(entry, code == DOUBLE || code == INTEGER ? (byte) (code | BOXED) : code);
+            objects[entry] = value;
+        }
+    }
+
+    /**
+     * This method gives an entry its new type, and changes the version of the user-defined functions if it was or becomes a function.
+     */
+    private void define(int entry, byte code) {
+        byte before = types[entry];
+        if (before == ABSENT) {
+            defined++;
+        }
+        if (before == EXPRESSION || code == EXPRESSION) {
+            procedureVersion++;
+        }
+        types[entry] = code;
+    }
+
+    private void remove(int entry) {
+        if (types[entry] == EXPRESSION) {
+            procedureVersion++;
+        }
+        types[entry] = ABSENT;
+        objects[entry] = null;
+        defined--;
+    }
+
+    /**
+     * This class is the view of the defined variables that listOfVariables returns.
+     */
+    private class Variables extends AbstractMap<String, Object> {
+        @Override
+        public int size() {
+            return defined;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int entry = key instanceof String ? find((String) key) : -1;
+            return entry >= 0 && types[entry] != ABSENT;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int entry = key instanceof String ? find((String) key) : -1;
+            return entry < 0 ? null : value(entry);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return defined;
+                }
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int next = skip(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < entries;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (next >= entries) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, Object> entry = new SimpleImmutableEntry<>(names[next], value(next));
+                            next = skip(next + 1);
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+
+        private int skip(int entry) {
+            while (entry < entries && types[entry] == ABSENT) {
+                entry++;
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package engine.compiler.storage;
+
+/**
+ * This enum class includes the kinds of change of a variable that a StateMachine tells its observers about, compared with the variables it had at the last notification.
+ *
+ * @author Haotian Wang
+ */
+public enum VariableChange {
+    ADDED,
+    UPDATED,
+    REMOVED
+}
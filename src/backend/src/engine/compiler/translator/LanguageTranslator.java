@@ -15,6 +15,7 @@ public class LanguageTranslator implements Translator {
     private static final String NO_MATCH = " is not defined in the language files.";
 
     private Map<String, Pattern> mySymbols;
+    private SymbolIndex myIndex;
 
     /**
      * Create an empty translator.
@@ -48,11 +49,13 @@ public class LanguageTranslator implements Translator {
                     // THIS IS THE IMPORTANT LINE
                     Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
         }
+        myIndex = null;
     }
 
     @Override
     public void setPatterns(String syntax) throws MissingResourceException {
         mySymbols.clear();
+        myIndex = null;
         addPatterns(syntax);
     }
 
@@ -65,10 +68,12 @@ public class LanguageTranslator implements Translator {
      */
     @Override
     public String getSymbol (String text) throws UndefinedKeywordException {
-        for (var e : mySymbols.entrySet()) {
-            if (match(text, e.getValue())) {
-                return e.getKey();
-            }
+        if (myIndex == null) {
+            myIndex = new SymbolIndex(mySymbols.entrySet());
+        }
+        String symbol = myIndex.getSymbol(text);
+        if (symbol != null) {
+            return symbol;
         }
         throw new UndefinedKeywordException("\"" + text + "\"" + NO_MATCH);
     }
@@ -88,12 +93,4 @@ public class LanguageTranslator implements Translator {
             return false;
         }
     }
-
-    /**
-     * Returns true if the given text matches the given regular expression pattern
-     */
-    private boolean match (String text, Pattern regex) {
-        // THIS IS THE IMPORTANT LINE
-        return regex.matcher(text).matches();
-    }
 }
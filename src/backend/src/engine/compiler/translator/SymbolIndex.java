@@ -0,0 +1,128 @@
+package engine.compiler.translator;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * This class indexes the patterns of a Translator so that most lookups are a single hash probe. Every alternative of a pattern that is plain text, such as "fd" in "forward|fd" or "(" in "^\\($", is stored case-folded in a hash table together with the symbol that the Translator would return for it. Only the patterns that are real regular expressions, such as Constant or Variable, are still matched one by one, and only when the hash table has no entry for the text.
+ *
+ * @author Haotian Wang
+ */
+class SymbolIndex {
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String GROUPING_CHARACTERS = "([{";
+
+    private Map<String, String> myKeywords;
+    private List<Map.Entry<String, Pattern>> myRegularExpressions;
+
+    /**
+     * Build the index for the given patterns.
+     *
+     * @param symbols: The symbols and their patterns, in the order in which the Translator tries them.
+     */
+    SymbolIndex(Collection<Map.Entry<String, Pattern>> symbols) {
+        myKeywords = new HashMap<>();
+        myRegularExpressions = new ArrayList<>();
+        for (var e : symbols) {
+            List<String> literals = literalAlternatives(e.getValue().pattern());
+            if (literals == null) {
+                myRegularExpressions.add(e);
+                continue;
+            }
+            for (String literal : literals) {
+                String folded = fold(literal);
+                if (!myKeywords.containsKey(folded)) {
+                    myKeywords.put(folded, firstMatch(symbols, literal));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol associated with the given text, or null if no pattern matches it.
+     *
+     * @param text: The input raw String.
+     * @return The first symbol in the original order whose pattern matches the text.
+     */
+    String getSymbol(String text) {
+        String symbol = myKeywords.get(fold(text));
+        if (symbol != null) {
+            return symbol;
+        }
+        for (var e : myRegularExpressions) {
+            if (e.getValue().matcher(text).matches()) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A literal can still be matched by a regular expression that comes earlier, for example "pendown" by a pattern "pen.*", so the symbol stored for the literal is decided by trying every pattern in order once, when the index is built.
+     */
+    private String firstMatch(Collection<Map.Entry<String, Pattern>> symbols, String literal) {
+        for (var e : symbols) {
+            if (e.getValue().matcher(literal).matches()) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method splits a regular expression such as "^forward|fd$" into the plain texts it accepts.
+     *
+     * @param regex: The regular expression read from a properties file.
+     * @return The list of plain texts, or null if the regular expression accepts anything that cannot be listed this way.
+     */
+    private List<String> literalAlternatives(String regex) {
+        for (char c : GROUPING_CHARACTERS.toCharArray()) {
+            if (regex.indexOf(c) >= 0) {
+                return null;
+            }
+        }
+        List<String> literals = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                current.append(regex.charAt(++i));
+            } else if (c == '|') {
+                literals.add(current.toString());
+                current.setLength(0);
+            } else if (c == '^' && current.length() == 0) {
+                continue;
+            } else if (c == '$' && (i + 1 == regex.length() || regex.charAt(i + 1) == '|')) {
+                continue;
+            } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                current.append(c);
+            }
+        }
+        literals.add(current.toString());
+        return literals;
+    }
+
+    /**
+     * The patterns are compiled with Pattern.CASE_INSENSITIVE, which only folds US-ASCII letters, so the keys of the hash table do the same.
+     */
+    private String fold(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                char[] chars = text.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (chars[j] >= 'A' && chars[j] <= 'Z') {
+                        chars[j] += 'a' - 'A';
+                    }
+                }
+                return new String(chars);
+            }
+        }
+        return text;
+    }
+}
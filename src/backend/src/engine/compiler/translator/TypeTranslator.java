@@ -18,7 +18,7 @@ public class TypeTranslator implements Translator {
     // "types" and the regular expression patterns that recognize those types
     // note, it is a list because order matters (some patterns may be more generic)
     private List<Map.Entry<String, Pattern>> mySymbols;
-
+    private SymbolIndex myIndex;
 
     /**
      * Create an empty translator.
@@ -52,11 +52,13 @@ public class TypeTranslator implements Translator {
                     // THIS IS THE IMPORTANT LINE
                     Pattern.compile(regex, Pattern.CASE_INSENSITIVE)));
         }
+        myIndex = null;
     }
 
     @Override
     public void setPatterns(String syntax) throws MissingResourceException{
         mySymbols.clear();
+        myIndex = null;
         addPatterns(syntax);
     }
 
@@ -69,10 +71,12 @@ public class TypeTranslator implements Translator {
      */
     @Override
     public String getSymbol (String text) throws UndefinedKeywordException {
-        for (var e : mySymbols) {
-            if (match(text, e.getValue())) {
-                return e.getKey();
-            }
+        if (myIndex == null) {
+            myIndex = new SymbolIndex(mySymbols);
+        }
+        String symbol = myIndex.getSymbol(text);
+        if (symbol != null) {
+            return symbol;
         }
         throw new UndefinedKeywordException("\"" + text + "\"" + NO_MATCH);
     }
@@ -92,12 +96,4 @@ public class TypeTranslator implements Translator {
             return false;
         }
     }
-
-    /**
-     * Returns true if the given text matches the given regular expression pattern
-     */
-    private boolean match (String text, Pattern regex) {
-        // THIS IS THE IMPORTANT LINE
-        return regex.matcher(text).matches();
-    }
 }
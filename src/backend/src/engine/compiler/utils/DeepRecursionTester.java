@@ -0,0 +1,59 @@
+package engine.compiler.utils;
+
+import engine.api.BytecodeEngineAPI;
+import engine.errors.CommandSyntaxException;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.ModelModule;
+
+/**
+ * This class checks that the VirtualMachine runs deep recursion in user-defined functions on its own frames rather than on the Java stack. It runs a tail-recursive function, down, and a function whose recursive call is not in tail position, up, 100,000 calls deep, on a thread whose Java stack is far too small for that many nested calls to interpret. Both must return the right value and leave no parameter behind in the StateMachine.
+ *
+ * @author Haotian Wang
+ */
+public class DeepRecursionTester {
+    private static final int DEPTH = 100000;
+    private static final long STACK_SIZE = 256 * 1024;
+    private static final String DOWN = "to down [ :n ] [ ifelse equal? :n 0 [ 0 ] [ down [ difference :n 1 ] ] ]";
+    private static final String UP = "to up [ :n ] [ ifelse equal? :n 0 [ 0 ] [ sum 1 up [ difference :n 1 ] ] ]";
+
+    /**
+     * A main method to run the check.
+     *
+     * @param args: The depth of the recursion, optional.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEPTH;
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                run(depth);
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, DeepRecursionTester.class.getSimpleName(), STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw new IllegalStateException("The deep recursion failed", failure[0]);
+        }
+    }
+
+    private static void run(int depth) throws UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        BytecodeEngineAPI engine = new BytecodeEngineAPI(new ModelModule().turtleManager());
+        engine.processString(DOWN);
+        engine.processString(UP);
+        check("down", engine.processString(String.format("down [ %d ]", depth)), 0);
+        check("up", engine.processString(String.format("up [ %d ]", depth)), depth);
+        if (engine.stateMachine().containsVariable(":n")) {
+            throw new IllegalStateException("The parameter :n is left in the StateMachine after the calls return");
+        }
+    }
+
+    private static void check(String function, double result, double expected) {
+        System.out.println(String.format("%s returned %s", function, result));
+        if (result != expected) {
+            throw new IllegalStateException(String.format("%s returned %s instead of %s", function, result, expected));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package engine.compiler.utils;
+
+import engine.api.ASTEngineAPI;
+import engine.api.BytecodeEngineAPI;
+import engine.compiler.jvm.ProcedureCompiler;
+import engine.errors.CommandSyntaxException;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.ModelModule;
+import model.TurtleManager;
+import model.TurtleModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class runs every SLogo program under a directory on three engines and checks that they end the same way: the ASTEngineAPI as it is, the ASTEngineAPI with every user-defined function compiled to JVM bytecode on its first call and checked against the interpreter in the differential mode, and the BytecodeEngineAPI. The engines must return the same value or throw the same exception, move the first turtle through the same positions, and leave the same turtles and the same variables behind.
+ * <p>
+ * Every program is run after the first turtle is told to listen. A program in a file whose name ends with the name of a language, such as star_spanish.logo, is run in that language.
+ *
+ * @author Haotian Wang
+ */
+public class EngineDifferentialTester {
+    private static final String EXAMPLES = "data/examples";
+    private static final String EXTENSION = ".logo";
+    private static final String SELECT_FIRST_TURTLE = "tell [ 1 ]";
+    private static final String[] LANGUAGES = {"Chinese", "English", "French", "German", "Italian", "Portuguese", "Russian", "Spanish", "Urdu"};
+
+    /**
+     * A main method to run the check.
+     *
+     * @param args: The directory of the programs, data/examples by default.
+     */
+    public static void main(String[] args) throws IOException, InterpretationException, UndefinedKeywordException {
+        List<Path> programs;
+        try (Stream<Path> files = Files.walk(Paths.get(args.length > 0 ? args[0] : EXAMPLES))) {
+            programs = files.filter(file -> file.toString().endsWith(EXTENSION)).sorted().collect(Collectors.toList());
+        }
+        int mismatches = 0;
+        for (Path program : programs) {
+            String source = new String(Files.readAllBytes(program));
+            String language = language(program);
+            TurtleManager turtleManager = new ModelModule().turtleManager();
+            String interpreted = run(new ASTEngineAPI(turtleManager), turtleManager, language, source);
+            turtleManager = new ModelModule().turtleManager();
+            ASTEngineAPI compiling = new ASTEngineAPI(turtleManager);
+            ProcedureCompiler procedureCompiler = compiling.procedureCompiler();
+            procedureCompiler.setThreshold(1);
+            procedureCompiler.setDifferential(true);
+            String compiled = run(compiling, turtleManager, language, source);
+            turtleManager = new ModelModule().turtleManager();
+            String bytecode = run(new BytecodeEngineAPI(turtleManager), turtleManager, language, source);
+            if (interpreted.equals(compiled) && interpreted.equals(bytecode)) {
+                System.out.println(program + ": " + interpreted);
+            } else {
+                mismatches++;
+                System.out.println(program + " differs\nInterpreted: " + interpreted + "\nCompiled: " + compiled + "\nBytecode: " + bytecode);
+            }
+        }
+        System.out.println(String.format("%d programs run, %d mismatches", programs.size(), mismatches));
+        if (mismatches > 0) {
+            throw new IllegalStateException("The engines do not run the programs the same way");
+        }
+    }
+
+    private static String language(Path program) {
+        String name = program.getFileName().toString();
+        String suffix = name.substring(name.lastIndexOf('_') + 1, name.length() - EXTENSION.length()).toLowerCase(Locale.ROOT);
+        for (String language : LANGUAGES) {
+            if (language.toLowerCase(Locale.ROOT).equals(suffix)) {
+                return language;
+            }
+        }
+        return LANGUAGES[1];
+    }
+
+    /**
+     * This method runs a program and describes how it ended: its return value or exception, the path of the first turtle, the turtles and the variables.
+     */
+    private static String run(ASTEngineAPI engine, TurtleManager turtleManager, String language, String source) throws InterpretationException, UndefinedKeywordException {
+        List<String> path = new ArrayList<>();
+        turtleManager.turtleModels().get(ModelModule.INITIAL_TURTLE_ID).posAndAngleModel().registerListener(position -> path.add(String.format("(%.4f, %.4f, %.4f)", position.x(), position.y(), position.angle())));
+        StringBuilder outcome = new StringBuilder();
+        try {
+            engine.processString(SELECT_FIRST_TURTLE);
+            engine.setLanguage(language);
+            outcome.append(String.format("returned %.6f", engine.processString(source)));
+        } catch (UndefinedKeywordException | CommandSyntaxException | InterpretationException | RuntimeException e) {
+            outcome.append("threw ").append(e.getClass().getSimpleName()).append(": ").append(e.getMessage());
+        }
+        outcome.append(String.format(", %d positions with hash %08x", path.size(), path.hashCode()));
+        for (Map.Entry<Integer, TurtleModel> turtle : new TreeMap<>(turtleManager.turtleModels()).entrySet()) {
+            TurtleModel model = turtle.getValue();
+            outcome.append(String.format(", turtle %d at (%.4f, %.4f, %.4f) pen %b visible %b", turtle.getKey(), model.getX(), model.getY(), model.getAngle(), model.isPenDown(), model.isVisible()));
+        }
+        Map<String, String> variables = new TreeMap<>();
+        for (Map.Entry<String, Object> variable : engine.stateMachine().listOfVariables().entrySet()) {
+            Object value = variable.getValue();
+            variables.put(variable.getKey(), value instanceof Number || value instanceof String ? value.toString() : value.getClass().getSimpleName());
+        }
+        return outcome.append(", variables ").append(variables).toString();
+    }
+}
@@ -0,0 +1,102 @@
+package engine.compiler.utils;
+
+import engine.compiler.lexer.CrudeLexer;
+import engine.compiler.lexer.Lexer;
+import engine.compiler.parser.CrudeParser;
+import engine.compiler.parser.IncrementalParser;
+import engine.compiler.parser.Parser;
+import engine.errors.CommandSyntaxException;
+import engine.errors.UndefinedKeywordException;
+
+import java.util.Random;
+
+/**
+ * This class checks the IncrementalParser against a full parse. It builds random programs out of pieces of SLogo, edits each of them a few times at random offsets as a user would in the editor, and parses every version both with one IncrementalParser, which reuses the statements it parsed in the previous version, and with a fresh Lexer and Parser. The two must give the same AST, or fail with the same exception.
+ *
+ * @author Haotian Wang
+ */
+public class IncrementalParserTester {
+    private static final String[] PIECES = {"fd 10\n", "rt 90 ", "repeat 4 [ fd 5 rt 90 ]\n", "foo [ 1 2 ]\n", "foo\n", "[ 3 ]\n", "to foo [ :a ] [ fd :a ]\n", "make :x 5\n", "# comment [ \n", "sum 1 2 ", "if 1 [ fd 1 ]\n", "bar ", "[ ", "] ", "\n", "fd ", ":x ", "ifelse 1 [ fd 1 ] [ bk 2 ]\n"};
+    private static final String CHARACTERS = "ab1 [\n:";
+    private static final int PROGRAMS = 1000;
+    private static final int EDITS = 8;
+    private static final int SHOWN_MISMATCHES = 3;
+
+    /**
+     * A main method to run the check.
+     *
+     * @param args: The seed of the random programs and edits, and the number of programs, both optional.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 0);
+        int programs = args.length > 1 ? Integer.parseInt(args[1]) : PROGRAMS;
+        int versions = 0;
+        int mismatches = 0;
+        for (int i = 0; i < programs; i++) {
+            IncrementalParser incrementalParser = new IncrementalParser(new CrudeLexer(), new CrudeParser());
+            StringBuilder program = new StringBuilder();
+            int pieces = 3 + random.nextInt(20);
+            for (int j = 0; j < pieces; j++) {
+                program.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            String source = program.toString();
+            for (int j = 0; j < EDITS; j++) {
+                String incremental = incrementalParse(incrementalParser, source);
+                String full = fullParse(source);
+                versions++;
+                if (!incremental.equals(full)) {
+                    mismatches++;
+                    if (mismatches <= SHOWN_MISMATCHES) {
+                        System.out.println("Mismatch on:\n" + source.replace("\n", "\\n") + "\nIncremental: " + incremental + "\nFull: " + full + "\n");
+                    }
+                }
+                source = edit(source, random);
+            }
+        }
+        System.out.println(String.format("%d versions of %d programs parsed, %d mismatches", versions, programs, mismatches));
+        if (mismatches > 0) {
+            throw new IllegalStateException("The IncrementalParser does not give the same AST as a full parse");
+        }
+    }
+
+    /**
+     * This method replaces up to five characters at a random offset with a random piece, a random character or nothing.
+     */
+    private static String edit(String source, Random random) {
+        int start = random.nextInt(source.length() + 1);
+        int end = Math.min(source.length(), start + random.nextInt(6));
+        String insertion;
+        if (random.nextBoolean()) {
+            insertion = PIECES[random.nextInt(PIECES.length)];
+        } else if (random.nextBoolean()) {
+            insertion = "";
+        } else {
+            insertion = String.valueOf(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        return source.substring(0, start) + insertion + source.substring(end);
+    }
+
+    private static String incrementalParse(IncrementalParser incrementalParser, String source) {
+        try {
+            return incrementalParser.parse(source).toString();
+        } catch (UndefinedKeywordException | CommandSyntaxException | RuntimeException e) {
+            return describe(e);
+        }
+    }
+
+    private static String fullParse(String source) {
+        try {
+            Lexer lexer = new CrudeLexer();
+            lexer.readString(source);
+            Parser parser = new CrudeParser();
+            parser.readTokens(lexer.getTokens());
+            return parser.returnAST().toString();
+        } catch (UndefinedKeywordException | CommandSyntaxException | RuntimeException e) {
+            return describe(e);
+        }
+    }
+
+    private static String describe(Exception e) {
+        return "Error " + e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+}
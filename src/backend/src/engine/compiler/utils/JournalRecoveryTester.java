@@ -0,0 +1,194 @@
+package engine.compiler.utils;
+
+import engine.api.ASTEngineAPI;
+import engine.compiler.snapshot.CommandJournal;
+import engine.errors.CommandSyntaxException;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.ModelModule;
+import model.TurtleManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * This class checks that a session recorded in a CommandJournal is recovered by a fresh session in a new journal on the same directory, as it is when the app starts again after a crash. It covers a journal with a command that threw an unchecked exception, which must be run again without stopping the commands after it or the recording of the recovered session, and a journal whose last record was torn by a crash, which must be dropped alone. It also checks that an error of the journal, or a journal closed under the session, is reported by the next command instead of silently dropping the commands after it and before it runs, so that it never replaces the return value or the exception of a command.
+ *
+ * @author Haotian Wang
+ */
+public class JournalRecoveryTester {
+    private static final int CHECKPOINT_INTERVAL = 100;
+    private static final String SELECT_FIRST_TURTLE = "tell [ 1 ]";
+    private static final String UNCHECKED_FAILURE = "make :repcount 1 repeat 2 [ make :repcount 1.5 ]";
+    private static final int TORN_BYTES = 3;
+    private static final int FAILING_CHECKPOINT_INTERVAL = 2;
+    private static final String FAILING_SNAPSHOT = String.format("snapshot-%020d.slws", FAILING_CHECKPOINT_INTERVAL);
+
+    /**
+     * A main method to run the checks.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        checkFailedEntry();
+        checkTornSegment();
+        checkFailedCheckpoint();
+        checkClosedJournal();
+    }
+
+    private static void checkFailedEntry() throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Path directory = Files.createTempDirectory(JournalRecoveryTester.class.getSimpleName());
+        try {
+            CommandJournal journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            TurtleManager turtleManager = new ModelModule().turtleManager();
+            ASTEngineAPI engine = new ASTEngineAPI(turtleManager);
+            engine.recover(journal);
+            engine.processString(SELECT_FIRST_TURTLE);
+            engine.processString("make :a 5");
+            try {
+                engine.processString(UNCHECKED_FAILURE);
+                throw new IllegalStateException("The command expected to fail with an unchecked exception returned");
+            } catch (RuntimeException e) {
+                System.out.println("The live session survived " + e.getClass().getSimpleName());
+            }
+            engine.processString("make :b 7");
+            engine.processString("fd 10");
+            double x = turtleManager.turtleModels().get(ModelModule.INITIAL_TURTLE_ID).getX();
+            double y = turtleManager.turtleModels().get(ModelModule.INITIAL_TURTLE_ID).getY();
+            journal.close();
+
+            journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            turtleManager = new ModelModule().turtleManager();
+            engine = new ASTEngineAPI(turtleManager);
+            check(engine.recover(journal) == 5, "the 5 commands are run again");
+            check(engine.stateMachine().containsVariable(":a") && engine.stateMachine().containsVariable(":b"), "the variables made before and after the failed command are recovered");
+            check(turtleManager.turtleModels().get(ModelModule.INITIAL_TURTLE_ID).getX() == x && turtleManager.turtleModels().get(ModelModule.INITIAL_TURTLE_ID).getY() == y, "the turtle is moved by the command after the failed one");
+            engine.processString("make :c 3");
+            journal.close();
+
+            journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            check(journal.getRecoveredEntries().size() == 6, "the recovered session records its commands");
+            journal.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void checkTornSegment() throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Path directory = Files.createTempDirectory(JournalRecoveryTester.class.getSimpleName());
+        try {
+            CommandJournal journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            ASTEngineAPI engine = new ASTEngineAPI(new ModelModule().turtleManager());
+            engine.recover(journal);
+            engine.processString("make :a 1");
+            engine.processString("make :b 2");
+            journal.close();
+            tear(directory);
+
+            journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            engine = new ASTEngineAPI(new ModelModule().turtleManager());
+            check(engine.recover(journal) == 1, "only the command before the torn record is run again");
+            check(engine.stateMachine().containsVariable(":a") && !engine.stateMachine().containsVariable(":b"), "the torn command is dropped");
+            engine.processString("make :c 3");
+            journal.close();
+
+            journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            engine = new ASTEngineAPI(new ModelModule().turtleManager());
+            check(engine.recover(journal) == 2 && engine.processString(":c") == 3, "the commands after the torn record are recovered");
+            journal.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void checkFailedCheckpoint() throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Path directory = Files.createTempDirectory(JournalRecoveryTester.class.getSimpleName());
+        try {
+            CommandJournal journal = new CommandJournal(directory, FAILING_CHECKPOINT_INTERVAL);
+            ASTEngineAPI engine = new ASTEngineAPI(new ModelModule().turtleManager());
+            engine.recover(journal);
+            Files.createDirectories(directory.resolve(FAILING_SNAPSHOT).resolve(FAILING_SNAPSHOT));
+            engine.processString("make :a 1");
+            check(engine.processString("make :b 2") == 2, "the command whose checkpoint fails still returns its value");
+            try {
+                engine.processString("make :c 3");
+                throw new IllegalStateException("The failed checkpoint was not reported");
+            } catch (UncheckedIOException e) {
+                System.out.println("The next command reported: " + e.getMessage());
+            }
+            check(!engine.stateMachine().containsVariable(":c"), "the command that reports the error is not run");
+            check(engine.processString("make :d 4") == 4, "the commands after the report run without the journal");
+            try {
+                journal.close();
+                throw new IllegalStateException("Closing the journal did not report the failed checkpoint");
+            } catch (IOException e) {
+                System.out.println("Closing the journal reported: " + e.getMessage());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void checkClosedJournal() throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        Path directory = Files.createTempDirectory(JournalRecoveryTester.class.getSimpleName());
+        try {
+            CommandJournal journal = new CommandJournal(directory, CHECKPOINT_INTERVAL);
+            ASTEngineAPI engine = new ASTEngineAPI(new ModelModule().turtleManager());
+            engine.recover(journal);
+            check(engine.processString("make :a 1") == 1, "the command before the journal is closed returns its value");
+            journal.close();
+            try {
+                engine.processString("make :b 2");
+                throw new IllegalStateException("The closed journal was not reported");
+            } catch (IllegalStateException e) {
+                System.out.println("The next command reported: " + e.getMessage());
+            }
+            check(!engine.stateMachine().containsVariable(":b"), "the command that reports the closed journal is not run");
+            check(engine.processString("make :c 3") == 3, "the commands after the report run without the journal");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * This method cuts off the end of the last record of the only segment, as a crash in the middle of a write would.
+     */
+    private static void tear(Path directory) throws IOException {
+        Path segment = null;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : segments) {
+                if (Files.size(file) > 0) {
+                    segment = file;
+                }
+            }
+        }
+        if (segment == null) {
+            throw new IllegalStateException("No command was written to the journal");
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - TORN_BYTES);
+        }
+    }
+
+    private static void check(boolean condition, String expectation) {
+        if (!condition) {
+            throw new IllegalStateException("Expected that " + expectation);
+        }
+        System.out.println("Checked that " + expectation);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package engine.compiler.utils;
+
+import engine.api.ASTEngineAPI;
+import engine.api.BytecodeEngineAPI;
+import engine.compiler.storage.ProcedureLibrary;
+import engine.errors.CommandSyntaxException;
+import engine.errors.InterpretationException;
+import engine.errors.UndefinedKeywordException;
+import model.ModelModule;
+import model.TurtleManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * This class checks that a call site notices when a session switches to another ProcedureLibrary. The libraries define a function of the same name differently, and the second has a smaller version than the first, so a call site that keeps the function it found before would call the wrong one. Both engines must call the function of the library shared at the time, and fail once no library is shared.
+ *
+ * @author Haotian Wang
+ */
+public class ProcedureLibraryTester {
+    private static final String[] LIBRARIES = {"to foo [ ] [ 1 ] to g [ ] [ 1 ] to h [ ] [ 1 ]", "to foo [ ] [ 2 ] to g [ ] [ 1 ]", "to foo [ ] [ 3 ]"};
+    private static final String CALL = "foo";
+
+    /**
+     * A main method to run the check.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        TurtleManager turtleManager = new ModelModule().turtleManager();
+        check(new ASTEngineAPI(turtleManager));
+        turtleManager = new ModelModule().turtleManager();
+        check(new BytecodeEngineAPI(turtleManager));
+    }
+
+    private static void check(ASTEngineAPI engine) throws IOException, UndefinedKeywordException, CommandSyntaxException, InterpretationException {
+        ProcedureLibrary[] libraries = new ProcedureLibrary[LIBRARIES.length];
+        for (int i = 0; i < libraries.length; i++) {
+            libraries[i] = new ProcedureLibrary();
+            engine.loadLibrary(libraries[i], new StringReader(LIBRARIES[i]));
+        }
+        for (int i = 0; i < libraries.length; i++) {
+            engine.shareProcedures(libraries[i]);
+            double result = engine.processString(CALL);
+            if (result != i + 1) {
+                throw new IllegalStateException(String.format("%s called the function of an earlier library after switching to library %d: it returned %s", engine.getClass().getSimpleName(), i + 1, result));
+            }
+        }
+        engine.shareProcedures(null);
+        try {
+            engine.processString(CALL);
+            throw new IllegalStateException(String.format("%s still called the function of a library that is no longer shared", engine.getClass().getSimpleName()));
+        } catch (UndefinedKeywordException e) {
+            System.out.println(engine.getClass().getSimpleName() + " called the function of every library in turn and none once detached");
+        }
+    }
+}
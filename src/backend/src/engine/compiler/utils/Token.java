@@ -1,27 +1,49 @@
 package engine.compiler.utils;
 
 /**
- * This class represents a Token object used by the
+ * This class represents a Token object used by the Lexer and the Parser. A Token knows its kind, its String, which is the name of the command for keywords, and where it was found in the input String. Tokens made up by the Parser rather than read from the input have -1 as both offsets.
  *
  * @author Haotian Wang
  */
 public class Token {
     private final String myString;
-    private final String myType;
+    private final TokenType myType;
+    private final int myStart;
+    private final int myEnd;
 
-    public Token(String string, String type) {
+    public Token(String string, TokenType type, int start, int end) {
         myString = string;
         myType = type;
+        myStart = start;
+        myEnd = end;
+    }
+
+    public Token(String string, TokenType type) {
+        this(string, type, -1, -1);
     }
 
     public String getString() {
         return myString;
     }
 
-    public String getType() {
+    public TokenType getType() {
         return myType;
     }
 
+    /**
+     * @return The index of the first character of this Token in the input String, or -1 if the Token was not read from the input.
+     */
+    public int getStart() {
+        return myStart;
+    }
+
+    /**
+     * @return The index right after the last character of this Token in the input String, or -1 if the Token was not read from the input.
+     */
+    public int getEnd() {
+        return myEnd;
+    }
+
     @Override
     public String toString() { return myType + " : " + myString; }
 }
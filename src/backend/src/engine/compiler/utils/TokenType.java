@@ -0,0 +1,65 @@
+package engine.compiler.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This enum class includes the kinds of Tokens produced by the Lexer. This serves to replace the String architecture of identifying Tokens, so that the Parser compares Token kinds by reference instead of by String.equals. Each kind keeps the name it has in Syntax.properties or SyntacticCategories.properties.
+ *
+ * @author Haotian Wang
+ */
+public enum TokenType {
+    NEWLINE("Newline"),
+    COMMENT("Comment"),
+    WHITESPACE("Whitespace"),
+    COMMAND("Command"),
+    CONSTANT("Constant"),
+    VARIABLE("Variable"),
+    GROUP_START("GroupStart"),
+    GROUP_END("GroupEnd"),
+    LIST_START("ListStart"),
+    LIST_END("ListEnd"),
+    UNARY("Unary"),
+    BINARY("Binary"),
+    DIRECT("Direct"),
+    MAKE_VARIABLE("MakeVariable"),
+    CONDITION("Condition"),
+    DO_TIMES("DoTimes"),
+    FOR("For"),
+    IF_ELSE("IfElse"),
+    MAKE_USER_INSTRUCTION("MakeUserInstruction"),
+    TWO_LIST("TwoList"),
+    TELL("Tell"),
+    QUATERNARY("Quaternary");
+
+    private static final Map<String, TokenType> myCategories = new HashMap<>();
+    static {
+        for (TokenType type : values()) {
+            myCategories.put(type.myCategory, type);
+        }
+    }
+
+    private final String myCategory;
+
+    TokenType(String category) {
+        myCategory = category;
+    }
+
+    /**
+     * Returns the kind of Token with the given name in the properties files.
+     *
+     * @param category: A name such as "Constant" or "Unary".
+     * @return The TokenType with that name, or null if there is none.
+     */
+    public static TokenType fromCategory(String category) {
+        return myCategories.get(category);
+    }
+
+    /**
+     * @return The name of this kind of Token in the properties files.
+     */
+    @Override
+    public String toString() {
+        return myCategory;
+    }
+}
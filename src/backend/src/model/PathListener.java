@@ -0,0 +1,13 @@
+package model;
+
+/**
+ *  A PosAndAngleListener that takes the steps of a TurtlePath together.
+ *  The listeners that do not implement it are called once for every step instead.
+ */
+public interface PathListener extends PosAndAngleListener {
+    /**
+     * @param pas already at the last step
+     * @param path x, y and angle after each step, three values per step
+     */
+    void pathChanged(PosAndAngle pas, double[] path);
+}
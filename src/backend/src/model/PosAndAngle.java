@@ -31,6 +31,33 @@ public class PosAndAngle {
     public double y() { return y; }
     public double angle() { return angle; }
 
+    /**
+     * Moves through several steps with one event for each PathListener
+     * @param path x, y and angle after each step, three values per step
+     */
+    public void setPath(double[] path) {
+        if(path.length == 0) return;
+        int last = path.length - 3;
+        for(var listener : listeners) {
+            if(listener instanceof PathListener) {
+                setLast(path, last);
+                ((PathListener) listener).pathChanged(this, path);
+            } else {
+                for(int i = 0; i < path.length; i += 3) {
+                    setLast(path, i);
+                    listener.changed(this);
+                }
+            }
+        }
+        setLast(path, last);
+    }
+
+    private void setLast(double[] path, int at) {
+        x = path[at];
+        y = path[at+1];
+        angle = path[at+2];
+    }
+
     public void registerListener(PosAndAngleListener pasL) { listeners.add(pasL); }
     public void fireChange() { listeners.forEach(c -> c.changed(this));}
 }
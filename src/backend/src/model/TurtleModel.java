@@ -17,6 +17,26 @@ public interface TurtleModel {
     double moveTo(double x, double y, boolean forcePenUp) throws InterpretationException, UndefinedKeywordException;
     double setAngle(double angle) throws InterpretationException, UndefinedKeywordException;
     double leftBy(double angle) throws InterpretationException, UndefinedKeywordException;
+
+    /**
+     * Applies every step of the path, with one change event for many steps
+     * @return what forward or leftBy returns for the last step
+     */
+    double follow(TurtlePath path) throws InterpretationException, UndefinedKeywordException;
+
+    /**
+     * Same as leftBy and forward for every pair, with one change event for many pairs
+     * @param turnsAndMoves angle to turn left by, then distance to move, two values per pair
+     * @return what forward returns for the last pair
+     */
+    double turnAndForward(double[] turnsAndMoves) throws InterpretationException, UndefinedKeywordException;
+
+    /**
+     * Same as moveTo for every point, with one change event for many points
+     * @param xys x and y of each point, two values per point
+     * @return what moveTo returns for the last point
+     */
+    double moveThrough(double[] xys, boolean forcePenUp) throws InterpretationException, UndefinedKeywordException;
     double getX() throws InterpretationException, UndefinedKeywordException;
     double getY() throws InterpretationException, UndefinedKeywordException;
     double getAngle() throws InterpretationException, UndefinedKeywordException;
@@ -0,0 +1,37 @@
+package model;
+
+/**
+ *  A fixed sequence of moves and turns, repeated a number of times.
+ *  TurtleModel::follow applies all of it in one call, and ends at the same place
+ *  as calling forward for every move and leftBy for every turn.
+ */
+public final class TurtlePath {
+    private final double[] amounts;
+    private final boolean[] turns;
+    private final int times;
+
+    /**
+     * @param amounts distance of each move, or angle of each turn to the left
+     * @param turns whether each step is a turn instead of a move
+     * @param times number of times the steps are repeated
+     */
+    public TurtlePath(double[] amounts, boolean[] turns, int times) {
+        if(amounts.length != turns.length) throw new IllegalArgumentException("Every step of a path must be either a move or a turn");
+        this.amounts = amounts.clone();
+        this.turns = turns.clone();
+        this.times = times;
+    }
+
+    /**
+     * @return number of steps before the path repeats
+     */
+    public int length() { return amounts.length; }
+    public double amount(int step) { return amounts[step]; }
+    public boolean isTurn(int step) { return turns[step]; }
+    public int times() { return times; }
+
+    /**
+     * @return total number of steps, repetitions included
+     */
+    public long steps() { return (long) amounts.length * times; }
+}
@@ -125,6 +125,21 @@ public class TurtleManagerImpl implements TurtleManager {
         return batchOperation(t -> t.leftBy(angle));
     }
 
+    @Override
+    public double follow(TurtlePath path) throws InterpretationException, UndefinedKeywordException {
+        return batchOperation(t -> t.follow(path));
+    }
+
+    @Override
+    public double turnAndForward(double[] turnsAndMoves) throws InterpretationException, UndefinedKeywordException {
+        return batchOperation(t -> t.turnAndForward(turnsAndMoves));
+    }
+
+    @Override
+    public double moveThrough(double[] xys, boolean forcePenUp) throws InterpretationException, UndefinedKeywordException {
+        return batchOperation(t -> t.moveThrough(xys, forcePenUp));
+    }
+
     @Override
     public double getX() throws InterpretationException, UndefinedKeywordException { return batchOperation(TurtleModel::getX); }
 
@@ -6,12 +6,15 @@ import javafx.beans.property.SimpleBooleanProperty;
 import model.ClearListener;
 import model.PosAndAngle;
 import model.TurtleModel;
+import model.TurtlePath;
 import model.UIListener;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TurtleModelImpl implements TurtleModel {
+    private static final int PATH_CHUNK = 4096;
+
     private SimpleBooleanProperty visible;
     private SimpleBooleanProperty penDown;
     private PosAndAngle pa;
@@ -71,6 +74,94 @@ public class TurtleModelImpl implements TurtleModel {
         return angle;
     }
 
+    /**
+     *  Same arithmetic as forward and leftBy, step by step, so the turtle ends at exactly the same place.
+     *  The steps are reported to the listeners PATH_CHUNK at a time.
+     */
+    @Override
+    public double follow(TurtlePath path) {
+        var points = new PathBuffer(path.steps());
+        for(int time = 0; time < path.times(); time++) {
+            for(int step = 0; step < path.length(); step++) {
+                if(path.isTurn(step)) points.turn(path.amount(step));
+                else points.move(path.amount(step));
+            }
+        }
+        return points.ret;
+    }
+
+    @Override
+    public double turnAndForward(double[] turnsAndMoves) {
+        if(turnsAndMoves.length % 2 != 0) throw new IllegalArgumentException("Every turn must be followed by a move");
+        var points = new PathBuffer(turnsAndMoves.length);
+        for(int i = 0; i < turnsAndMoves.length; i += 2) {
+            points.turn(turnsAndMoves[i]);
+            points.move(turnsAndMoves[i+1]);
+        }
+        return points.ret;
+    }
+
+    @Override
+    public double moveThrough(double[] xys, boolean forcePenUp) {
+        if(xys.length % 2 != 0) throw new IllegalArgumentException("Every point needs both an x and a y");
+        var prevPen = penDown.getValue();
+        if(forcePenUp) setPenDown(false);
+        var points = new PathBuffer(xys.length/2);
+        for(int i = 0; i < xys.length; i += 2) points.lineTo(xys[i], xys[i+1]);
+        setPenDown(prevPen);
+        return points.ret;
+    }
+
+    /**
+     *  Walks the turtle through the steps of one bulk call, and hands the points to pa.setPath
+     *  every PATH_CHUNK steps and after the last one.
+     */
+    private class PathBuffer {
+        private double x = pa.x();
+        private double y = pa.y();
+        private double angle = pa.angle();
+        private double ret;
+        private long remaining;
+        private double[] points;
+        private int filled;
+
+        private PathBuffer(long steps) {
+            remaining = steps;
+            points = new double[3 * (int) Math.min(remaining, PATH_CHUNK)];
+        }
+
+        private void turn(double by) {
+            angle = (angle-by+360)%360;
+            ret = by;
+            add();
+        }
+
+        private void move(double by) {
+            lineTo(x + by*Math.cos(Math.toRadians(angle)), y + by*Math.sin(Math.toRadians(angle)));
+        }
+
+        private void lineTo(double newX, double newY) {
+            var dx = newX - x;
+            var dy = newY - y;
+            ret = Math.sqrt(dx*dx + dy*dy);
+            x = newX;
+            y = newY;
+            add();
+        }
+
+        private void add() {
+            points[filled++] = x;
+            points[filled++] = y;
+            points[filled++] = angle;
+            if(filled == points.length) {
+                pa.setPath(points);
+                remaining -= filled/3;
+                points = new double[3 * (int) Math.min(remaining, PATH_CHUNK)];
+                filled = 0;
+            }
+        }
+    }
+
     public double getX(){return pa.x();}
     public double getY(){return pa.y();}
     public double getAngle(){return pa.angle();}
@@ -5,6 +5,8 @@ module backend {
     exports model;
     exports engine.errors;
     exports engine.api;
+    exports engine.compiler.jvm;
+    exports engine.compiler.snapshot;
     exports engine.compiler.storage;
     exports engine.compiler.utils;
 }
\ No newline at end of file
@@ -2,9 +2,13 @@ package app;
 
 import controller.ControllerModule;
 import engine.api.ASTEngineAPI;
+import engine.api.BytecodeEngineAPI;
 import engine.api.EngineAPI;
+import engine.compiler.snapshot.CommandJournal;
+import engine.compiler.storage.ProcedureLibrary;
 import javafx.application.Application;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.paint.Color;
@@ -12,6 +16,9 @@ import javafx.stage.Stage;
 import model.ModelModule;
 import view.ViewModule;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ResourceBundle;
 
 public class SLogoApp extends Application implements TabbedApp {
@@ -22,10 +29,18 @@ public class SLogoApp extends Application implements TabbedApp {
     private static final ResourceBundle APP_PROPERTIES = ResourceBundle.getBundle("slogo");
     private static final String TAB_STYLE = "main-tab";
     private static final String STYLESHEET = "style.css";
+    private static final String ENGINE_KEY = "Engine";
+    private static final String BYTECODE_ENGINE = "Bytecode";
+    private static final String MAX_DEPTH_KEY = "MaxDepth";
+    private static final String LIBRARY_KEY = "Library";
+    private static final String JOURNAL_KEY = "Journal";
+    private static final int JOURNAL_CHECKPOINT_INTERVAL = 500;
 
     private TabPane tabPane;
     private Scene scene;
     private int tabIndex;
+    private ProcedureLibrary library;
+    private CommandJournal journal;
 
     @Override
     public void start(Stage primaryStage) {
@@ -42,10 +57,52 @@ public class SLogoApp extends Application implements TabbedApp {
         newInstance();
     }
 
+    /**
+     * The Library key in slogo.properties names a script of functions that is parsed once, by the engine of the first tab, and shared by the engines of all the tabs, which may still define their own functions of the same names.
+     */
+    private void loadLibrary(ASTEngineAPI engine) {
+        library = new ProcedureLibrary();
+        try (var reader = Files.newBufferedReader(Paths.get(APP_PROPERTIES.getString(LIBRARY_KEY).trim()))) {
+            engine.loadLibrary(library, reader);
+        } catch (Exception e) {
+            showError("While loading the library of functions, this happened:\n" + e.toString());
+        }
+    }
+
+    /**
+     * The Journal key in slogo.properties names a directory in which the session of the first tab is recorded. When the app starts, that session is recovered from the journal, so that a crash loses no more than the commands that were not yet written.
+     */
+    private void recoverJournal(ASTEngineAPI engine) {
+        try {
+            journal = new CommandJournal(Paths.get(APP_PROPERTIES.getString(JOURNAL_KEY).trim()), JOURNAL_CHECKPOINT_INTERVAL);
+            engine.recover(journal);
+        } catch (Exception e) {
+            showError("While recovering the session from the journal, this happened:\n" + e.toString());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            showError("While closing the journal, this happened:\n" + e.toString());
+        }
+    }
+
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error!");
+        alert.setHeaderText("Something went wrong ...");
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
     @Override
     public void newInstance() {
         ModelModule modelModule = new ModelModule();
-        EngineAPI engineApi = new ASTEngineAPI(modelModule.turtleManager());
+        EngineAPI engineApi = newEngine(modelModule);
         ViewModule viewModule = new ViewModule(engineApi);
         new ControllerModule(this, modelModule, engineApi, viewModule, engineApi::setLanguage);
 
@@ -56,5 +113,29 @@ public class SLogoApp extends Application implements TabbedApp {
         tabPane.getTabs().add(tab);
     }
 
+    /**
+     * The engine is chosen by the Engine key in slogo.properties: Bytecode runs the commands on the bytecode virtual machine, and anything else interprets the ASTs. The MaxDepth key limits how deeply the virtual machine nests calls to user-defined functions.
+     */
+    private EngineAPI newEngine(ModelModule modelModule) {
+        ASTEngineAPI engine;
+        if (APP_PROPERTIES.containsKey(ENGINE_KEY) && APP_PROPERTIES.getString(ENGINE_KEY).equals(BYTECODE_ENGINE)) {
+            BytecodeEngineAPI bytecodeEngine = new BytecodeEngineAPI(modelModule.turtleManager());
+            if (APP_PROPERTIES.containsKey(MAX_DEPTH_KEY)) {
+                bytecodeEngine.virtualMachine().setMaxDepth(Integer.parseInt(APP_PROPERTIES.getString(MAX_DEPTH_KEY).trim()));
+            }
+            engine = bytecodeEngine;
+        } else {
+            engine = new ASTEngineAPI(modelModule.turtleManager());
+        }
+        if (APP_PROPERTIES.containsKey(LIBRARY_KEY)) {
+            if (library == null) loadLibrary(engine);
+            engine.shareProcedures(library);
+        }
+        if (APP_PROPERTIES.containsKey(JOURNAL_KEY) && tabIndex == 1) {
+            recoverJournal(engine);
+        }
+        return engine;
+    }
+
     public static void main(String[] args) { launch(args); }
 }
@@ -17,6 +17,8 @@ import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
 import javafx.scene.shape.Rectangle;
 import model.ClearListener;
+import model.PathListener;
+import model.PosAndAngle;
 import model.TurtleModel;
 import model.UIListener;
 import view.utils.AnimationQueue;
@@ -93,17 +95,68 @@ public class TurtleView implements ClearListener, UIListener {
     }
 
     private void bindObservable(TurtleModel turtleModel) {
-        turtleModel.posAndAngleModel().registerListener((newValue) -> {
-            var newX = newValue.x();
-            var newY = newValue.y();
-            var newAngle = newValue.angle();
-
-            var path = makePath(newX, newY, duration.doubleValue(),tempX,tempY, penColor, strokeSize.getValue());
-            var animation = animationQueue.makeAnimation(turtle, path, newAngle, duration, oldAngle);
-            oldAngle = newAngle;
-            tempX = newX + TURTLE_SIZE/2;
-            tempY = newY + TURTLE_SIZE/2;
-            setupAnimation(turtleModel, newX, newY, newAngle, animation);
+        turtleModel.posAndAngleModel().registerListener(new PathListener() {
+            @Override
+            public void changed(PosAndAngle newValue) {
+                animateStep(turtleModel, newValue.x(), newValue.y(), newValue.angle());
+            }
+
+            @Override
+            public void pathChanged(PosAndAngle newValue, double[] points) {
+                animatePath(points);
+            }
+        });
+    }
+
+    private void animateStep(TurtleModel turtleModel, double newX, double newY, double newAngle) {
+        var path = makePath(newX, newY, duration.doubleValue(),tempX,tempY, penColor, strokeSize.getValue());
+        var animation = animationQueue.makeAnimation(turtle, path, newAngle, duration, oldAngle);
+        oldAngle = newAngle;
+        tempX = newX + TURTLE_SIZE/2;
+        tempY = newY + TURTLE_SIZE/2;
+        setupAnimation(turtleModel, newX, newY, newAngle, animation);
+    }
+
+    /**
+     * Animates a whole path of x, y, angle triples as one polyline, instead of queueing one animation per step
+     */
+    private void animatePath(double[] points) {
+        var line = new Path();
+        line.getElements().add(new MoveTo(tempX, tempY));
+        int moves = 0;
+        for (int i = 0; i < points.length; i += 3) {
+            var x = points[i] + TURTLE_SIZE/2;
+            var y = points[i + 1] + TURTLE_SIZE/2;
+            if (x != tempX || y != tempY) {
+                line.getElements().add(new LineTo(x, y));
+                tempX = x;
+                tempY = y;
+            }
+            moves++;
+        }
+        var newX = points[points.length - 3];
+        var newY = points[points.length - 2];
+        var newAngle = points[points.length - 1];
+        oldAngle = newAngle;
+
+        var capturedPenDown = penDown.getValue();
+        var capturedPenSize = strokeSize.getValue();
+        var capturedPenColor = Color.valueOf(penColor.toString());
+        var animation = animationQueue.makePathAnimation(turtle, line, newAngle, duration.doubleValue() * moves);
+        animation.setOnFinished(e -> {
+            if (capturedPenDown) {
+                var ink = new Path(line.getElements());
+                ink.setStroke(capturedPenColor);
+                ink.setStrokeWidth(capturedPenSize);
+                views.getChildren().add(ink);
+            }
+            views.getChildren().add(new Group());
+            turtle.setTranslateX(0);
+            turtle.setTranslateY(0);
+            turtle.setX(newX);
+            turtle.setY(newY);
+            turtle.setRotate(newAngle);
+            animationQueue.getPlaying().set(false);
         });
     }
 
@@ -1,6 +1,7 @@
 package view;
 
 import engine.compiler.storage.StateMachine;
+import engine.compiler.storage.VariableChange;
 import engine.compiler.utils.PrettierPresentation;
 import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
@@ -10,6 +11,11 @@ import javafx.scene.text.Text;
 import view.utils.PrettyUI;
 import engine.compiler.storage.StateMachineObserver;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class VariableView implements StateMachineObserver {
     private static final int VARIABLE_VIEW_WIDTH = HistoryView.HISTORY_VIEW_WIDTH - 20;
     private static final int KEY_VALUE_MARGIN = 150;
@@ -21,8 +27,12 @@ public class VariableView implements StateMachineObserver {
     private ScrollPane root;
     private VBox variableView;
     private StateMachine stateMachine;
+    private List<String> keys;
+    private Map<String, Text> values;
 
     VariableView(StateMachine stateMachine) {
+        keys = new ArrayList<>();
+        values = new HashMap<>();
         variableView = new VBox();
         variableView.setPrefWidth(VARIABLE_VIEW_WIDTH);
         variableView.getStyleClass().add("variable-view");
@@ -40,22 +50,59 @@ public class VariableView implements StateMachineObserver {
 
     @Override
     public void notifyListener() {
-        variableView.getChildren().clear(); // we can optimize this if we need to
-        stateMachine.listOfVariables().forEach( (k, v) -> {
-            var kvPane = keyValueText(variableView.getChildren().size(), k, v);
-            kvPane.setOnMouseClicked(e -> {
-                if(e.getClickCount() >= DOUBLE_CLICK) {
-                    Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                    alert.setHeaderText(k);
-                    alert.setContentText(PrettierPresentation.prettify(v.toString()));
-                    alert.showAndWait();
-                }
-            });
-            variableView.getChildren().add(kvPane);
+        variableView.getChildren().clear();
+        keys.clear();
+        values.clear();
+        stateMachine.listOfVariables().forEach(this::addRow);
+    }
+
+    /**
+     * Patch only the rows of the variables that changed, instead of building the whole list again.
+     */
+    @Override
+    public void notifyChanges(Map<String, VariableChange> changes) {
+        Map<String, Object> variables = stateMachine.listOfVariables();
+        changes.forEach((k, change) -> {
+            if (change == VariableChange.REMOVED) removeRow(k);
+            else if (values.containsKey(k)) values.get(k).setText(trim(variables.get(k).toString()));
+            else addRow(k, variables.get(k));
+        });
+    }
+
+    private void addRow(String k, Object v) {
+        var valueText = new Text(trim(v.toString()));
+        var kvPane = keyValueText(keys.size(), k, valueText);
+        kvPane.setOnMouseClicked(e -> {
+            if(e.getClickCount() >= DOUBLE_CLICK) {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setHeaderText(k);
+                alert.setContentText(PrettierPresentation.prettify(String.valueOf(stateMachine.listOfVariables().get(k))));
+                alert.showAndWait();
+            }
+        });
+        keys.add(k);
+        values.put(k, valueText);
+        variableView.getChildren().add(kvPane);
+    }
+
+    /**
+     * The rows after the removed one are built again, so that their backgrounds still alternate.
+     */
+    private void removeRow(String k) {
+        int idx = keys.indexOf(k);
+        if (idx < 0) return;
+        var variables = stateMachine.listOfVariables();
+        var following = new ArrayList<>(keys.subList(idx + 1, keys.size()));
+        variableView.getChildren().remove(idx, keys.size());
+        keys.subList(idx, keys.size()).clear();
+        values.remove(k);
+        following.forEach(key -> {
+            values.remove(key);
+            addRow(key, variables.get(key));
         });
     }
 
-    private GridPane keyValueText(int idx, String key, Object value) {
+    private GridPane keyValueText(int idx, String key, Text value) {
         var grid = new GridPane();
         grid.setMaxWidth(KEY_VALUE_MARGIN+VALUE_WIDTH);
         var constraint = new ColumnConstraints(KEY_VALUE_MARGIN);
@@ -65,7 +112,7 @@ public class VariableView implements StateMachineObserver {
         keyPane.setMinWidth(KEY_VALUE_MARGIN);
         keyPane.setAlignment(Pos.CENTER_LEFT);
         PrettyUI.alternateBgTheme(idx, keyPane);
-        var valuePane = new StackPane(new Text(trim(value.toString())));
+        var valuePane = new StackPane(value);
         valuePane.setMaxWidth(VALUE_WIDTH);
         valuePane.setMinWidth(VALUE_WIDTH);
         PrettyUI.alternateBgTheme(idx+1, valuePane);
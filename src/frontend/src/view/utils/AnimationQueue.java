@@ -71,6 +71,20 @@ public class AnimationQueue {
         return toAdd;
     }
 
+    public Animation makePathAnimation(ImageView turtle, Path path, double newAngle, double millis){
+        if (queue.size()>= limit)
+            throw new StackOverflowError("The animation Queue is overloaded");
+        var pt = new PathTransition(Duration.millis(millis),path,turtle);
+        var rt = new RotateTransition(Duration.millis(1), turtle);
+        rt.setToAngle(newAngle);
+
+        Animation toAdd = new SequentialTransition(turtle,pt,rt);
+        queue.add(toAdd);
+        if(!playing.get())
+            playNew();
+        return toAdd;
+    }
+
 
 
 